@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Skeletal implementation of the ternary search tree maps with primitive values. The tree is stored in parallel
+ * arrays like in {@link CompactTernarySearchTreeMap}, but instead of holding the values itself, this class assigns each
+ * key a slot. Subclasses keep the values in a primitive array indexed by slot, so that a value never has to be boxed
+ * unless it is accessed through the {@link java.util.Map} interface.<BR>
+ * <BR>
+ * The slot of a non-empty key is the index of the node which terminates the key. Since index 0 is reserved as the
+ * <code>null</code> node, slot 0 is used for the empty string key. Whether a node carries a value is recorded in a
+ * separate array, so that subclasses can store any value of their primitive type.
+ *
+ * @author Roland Krueger
+ */
+abstract class AbstractPrimitiveTernarySearchTreeMap<V> extends AbstractTernarySearchTreeMap<V> implements
+        Serializable {
+    private static final long serialVersionUID = -6033618273417953820L;
+
+    static final int NO_SLOT = -1;
+    static final int EMPTY_STRING_KEY_SLOT = 0;
+
+    private static final int NO_NODE = 0;
+    static final int DEFAULT_CAPACITY = 16;
+
+    private char[] mSplitChars;
+    private int[] mLokids;
+    private int[] mEqkids;
+    private int[] mHikids;
+    private int[] mSubarrayLengths;
+    private boolean[] mHasValue;                            // whether the key of the node's slot is contained
+    private int mRootNode = NO_NODE;
+    private int mNodeCount;                                 // highest node index in use
+    private int mFreeList = NO_NODE;                        // freed nodes, linked through mLokids
+    private transient int[] mPath;                          // path buffer for addSlot() and removeSlot()
+
+    protected AbstractPrimitiveTernarySearchTreeMap(int initialNodeCapacity) {
+        if (initialNodeCapacity < 0) {
+            throw new IllegalArgumentException("initial capacity must not be negative: " + initialNodeCapacity);
+        }
+        allocateArrays(initialNodeCapacity + 1);
+    }
+
+    /**
+     * Resizes the value array of the subclass to the given number of slots, keeping the values of the existing slots.
+     */
+    protected abstract void setValueCapacity(int capacity);
+
+    /**
+     * Returns the value of the given slot as a boxed object.
+     */
+    protected abstract V boxedValue(int slot);
+
+    /**
+     * Returns the number of slots for which the value array has to be allocated.
+     */
+    protected int slotCapacity() {
+        return mSplitChars.length;
+    }
+
+    private void allocateArrays(int capacity) {
+        mSplitChars = new char[capacity];
+        mLokids = new int[capacity];
+        mEqkids = new int[capacity];
+        mHikids = new int[capacity];
+        mSubarrayLengths = new int[capacity];
+        mHasValue = new boolean[capacity];
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity <= mSplitChars.length) {
+            return;
+        }
+        int capacity = Math.max(minCapacity, mSplitChars.length + (mSplitChars.length >> 1));
+        mSplitChars = Arrays.copyOf(mSplitChars, capacity);
+        mLokids = Arrays.copyOf(mLokids, capacity);
+        mEqkids = Arrays.copyOf(mEqkids, capacity);
+        mHikids = Arrays.copyOf(mHikids, capacity);
+        mSubarrayLengths = Arrays.copyOf(mSubarrayLengths, capacity);
+        mHasValue = Arrays.copyOf(mHasValue, capacity);
+        setValueCapacity(capacity);
+    }
+
+    private int newNode(char splitChar) {
+        int node;
+        if (mFreeList != NO_NODE) {
+            node = mFreeList;
+            mFreeList = mLokids[node];
+            mLokids[node] = NO_NODE;
+        } else {
+            ensureCapacity(mNodeCount + 2);
+            node = ++mNodeCount;
+        }
+        mSplitChars[node] = splitChar;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        mSplitChars[node] = '\0';
+        mEqkids[node] = NO_NODE;
+        mHikids[node] = NO_NODE;
+        mSubarrayLengths[node] = 0;
+        mHasValue[node] = false;
+        mLokids[node] = mFreeList;
+        mFreeList = node;
+    }
+
+    private int[] path(int minLength) {
+        if (mPath == null || mPath.length < minLength) {
+            mPath = new int[Math.max(minLength, 32)];
+        }
+        return mPath;
+    }
+
+    /**
+     * Returns the number of nodes currently used by this tree.
+     */
+    public int getNodeCount() {
+        int freeNodes = 0;
+        for (int node = mFreeList; node != NO_NODE; node = mLokids[node]) {
+            freeNodes++;
+        }
+        return mNodeCount - freeNodes;
+    }
+
+    @Override
+    public int size() {
+        return mSubarrayLengths[mRootNode] + (mHasValue[EMPTY_STRING_KEY_SLOT] ? 1 : 0);
+    }
+
+    @Override
+    public void clear() {
+        allocateArrays(DEFAULT_CAPACITY + 1);
+        setValueCapacity(DEFAULT_CAPACITY + 1);
+        mRootNode = NO_NODE;
+        mNodeCount = 0;
+        mFreeList = NO_NODE;
+        mPath = null;
+    }
+
+    @Override
+    protected NodeCursor<V> nodeCursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Returns the slot of the given key or {@link #NO_SLOT} if the key is not contained in this map.
+     */
+    protected int findSlot(CharSequence key) {
+        if (key.length() == 0) {
+            return mHasValue[EMPTY_STRING_KEY_SLOT] ? EMPTY_STRING_KEY_SLOT : NO_SLOT;
+        }
+        Cursor cursor = new Cursor();
+        return findNode(cursor, key) && cursor.hasValue() ? cursor.node() : NO_SLOT;
+    }
+
+    /**
+     * Adds the given key to this map if it is not yet contained and returns its slot. If the key has been added by
+     * this call, the one's complement <code>~slot</code> of the slot is returned instead, which is always negative.
+     * Adding a key may resize the value array through {@link #setValueCapacity(int)}.
+     */
+    protected int addSlot(CharSequence key) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        int keyLength = key.length();
+        if (keyLength == 0) {
+            if (mHasValue[EMPTY_STRING_KEY_SLOT]) {
+                return EMPTY_STRING_KEY_SLOT;
+            }
+            mHasValue[EMPTY_STRING_KEY_SLOT] = true;
+            return ~EMPTY_STRING_KEY_SLOT;
+        }
+
+        int[] path = path(keyLength);
+        int depth = 0;
+        int parent = NO_NODE;
+        int branch = 0;                                     // child slot of parent: 0 = lo, 1 = eq, 2 = hi
+        int node = mRootNode;
+        int charIndex = 0;
+        char keyChar = key.charAt(0);
+        while (true) {
+            if (node == NO_NODE) {
+                // newNode() may reallocate the arrays, so the parent's child array has to be looked up afterwards
+                node = newNode(keyChar);
+                if (parent == NO_NODE) {
+                    mRootNode = node;
+                } else if (branch == 0) {
+                    mLokids[parent] = node;
+                } else if (branch == 1) {
+                    mEqkids[parent] = node;
+                } else {
+                    mHikids[parent] = node;
+                }
+            }
+            if (depth == path.length) {
+                path = mPath = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = node;
+            char splitChar = mSplitChars[node];
+            parent = node;
+            if (keyChar < splitChar) {
+                branch = 0;
+                node = mLokids[node];
+            } else if (keyChar > splitChar) {
+                branch = 2;
+                node = mHikids[node];
+            } else if (++charIndex == keyLength) {
+                break;
+            } else {
+                keyChar = key.charAt(charIndex);
+                branch = 1;
+                node = mEqkids[node];
+            }
+        }
+
+        if (mHasValue[node]) {
+            return node;
+        }
+        mHasValue[node] = true;
+        for (int i = 0; i < depth; ++i) {
+            mSubarrayLengths[path[i]]++;
+        }
+        return ~node;
+    }
+
+    /**
+     * Removes the given key from this map and returns the slot it has occupied, or {@link #NO_SLOT} if the key is not
+     * contained. The value array is not touched, so that the subclass can still read the removed value from the
+     * returned slot.
+     */
+    protected int removeSlot(CharSequence key) {
+        int keyLength = key.length();
+        if (keyLength == 0) {
+            if (!mHasValue[EMPTY_STRING_KEY_SLOT]) {
+                return NO_SLOT;
+            }
+            mHasValue[EMPTY_STRING_KEY_SLOT] = false;
+            return EMPTY_STRING_KEY_SLOT;
+        }
+
+        int[] path = path(keyLength);
+        int depth = 0;
+        int node = mRootNode;
+        int charIndex = 0;
+        char keyChar = key.charAt(0);
+        while (true) {
+            if (node == NO_NODE) {
+                return NO_SLOT;
+            }
+            if (depth == path.length) {
+                path = mPath = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = node;
+            char splitChar = mSplitChars[node];
+            if (keyChar < splitChar) {
+                node = mLokids[node];
+            } else if (keyChar > splitChar) {
+                node = mHikids[node];
+            } else if (++charIndex == keyLength) {
+                break;
+            } else {
+                keyChar = key.charAt(charIndex);
+                node = mEqkids[node];
+            }
+        }
+
+        if (!mHasValue[node]) {
+            return NO_SLOT;
+        }
+        mHasValue[node] = false;
+        // decrease the subarray lengths on the path and unlink all nodes whose subtree has become empty
+        for (int i = depth - 1; i >= 0; --i) {
+            int pathNode = path[i];
+            if (--mSubarrayLengths[pathNode] == 0) {
+                if (i == 0) {
+                    mRootNode = NO_NODE;
+                } else {
+                    int parentNode = path[i - 1];
+                    if (mLokids[parentNode] == pathNode) {
+                        mLokids[parentNode] = NO_NODE;
+                    } else if (mEqkids[parentNode] == pathNode) {
+                        mEqkids[parentNode] = NO_NODE;
+                    } else {
+                        mHikids[parentNode] = NO_NODE;
+                    }
+                }
+                freeNode(pathNode);
+            }
+        }
+        return node;
+    }
+
+    @Override
+    public V get(Object key) {
+        int slot = findSlot(toKey(key));
+        return slot == NO_SLOT ? null : boxedValue(slot);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findSlot(toKey(key)) != NO_SLOT;
+    }
+
+    private final class Cursor extends IndexNodeCursor<V> {
+        @Override
+        protected boolean hasEmptyStringKeyValue() {
+            return mHasValue[EMPTY_STRING_KEY_SLOT];
+        }
+
+        @Override
+        protected V emptyStringKeyValue() {
+            return boxedValue(EMPTY_STRING_KEY_SLOT);
+        }
+
+        @Override
+        protected int rootNode() {
+            return mRootNode;
+        }
+
+        @Override
+        protected char splitChar(int node) {
+            return mSplitChars[node];
+        }
+
+        @Override
+        protected int lokid(int node) {
+            return mLokids[node];
+        }
+
+        @Override
+        protected int eqkid(int node) {
+            return mEqkids[node];
+        }
+
+        @Override
+        protected int hikid(int node) {
+            return mHikids[node];
+        }
+
+        @Override
+        protected int subarrayLength(int node) {
+            return mSubarrayLengths[node];
+        }
+
+        @Override
+        protected boolean hasValue(int node) {
+            return mHasValue[node];
+        }
+
+        @Override
+        protected V value(int node) {
+            return boxedValue(node);
+        }
+    }
+}
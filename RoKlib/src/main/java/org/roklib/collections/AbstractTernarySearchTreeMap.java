@@ -0,0 +1,1397 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.util.*;
+
+/**
+ * Skeletal implementation of {@link TernarySearchTreeMapInterface} for ternary search tree variants which keep the
+ * number of keys stored below each node. Such a tree can answer rank and select queries in time proportional to the
+ * key length, so that all {@link SortedMap} views, prefix iterators and the positional accessors can be expressed in
+ * terms of index ranges over the sorted key set.<BR>
+ * <BR>
+ * Subclasses have to provide {@link #size()} and {@link #get(Object)}. Trees in which every node holds a single split
+ * character additionally provide a {@link NodeCursor} through {@link #nodeCursor()}, on which this class implements
+ * {@link #rank(CharSequence)}, {@link #countPrefix(CharSequence)}, {@link #entryAt(int)} and
+ * {@link #matchAlmost(CharSequence, int, int)}. Other trees override these four methods instead. Mutable variants
+ * additionally override {@link #put(CharSequence, Object)} and {@link #remove(Object)}. Like
+ * {@link TernarySearchTreeMap}, all implementations disallow <code>null</code> keys and values and return
+ * <code>null</code> from {@link #firstKey()} and {@link #lastKey()} if the map is empty.
+ *
+ * @author Roland Krueger
+ */
+abstract class AbstractTernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implements
+        TernarySearchTreeMapInterface<V> {
+
+    /**
+     * Returns a new cursor over the nodes of this tree. Subclasses which override {@link #rank(CharSequence)},
+     * {@link #countPrefix(CharSequence)}, {@link #entryAt(int)} and {@link #matchAlmost(CharSequence, int, int)} need
+     * not provide a cursor.
+     */
+    protected NodeCursor<V> nodeCursor() {
+        throw new UnsupportedOperationException("nodeCursor() is not supported by this map");
+    }
+
+    /**
+     * Returns the entry with the given position in the sorted key set. The index is guaranteed to lie within
+     * <code>[0, size())</code>.
+     */
+    protected Entry<CharSequence, V> entryAt(int index) {
+        return entryAt(nodeCursor(), index);
+    }
+
+    public abstract int size();
+
+    public abstract V get(Object key);
+
+    /**
+     * Converts a key object into the character sequence used for the tree lookup. As with
+     * {@link TernarySearchTreeMap}, objects which are no {@link CharSequence} are represented by their string
+     * representation.
+     */
+    static CharSequence toKey(Object key) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        return key instanceof CharSequence ? (CharSequence) key : key.toString();
+    }
+
+    /**
+     * Returns the smallest key which is greater than all keys starting with the given prefix, or <code>null</code> if
+     * there is no such key. The keys with the given prefix are exactly the keys in the range
+     * <code>[prefix, prefixUpperBound(prefix))</code>.
+     */
+    static CharSequence prefixUpperBound(CharSequence prefix) {
+        for (int i = prefix.length() - 1; i >= 0; --i) {
+            char c = prefix.charAt(i);
+            if (c != Character.MAX_VALUE) {
+                return new StringBuilder(i + 1).append(prefix, 0, i).append((char) (c + 1)).toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the order in which <code>size</code> sorted entries should be inserted into a ternary search tree.
+     * Inserting sorted keys one after the other results in degenerate lo/hi chains, so the returned indices follow a
+     * breadth-first traversal of a balanced binary tree over the entries instead: first the median entry, then the
+     * medians of both halves, and so on. This is used when deserializing the maps which cannot build a balanced tree
+     * from sorted input directly.
+     */
+    static int[] balancedInsertionOrder(int size) {
+        int[] order = new int[size];
+        // queue of the non-empty ranges of entries still to be ordered, each range is visited exactly once
+        int[] ranges = new int[2 * size];
+        int head = 0;
+        int tail = 0;
+        if (size > 0) {
+            ranges[tail++] = 0;
+            ranges[tail++] = size;
+        }
+        int count = 0;
+        while (head < tail) {
+            int from = ranges[head++];
+            int to = ranges[head++];
+            int median = (from + to) >>> 1;
+            order[count++] = median;
+            if (from < median) {
+                ranges[tail++] = from;
+                ranges[tail++] = median;
+            }
+            if (median + 1 < to) {
+                ranges[tail++] = median + 1;
+                ranges[tail++] = to;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Compares two keys character by character. This is the same ordering as the one induced by the split characters
+     * of a ternary search tree.
+     */
+    protected int compareKeys(CharSequence first, CharSequence second) {
+        int firstLength = first.length();
+        int secondLength = second.length();
+        int length = Math.min(firstLength, secondLength);
+        for (int i = 0; i < length; ++i) {
+            char firstChar = first.charAt(i);
+            char secondChar = second.charAt(i);
+            if (firstChar != secondChar) {
+                return firstChar - secondChar;
+            }
+        }
+        return firstLength - secondLength;
+    }
+
+    /**
+     * Creates a map entry for the given key and value. Calling <code>setValue()</code> on the returned entry writes the
+     * new value through to this map.
+     */
+    protected Entry<CharSequence, V> newEntry(CharSequence key, V value) {
+        return new TSTMapEntry(key, value);
+    }
+
+    /**
+     * Returns an iterator over all entries with a position in <code>[fromIndex, toIndex)</code>. The default
+     * implementation walks the tree in order with the cursor returned by {@link #nodeCursor()}. Subclasses which do
+     * not provide a cursor have to override this method.
+     */
+    protected Iterator<Entry<CharSequence, V>> entryIterator(int fromIndex, int toIndex) {
+        return new CursorIterator(fromIndex, toIndex);
+    }
+
+    /**
+     * Returns an iterator over all entries whose keys lie in the range <code>[fromKey, toKey)</code>. A
+     * <code>null</code> bound denotes the respective end of the map.
+     */
+    protected Iterator<Entry<CharSequence, V>> entryIterator(CharSequence fromKey, CharSequence toKey) {
+        int fromIndex = fromIndex(fromKey);
+        return entryIterator(fromIndex, Math.max(fromIndex, toIndex(toKey)));
+    }
+
+    /**
+     * Returns an iterator over all entries whose keys start with the given prefix or, if <code>inverse</code> is true,
+     * over all entries whose keys do not start with the prefix.
+     */
+    protected Iterator<Entry<CharSequence, V>> prefixIterator(CharSequence prefix, boolean inverse) {
+        int start = rank(prefix);
+        int end = start + countPrefix(prefix);
+        if (!inverse) {
+            return entryIterator(start, end);
+        }
+        return new ConcatenatedIterator<Entry<CharSequence, V>>(entryIterator(0, start), entryIterator(end, size()));
+    }
+
+    private int fromIndex(CharSequence fromKey) {
+        return fromKey == null ? 0 : rank(fromKey);
+    }
+
+    private int toIndex(CharSequence toKey) {
+        return toKey == null ? size() : rank(toKey);
+    }
+
+    /**
+     * Returns the number of entries whose keys lie in the range <code>[fromKey, toKey)</code>.
+     */
+    protected int rangeSize(CharSequence fromKey, CharSequence toKey) {
+        return Math.max(0, toIndex(toKey) - fromIndex(fromKey));
+    }
+
+    private boolean isInRange(CharSequence key, CharSequence fromKey, CharSequence toKey) {
+        return (fromKey == null || compareKeys(key, fromKey) >= 0) && (toKey == null || compareKeys(key, toKey) < 0);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+    /**
+     * Removes the mapping for the given key. Read-only variants do not override this method, so that every removal
+     * through this map's views fails with an {@link UnsupportedOperationException}.
+     */
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException("remove() is not supported by this map");
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        return super.containsValue(value);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public Entry<CharSequence, V> getEntry(Object key) {
+        CharSequence keyChars = toKey(key);
+        V value = get(keyChars);
+        return value == null ? null : newEntry(keyChars.toString(), value);
+    }
+
+    public V getValueAt(int index) {
+        checkIndex(index);
+        return entryAt(index).getValue();
+    }
+
+    public CharSequence getKeyAt(int index) {
+        checkIndex(index);
+        return entryAt(index).getKey();
+    }
+
+    public int indexOf(CharSequence key) {
+        return get(key) == null ? -1 : rank(key);
+    }
+
+    public CharSequence predecessor(CharSequence forElement) {
+        Entry<CharSequence, V> entry = predecessorEntry(forElement);
+        return entry == null ? null : entry.getKey();
+    }
+
+    public CharSequence successor(CharSequence forElement) {
+        Entry<CharSequence, V> entry = successorEntry(forElement);
+        return entry == null ? null : entry.getKey();
+    }
+
+    public Entry<CharSequence, V> predecessorEntry(Object keyObject) {
+        int index = rank(toKey(keyObject));
+        return index == 0 ? null : entryAt(index - 1);
+    }
+
+    public Entry<CharSequence, V> successorEntry(Object keyObject) {
+        CharSequence key = toKey(keyObject);
+        int index = rank(key) + (containsKey(key) ? 1 : 0);
+        return index < size() ? entryAt(index) : null;
+    }
+
+    public Comparator<? super CharSequence> comparator() {
+        return null;
+    }
+
+    public CharSequence firstKey() {
+        return isEmpty() ? null : entryAt(0).getKey();
+    }
+
+    public CharSequence lastKey() {
+        return isEmpty() ? null : entryAt(size() - 1).getKey();
+    }
+
+    public SortedMap<CharSequence, V> headMap(CharSequence toKey) {
+        if (toKey == null) {
+            throw new NullPointerException("this data structure does not allow null elements");
+        }
+        return new TSTRangeSubMap(null, toKey);
+    }
+
+    public SortedMap<CharSequence, V> subMap(CharSequence fromKey, CharSequence toKey) {
+        if (fromKey == null || toKey == null) {
+            throw new NullPointerException("One of the submap endpoints is null.");
+        }
+        return new TSTRangeSubMap(fromKey, toKey);
+    }
+
+    public SortedMap<CharSequence, V> tailMap(CharSequence fromKey) {
+        if (fromKey == null) {
+            throw new NullPointerException("this data structure does not allow null elements");
+        }
+        return new TSTRangeSubMap(fromKey, null);
+    }
+
+    @Override
+    public Set<Entry<CharSequence, V>> entrySet() {
+        return newEntrySet(null, null);
+    }
+
+    /**
+     * Creates the entry set of the keys in <code>[fromKey, toKey)</code>, where a <code>null</code> bound means that
+     * the range is unbounded on that side. This is used by {@link #entrySet()} and by the entry sets of the sub maps.
+     */
+    protected Set<Entry<CharSequence, V>> newEntrySet(CharSequence fromKey, CharSequence toKey) {
+        return new TSTRangeEntrySet(fromKey, toKey);
+    }
+
+    @Override
+    public Set<CharSequence> keySet() {
+        return new TSTRangeKeySet(null, null);
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new TSTRangeValues(null, null);
+    }
+
+    public Iterable<CharSequence> getPrefixMatch(final CharSequence prefix) {
+        if (prefix == null) {
+            throw new NullPointerException("prefix is null");
+        }
+        return new Iterable<CharSequence>() {
+            public Iterator<CharSequence> iterator() {
+                return new KeyIterator(prefixIterator(prefix, false));
+            }
+        };
+    }
+
+    public Iterable<Entry<CharSequence, V>> getPrefixSubtreeIterator(CharSequence prefix) {
+        return getPrefixSubtreeIterator(prefix, false);
+    }
+
+    public Iterable<Entry<CharSequence, V>> getPrefixSubtreeIterator(final CharSequence prefix,
+                                                                     final boolean inverseSearch) {
+        if (prefix == null) {
+            throw new NullPointerException("prefix is null");
+        }
+        return new Iterable<Entry<CharSequence, V>>() {
+            public Iterator<Entry<CharSequence, V>> iterator() {
+                return prefixIterator(prefix, inverseSearch);
+            }
+        };
+    }
+
+    /**
+     * Moves the given cursor to the node which terminates the given non-empty key. Returns <code>false</code> if there
+     * is no such node. The node found does not necessarily carry a value.
+     */
+    protected static boolean findNode(NodeCursor<?> cursor, CharSequence key) {
+        cursor.toRoot();
+        int charIndex = 0;
+        int lastIndex = key.length() - 1;
+        char keyChar = cursor.fold(key.charAt(0));
+        while (!cursor.isNull()) {
+            char splitChar = cursor.splitChar();
+            if (keyChar < splitChar) {
+                cursor.toLokid();
+            } else if (keyChar > splitChar) {
+                cursor.toHikid();
+            } else {
+                if (charIndex == lastIndex) {
+                    return true;
+                }
+                keyChar = cursor.fold(key.charAt(++charIndex));
+                cursor.toEqkid();
+            }
+        }
+        return false;
+    }
+
+    public int rank(CharSequence key) {
+        int keyLength = key.length();
+        if (keyLength == 0) {
+            return 0;
+        }
+        NodeCursor<V> cursor = nodeCursor();
+        int rank = cursor.hasEmptyStringKeyValue() ? 1 : 0;
+        int charIndex = 0;
+        cursor.toRoot();
+        while (!cursor.isNull()) {
+            char keyChar = cursor.fold(key.charAt(charIndex));
+            char splitChar = cursor.splitChar();
+            if (keyChar < splitChar) {
+                cursor.toLokid();
+            } else if (keyChar > splitChar) {
+                rank += cursor.lokidLength() + cursor.eqkidLength() + (cursor.hasValue() ? 1 : 0);
+                cursor.toHikid();
+            } else {
+                rank += cursor.lokidLength();
+                if (++charIndex == keyLength) {
+                    break;
+                }
+                if (cursor.hasValue()) {
+                    rank++;
+                }
+                cursor.toEqkid();
+            }
+        }
+        return rank;
+    }
+
+    public int countPrefix(CharSequence prefix) {
+        if (prefix.length() == 0) {
+            return size();
+        }
+        NodeCursor<V> cursor = nodeCursor();
+        if (!findNode(cursor, prefix)) {
+            return 0;
+        }
+        return cursor.eqkidLength() + (cursor.hasValue() ? 1 : 0);
+    }
+
+    /**
+     * Selects the entry with the given position from the tree seen by the given cursor. Throws an
+     * {@link IndexOutOfBoundsException} if the tree does not contain that many entries, which can only happen if it
+     * is modified concurrently.
+     */
+    protected Entry<CharSequence, V> entryAt(NodeCursor<V> cursor, int index) {
+        int remaining = index;
+        if (cursor.hasEmptyStringKeyValue()) {
+            if (remaining == 0) {
+                return newEntry("", cursor.emptyStringKeyValue());
+            }
+            remaining--;
+        }
+        char[] path = new char[16];
+        int depth = 0;
+        cursor.toRoot();
+        while (!cursor.isNull()) {
+            int loLength = cursor.lokidLength();
+            if (remaining < loLength) {
+                cursor.toLokid();
+                continue;
+            }
+            remaining -= loLength;
+            if (cursor.hasValue()) {
+                if (remaining == 0) {
+                    path = setChar(path, depth, cursor.splitChar());
+                    return newEntry(cursor.key(path, depth + 1), cursor.value());
+                }
+                remaining--;
+            }
+            int eqLength = cursor.eqkidLength();
+            if (remaining < eqLength) {
+                path = setChar(path, depth++, cursor.splitChar());
+                cursor.toEqkid();
+            } else {
+                remaining -= eqLength;
+                cursor.toHikid();
+            }
+        }
+        throw new IndexOutOfBoundsException("Index: " + index);
+    }
+
+    /**
+     * Stores the given character at the given index of the given key buffer, which is enlarged if necessary. Returns
+     * the buffer.
+     */
+    private static char[] setChar(char[] buffer, int index, char c) {
+        if (index == buffer.length) {
+            buffer = Arrays.copyOf(buffer, index * 2);
+        }
+        buffer[index] = c;
+        return buffer;
+    }
+
+    public SortedSet<CharSequence> matchAlmost(CharSequence key, int distance, int lengthTolerance) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        SortedSet<CharSequence> result = new TreeSet<CharSequence>();
+        int keyLength = key.length();
+        int maxDepth = keyLength + lengthTolerance;
+        if (maxDepth <= 0) {
+            return result;
+        }
+        char[] prefix = new char[maxDepth];
+
+        // depth-first traversal: the cursor keeps the pending nodes, their character index and remaining distance are
+        // kept in states. The eq child is pushed last so that the prefix characters of all pending nodes stay valid.
+        NodeCursor<V> cursor = nodeCursor();
+        int[] states = new int[32];
+        int stackSize = 0;
+        int charIndex = 0;
+        int remaining = distance;
+        cursor.toRoot();
+        while (true) {
+            if (!cursor.isNull() && remaining >= 0 && charIndex < maxDepth) {
+                char splitChar = cursor.splitChar();
+                int nextDistance = charIndex < keyLength && cursor.fold(key.charAt(charIndex)) == splitChar
+                        ? remaining : remaining - 1;
+                prefix[charIndex] = splitChar;
+                if (Math.abs(keyLength - charIndex - 1) <= lengthTolerance && nextDistance >= 0 && cursor.hasValue()) {
+                    result.add(cursor.key(prefix, charIndex + 1));
+                }
+                if (2 * (stackSize + 3) > states.length) {
+                    states = Arrays.copyOf(states, states.length * 2);
+                }
+                cursor.pushLokid();
+                states[2 * stackSize] = charIndex;
+                states[2 * stackSize + 1] = remaining;
+                stackSize++;
+                cursor.pushHikid();
+                states[2 * stackSize] = charIndex;
+                states[2 * stackSize + 1] = remaining;
+                stackSize++;
+                cursor.pushEqkid();
+                states[2 * stackSize] = charIndex + 1;
+                states[2 * stackSize + 1] = nextDistance;
+                stackSize++;
+            }
+            if (stackSize == 0) {
+                return result;
+            }
+            stackSize--;
+            cursor.pop();
+            charIndex = states[2 * stackSize];
+            remaining = states[2 * stackSize + 1];
+        }
+    }
+
+    /**
+     * Returns an iterator over the entries whose keys are accepted by the given automaton, sorted by key. The
+     * automaton reads the split characters of the tree, i.e. the characters as folded by the cursor. The iterator does
+     * not support <code>remove()</code>, and the map must not be modified while it is in use.
+     */
+    Iterator<Entry<CharSequence, V>> automatonIterator(KeyAutomaton automaton) {
+        return new AutomatonSearchIterator(automaton);
+    }
+
+    private class TSTMapEntry extends SimpleEntry<CharSequence, V> {
+        private static final long serialVersionUID = 2745196731628730219L;
+
+        public TSTMapEntry(CharSequence key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (value == null) {
+                throw new NullPointerException("value is null");
+            }
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * Iterates in key order over a range of entries by walking the tree with a single cursor. The cursor is positioned
+     * once at the first entry of the range with a descent like {@link #entryAt(NodeCursor, int)}; the walk then keeps
+     * the nodes still to be visited on the cursor's stack. Removing the entry returned last only unlinks nodes whose
+     * subtrees have become empty, so the pending nodes remain valid.
+     */
+    private class CursorIterator implements Iterator<Entry<CharSequence, V>> {
+        private final NodeCursor<V> mCursor;
+        // for every pending node: its depth in the key, shifted left by one, with the lowest bit set if its lo subtree
+        // has already been visited
+        private int[] mStates = new int[16];
+        private int mStackSize;
+        private char[] mKey = new char[16];
+        private boolean mEmptyStringKeyPending;
+        private int mRemaining;
+        private Entry<CharSequence, V> mLastReturned;
+
+        public CursorIterator(int fromIndex, int toIndex) {
+            mCursor = nodeCursor();
+            mRemaining = toIndex - fromIndex;
+            if (mRemaining > 0) {
+                seek(fromIndex);
+            }
+        }
+
+        private void seek(int index) {
+            int remaining = index;
+            if (mCursor.hasEmptyStringKeyValue()) {
+                if (remaining == 0) {
+                    mEmptyStringKeyPending = true;
+                    mCursor.toRoot();
+                    pushCurrent(0, false);
+                    return;
+                }
+                remaining--;
+            }
+            int depth = 0;
+            mCursor.toRoot();
+            while (!mCursor.isNull()) {
+                int loLength = mCursor.lokidLength();
+                if (remaining < loLength) {
+                    pushCurrent(depth, true);
+                    mCursor.toLokid();
+                    continue;
+                }
+                remaining -= loLength;
+                if (mCursor.hasValue()) {
+                    if (remaining == 0) {
+                        pushCurrent(depth, true);
+                        return;
+                    }
+                    remaining--;
+                }
+                int eqLength = mCursor.eqkidLength();
+                if (remaining < eqLength) {
+                    mKey = setChar(mKey, depth, mCursor.splitChar());
+                    ensureStackCapacity();
+                    mCursor.pushHikid();
+                    mStates[mStackSize++] = depth << 1;
+                    mCursor.toEqkid();
+                    depth++;
+                } else {
+                    remaining -= eqLength;
+                    mCursor.toHikid();
+                }
+            }
+        }
+
+        private void pushCurrent(int depth, boolean loVisited) {
+            ensureStackCapacity();
+            mCursor.pushCurrent();
+            mStates[mStackSize++] = depth << 1 | (loVisited ? 1 : 0);
+        }
+
+        private void ensureStackCapacity() {
+            if (mStackSize == mStates.length) {
+                mStates = Arrays.copyOf(mStates, mStackSize * 2);
+            }
+        }
+
+        public boolean hasNext() {
+            return mRemaining > 0;
+        }
+
+        public Entry<CharSequence, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            mRemaining--;
+            if (mEmptyStringKeyPending) {
+                mEmptyStringKeyPending = false;
+                mLastReturned = newEntry("", mCursor.emptyStringKeyValue());
+                return mLastReturned;
+            }
+            while (mStackSize > 0) {
+                int state = mStates[--mStackSize];
+                mCursor.pop();
+                if (mCursor.isNull()) {
+                    continue;
+                }
+                int depth = state >>> 1;
+                boolean loVisited = (state & 1) != 0;
+                while (true) {
+                    if (!loVisited) {
+                        // descend the lo chain, leaving every node on it to be visited after its lo subtree
+                        while (mCursor.lokidLength() > 0) {
+                            pushCurrent(depth, true);
+                            mCursor.toLokid();
+                        }
+                    }
+                    mKey = setChar(mKey, depth, mCursor.splitChar());
+                    ensureStackCapacity();
+                    mCursor.pushHikid();
+                    mStates[mStackSize++] = depth << 1;
+                    if (mCursor.hasValue()) {
+                        ensureStackCapacity();
+                        mCursor.pushEqkid();
+                        mStates[mStackSize++] = depth + 1 << 1;
+                        mLastReturned = newEntry(mCursor.key(mKey, depth + 1), mCursor.value());
+                        return mLastReturned;
+                    }
+                    // a node without a value either has an eq child or has been removed while iterating
+                    if (mCursor.eqkidLength() == 0) {
+                        break;
+                    }
+                    mCursor.toEqkid();
+                    depth++;
+                    loVisited = false;
+                }
+            }
+            throw new ConcurrentModificationException();
+        }
+
+        public void remove() {
+            if (mLastReturned == null) {
+                throw new IllegalStateException("Iterator.next() must be called prior to Iterator.remove().");
+            }
+            AbstractTernarySearchTreeMap.this.remove(mLastReturned.getKey());
+            mLastReturned = null;
+        }
+    }
+
+    /**
+     * Drives a {@link KeyAutomaton} over the tree and returns the accepted keys in key order. As in
+     * {@link TernarySearchTreeMap}, the path of the characters the automaton is forced to read is followed directly.
+     * Each pending node on the cursor's stack is kept together with the automaton's state before reading the node's
+     * split character. As in {@link CursorIterator}, a node is pushed a second time once its lo subtree has been pushed.
+     */
+    private class AutomatonSearchIterator implements Iterator<Entry<CharSequence, V>> {
+        private final KeyAutomaton mAutomaton;
+        private final NodeCursor<V> mCursor;
+        private long[] mStates = new long[16];
+        // for every pending node: its depth in the key, shifted left by one, with the lowest bit set if its lo subtree
+        // has already been pushed
+        private int[] mDepths = new int[16];
+        private int mStackSize;
+        private char[] mKey = new char[16];
+        private Entry<CharSequence, V> mNext;
+
+        public AutomatonSearchIterator(KeyAutomaton automaton) {
+            mAutomaton = automaton;
+            mCursor = nodeCursor();
+            long state = automaton.start();
+            if (state == 0) {
+                return;
+            }
+            mCursor.toRoot();
+            if (automaton.forcedChar(state) < 0) {
+                if (mCursor.hasEmptyStringKeyValue() && automaton.isMatch(state)) {
+                    mNext = newEntry("", mCursor.emptyStringKeyValue());
+                }
+                ensureStackCapacity();
+                mCursor.pushCurrent();
+                push(state, 0, false);
+                return;
+            }
+            // follow the forced characters, the key ending with the last of them is the smallest possible match
+            int depth = 0;
+            int forcedChar;
+            while ((forcedChar = automaton.forcedChar(state)) >= 0) {
+                if (depth > 0) {
+                    mCursor.toEqkid();
+                }
+                while (!mCursor.isNull() && mCursor.splitChar() != forcedChar) {
+                    if (forcedChar < mCursor.splitChar()) {
+                        mCursor.toLokid();
+                    } else {
+                        mCursor.toHikid();
+                    }
+                }
+                if (mCursor.isNull()) {
+                    return;
+                }
+                mKey = setChar(mKey, depth++, (char) forcedChar);
+                state = automaton.step(state, (char) forcedChar);
+            }
+            if (state == 0) {
+                return;
+            }
+            if (mCursor.hasValue() && automaton.isMatch(state)) {
+                mNext = newEntry(mCursor.key(mKey, depth), mCursor.value());
+            }
+            ensureStackCapacity();
+            mCursor.pushEqkid();
+            push(state, depth, false);
+        }
+
+        private void ensureStackCapacity() {
+            if (mStackSize == mStates.length) {
+                mStates = Arrays.copyOf(mStates, mStackSize * 2);
+                mDepths = Arrays.copyOf(mDepths, mStackSize * 2);
+            }
+        }
+
+        private void push(long state, int depth, boolean expanded) {
+            mStates[mStackSize] = state;
+            mDepths[mStackSize++] = depth << 1 | (expanded ? 1 : 0);
+        }
+
+        private void findNext() {
+            while (mNext == null && mStackSize > 0) {
+                mStackSize--;
+                mCursor.pop();
+                if (mCursor.isNull()) {
+                    continue;
+                }
+                long state = mStates[mStackSize];
+                int depth = mDepths[mStackSize] >>> 1;
+                char splitChar = mCursor.splitChar();
+                if ((mDepths[mStackSize] & 1) == 0) {
+                    mCursor.pushCurrent();
+                    push(state, depth, true);
+                    if (mAutomaton.canMatchBelow(state, splitChar)) {
+                        ensureStackCapacity();
+                        mCursor.pushLokid();
+                        push(state, depth, false);
+                    }
+                    continue;
+                }
+                if (mAutomaton.canMatchAbove(state, splitChar)) {
+                    mCursor.pushHikid();
+                    push(state, depth, false);
+                }
+                long nextState = mAutomaton.step(state, splitChar);
+                if (nextState == 0) {
+                    continue;
+                }
+                mKey = setChar(mKey, depth, splitChar);
+                ensureStackCapacity();
+                mCursor.pushEqkid();
+                push(nextState, depth + 1, false);
+                if (mCursor.hasValue() && mAutomaton.isMatch(nextState)) {
+                    mNext = newEntry(mCursor.key(mKey, depth + 1), mCursor.value());
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            findNext();
+            return mNext != null;
+        }
+
+        public Entry<CharSequence, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<CharSequence, V> result = mNext;
+            mNext = null;
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("remove() is not supported by search results");
+        }
+    }
+
+    static class ConcatenatedIterator<E> implements Iterator<E> {
+        private final Iterator<E> mFirst;
+        private final Iterator<E> mSecond;
+        private Iterator<E> mLastUsed;
+
+        public ConcatenatedIterator(Iterator<E> first, Iterator<E> second) {
+            mFirst = first;
+            mSecond = second;
+            mLastUsed = first;
+        }
+
+        public boolean hasNext() {
+            return mFirst.hasNext() || mSecond.hasNext();
+        }
+
+        public E next() {
+            mLastUsed = mFirst.hasNext() ? mFirst : mSecond;
+            return mLastUsed.next();
+        }
+
+        public void remove() {
+            mLastUsed.remove();
+        }
+    }
+
+    private class KeyIterator implements Iterator<CharSequence> {
+        private final Iterator<Entry<CharSequence, V>> mEntryIterator;
+
+        public KeyIterator(Iterator<Entry<CharSequence, V>> entryIterator) {
+            mEntryIterator = entryIterator;
+        }
+
+        public boolean hasNext() {
+            return mEntryIterator.hasNext();
+        }
+
+        public CharSequence next() {
+            return mEntryIterator.next().getKey();
+        }
+
+        public void remove() {
+            mEntryIterator.remove();
+        }
+    }
+
+    protected class TSTRangeEntrySet extends AbstractSet<Entry<CharSequence, V>> {
+        private final CharSequence mFromKey;
+        private final CharSequence mExclusiveToKey;
+
+        public TSTRangeEntrySet(CharSequence fromKey, CharSequence toKey) {
+            mFromKey = fromKey;
+            mExclusiveToKey = toKey;
+        }
+
+        @Override
+        public Iterator<Entry<CharSequence, V>> iterator() {
+            return entryIterator(mFromKey, mExclusiveToKey);
+        }
+
+        @Override
+        public int size() {
+            return rangeSize(mFromKey, mExclusiveToKey);
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            if (!(object instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> entry = (Entry<?, ?>) object;
+            if (entry.getKey() == null) {
+                return false;
+            }
+            CharSequence key = toKey(entry.getKey());
+            if (!isInRange(key, mFromKey, mExclusiveToKey)) {
+                return false;
+            }
+            V value = get(key);
+            return value != null && value.equals(entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object object) {
+            return contains(object) && AbstractTernarySearchTreeMap.this.remove(((Entry<?, ?>) object).getKey()) != null;
+        }
+    }
+
+    private class TSTRangeKeySet extends AbstractSet<CharSequence> {
+        private final CharSequence mFromKey;
+        private final CharSequence mExclusiveToKey;
+
+        public TSTRangeKeySet(CharSequence fromKey, CharSequence toKey) {
+            mFromKey = fromKey;
+            mExclusiveToKey = toKey;
+        }
+
+        @Override
+        public Iterator<CharSequence> iterator() {
+            return new KeyIterator(entryIterator(mFromKey, mExclusiveToKey));
+        }
+
+        @Override
+        public int size() {
+            return rangeSize(mFromKey, mExclusiveToKey);
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            CharSequence key = toKey(object);
+            return isInRange(key, mFromKey, mExclusiveToKey) && containsKey(key);
+        }
+
+        @Override
+        public boolean remove(Object object) {
+            return contains(object) && AbstractTernarySearchTreeMap.this.remove(object) != null;
+        }
+    }
+
+    private class TSTRangeValues extends AbstractCollection<V> {
+        private final CharSequence mFromKey;
+        private final CharSequence mExclusiveToKey;
+
+        public TSTRangeValues(CharSequence fromKey, CharSequence toKey) {
+            mFromKey = fromKey;
+            mExclusiveToKey = toKey;
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            final Iterator<Entry<CharSequence, V>> entryIterator = entryIterator(mFromKey, mExclusiveToKey);
+            return new Iterator<V>() {
+                public boolean hasNext() {
+                    return entryIterator.hasNext();
+                }
+
+                public V next() {
+                    return entryIterator.next().getValue();
+                }
+
+                public void remove() {
+                    entryIterator.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return rangeSize(mFromKey, mExclusiveToKey);
+        }
+    }
+
+    private class TSTRangeSubMap extends AbstractMap<CharSequence, V> implements SortedMap<CharSequence, V> {
+        private final CharSequence mFromKey;
+        private final CharSequence mExclusiveToKey;
+
+        public TSTRangeSubMap(CharSequence fromKey, CharSequence toKey) {
+            if (fromKey != null && toKey != null && compareKeys(fromKey, toKey) > 0)
+                throw new IllegalArgumentException("Invalid parameters: fromKey > toKey");
+            mFromKey = fromKey;
+            mExclusiveToKey = toKey;
+        }
+
+        private boolean isInRange(Object key) {
+            return AbstractTernarySearchTreeMap.this.isInRange(toKey(key), mFromKey, mExclusiveToKey);
+        }
+
+        public Comparator<? super CharSequence> comparator() {
+            return AbstractTernarySearchTreeMap.this.comparator();
+        }
+
+        public CharSequence firstKey() {
+            Iterator<Entry<CharSequence, V>> it = entryIterator(mFromKey, mExclusiveToKey);
+            return it.hasNext() ? it.next().getKey() : null;
+        }
+
+        public CharSequence lastKey() {
+            CharSequence lastKey = mExclusiveToKey == null ? AbstractTernarySearchTreeMap.this.lastKey()
+                    : predecessor(mExclusiveToKey);
+            return lastKey == null || mFromKey != null && compareKeys(lastKey, mFromKey) < 0 ? null : lastKey;
+        }
+
+        public SortedMap<CharSequence, V> headMap(CharSequence toKey) {
+            if (mExclusiveToKey != null && compareKeys(toKey, mExclusiveToKey) > 0)
+                throw new IllegalArgumentException("toKey out of range");
+            return new TSTRangeSubMap(mFromKey, toKey);
+        }
+
+        public SortedMap<CharSequence, V> subMap(CharSequence fromKey, CharSequence toKey) {
+            if (mFromKey != null && compareKeys(mFromKey, fromKey) > 0)
+                throw new IllegalArgumentException("fromKey out of range");
+            if (mExclusiveToKey != null && compareKeys(toKey, mExclusiveToKey) > 0)
+                throw new IllegalArgumentException("toKey out of range");
+            return new TSTRangeSubMap(fromKey, toKey);
+        }
+
+        public SortedMap<CharSequence, V> tailMap(CharSequence fromKey) {
+            if (mFromKey != null && compareKeys(mFromKey, fromKey) > 0)
+                throw new IllegalArgumentException("fromKey out of range");
+            return new TSTRangeSubMap(fromKey, mExclusiveToKey);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return isInRange(key) && AbstractTernarySearchTreeMap.this.containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            return isInRange(key) ? AbstractTernarySearchTreeMap.this.get(key) : null;
+        }
+
+        @Override
+        public V put(CharSequence key, V value) {
+            if (!isInRange(key))
+                throw new IllegalArgumentException("The key " + key + " is not within the bounds of this submap.");
+            return AbstractTernarySearchTreeMap.this.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return isInRange(key) ? AbstractTernarySearchTreeMap.this.remove(key) : null;
+        }
+
+        @Override
+        public int size() {
+            return rangeSize(mFromKey, mExclusiveToKey);
+        }
+
+        @Override
+        public Set<Entry<CharSequence, V>> entrySet() {
+            return newEntrySet(mFromKey, mExclusiveToKey);
+        }
+
+        @Override
+        public Set<CharSequence> keySet() {
+            return new TSTRangeKeySet(mFromKey, mExclusiveToKey);
+        }
+
+        @Override
+        public Collection<V> values() {
+            return new TSTRangeValues(mFromKey, mExclusiveToKey);
+        }
+    }
+
+    /**
+     * Navigates the nodes of a ternary search tree in which every node holds a single split character and knows the
+     * number of keys stored in its subtree. A cursor is created for a single operation and may see a snapshot of the
+     * tree taken when it was created. Besides its current position, a cursor keeps a stack of nodes still to be
+     * visited.
+     */
+    protected abstract static class NodeCursor<V> {
+        protected abstract boolean hasEmptyStringKeyValue();
+
+        protected abstract V emptyStringKeyValue();
+
+        /**
+         * Moves the cursor to the root node, which is missing if the tree holds no non-empty key.
+         */
+        protected abstract void toRoot();
+
+        /**
+         * Returns <code>true</code> if the cursor is positioned on a missing node. All other methods which read the
+         * current node must not be called in this case.
+         */
+        protected abstract boolean isNull();
+
+        protected abstract char splitChar();
+
+        protected abstract void toLokid();
+
+        protected abstract void toEqkid();
+
+        protected abstract void toHikid();
+
+        /**
+         * Returns the number of keys in the subtree of the current node's lo child.
+         */
+        protected abstract int lokidLength();
+
+        /**
+         * Returns the number of keys in the subtree of the current node's eq child.
+         */
+        protected abstract int eqkidLength();
+
+        protected abstract boolean hasValue();
+
+        protected abstract V value();
+
+        /**
+         * Returns the character which is compared with the split characters in place of the given character of a
+         * search key. The default implementation returns the character itself.
+         */
+        protected char fold(char c) {
+            return c;
+        }
+
+        /**
+         * Returns the key of the entry in the current node, given the split characters on the path to the node. The
+         * default implementation returns these characters.
+         */
+        protected String key(char[] path, int length) {
+            return new String(path, 0, length);
+        }
+
+        protected abstract void pushLokid();
+
+        protected abstract void pushEqkid();
+
+        protected abstract void pushHikid();
+
+        /**
+         * Pushes the current node itself, which may be missing.
+         */
+        protected abstract void pushCurrent();
+
+        /**
+         * Moves the cursor to the node which has been pushed last and removes that node from the stack.
+         */
+        protected abstract void pop();
+    }
+
+    /**
+     * Cursor over nodes which are addressed by an <code>int</code> index, where index 0 denotes a missing node and
+     * has a subarray length of 0.
+     */
+    protected abstract static class IndexNodeCursor<V> extends NodeCursor<V> {
+        private int mNode;
+        private int[] mStack;
+        private int mStackSize;
+
+        protected abstract int rootNode();
+
+        protected abstract char splitChar(int node);
+
+        protected abstract int lokid(int node);
+
+        protected abstract int eqkid(int node);
+
+        protected abstract int hikid(int node);
+
+        protected abstract int subarrayLength(int node);
+
+        protected abstract boolean hasValue(int node);
+
+        protected abstract V value(int node);
+
+        /**
+         * Returns the index of the current node.
+         */
+        protected int node() {
+            return mNode;
+        }
+
+        @Override
+        protected void toRoot() {
+            mNode = rootNode();
+        }
+
+        @Override
+        protected boolean isNull() {
+            return mNode == 0;
+        }
+
+        @Override
+        protected char splitChar() {
+            return splitChar(mNode);
+        }
+
+        @Override
+        protected void toLokid() {
+            mNode = lokid(mNode);
+        }
+
+        @Override
+        protected void toEqkid() {
+            mNode = eqkid(mNode);
+        }
+
+        @Override
+        protected void toHikid() {
+            mNode = hikid(mNode);
+        }
+
+        @Override
+        protected int lokidLength() {
+            return subarrayLength(lokid(mNode));
+        }
+
+        @Override
+        protected int eqkidLength() {
+            return subarrayLength(eqkid(mNode));
+        }
+
+        @Override
+        protected boolean hasValue() {
+            return hasValue(mNode);
+        }
+
+        @Override
+        protected V value() {
+            return value(mNode);
+        }
+
+        @Override
+        protected void pushLokid() {
+            push(lokid(mNode));
+        }
+
+        @Override
+        protected void pushEqkid() {
+            push(eqkid(mNode));
+        }
+
+        @Override
+        protected void pushHikid() {
+            push(hikid(mNode));
+        }
+
+        @Override
+        protected void pushCurrent() {
+            push(mNode);
+        }
+
+        private void push(int node) {
+            if (mStack == null) {
+                mStack = new int[16];
+            } else if (mStackSize == mStack.length) {
+                mStack = Arrays.copyOf(mStack, mStackSize * 2);
+            }
+            mStack[mStackSize++] = node;
+        }
+
+        @Override
+        protected void pop() {
+            mNode = mStack[--mStackSize];
+        }
+    }
+
+    /**
+     * Cursor over node objects, where <code>null</code> denotes a missing node.
+     */
+    protected abstract static class ReferenceNodeCursor<N, V> extends NodeCursor<V> {
+        private N mNode;
+        private Object[] mStack;
+        private int mStackSize;
+
+        protected abstract N rootNode();
+
+        protected abstract char splitChar(N node);
+
+        protected abstract N lokid(N node);
+
+        protected abstract N eqkid(N node);
+
+        protected abstract N hikid(N node);
+
+        /**
+         * Returns the number of keys in the subtree of the given node, which may be <code>null</code>.
+         */
+        protected abstract int subarrayLength(N node);
+
+        protected abstract boolean hasValue(N node);
+
+        protected abstract V value(N node);
+
+        /**
+         * Returns the current node.
+         */
+        protected N node() {
+            return mNode;
+        }
+
+        @Override
+        protected void toRoot() {
+            mNode = rootNode();
+        }
+
+        @Override
+        protected boolean isNull() {
+            return mNode == null;
+        }
+
+        @Override
+        protected char splitChar() {
+            return splitChar(mNode);
+        }
+
+        @Override
+        protected void toLokid() {
+            mNode = lokid(mNode);
+        }
+
+        @Override
+        protected void toEqkid() {
+            mNode = eqkid(mNode);
+        }
+
+        @Override
+        protected void toHikid() {
+            mNode = hikid(mNode);
+        }
+
+        @Override
+        protected int lokidLength() {
+            return subarrayLength(lokid(mNode));
+        }
+
+        @Override
+        protected int eqkidLength() {
+            return subarrayLength(eqkid(mNode));
+        }
+
+        @Override
+        protected boolean hasValue() {
+            return hasValue(mNode);
+        }
+
+        @Override
+        protected V value() {
+            return value(mNode);
+        }
+
+        @Override
+        protected void pushLokid() {
+            push(lokid(mNode));
+        }
+
+        @Override
+        protected void pushEqkid() {
+            push(eqkid(mNode));
+        }
+
+        @Override
+        protected void pushHikid() {
+            push(hikid(mNode));
+        }
+
+        @Override
+        protected void pushCurrent() {
+            push(mNode);
+        }
+
+        private void push(N node) {
+            if (mStack == null) {
+                mStack = new Object[16];
+            } else if (mStackSize == mStack.length) {
+                mStack = Arrays.copyOf(mStack, mStackSize * 2);
+            }
+            mStack[mStackSize++] = node;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void pop() {
+            mNode = (N) mStack[--mStackSize];
+            mStack[mStackSize] = null;
+        }
+    }
+}
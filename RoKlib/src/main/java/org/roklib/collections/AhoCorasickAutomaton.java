@@ -0,0 +1,480 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * An Aho-Corasick automaton which finds all occurrences of the keys of a dictionary in a text in one linear pass. The
+ * automaton is compiled from a {@link TernarySearchTreeMap}, a {@link TernarySearchTreeMapCaseInsensitive} or a
+ * {@link TernarySearchTreeSet} with one of the <code>compile()</code> methods. Compared to looking up the dictionary at
+ * each offset of the text, the time needed for scanning does not depend on the length of the keys: each character of
+ * the text is consumed exactly once, and the failure links of the automaton make sure that no character has to be read
+ * again after a mismatch.<BR>
+ * <BR>
+ * The automaton consists of the trie of all keys, stored in a set of arrays with the states numbered in breadth-first
+ * order. The outgoing transitions of each state are kept sorted in one contiguous section of the transition arrays.
+ * For each state, the failure link points to the state of the longest proper suffix of the state's path which is also
+ * a path in the trie, and the output link points to the nearest state on the chain of failure links which completes a
+ * key. The transitions of the start state are additionally stored in a table indexed by character, since most
+ * characters of a typical text lead back to the start state.<BR>
+ * <BR>
+ * Matches are reported to a {@link MatchListener} in the order of the position of their last character. Several
+ * matches ending at the same position are reported from the longest to the shortest key. Overlapping matches are all
+ * reported. The empty string key can't be matched meaningfully and is ignored. If the automaton has been compiled from
+ * a case-insensitive map or set, the text is folded to lower case with the same rules as used by the map, and the
+ * reported key is the key as it is stored in the map.<BR>
+ * <BR>
+ * The automaton is immutable once compiled, so that it can be shared by any number of threads. The state of a scan is
+ * kept in a {@link Session}, which also allows to scan a text which arrives in several chunks: a match spanning the
+ * border between two chunks is found as if the text had been passed in one piece. A session must only be used by one
+ * thread at a time. The automaton does not reflect changes to the dictionary made after it has been compiled.
+ *
+ * @param <V> the type of the values of the dictionary
+ * @author Roland Krueger
+ */
+public final class AhoCorasickAutomaton<V> {
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    private final CharSequence[] mKeys;       // the original keys in the order of the folded keys
+    private final Object[] mValues;           // the value for each key, null for a set
+    private final char[] mFoldingTable;       // null if the automaton is case-sensitive
+    private final int[] mFirstTransition;     // the transitions of state s are at [mFirstTransition[s], mFirstTransition[s + 1])
+    private final char[] mTransitionChars;
+    private final int[] mTransitionTargets;
+    private final int[] mFailure;
+    private final int[] mOutputLink;          // the next state on the failure chain which completes a key, 0 if none
+    private final int[] mKeyIndex;            // index of the key completed by each state, -1 if none
+    private final int[] mStartTransitions;    // target of each character in the start state, 0 if none
+
+    /**
+     * Callback which receives the matches found by an {@link AhoCorasickAutomaton}.
+     *
+     * @param <V> the type of the values of the dictionary
+     * @author Roland Krueger
+     */
+    public interface MatchListener<V> {
+        /**
+         * Called for each occurrence of a key in the scanned text.
+         *
+         * @param offset the position of the first character of the occurrence, counted from the beginning of the text
+         *               scanned by the session
+         * @param key    the key which has been found
+         * @param value  the value of the key, or <code>null</code> if the automaton has been compiled from a set
+         */
+        public abstract void match(long offset, CharSequence key, V value);
+    }
+
+    private AhoCorasickAutomaton(CharSequence[] keys, Object[] values, char[] foldingTable) {
+        mFoldingTable = foldingTable;
+        String[] foldedKeys = new String[keys.length];
+        int stateCapacity = 1;
+        for (int i = 0; i < keys.length; ++i) {
+            foldedKeys[i] = fold(keys[i]);
+            stateCapacity += foldedKeys[i].length();
+        }
+        sortByFoldedKey(foldedKeys, keys, values);
+        mKeys = keys;
+        mValues = values;
+
+        // The trie is built in breadth-first order from the sorted keys: each state stands for the range of keys
+        // which share the state's path as a common prefix, and the children of a state partition this range by the
+        // character following the prefix. Since states are processed in the order of their numbers, the transitions
+        // of each state end up in one contiguous section, and the failure link of each state is known before the
+        // failure links of its children are computed.
+        int[] rangeStart = new int[stateCapacity];
+        int[] rangeEnd = new int[stateCapacity];
+        int[] depth = new int[stateCapacity];
+        int[] firstTransition = new int[stateCapacity + 1];
+        char[] transitionChars = new char[stateCapacity];
+        int[] transitionTargets = new int[stateCapacity];
+        int[] failure = new int[stateCapacity];
+        int[] outputLink = new int[stateCapacity];
+        int[] keyIndex = new int[stateCapacity];
+        keyIndex[0] = -1;
+        rangeEnd[0] = foldedKeys.length;
+        int stateCount = 1;
+        int transitionCount = 0;
+        for (int state = 0; state < stateCount; ++state) {
+            firstTransition[state] = transitionCount;
+            int from = rangeStart[state];
+            int to = rangeEnd[state];
+            int length = depth[state];
+            while (from < to && foldedKeys[from].length() == length) {
+                // the first key of the range ends here; further keys of this length can only be duplicates
+                if (length > 0 && keyIndex[state] < 0) {
+                    keyIndex[state] = from;
+                }
+                ++from;
+            }
+            while (from < to) {
+                char c = foldedKeys[from].charAt(length);
+                int groupEnd = from + 1;
+                while (groupEnd < to && foldedKeys[groupEnd].charAt(length) == c) {
+                    ++groupEnd;
+                }
+                int child = stateCount++;
+                rangeStart[child] = from;
+                rangeEnd[child] = groupEnd;
+                depth[child] = length + 1;
+                keyIndex[child] = -1;
+                transitionChars[transitionCount] = c;
+                transitionTargets[transitionCount] = child;
+                ++transitionCount;
+
+                int fallback = 0;
+                if (state != 0) {
+                    int candidate = failure[state];
+                    while (true) {
+                        int target = findTransition(firstTransition, transitionChars, transitionTargets, candidate, c);
+                        if (target >= 0) {
+                            fallback = target;
+                            break;
+                        }
+                        if (candidate == 0) {
+                            break;
+                        }
+                        candidate = failure[candidate];
+                    }
+                }
+                failure[child] = fallback;
+                from = groupEnd;
+            }
+            firstTransition[state + 1] = transitionCount;
+            if (state != 0) {
+                int fallback = failure[state];
+                outputLink[state] = keyIndex[fallback] >= 0 ? fallback : outputLink[fallback];
+            }
+        }
+
+        mFirstTransition = Arrays.copyOf(firstTransition, stateCount + 1);
+        mTransitionChars = Arrays.copyOf(transitionChars, transitionCount);
+        mTransitionTargets = Arrays.copyOf(transitionTargets, transitionCount);
+        mFailure = Arrays.copyOf(failure, stateCount);
+        mOutputLink = Arrays.copyOf(outputLink, stateCount);
+        mKeyIndex = Arrays.copyOf(keyIndex, stateCount);
+
+        int startTransitionCount = mFirstTransition[1];
+        mStartTransitions = new int[startTransitionCount == 0 ? 0 : mTransitionChars[startTransitionCount - 1] + 1];
+        for (int i = 0; i < startTransitionCount; ++i) {
+            mStartTransitions[mTransitionChars[i]] = mTransitionTargets[i];
+        }
+    }
+
+    /**
+     * Compiles an automaton which finds the keys of the given map. If the map is a
+     * {@link TernarySearchTreeMapCaseInsensitive}, the keys are found regardless of their case.
+     *
+     * @throws NullPointerException if the map is <code>null</code>
+     */
+    public static <V> AhoCorasickAutomaton<V> compile(Map<? extends CharSequence, ? extends V> map) {
+        CharSequence[] keys = new CharSequence[map.size()];
+        Object[] values = new Object[keys.length];
+        int index = 0;
+        for (Entry<? extends CharSequence, ? extends V> entry : map.entrySet()) {
+            keys[index] = entry.getKey();
+            values[index] = entry.getValue();
+            ++index;
+        }
+        return new AhoCorasickAutomaton<V>(keys, values, foldingTableOf(map));
+    }
+
+    /**
+     * Compiles an automaton which finds the strings of the given set. If the set is case-insensitive, the strings are
+     * found regardless of their case. The values reported for the matches are <code>null</code>.
+     *
+     * @throws NullPointerException if the set is <code>null</code>
+     */
+    public static AhoCorasickAutomaton<Object> compile(TernarySearchTreeSet set) {
+        CharSequence[] keys = set.toArray(new CharSequence[set.size()]);
+        return new AhoCorasickAutomaton<Object>(keys, new Object[keys.length], foldingTableOf(set.backingMap()));
+    }
+
+    private static char[] foldingTableOf(Map<?, ?> map) {
+        if (map instanceof TernarySearchTreeMapCaseInsensitive) {
+            return ((TernarySearchTreeMapCaseInsensitive<?>) map).foldingTable();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of keys which the automaton searches for.
+     */
+    public int size() {
+        return mKeys.length;
+    }
+
+    /**
+     * Returns the number of states of the automaton.
+     */
+    public int getStateCount() {
+        return mFailure.length;
+    }
+
+    /**
+     * Creates a new session for scanning a text which is passed to the session in one or more chunks.
+     *
+     * @param listener the listener which receives the matches
+     */
+    public Session newSession(MatchListener<? super V> listener) {
+        return new Session(listener);
+    }
+
+    /**
+     * Scans the given text and reports all occurrences of the keys to the listener.
+     */
+    public void scan(CharSequence text, MatchListener<? super V> listener) {
+        newSession(listener).feed(text);
+    }
+
+    /**
+     * Scans the remaining characters of the given buffer and reports all occurrences of the keys to the listener. The
+     * position of the buffer is advanced to its limit. Offsets are counted from the buffer's position at the time of
+     * the call.
+     */
+    public void scan(CharBuffer buffer, MatchListener<? super V> listener) {
+        newSession(listener).feed(buffer);
+    }
+
+    /**
+     * Reads the given reader up to its end and reports all occurrences of the keys to the listener. The reader is not
+     * closed.
+     *
+     * @throws IOException if the reader throws an exception
+     */
+    public void scan(Reader reader, MatchListener<? super V> listener) throws IOException {
+        newSession(listener).feed(reader);
+    }
+
+    private String fold(CharSequence key) {
+        if (mFoldingTable == null) {
+            return key.toString();
+        }
+        char[] folded = new char[key.length()];
+        for (int i = 0; i < folded.length; ++i) {
+            folded[i] = mFoldingTable[key.charAt(i)];
+        }
+        return new String(folded);
+    }
+
+    /**
+     * Sorts the folded keys and rearranges the original keys and the values accordingly. The keys of the ternary search
+     * tree maps are already sorted in this order, so that the sorting is usually skipped.
+     */
+    private static void sortByFoldedKey(final String[] foldedKeys, CharSequence[] keys, Object[] values) {
+        boolean sorted = true;
+        for (int i = 1; i < foldedKeys.length && sorted; ++i) {
+            sorted = foldedKeys[i - 1].compareTo(foldedKeys[i]) <= 0;
+        }
+        if (sorted) {
+            return;
+        }
+        Integer[] order = new Integer[foldedKeys.length];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer first, Integer second) {
+                return foldedKeys[first].compareTo(foldedKeys[second]);
+            }
+        });
+        String[] sortedFoldedKeys = new String[order.length];
+        CharSequence[] sortedKeys = new CharSequence[order.length];
+        Object[] sortedValues = new Object[order.length];
+        for (int i = 0; i < order.length; ++i) {
+            sortedFoldedKeys[i] = foldedKeys[order[i]];
+            sortedKeys[i] = keys[order[i]];
+            sortedValues[i] = values[order[i]];
+        }
+        System.arraycopy(sortedFoldedKeys, 0, foldedKeys, 0, order.length);
+        System.arraycopy(sortedKeys, 0, keys, 0, order.length);
+        System.arraycopy(sortedValues, 0, values, 0, order.length);
+    }
+
+    /**
+     * Returns the target of the transition of the given state for the given character, or -1 if there is no such
+     * transition.
+     */
+    private static int findTransition(int[] firstTransition, char[] transitionChars, int[] transitionTargets,
+                                      int state, char c) {
+        int low = firstTransition[state];
+        int high = firstTransition[state + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char middleChar = transitionChars[middle];
+            if (middleChar < c) {
+                low = middle + 1;
+            } else if (middleChar > c) {
+                high = middle - 1;
+            } else {
+                return transitionTargets[middle];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the state reached from the given state by consuming the given character, following failure links until
+     * a state with a matching transition or the start state is reached.
+     */
+    private int step(int state, char c) {
+        if (mFoldingTable != null) {
+            c = mFoldingTable[c];
+        }
+        while (state != 0) {
+            int target = findTransition(mFirstTransition, mTransitionChars, mTransitionTargets, state, c);
+            if (target >= 0) {
+                return target;
+            }
+            state = mFailure[state];
+        }
+        return c < mStartTransitions.length ? mStartTransitions[c] : 0;
+    }
+
+    /**
+     * The state of a scan. A session consumes a text in one or more chunks and reports the matches to its listener as
+     * soon as their last character has been consumed. Offsets are counted over all chunks passed to the session since
+     * its creation or the last call of {@link #reset()}.<BR>
+     * <BR>
+     * A session is not thread-safe; concurrent scans need a session each.
+     *
+     * @author Roland Krueger
+     */
+    public final class Session {
+        private final MatchListener<? super V> mListener;
+        private int mState;
+        private long mPosition;
+
+        private Session(MatchListener<? super V> listener) {
+            if (listener == null) {
+                throw new NullPointerException("listener is null");
+            }
+            mListener = listener;
+        }
+
+        /**
+         * Consumes the given chunk of text.
+         */
+        public void feed(CharSequence text) {
+            feed(text, 0, text.length());
+        }
+
+        /**
+         * Consumes the given section of the text.
+         *
+         * @throws IndexOutOfBoundsException if the section does not lie within the text
+         */
+        public void feed(CharSequence text, int offset, int length) {
+            if (offset < 0 || length < 0 || offset > text.length() - length) {
+                throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", text length: "
+                        + text.length());
+            }
+            int state = mState;
+            for (int i = offset, end = offset + length; i < end; ++i) {
+                state = consume(state, text.charAt(i));
+            }
+            mState = state;
+        }
+
+        /**
+         * Consumes the given section of the character array.
+         *
+         * @throws IndexOutOfBoundsException if the section does not lie within the array
+         */
+        public void feed(char[] text, int offset, int length) {
+            if (offset < 0 || length < 0 || offset > text.length - length) {
+                throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", array length: "
+                        + text.length);
+            }
+            int state = mState;
+            for (int i = offset, end = offset + length; i < end; ++i) {
+                state = consume(state, text[i]);
+            }
+            mState = state;
+        }
+
+        /**
+         * Consumes the remaining characters of the given buffer. The position of the buffer is advanced to its limit.
+         */
+        public void feed(CharBuffer buffer) {
+            if (buffer.hasArray()) {
+                int position = buffer.position();
+                feed(buffer.array(), buffer.arrayOffset() + position, buffer.remaining());
+                buffer.position(buffer.limit());
+            } else {
+                int state = mState;
+                while (buffer.hasRemaining()) {
+                    state = consume(state, buffer.get());
+                }
+                mState = state;
+            }
+        }
+
+        /**
+         * Consumes all characters of the given reader up to its end. The reader is not closed.
+         *
+         * @throws IOException if the reader throws an exception
+         */
+        public void feed(Reader reader) throws IOException {
+            char[] buffer = new char[READ_BUFFER_SIZE];
+            int count;
+            while ((count = reader.read(buffer)) >= 0) {
+                feed(buffer, 0, count);
+            }
+        }
+
+        /**
+         * Returns the number of characters consumed by this session.
+         */
+        public long getPosition() {
+            return mPosition;
+        }
+
+        /**
+         * Resets this session to the beginning of a new text. A match which has been started at the end of the
+         * previous text is discarded.
+         */
+        public void reset() {
+            mState = 0;
+            mPosition = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private int consume(int state, char c) {
+            state = step(state, c);
+            ++mPosition;
+            int matchState = mKeyIndex[state] >= 0 ? state : mOutputLink[state];
+            while (matchState != 0) {
+                int keyIndex = mKeyIndex[matchState];
+                CharSequence key = mKeys[keyIndex];
+                mListener.match(mPosition - key.length(), key, (V) mValues[keyIndex]);
+                matchState = mOutputLink[matchState];
+            }
+            return state;
+        }
+    }
+}
@@ -0,0 +1,642 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A ternary search tree map with the same {@link java.util.SortedMap} semantics as {@link TernarySearchTreeMap} which
+ * stores its nodes in parallel primitive arrays instead of one object per node.<BR>
+ * <BR>
+ * Each node is identified by an <code>int</code> index. Its split character, the indices of its three child nodes and
+ * the size of its subtree are kept at that index in a separate array each. Compared to the object graph of
+ * {@link TernarySearchTreeMap} this saves the object header and the reference to the enclosing map for each node and
+ * keeps the nodes of a tree close together in memory, which results in a considerably smaller memory footprint and
+ * better cache locality for lookups. Nodes that become free by removing keys are recycled for subsequent insertions.
+ * {@link #trimToSize()} can be used to shrink the arrays and to lay out the nodes in depth-first order once a map has
+ * been filled.<BR>
+ * <BR>
+ * Only about one node in six terminates a key, so the values are not kept per node but in a dense array indexed by a
+ * value slot. A node which terminates a key but has no eq child, which is the case for most keys, stores its slot in
+ * place of the eq child index as <code>-(slot + 1)</code>. The slots of the remaining nodes, which terminate a key that
+ * is a prefix of other keys, are kept in a small hash table. Whether a node terminates a key follows from the subtree
+ * sizes: its own subtree holds one key more than its three child subtrees together.<BR>
+ * <BR>
+ * Index 0 is reserved as the <code>null</code> node, so that the arrays can be accessed without checking a child index
+ * first. Like {@link TernarySearchTreeMap}, this map does not allow <code>null</code> keys or values. It is not
+ * thread-safe.
+ *
+ * @author Roland Krueger
+ */
+public class CompactTernarySearchTreeMap<V> extends AbstractTernarySearchTreeMap<V> implements Serializable {
+    private static final long serialVersionUID = -3276398115204542717L;
+
+    private static final int NO_NODE = 0;
+    private static final int NO_SLOT = -1;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private char[] mSplitChars;
+    private int[] mLokids;
+    private int[] mEqkids;                                  // eq child or -(slot + 1) if there is no eq child
+    private int[] mHikids;
+    private int[] mSubarrayLengths;
+    private int mRootNode = NO_NODE;
+    private int mNodeCount;                                 // highest node index in use
+    private int mFreeList = NO_NODE;                        // freed nodes, linked through mLokids
+    private Object[] mValues;                               // values indexed by slot
+    private int mSlotCount;                                 // highest slot in use + 1
+    private int[] mFreeSlots;                               // stack of freed slots below mSlotCount
+    private int mFreeSlotCount;
+    private SlotTable mInnerSlots;                          // slots of the nodes which also have an eq child
+    private V mEmptyStringKeyValue;
+    private transient int[] mPath;                          // path buffer for put() and remove()
+
+    public CompactTernarySearchTreeMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty map which can hold the given number of nodes before its arrays have to be resized.
+     */
+    public CompactTernarySearchTreeMap(int initialNodeCapacity) {
+        if (initialNodeCapacity < 0) {
+            throw new IllegalArgumentException("initial capacity must not be negative: " + initialNodeCapacity);
+        }
+        allocateArrays(initialNodeCapacity + 1);
+        allocateValues(DEFAULT_CAPACITY);
+    }
+
+    public CompactTernarySearchTreeMap(Map<? extends CharSequence, ? extends V> map) {
+        this();
+        putAll(map);
+    }
+
+    private void allocateArrays(int capacity) {
+        mSplitChars = new char[capacity];
+        mLokids = new int[capacity];
+        mEqkids = new int[capacity];
+        mHikids = new int[capacity];
+        mSubarrayLengths = new int[capacity];
+    }
+
+    private void allocateValues(int capacity) {
+        mValues = new Object[capacity];
+        mSlotCount = 0;
+        mFreeSlots = new int[0];
+        mFreeSlotCount = 0;
+        mInnerSlots = new SlotTable(0);
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity <= mSplitChars.length) {
+            return;
+        }
+        int capacity = Math.max(minCapacity, mSplitChars.length + (mSplitChars.length >> 1));
+        mSplitChars = Arrays.copyOf(mSplitChars, capacity);
+        mLokids = Arrays.copyOf(mLokids, capacity);
+        mEqkids = Arrays.copyOf(mEqkids, capacity);
+        mHikids = Arrays.copyOf(mHikids, capacity);
+        mSubarrayLengths = Arrays.copyOf(mSubarrayLengths, capacity);
+    }
+
+    private int newNode(char splitChar) {
+        int node;
+        if (mFreeList != NO_NODE) {
+            node = mFreeList;
+            mFreeList = mLokids[node];
+            mLokids[node] = NO_NODE;
+        } else {
+            ensureCapacity(mNodeCount + 2);
+            node = ++mNodeCount;
+        }
+        mSplitChars[node] = splitChar;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        mSplitChars[node] = '\0';
+        mEqkids[node] = NO_NODE;
+        mHikids[node] = NO_NODE;
+        mSubarrayLengths[node] = 0;
+        mLokids[node] = mFreeList;
+        mFreeList = node;
+    }
+
+    private int newSlot(Object value) {
+        int slot;
+        if (mFreeSlotCount > 0) {
+            slot = mFreeSlots[--mFreeSlotCount];
+        } else {
+            if (mSlotCount == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSlotCount + (mSlotCount >> 1) + 1);
+            }
+            slot = mSlotCount++;
+        }
+        mValues[slot] = value;
+        return slot;
+    }
+
+    private void freeSlot(int slot) {
+        mValues[slot] = null;
+        if (mFreeSlotCount == mFreeSlots.length) {
+            mFreeSlots = Arrays.copyOf(mFreeSlots, mFreeSlotCount + (mFreeSlotCount >> 1) + 1);
+        }
+        mFreeSlots[mFreeSlotCount++] = slot;
+    }
+
+    /**
+     * Returns the eq child of the given node, or {@link #NO_NODE} if the node stores a value slot instead.
+     */
+    private int eqkid(int node) {
+        int eqkid = mEqkids[node];
+        return eqkid < 0 ? NO_NODE : eqkid;
+    }
+
+    /**
+     * Returns the value slot of the given node or {@link #NO_SLOT} if the node does not terminate a key.
+     */
+    private int slot(int node) {
+        int eqkid = mEqkids[node];
+        if (eqkid < 0) {
+            return -eqkid - 1;
+        }
+        return eqkid == NO_NODE ? NO_SLOT : mInnerSlots.get(node);
+    }
+
+    /**
+     * Links the given eq child, moving the node's value slot into {@link #mInnerSlots} if necessary.
+     */
+    private void linkEqkid(int node, int eqkid) {
+        if (mEqkids[node] < 0) {
+            mInnerSlots.put(node, -mEqkids[node] - 1);
+        }
+        mEqkids[node] = eqkid;
+    }
+
+    /**
+     * Unlinks the eq child of the given node, moving the node's value slot back from {@link #mInnerSlots}.
+     */
+    private void unlinkEqkid(int node) {
+        int slot = mInnerSlots.remove(node);
+        mEqkids[node] = slot == NO_SLOT ? NO_NODE : -(slot + 1);
+    }
+
+    private int[] path(int minLength) {
+        if (mPath == null || mPath.length < minLength) {
+            mPath = new int[Math.max(minLength, 32)];
+        }
+        return mPath;
+    }
+
+    /**
+     * Returns the number of nodes currently used by this tree.
+     */
+    public int getNodeCount() {
+        int freeNodes = 0;
+        for (int node = mFreeList; node != NO_NODE; node = mLokids[node]) {
+            freeNodes++;
+        }
+        return mNodeCount - freeNodes;
+    }
+
+    /**
+     * Shrinks the node and value arrays to the number of nodes and values in use. The nodes and value slots are
+     * renumbered in depth-first order on the way, so that a lookup visits nodes which lie close to each other in
+     * memory.
+     */
+    public void trimToSize() {
+        int nodeCount = getNodeCount();
+        char[] splitChars = new char[nodeCount + 1];
+        int[] lokids = new int[nodeCount + 1];
+        int[] eqkids = new int[nodeCount + 1];
+        int[] hikids = new int[nodeCount + 1];
+        int[] subarrayLengths = new int[nodeCount + 1];
+        int valueCount = mSlotCount - mFreeSlotCount;
+        Object[] values = new Object[valueCount];
+        SlotTable innerSlots = new SlotTable(mInnerSlots.size());
+        int nextSlot = 0;
+
+        // iterative preorder traversal; each stack entry is an old node index together with the new index of its
+        // parent and the child slot in which the new node has to be linked (0 = lo, 1 = eq, 2 = hi)
+        int[] stack = new int[16];
+        int stackSize = 0;
+        int next = NO_NODE;
+        if (mRootNode != NO_NODE) {
+            stack[stackSize++] = mRootNode;
+            stack[stackSize++] = NO_NODE;
+            stack[stackSize++] = 0;
+        }
+        int newRoot = NO_NODE;
+        while (stackSize > 0) {
+            int slot = stack[--stackSize];
+            int parent = stack[--stackSize];
+            int oldNode = stack[--stackSize];
+            int newNode = ++next;
+            splitChars[newNode] = mSplitChars[oldNode];
+            subarrayLengths[newNode] = mSubarrayLengths[oldNode];
+            int oldSlot = slot(oldNode);
+            if (oldSlot != NO_SLOT) {
+                values[nextSlot] = mValues[oldSlot];
+                if (mEqkids[oldNode] < 0) {
+                    eqkids[newNode] = -(nextSlot + 1);
+                } else {
+                    innerSlots.put(newNode, nextSlot);
+                }
+                nextSlot++;
+            }
+            if (parent == NO_NODE) {
+                newRoot = newNode;
+            } else if (slot == 0) {
+                lokids[parent] = newNode;
+            } else if (slot == 1) {
+                eqkids[parent] = newNode;
+            } else {
+                hikids[parent] = newNode;
+            }
+            if (stackSize + 9 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            // push in reverse order so that the lo child is laid out first
+            if (mHikids[oldNode] != NO_NODE) {
+                stack[stackSize++] = mHikids[oldNode];
+                stack[stackSize++] = newNode;
+                stack[stackSize++] = 2;
+            }
+            if (eqkid(oldNode) != NO_NODE) {
+                stack[stackSize++] = mEqkids[oldNode];
+                stack[stackSize++] = newNode;
+                stack[stackSize++] = 1;
+            }
+            if (mLokids[oldNode] != NO_NODE) {
+                stack[stackSize++] = mLokids[oldNode];
+                stack[stackSize++] = newNode;
+                stack[stackSize++] = 0;
+            }
+        }
+        mSplitChars = splitChars;
+        mLokids = lokids;
+        mEqkids = eqkids;
+        mHikids = hikids;
+        mSubarrayLengths = subarrayLengths;
+        mRootNode = newRoot;
+        mNodeCount = nodeCount;
+        mFreeList = NO_NODE;
+        mValues = values;
+        mSlotCount = valueCount;
+        mFreeSlots = new int[0];
+        mFreeSlotCount = 0;
+        mInnerSlots = innerSlots;
+        mPath = null;
+    }
+
+    @Override
+    public int size() {
+        return mSubarrayLengths[mRootNode] + (mEmptyStringKeyValue == null ? 0 : 1);
+    }
+
+    @Override
+    public void clear() {
+        allocateArrays(DEFAULT_CAPACITY + 1);
+        allocateValues(DEFAULT_CAPACITY);
+        mRootNode = NO_NODE;
+        mNodeCount = 0;
+        mFreeList = NO_NODE;
+        mEmptyStringKeyValue = null;
+        mPath = null;
+    }
+
+    @Override
+    protected NodeCursor<V> nodeCursor() {
+        return new Cursor();
+    }
+
+    @Override
+    public V get(Object key) {
+        CharSequence keyChars = toKey(key);
+        if (keyChars.length() == 0) {
+            return mEmptyStringKeyValue;
+        }
+        Cursor cursor = new Cursor();
+        return findNode(cursor, keyChars) ? cursor.value() : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(CharSequence key, V value) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        int keyLength = key.length();
+        if (keyLength == 0) {
+            V oldValue = mEmptyStringKeyValue;
+            mEmptyStringKeyValue = value;
+            return oldValue;
+        }
+
+        int[] path = path(keyLength);
+        int depth = 0;
+        int parent = NO_NODE;
+        int branch = 0;                                     // child slot of parent: 0 = lo, 1 = eq, 2 = hi
+        int node = mRootNode;
+        int charIndex = 0;
+        char keyChar = key.charAt(0);
+        while (true) {
+            if (node == NO_NODE) {
+                // newNode() may reallocate the arrays, so the parent's child array has to be looked up afterwards
+                node = newNode(keyChar);
+                if (parent == NO_NODE) {
+                    mRootNode = node;
+                } else if (branch == 0) {
+                    mLokids[parent] = node;
+                } else if (branch == 1) {
+                    linkEqkid(parent, node);
+                } else {
+                    mHikids[parent] = node;
+                }
+            }
+            if (depth == path.length) {
+                path = mPath = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = node;
+            char splitChar = mSplitChars[node];
+            parent = node;
+            if (keyChar < splitChar) {
+                branch = 0;
+                node = mLokids[node];
+            } else if (keyChar > splitChar) {
+                branch = 2;
+                node = mHikids[node];
+            } else if (++charIndex == keyLength) {
+                break;
+            } else {
+                keyChar = key.charAt(charIndex);
+                branch = 1;
+                node = eqkid(node);
+            }
+        }
+
+        int slot = slot(node);
+        if (slot != NO_SLOT) {
+            V oldValue = (V) mValues[slot];
+            mValues[slot] = value;
+            return oldValue;
+        }
+        slot = newSlot(value);
+        if (mEqkids[node] == NO_NODE) {
+            mEqkids[node] = -(slot + 1);
+        } else {
+            mInnerSlots.put(node, slot);
+        }
+        for (int i = 0; i < depth; ++i) {
+            mSubarrayLengths[path[i]]++;
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        CharSequence keyChars = toKey(key);
+        int keyLength = keyChars.length();
+        if (keyLength == 0) {
+            V oldValue = mEmptyStringKeyValue;
+            mEmptyStringKeyValue = null;
+            return oldValue;
+        }
+
+        int[] path = path(keyLength);
+        int depth = 0;
+        int node = mRootNode;
+        int charIndex = 0;
+        char keyChar = keyChars.charAt(0);
+        while (true) {
+            if (node == NO_NODE) {
+                return null;
+            }
+            if (depth == path.length) {
+                path = mPath = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = node;
+            char splitChar = mSplitChars[node];
+            if (keyChar < splitChar) {
+                node = mLokids[node];
+            } else if (keyChar > splitChar) {
+                node = mHikids[node];
+            } else if (++charIndex == keyLength) {
+                break;
+            } else {
+                keyChar = keyChars.charAt(charIndex);
+                node = eqkid(node);
+            }
+        }
+
+        int slot = slot(node);
+        if (slot == NO_SLOT) {
+            return null;
+        }
+        V oldValue = (V) mValues[slot];
+        freeSlot(slot);
+        if (mEqkids[node] < 0) {
+            mEqkids[node] = NO_NODE;
+        } else {
+            mInnerSlots.remove(node);
+        }
+        // decrease the subarray lengths on the path and unlink all nodes whose subtree has become empty
+        for (int i = depth - 1; i >= 0; --i) {
+            int pathNode = path[i];
+            if (--mSubarrayLengths[pathNode] == 0) {
+                if (i == 0) {
+                    mRootNode = NO_NODE;
+                } else {
+                    int parent = path[i - 1];
+                    if (mLokids[parent] == pathNode) {
+                        mLokids[parent] = NO_NODE;
+                    } else if (mEqkids[parent] == pathNode) {
+                        unlinkEqkid(parent);
+                    } else {
+                        mHikids[parent] = NO_NODE;
+                    }
+                }
+                freeNode(pathNode);
+            }
+        }
+        return oldValue;
+    }
+
+    private final class Cursor extends IndexNodeCursor<V> {
+        @Override
+        protected boolean hasEmptyStringKeyValue() {
+            return mEmptyStringKeyValue != null;
+        }
+
+        @Override
+        protected V emptyStringKeyValue() {
+            return mEmptyStringKeyValue;
+        }
+
+        @Override
+        protected int rootNode() {
+            return mRootNode;
+        }
+
+        @Override
+        protected char splitChar(int node) {
+            return mSplitChars[node];
+        }
+
+        @Override
+        protected int lokid(int node) {
+            return mLokids[node];
+        }
+
+        @Override
+        protected int eqkid(int node) {
+            return CompactTernarySearchTreeMap.this.eqkid(node);
+        }
+
+        @Override
+        protected int hikid(int node) {
+            return mHikids[node];
+        }
+
+        @Override
+        protected int subarrayLength(int node) {
+            return mSubarrayLengths[node];
+        }
+
+        @Override
+        protected boolean hasValue(int node) {
+            return mSubarrayLengths[node] > mSubarrayLengths[mLokids[node]]
+                    + mSubarrayLengths[CompactTernarySearchTreeMap.this.eqkid(node)] + mSubarrayLengths[mHikids[node]];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected V value(int node) {
+            int slot = slot(node);
+            return slot == NO_SLOT ? null : (V) mValues[slot];
+        }
+    }
+
+    /**
+     * An open addressing hash table with linear probing which maps node indices to value slots.
+     */
+    private static final class SlotTable implements Serializable {
+        private static final long serialVersionUID = 2950364518113402583L;
+
+        private int[] mNodes;                               // NO_NODE marks an empty bucket
+        private int[] mSlots;
+        private int mSize;
+
+        /**
+         * Creates a table which can hold the given number of entries without being resized.
+         */
+        public SlotTable(int expectedSize) {
+            int capacity = 4;
+            while (capacity < 2 * expectedSize) {
+                capacity <<= 1;
+            }
+            mNodes = new int[capacity];
+            mSlots = new int[capacity];
+        }
+
+        private static int hash(int node) {
+            int hash = node * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+
+        public int size() {
+            return mSize;
+        }
+
+        public int get(int node) {
+            int mask = mNodes.length - 1;
+            for (int i = hash(node) & mask; mNodes[i] != NO_NODE; i = (i + 1) & mask) {
+                if (mNodes[i] == node) {
+                    return mSlots[i];
+                }
+            }
+            return NO_SLOT;
+        }
+
+        public void put(int node, int slot) {
+            if (2 * (mSize + 1) > mNodes.length) {
+                resize(mNodes.length * 2);
+            }
+            int mask = mNodes.length - 1;
+            int i = hash(node) & mask;
+            while (mNodes[i] != NO_NODE && mNodes[i] != node) {
+                i = (i + 1) & mask;
+            }
+            if (mNodes[i] == NO_NODE) {
+                mNodes[i] = node;
+                mSize++;
+            }
+            mSlots[i] = slot;
+        }
+
+        /**
+         * Removes the entry of the given node and returns its slot, or {@link #NO_SLOT} if there is no such entry.
+         */
+        public int remove(int node) {
+            int mask = mNodes.length - 1;
+            int i = hash(node) & mask;
+            while (mNodes[i] != node) {
+                if (mNodes[i] == NO_NODE) {
+                    return NO_SLOT;
+                }
+                i = (i + 1) & mask;
+            }
+            int slot = mSlots[i];
+            // shift back the following entries of the probe sequence which would no longer be found across the gap
+            int gap = i;
+            for (int j = (i + 1) & mask; mNodes[j] != NO_NODE; j = (j + 1) & mask) {
+                int home = hash(mNodes[j]) & mask;
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    mNodes[gap] = mNodes[j];
+                    mSlots[gap] = mSlots[j];
+                    gap = j;
+                }
+            }
+            mNodes[gap] = NO_NODE;
+            mSize--;
+            return slot;
+        }
+
+        private void resize(int capacity) {
+            int[] nodes = mNodes;
+            int[] slots = mSlots;
+            mNodes = new int[capacity];
+            mSlots = new int[capacity];
+            mSize = 0;
+            for (int i = 0; i < nodes.length; ++i) {
+                if (nodes[i] != NO_NODE) {
+                    put(nodes[i], slots[i]);
+                }
+            }
+        }
+    }
+}
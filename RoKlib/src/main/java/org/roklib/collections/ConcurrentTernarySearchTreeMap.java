@@ -0,0 +1,775 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A thread-safe ternary search tree map with the same {@link SortedMap} semantics as {@link TernarySearchTreeMap}.<BR>
+ * <BR>
+ * Read operations such as {@link #get(Object)}, {@link #getPrefixMatch(CharSequence)},
+ * {@link #matchAlmost(CharSequence, int, int)} and {@link #indexOf(CharSequence)} do not acquire any locks. Write
+ * operations never lock either. New nodes are linked into the tree by a compare-and-set operation on the child link of
+ * their parent node, and values are installed, replaced and removed by compare-and-set operations on the value field of
+ * the node that terminates a key. Nodes which no longer carry a value or a child node after a removal are pruned from
+ * the tree. Before such a node is unlinked, its empty value and child fields are sealed with marker objects so that no
+ * concurrent writer can attach a key to a node that is about to become unreachable. A writer which encounters a
+ * completely sealed node unlinks it itself and starts over from the root node, so that it does not depend on the
+ * removing thread to make progress. Only while the removing thread is still sealing a node, which takes it up to four
+ * compare-and-set operations, writers of keys below that node have to wait until the seal is completed or reverted.<BR>
+ * <BR>
+ * Iterators of this map and of all its views are <i>weakly consistent</i>. They never throw a
+ * {@link ConcurrentModificationException} and return the keys in ascending order. Every key that is contained in the
+ * map during the whole iteration is returned exactly once. Modifications made during the iteration may or may not be
+ * reflected by the iterator. The number of keys below each node is maintained with atomic counters which are updated
+ * after the corresponding value change took place. Therefore, {@link #size()} and the positional methods such as
+ * {@link #getKeyAt(int)} only return exact results while there are no concurrent modifications. The same holds for
+ * bulk operations such as {@link #putAll(Map)} and {@link #clear()}, which are not atomic.<BR>
+ * <BR>
+ * Like {@link TernarySearchTreeMap}, this map does not allow <code>null</code> keys or values.
+ *
+ * @author Roland Krueger
+ */
+public class ConcurrentTernarySearchTreeMap<V> extends AbstractTernarySearchTreeMap<V> implements
+        ConcurrentMap<CharSequence, V>, Serializable {
+    private static final long serialVersionUID = 2197458230461932283L;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ConcurrentTernarySearchTreeMap, Node> ROOT_NODE =
+            AtomicReferenceFieldUpdater.newUpdater(ConcurrentTernarySearchTreeMap.class, Node.class, "mRootNode");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ConcurrentTernarySearchTreeMap, Object> EMPTY_STRING_KEY_VALUE =
+            AtomicReferenceFieldUpdater.newUpdater(ConcurrentTernarySearchTreeMap.class, Object.class,
+                    "mEmptyStringKeyValue");
+
+    private static final int LO = 0;
+    private static final int OWN = 1;
+    private static final int EQ = 2;
+    private static final int HI = 3;
+
+    /**
+     * Marks the child links of a node which has been pruned from the tree. Readers treat this node like any other leaf
+     * node without a value.
+     */
+    private static final Node DEAD = new Node('\0');
+
+    /**
+     * Marks the value field of a node which has been pruned from the tree.
+     */
+    private static final Object TOMBSTONE = new Object();
+
+    private transient volatile Node mRootNode;
+    private transient volatile Object mEmptyStringKeyValue;
+
+    public ConcurrentTernarySearchTreeMap() {
+    }
+
+    public ConcurrentTernarySearchTreeMap(Map<? extends CharSequence, ? extends V> map) {
+        putAll(map);
+    }
+
+    private static int count(Node node) {
+        if (node == null) {
+            return 0;
+        }
+        int count = node.mSubarrayLength;
+        return count < 0 ? 0 : count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(Object data) {
+        return data == TOMBSTONE ? null : (V) data;
+    }
+
+    @Override
+    public int size() {
+        return count(mRootNode) + (mEmptyStringKeyValue == null ? 0 : 1);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mEmptyStringKeyValue == null && !entryIterator(null, null).hasNext();
+    }
+
+    @Override
+    public void clear() {
+        mRootNode = null;
+        mEmptyStringKeyValue = null;
+    }
+
+    private Node findNode(CharSequence key) {
+        Cursor cursor = new Cursor();
+        return findNode(cursor, key) ? cursor.node() : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        CharSequence keyChars = toKey(key);
+        if (keyChars.length() == 0) {
+            return (V) mEmptyStringKeyValue;
+        }
+        Node node = findNode(keyChars);
+        return node == null ? null : value(node.mData);
+    }
+
+    @Override
+    public V put(CharSequence key, V value) {
+        return put(key, value, false);
+    }
+
+    public V putIfAbsent(CharSequence key, V value) {
+        return put(key, value, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V put(CharSequence key, V value, boolean onlyIfAbsent) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        int keyLength = key.length();
+        if (keyLength == 0) {
+            while (true) {
+                Object oldValue = mEmptyStringKeyValue;
+                if (oldValue != null && onlyIfAbsent || EMPTY_STRING_KEY_VALUE.compareAndSet(this, oldValue, value)) {
+                    return (V) oldValue;
+                }
+            }
+        }
+
+        Node[] path = new Node[Math.max(16, keyLength * 2)];
+        restart:
+        while (true) {
+            Node node = mRootNode;
+            if (node == null) {
+                ROOT_NODE.compareAndSet(this, null, new Node(key.charAt(0)));
+                continue;
+            }
+            int depth = 0;
+            int charIndex = 0;
+            char keyChar = key.charAt(0);
+            while (true) {
+                if (node == DEAD) {
+                    unlinkSealedNode(path, depth);
+                    continue restart;
+                }
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                }
+                path[depth++] = node;
+                int branch;
+                char splitChar = node.mSplitChar;
+                if (keyChar < splitChar) {
+                    branch = LO;
+                } else if (keyChar > splitChar) {
+                    branch = HI;
+                } else if (++charIndex == keyLength) {
+                    break;
+                } else {
+                    keyChar = key.charAt(charIndex);
+                    branch = EQ;
+                }
+                Node child = node.getChild(branch);
+                if (child == null) {
+                    Node newChild = new Node(keyChar);
+                    child = node.casChild(branch, null, newChild) ? newChild : node.getChild(branch);
+                }
+                node = child;
+            }
+
+            while (true) {
+                Object oldValue = node.mData;
+                if (oldValue == TOMBSTONE) {
+                    unlinkSealedNode(path, depth);
+                    continue restart;
+                }
+                if (oldValue == null) {
+                    if (Node.DATA.compareAndSet(node, null, value)) {
+                        for (int i = 0; i < depth; ++i) {
+                            Node.SUBARRAY_LENGTH.incrementAndGet(path[i]);
+                        }
+                        return null;
+                    }
+                } else if (onlyIfAbsent || Node.DATA.compareAndSet(node, oldValue, value)) {
+                    return (V) oldValue;
+                }
+            }
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        return remove(toKey(key), null);
+    }
+
+    public boolean remove(Object key, Object value) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        return value != null && remove(toKey(key), value) != null;
+    }
+
+    /**
+     * Removes the mapping for the given key if it is mapped to <code>expectedValue</code> or to any value if
+     * <code>expectedValue</code> is <code>null</code>. Returns the removed value.
+     */
+    @SuppressWarnings("unchecked")
+    private V remove(CharSequence key, Object expectedValue) {
+        int keyLength = key.length();
+        if (keyLength == 0) {
+            while (true) {
+                Object oldValue = mEmptyStringKeyValue;
+                if (oldValue == null || expectedValue != null && !expectedValue.equals(oldValue)) {
+                    return null;
+                }
+                if (EMPTY_STRING_KEY_VALUE.compareAndSet(this, oldValue, null)) {
+                    return (V) oldValue;
+                }
+            }
+        }
+
+        Node[] path = new Node[Math.max(16, keyLength * 2)];
+        int depth = 0;
+        int charIndex = 0;
+        Node node = mRootNode;
+        while (true) {
+            if (node == null) {
+                return null;
+            }
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = node;
+            char keyChar = key.charAt(charIndex);
+            char splitChar = node.mSplitChar;
+            if (keyChar < splitChar) {
+                node = node.mLokid;
+            } else if (keyChar > splitChar) {
+                node = node.mHikid;
+            } else if (++charIndex == keyLength) {
+                break;
+            } else {
+                node = node.mEqkid;
+            }
+        }
+
+        Object oldValue;
+        do {
+            oldValue = node.mData;
+            if (oldValue == null || oldValue == TOMBSTONE || expectedValue != null && !expectedValue.equals(oldValue)) {
+                return null;
+            }
+        } while (!Node.DATA.compareAndSet(node, oldValue, null));
+        for (int i = 0; i < depth; ++i) {
+            Node.SUBARRAY_LENGTH.decrementAndGet(path[i]);
+        }
+        prune(path, depth);
+        return (V) oldValue;
+    }
+
+    /**
+     * Unlinks the nodes on the given path which neither carry a value nor have any child nodes, starting with the last
+     * node of the path. Stops at the first node which is still needed.
+     */
+    private void prune(Node[] path, int depth) {
+        for (int i = depth - 1; i >= 0; --i) {
+            Node node = path[i];
+            if (!node.seal()) {
+                return;
+            }
+            if (i == 0) {
+                ROOT_NODE.compareAndSet(this, node, null);
+            } else {
+                path[i - 1].unlinkChild(node);
+            }
+        }
+    }
+
+    /**
+     * Unlinks the last node of the given path if a concurrent removal has sealed it but not yet unlinked it. If the
+     * node is still being sealed, gives the removing thread the chance to complete or revert the seal instead.
+     */
+    private void unlinkSealedNode(Node[] path, int depth) {
+        Node node = path[depth - 1];
+        if (!node.isSealed()) {
+            Thread.yield();
+        } else if (depth == 1) {
+            ROOT_NODE.compareAndSet(this, node, null);
+        } else {
+            path[depth - 2].unlinkChild(node);
+        }
+    }
+
+    public boolean replace(CharSequence key, V oldValue, V newValue) {
+        if (key == null || oldValue == null || newValue == null) {
+            throw new NullPointerException();
+        }
+        if (key.length() == 0) {
+            while (true) {
+                Object currentValue = mEmptyStringKeyValue;
+                if (currentValue == null || !oldValue.equals(currentValue)) {
+                    return false;
+                }
+                if (EMPTY_STRING_KEY_VALUE.compareAndSet(this, currentValue, newValue)) {
+                    return true;
+                }
+            }
+        }
+        Node node = findNode(key);
+        if (node == null) {
+            return false;
+        }
+        while (true) {
+            Object currentValue = node.mData;
+            if (currentValue == null || currentValue == TOMBSTONE || !oldValue.equals(currentValue)) {
+                return false;
+            }
+            if (Node.DATA.compareAndSet(node, currentValue, newValue)) {
+                return true;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V replace(CharSequence key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        if (key.length() == 0) {
+            while (true) {
+                Object oldValue = mEmptyStringKeyValue;
+                if (oldValue == null || EMPTY_STRING_KEY_VALUE.compareAndSet(this, oldValue, value)) {
+                    return (V) oldValue;
+                }
+            }
+        }
+        Node node = findNode(key);
+        if (node == null) {
+            return null;
+        }
+        while (true) {
+            Object oldValue = node.mData;
+            if (oldValue == null || oldValue == TOMBSTONE) {
+                return null;
+            }
+            if (Node.DATA.compareAndSet(node, oldValue, value)) {
+                return (V) oldValue;
+            }
+        }
+    }
+
+    @Override
+    protected NodeCursor<V> nodeCursor() {
+        return new Cursor();
+    }
+
+    @Override
+    public CharSequence firstKey() {
+        Iterator<Entry<CharSequence, V>> iterator = entryIterator(null, null);
+        return iterator.hasNext() ? iterator.next().getKey() : null;
+    }
+
+    @Override
+    public CharSequence lastKey() {
+        Iterator<Entry<CharSequence, V>> iterator = new NodeIterator(null, null, true);
+        return iterator.hasNext() ? iterator.next().getKey() : null;
+    }
+
+    @Override
+    public Entry<CharSequence, V> predecessorEntry(Object keyObject) {
+        Iterator<Entry<CharSequence, V>> iterator = new NodeIterator(null, toKey(keyObject), true);
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    @Override
+    public Entry<CharSequence, V> successorEntry(Object keyObject) {
+        CharSequence key = toKey(keyObject);
+        Iterator<Entry<CharSequence, V>> iterator = entryIterator(key, null);
+        while (iterator.hasNext()) {
+            Entry<CharSequence, V> entry = iterator.next();
+            if (compareKeys(entry.getKey(), key) > 0) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected Iterator<Entry<CharSequence, V>> entryIterator(CharSequence fromKey, CharSequence toKey) {
+        return new NodeIterator(fromKey, toKey, false);
+    }
+
+    @Override
+    protected Iterator<Entry<CharSequence, V>> prefixIterator(CharSequence prefix, boolean inverse) {
+        CharSequence upperBound = prefixUpperBound(prefix);
+        if (!inverse) {
+            return prefix.length() == 0 ? entryIterator(null, null) : entryIterator(prefix, upperBound);
+        }
+        Iterator<Entry<CharSequence, V>> tail = upperBound == null ? Collections.<Entry<CharSequence, V>>emptyIterator()
+                : entryIterator(upperBound, null);
+        return new ConcatenatedIterator<Entry<CharSequence, V>>(entryIterator(null, prefix), tail);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (Entry<CharSequence, V> entry : entrySet()) {
+            out.writeObject(entry.getKey().toString());
+            out.writeObject(entry.getValue());
+        }
+        out.writeObject(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        for (String key = (String) in.readObject(); key != null; key = (String) in.readObject()) {
+            put(key, (V) in.readObject());
+        }
+    }
+
+    /**
+     * Cursor over the tree reachable from the root node at the time the cursor is created. The value of a node is read
+     * once by {@link #hasValue(Node)}, and {@link #value(Node)} returns that same value, so that both agree even if
+     * the value is replaced or removed concurrently.
+     */
+    private final class Cursor extends ReferenceNodeCursor<Node, V> {
+        private final Node mRoot = mRootNode;
+        private final Object mEmptyStringKeyData = mEmptyStringKeyValue;
+        private Object mData;
+
+        @Override
+        protected boolean hasEmptyStringKeyValue() {
+            return mEmptyStringKeyData != null;
+        }
+
+        @Override
+        protected V emptyStringKeyValue() {
+            return ConcurrentTernarySearchTreeMap.this.value(mEmptyStringKeyData);
+        }
+
+        @Override
+        protected Node rootNode() {
+            return mRoot;
+        }
+
+        @Override
+        protected char splitChar(Node node) {
+            return node.mSplitChar;
+        }
+
+        @Override
+        protected Node lokid(Node node) {
+            return node.mLokid;
+        }
+
+        @Override
+        protected Node eqkid(Node node) {
+            return node.mEqkid;
+        }
+
+        @Override
+        protected Node hikid(Node node) {
+            return node.mHikid;
+        }
+
+        @Override
+        protected int subarrayLength(Node node) {
+            return count(node);
+        }
+
+        @Override
+        protected boolean hasValue(Node node) {
+            mData = node.mData;
+            return mData != null && mData != TOMBSTONE;
+        }
+
+        @Override
+        protected V value(Node node) {
+            return ConcurrentTernarySearchTreeMap.this.value(mData);
+        }
+    }
+
+    private static final class Node {
+        private static final AtomicReferenceFieldUpdater<Node, Node> LOKID =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "mLokid");
+        private static final AtomicReferenceFieldUpdater<Node, Node> EQKID =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "mEqkid");
+        private static final AtomicReferenceFieldUpdater<Node, Node> HIKID =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "mHikid");
+        private static final AtomicReferenceFieldUpdater<Node, Object> DATA =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "mData");
+        private static final AtomicIntegerFieldUpdater<Node> SUBARRAY_LENGTH =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "mSubarrayLength");
+
+        private final char mSplitChar;
+        private volatile Node mLokid;
+        private volatile Node mEqkid;
+        private volatile Node mHikid;
+        private volatile Object mData;
+        private volatile int mSubarrayLength;
+
+        private Node(char splitChar) {
+            mSplitChar = splitChar;
+        }
+
+        private AtomicReferenceFieldUpdater<Node, Node> childUpdater(int branch) {
+            return branch == LO ? LOKID : branch == EQ ? EQKID : HIKID;
+        }
+
+        private Node getChild(int branch) {
+            return branch == LO ? mLokid : branch == EQ ? mEqkid : mHikid;
+        }
+
+        private boolean casChild(int branch, Node expect, Node update) {
+            return childUpdater(branch).compareAndSet(this, expect, update);
+        }
+
+        /**
+         * Seals this node if it has neither a value nor any child node, so that it can be unlinked safely. Returns
+         * false and leaves the node unchanged otherwise.
+         */
+        private boolean seal() {
+            if (!DATA.compareAndSet(this, null, TOMBSTONE)) {
+                return false;
+            }
+            if (LOKID.compareAndSet(this, null, DEAD)) {
+                if (EQKID.compareAndSet(this, null, DEAD)) {
+                    if (HIKID.compareAndSet(this, null, DEAD)) {
+                        return true;
+                    }
+                    mEqkid = null;
+                }
+                mLokid = null;
+            }
+            mData = null;
+            return false;
+        }
+
+        /**
+         * Returns true if {@link #seal()} has completed on this node. The hi child is sealed last and a completed seal
+         * is never reverted, so such a node does not change anymore.
+         */
+        private boolean isSealed() {
+            return mHikid == DEAD;
+        }
+
+        private void unlinkChild(Node child) {
+            if (!LOKID.compareAndSet(this, child, null) && !EQKID.compareAndSet(this, child, null)) {
+                HIKID.compareAndSet(this, child, null);
+            }
+        }
+    }
+
+    /**
+     * Weakly consistent iterator over the entries in a key range. The iterator performs an in-order traversal of the
+     * tree with an explicit stack. For ascending iteration, each node visits its lo subtree, its own value, its eq
+     * subtree and its hi subtree in this order; descending iteration uses the reverse order.
+     */
+    private class NodeIterator implements Iterator<Entry<CharSequence, V>> {
+        private final CharSequence mFromKey;
+        private final CharSequence mExclusiveToKey;
+        private final boolean mDescending;
+        private Node[] mNodes = new Node[16];
+        private int[] mSteps = new int[16];
+        private int[] mDepths = new int[16];
+        private int mStackSize;
+        private final StringBuilder mPrefix = new StringBuilder();
+        private boolean mEmptyStringKeyPending;
+        private Entry<CharSequence, V> mNext;
+        private Entry<CharSequence, V> mLastReturned;
+
+        public NodeIterator(CharSequence fromKey, CharSequence toKey, boolean descending) {
+            mFromKey = fromKey;
+            mExclusiveToKey = toKey;
+            mDescending = descending;
+            boolean includesEmptyStringKey = (fromKey == null || fromKey.length() == 0)
+                    && (toKey == null || toKey.length() > 0);
+            Node root = mRootNode;
+            if (descending) {
+                mEmptyStringKeyPending = includesEmptyStringKey;
+                if (toKey == null) {
+                    push(root, 0);
+                } else if (toKey.length() > 0) {
+                    seekDescending(root, toKey);
+                }
+            } else {
+                if (includesEmptyStringKey && mEmptyStringKeyValue != null) {
+                    mNext = newEntry("", value(mEmptyStringKeyValue));
+                }
+                if (fromKey == null || fromKey.length() == 0) {
+                    push(root, 0);
+                } else {
+                    seekAscending(root, fromKey);
+                }
+            }
+            if (mNext == null) {
+                mNext = advance();
+            }
+        }
+
+        private void push(Node node, int step) {
+            if (node == null) {
+                return;
+            }
+            if (mStackSize == mNodes.length) {
+                mNodes = Arrays.copyOf(mNodes, mStackSize * 2);
+                mSteps = Arrays.copyOf(mSteps, mStackSize * 2);
+                mDepths = Arrays.copyOf(mDepths, mStackSize * 2);
+            }
+            mNodes[mStackSize] = node;
+            mSteps[mStackSize] = step;
+            mDepths[mStackSize] = mPrefix.length();
+            mStackSize++;
+        }
+
+        /**
+         * Fills the stack such that the traversal starts with the smallest key which is greater than or equal to the
+         * given key.
+         */
+        private void seekAscending(Node node, CharSequence fromKey) {
+            int keyLength = fromKey.length();
+            int charIndex = 0;
+            while (node != null) {
+                char keyChar = fromKey.charAt(charIndex);
+                char splitChar = node.mSplitChar;
+                if (keyChar < splitChar) {
+                    push(node, 1);
+                    node = node.mLokid;
+                } else if (keyChar > splitChar) {
+                    node = node.mHikid;
+                } else if (++charIndex == keyLength) {
+                    push(node, 1);
+                    return;
+                } else {
+                    push(node, 3);
+                    mPrefix.append(splitChar);
+                    node = node.mEqkid;
+                }
+            }
+        }
+
+        /**
+         * Fills the stack such that the traversal starts with the greatest key which is strictly smaller than the given
+         * key.
+         */
+        private void seekDescending(Node node, CharSequence toKey) {
+            int keyLength = toKey.length();
+            int charIndex = 0;
+            while (node != null) {
+                char keyChar = toKey.charAt(charIndex);
+                char splitChar = node.mSplitChar;
+                if (keyChar < splitChar) {
+                    node = node.mLokid;
+                } else if (keyChar > splitChar) {
+                    push(node, 1);
+                    node = node.mHikid;
+                } else if (++charIndex == keyLength) {
+                    push(node, 3);
+                    return;
+                } else {
+                    push(node, 2);
+                    mPrefix.append(splitChar);
+                    node = node.mEqkid;
+                }
+            }
+        }
+
+        private Entry<CharSequence, V> advance() {
+            while (mStackSize > 0) {
+                int top = mStackSize - 1;
+                Node node = mNodes[top];
+                int depth = mDepths[top];
+                int step = mSteps[top]++;
+                int action = mDescending ? HI - step : step;
+                mPrefix.setLength(depth);
+                if (action == OWN) {
+                    Object data = node.mData;
+                    if (data != null && data != TOMBSTONE) {
+                        String key = mPrefix.append(node.mSplitChar).toString();
+                        if (isBeyondRange(key)) {
+                            mStackSize = 0;
+                            return null;
+                        }
+                        return newEntry(key, value(data));
+                    }
+                } else if (action == EQ) {
+                    Node child = node.mEqkid;
+                    if (child != null) {
+                        mPrefix.append(node.mSplitChar);
+                        push(child, 0);
+                    }
+                } else {
+                    Node child = action == LO ? node.mLokid : node.mHikid;
+                    if (step == 3) {
+                        mStackSize--;
+                    }
+                    push(child, 0);
+                }
+            }
+            if (mEmptyStringKeyPending) {
+                mEmptyStringKeyPending = false;
+                Object emptyStringKeyValue = mEmptyStringKeyValue;
+                if (emptyStringKeyValue != null) {
+                    return newEntry("", value(emptyStringKeyValue));
+                }
+            }
+            return null;
+        }
+
+        private boolean isBeyondRange(CharSequence key) {
+            if (mDescending) {
+                return mFromKey != null && compareKeys(key, mFromKey) < 0;
+            }
+            return mExclusiveToKey != null && compareKeys(key, mExclusiveToKey) >= 0;
+        }
+
+        public boolean hasNext() {
+            return mNext != null;
+        }
+
+        public Entry<CharSequence, V> next() {
+            if (mNext == null) {
+                throw new NoSuchElementException();
+            }
+            mLastReturned = mNext;
+            mNext = advance();
+            return mLastReturned;
+        }
+
+        public void remove() {
+            if (mLastReturned == null) {
+                throw new IllegalStateException("Iterator.next() must be called prior to Iterator.remove().");
+            }
+            ConcurrentTernarySearchTreeMap.this.remove(mLastReturned.getKey());
+            mLastReturned = null;
+        }
+    }
+}
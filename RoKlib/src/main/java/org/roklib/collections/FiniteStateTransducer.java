@@ -0,0 +1,850 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable map from strings to non-negative <code>long</code> values which is stored as a minimal finite state
+ * transducer (FST). Like a {@link FrozenTernarySearchTreeSet}, the transducer shares the common prefixes and the
+ * common suffixes of its keys. In addition, the values are distributed over the transitions: the value of a key is the
+ * sum of the outputs of the transitions on its path plus the final output of the state where the key ends. Each output
+ * is pushed as close to the start state as possible, so that keys with a common prefix and similar values, such as
+ * terms of a dictionary mapped to ascending file offsets, still lead into shared suffix states. This makes the
+ * transducer an alternative to a <code>TernarySearchTreeMap&lt;Long&gt;</code> which needs only a small fraction of
+ * its memory.<BR>
+ * <BR>
+ * The transducer is built with a {@link Builder} from keys in ascending order. The result is a compact byte array
+ * which can be stored in a file. A transducer can be read directly from such a byte array or from a
+ * {@link ByteBuffer}, e.g. a buffer obtained with {@link java.nio.channels.FileChannel#map}, without decoding it onto
+ * the heap. Lookups only read the states on the path of the key. Besides exact lookups with {@link #get(CharSequence)},
+ * the transducer supports {@link #floorEntry(CharSequence)}, {@link #ceilingEntry(CharSequence)} and iterating over
+ * all entries or the entries with a given prefix in ascending key order with a {@link Cursor}. Since the transducer is
+ * immutable, it can be used by any number of threads concurrently.<BR>
+ * <BR>
+ * The format starts with a header of six big-endian integers: a magic number, the format version, the address of the
+ * start state, the number of keys, the number of states and the number of transitions. It is followed by the states,
+ * each of which is written after all states it leads to. A state consists of a flag byte, the number of its
+ * transitions, its final output if it is final and has one, and its transitions in ascending order of their labels.
+ * A transition consists of its label, the distance from the transition back to its target state and its output. All
+ * numbers apart from the header are stored in a variable-length encoding with seven bits per byte, so that small
+ * numbers take a single byte.
+ *
+ * @author Roland Krueger
+ */
+public class FiniteStateTransducer {
+    static final int MAGIC = 0x46535431;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+
+    // header field offsets
+    private static final int ROOT = 8;
+    private static final int SIZE = 12;
+    private static final int STATE_COUNT = 16;
+    private static final int TRANSITION_COUNT = 20;
+
+    // state flags
+    private static final int FINAL = 1;
+    private static final int HAS_FINAL_OUTPUT = 2;
+
+    private final ByteBuffer mData;
+    private final int mRootState;
+    private final int mSize;
+    private final int mStateCount;
+    private final int mTransitionCount;
+
+    /**
+     * Reads a transducer from the given byte array as created by {@link Builder#toByteArray()}. The array is not
+     * copied and must not be modified afterwards.
+     *
+     * @throws IllegalArgumentException if the array does not contain a valid transducer
+     */
+    public FiniteStateTransducer(byte[] data) {
+        this(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Reads a transducer from the remaining bytes of the given buffer, which has to contain the bytes created by
+     * {@link Builder#toByteArray()}. The buffer is not copied, so that a buffer which has been mapped from a file is
+     * served directly from the page cache. Neither the contents nor the position of the buffer must be modified
+     * afterwards.
+     *
+     * @throws IllegalArgumentException if the buffer does not contain a valid transducer
+     */
+    public FiniteStateTransducer(ByteBuffer data) {
+        mData = data.slice();
+        if (mData.limit() < HEADER_SIZE || mData.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("the data does not contain a finite state transducer");
+        }
+        if (mData.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("unsupported format version " + mData.getInt(4));
+        }
+        mRootState = mData.getInt(ROOT);
+        mSize = mData.getInt(SIZE);
+        mStateCount = mData.getInt(STATE_COUNT);
+        mTransitionCount = mData.getInt(TRANSITION_COUNT);
+        if (mRootState < HEADER_SIZE || mRootState >= mData.limit() || mSize < 0) {
+            throw new IllegalArgumentException("the transducer data is truncated or corrupt");
+        }
+    }
+
+    /**
+     * Returns the number of keys of the transducer.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Returns the number of states of the transducer.
+     */
+    public int getStateCount() {
+        return mStateCount;
+    }
+
+    /**
+     * Returns the number of transitions of the transducer.
+     */
+    public int getTransitionCount() {
+        return mTransitionCount;
+    }
+
+    /**
+     * Returns the number of bytes occupied by the transducer.
+     */
+    public int getSizeInBytes() {
+        return mData.limit();
+    }
+
+    /**
+     * Writes the bytes of the transducer to the given stream. They can be read again with
+     * {@link #FiniteStateTransducer(byte[])} or {@link #FiniteStateTransducer(ByteBuffer)}.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        ByteBuffer data = mData.duplicate();
+        data.clear();
+        byte[] buffer = new byte[Math.min(8192, data.remaining())];
+        while (data.hasRemaining()) {
+            int length = Math.min(buffer.length, data.remaining());
+            data.get(buffer, 0, length);
+            out.write(buffer, 0, length);
+        }
+    }
+
+    /**
+     * Returns the value of the given key or -1 if the transducer does not contain the key.
+     */
+    public long get(CharSequence key) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        StateReader reader = new StateReader();
+        reader.load(mRootState);
+        long output = 0;
+        for (int i = 0, length = key.length(); i < length; ++i) {
+            if (!reader.findTransition(key.charAt(i))) {
+                return -1;
+            }
+            output += reader.mOutput;
+            reader.load(reader.mTarget);
+        }
+        return reader.mFinal ? output + reader.mFinalOutput : -1;
+    }
+
+    public boolean containsKey(CharSequence key) {
+        return get(key) >= 0;
+    }
+
+    /**
+     * Returns the entry with the greatest key less than or equal to the given key or <code>null</code> if there is no
+     * such key.
+     */
+    public Entry<CharSequence, Long> floorEntry(CharSequence key) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        StateReader reader = new StateReader();
+        reader.load(mRootState);
+        long output = 0;
+        // the best candidate seen so far: either the final state at candidateDepth or the greatest key which can be
+        // read with the candidate transition at this depth. A deeper candidate is always greater.
+        int candidateDepth = -1;
+        boolean candidateIsFinal = false;
+        char candidateLabel = 0;
+        int candidateTarget = 0;
+        long candidateOutput = 0;
+        int length = key.length();
+        for (int depth = 0; ; ++depth) {
+            if (reader.mFinal) {
+                if (depth == length) {
+                    return createEntry(key.subSequence(0, length), output + reader.mFinalOutput);
+                }
+                candidateDepth = depth;
+                candidateIsFinal = true;
+                candidateOutput = output + reader.mFinalOutput;
+            }
+            if (depth == length) {
+                break;
+            }
+            char c = key.charAt(depth);
+            boolean found = false;
+            while (reader.nextTransition()) {
+                if (reader.mLabel < c) {
+                    candidateDepth = depth;
+                    candidateIsFinal = false;
+                    candidateLabel = reader.mLabel;
+                    candidateTarget = reader.mTarget;
+                    candidateOutput = output + reader.mOutput;
+                } else {
+                    found = reader.mLabel == c;
+                    break;
+                }
+            }
+            if (!found) {
+                break;
+            }
+            output += reader.mOutput;
+            reader.load(reader.mTarget);
+        }
+        if (candidateDepth < 0) {
+            return null;
+        }
+        StringBuilder result = new StringBuilder(key.subSequence(0, candidateDepth));
+        if (candidateIsFinal) {
+            return createEntry(result, candidateOutput);
+        }
+        result.append(candidateLabel);
+        return completeEntry(reader, result, candidateTarget, candidateOutput, true);
+    }
+
+    /**
+     * Returns the entry with the least key greater than or equal to the given key or <code>null</code> if there is no
+     * such key.
+     */
+    public Entry<CharSequence, Long> ceilingEntry(CharSequence key) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        StateReader reader = new StateReader();
+        reader.load(mRootState);
+        long output = 0;
+        // the best candidate seen so far: the least key which can be read with the candidate transition at
+        // candidateDepth. A deeper candidate is always less.
+        int candidateDepth = -1;
+        char candidateLabel = 0;
+        int candidateTarget = 0;
+        long candidateOutput = 0;
+        int length = key.length();
+        for (int depth = 0; ; ++depth) {
+            if (depth == length) {
+                // every key which can be read from here starts with the given key and is less than the candidate
+                Entry<CharSequence, Long> entry = completeEntry(reader, new StringBuilder(key), reader.mAddress,
+                        output, false);
+                if (entry != null) {
+                    return entry;
+                }
+                break;
+            }
+            char c = key.charAt(depth);
+            int target = -1;
+            long transitionOutput = 0;
+            while (reader.nextTransition()) {
+                if (reader.mLabel == c) {
+                    target = reader.mTarget;
+                    transitionOutput = reader.mOutput;
+                    // the following transition, if any, leads to the least keys greater than the given key so far
+                    if (!reader.nextTransition()) {
+                        break;
+                    }
+                }
+                if (reader.mLabel > c) {
+                    candidateDepth = depth;
+                    candidateLabel = reader.mLabel;
+                    candidateTarget = reader.mTarget;
+                    candidateOutput = output + reader.mOutput;
+                    break;
+                }
+            }
+            if (target < 0) {
+                break;
+            }
+            output += transitionOutput;
+            reader.load(target);
+        }
+        if (candidateDepth < 0) {
+            return null;
+        }
+        StringBuilder result = new StringBuilder(key.subSequence(0, candidateDepth));
+        result.append(candidateLabel);
+        return completeEntry(reader, result, candidateTarget, candidateOutput, false);
+    }
+
+    /**
+     * Follows the least or the greatest path from the given state and returns the entry of the key which ends there or
+     * <code>null</code> if no key can be read from the state.
+     */
+    private Entry<CharSequence, Long> completeEntry(StateReader reader, StringBuilder key, int state, long output,
+                                                    boolean greatest) {
+        for (; ; ) {
+            reader.load(state);
+            if (reader.mFinal && (!greatest || reader.mTransitionCount == 0)) {
+                return createEntry(key, output + reader.mFinalOutput);
+            }
+            if (reader.mTransitionCount == 0) {
+                return null;
+            }
+            reader.nextTransition();
+            while (greatest && reader.mRemaining > 0) {
+                reader.nextTransition();
+            }
+            key.append(reader.mLabel);
+            output += reader.mOutput;
+            state = reader.mTarget;
+        }
+    }
+
+    private static Entry<CharSequence, Long> createEntry(CharSequence key, long value) {
+        return new SimpleImmutableEntry<CharSequence, Long>(key.toString(), value);
+    }
+
+    /**
+     * Returns a cursor over all entries of the transducer in ascending key order.
+     */
+    public Cursor cursor() {
+        return new Cursor("");
+    }
+
+    /**
+     * Returns a cursor over all entries whose keys start with the given prefix in ascending key order.
+     */
+    public Cursor cursor(CharSequence prefix) {
+        if (prefix == null) {
+            throw new NullPointerException("prefix is null");
+        }
+        return new Cursor(prefix);
+    }
+
+    /**
+     * A cursor over the entries of a {@link FiniteStateTransducer}. In addition to the boxed {@link #value()}, the
+     * cursor provides the value of the current entry as a primitive with {@link #output()}.
+     *
+     * @author Roland Krueger
+     */
+    public final class Cursor implements TSTCursor<Long> {
+        private final StateReader mReader = new StateReader();
+        private final int mPrefixLength;
+        private char[] mKey;
+        // the states on the path of the current key
+        private int[] mPositions;       // position of the next transition to be visited
+        private int[] mRemaining;       // number of transitions which have not been visited yet
+        private long[] mOutputs;        // output accumulated on the path to the state
+        private long[] mFinalOutputs;   // value of the key ending in the state if it has not been visited yet, else -1
+        private int mStackSize;
+        private int mKeyLength = -1;    // -1 if the cursor is not positioned on an entry
+        private long mValue;
+        private final CharSequence mKeyView = new KeyView();
+
+        private Cursor(CharSequence prefix) {
+            int prefixLength = prefix.length();
+            mPrefixLength = prefixLength;
+            mKey = new char[Math.max(16, prefixLength * 2)];
+            mPositions = new int[16];
+            mRemaining = new int[16];
+            mOutputs = new long[16];
+            mFinalOutputs = new long[16];
+            mReader.load(mRootState);
+            long output = 0;
+            for (int i = 0; i < prefixLength; ++i) {
+                char c = prefix.charAt(i);
+                if (!mReader.findTransition(c)) {
+                    return;
+                }
+                mKey[i] = c;
+                output += mReader.mOutput;
+                mReader.load(mReader.mTarget);
+            }
+            push(mReader.mAddress, output);
+        }
+
+        private void push(int state, long output) {
+            if (mStackSize == mPositions.length) {
+                mPositions = Arrays.copyOf(mPositions, mStackSize * 2);
+                mRemaining = Arrays.copyOf(mRemaining, mStackSize * 2);
+                mOutputs = Arrays.copyOf(mOutputs, mStackSize * 2);
+                mFinalOutputs = Arrays.copyOf(mFinalOutputs, mStackSize * 2);
+            }
+            mReader.load(state);
+            mPositions[mStackSize] = mReader.mPosition;
+            mRemaining[mStackSize] = mReader.mTransitionCount;
+            mOutputs[mStackSize] = output;
+            mFinalOutputs[mStackSize] = mReader.mFinal ? output + mReader.mFinalOutput : -1;
+            mStackSize++;
+        }
+
+        public boolean advance() {
+            while (mStackSize > 0) {
+                int top = mStackSize - 1;
+                int depth = mPrefixLength + top;
+                if (mFinalOutputs[top] >= 0) {
+                    // a key is less than all keys it is a prefix of
+                    mValue = mFinalOutputs[top];
+                    mFinalOutputs[top] = -1;
+                    mKeyLength = depth;
+                    return true;
+                }
+                if (mRemaining[top] > 0) {
+                    mRemaining[top]--;
+                    mReader.mPosition = mPositions[top];
+                    mReader.readTransition();
+                    mPositions[top] = mReader.mPosition;
+                    if (depth == mKey.length) {
+                        mKey = Arrays.copyOf(mKey, depth * 2);
+                    }
+                    mKey[depth] = mReader.mLabel;
+                    push(mReader.mTarget, mOutputs[top] + mReader.mOutput);
+                } else {
+                    mStackSize--;
+                }
+            }
+            mKeyLength = -1;
+            return false;
+        }
+
+        private void checkPosition() {
+            if (mKeyLength < 0) {
+                throw new NoSuchElementException();
+            }
+        }
+
+        public CharSequence keyView() {
+            checkPosition();
+            return mKeyView;
+        }
+
+        public String key() {
+            checkPosition();
+            return new String(mKey, 0, mKeyLength);
+        }
+
+        public Long value() {
+            return output();
+        }
+
+        /**
+         * Returns the value of the current entry.
+         *
+         * @throws NoSuchElementException if the cursor is not positioned on an entry
+         */
+        public long output() {
+            checkPosition();
+            return mValue;
+        }
+
+        private class KeyView implements CharSequence {
+            public int length() {
+                return mKeyLength;
+            }
+
+            public char charAt(int index) {
+                if (index < 0 || index >= mKeyLength) {
+                    throw new IndexOutOfBoundsException(String.valueOf(index));
+                }
+                return mKey[index];
+            }
+
+            public CharSequence subSequence(int start, int end) {
+                if (start < 0 || end > mKeyLength || start > end) {
+                    throw new IndexOutOfBoundsException();
+                }
+                return new String(mKey, start, end - start);
+            }
+
+            @Override
+            public String toString() {
+                return new String(mKey, 0, mKeyLength);
+            }
+        }
+    }
+
+    /**
+     * Decodes a state and its transitions one after the other. A reader is used by a single thread only.
+     */
+    private final class StateReader {
+        private int mAddress;
+        private int mPosition;
+        private boolean mFinal;
+        private long mFinalOutput;
+        private int mTransitionCount;
+        private int mRemaining;
+        // the last transition read
+        private char mLabel;
+        private int mTarget;
+        private long mOutput;
+
+        public void load(int address) {
+            mAddress = address;
+            mPosition = address;
+            int flags = mData.get(mPosition++);
+            mFinal = (flags & FINAL) != 0;
+            mTransitionCount = (int) readNumber();
+            mRemaining = mTransitionCount;
+            mFinalOutput = (flags & HAS_FINAL_OUTPUT) != 0 ? readNumber() : 0;
+        }
+
+        public boolean nextTransition() {
+            if (mRemaining == 0) {
+                return false;
+            }
+            mRemaining--;
+            readTransition();
+            return true;
+        }
+
+        /**
+         * Reads the transition at the current position regardless of the number of remaining transitions.
+         */
+        public void readTransition() {
+            int start = mPosition;
+            mLabel = (char) readNumber();
+            mTarget = start - (int) readNumber();
+            mOutput = readNumber();
+        }
+
+        /**
+         * Reads the remaining transitions up to the one with the given label.
+         *
+         * @return <code>true</code> if there is a transition with the label
+         */
+        public boolean findTransition(char c) {
+            while (nextTransition()) {
+                if (mLabel >= c) {
+                    return mLabel == c;
+                }
+            }
+            return false;
+        }
+
+        private long readNumber() {
+            long result = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = mData.get(mPosition++);
+                result |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return result;
+        }
+    }
+
+    /**
+     * Builds a {@link FiniteStateTransducer} from keys which are added in ascending order together with their values.
+     * The order is the same as the one of {@link TernarySearchTreeMap}, i.e. keys are compared character by
+     * character, so that the entries of such a map can be added with {@link #addAll(Map)} in the order of its
+     * iteration. Like the builder of {@link FrozenTernarySearchTreeSet}, the builder only keeps the states on the path
+     * of the last added key open and merges every other state with an equivalent state which has already been written.
+     * Once the transducer has been created with {@link #toByteArray()} or {@link #build()}, no more keys can be added.
+     *
+     * @author Roland Krueger
+     */
+    public static class Builder {
+        private final Map<StateSignature, Integer> mRegister = new HashMap<StateSignature, Integer>();
+        private OpenState[] mPath = {new OpenState()};     // open states of the last key, indexed by depth
+        private StringBuilder mLastKey;
+        private byte[] mBytes = new byte[1024];
+        private int mLength = HEADER_SIZE;
+        private boolean mBuilt;
+        private int mSize;
+        private int mStateCount;
+        private int mTransitionCount;
+
+        /**
+         * Adds the given key with the given value.
+         *
+         * @throws IllegalArgumentException if the value is negative or if the key is not greater than the last added
+         *                                  key
+         * @throws IllegalStateException    if the transducer has already been created
+         */
+        public Builder add(CharSequence key, long value) {
+            if (key == null) {
+                throw new NullPointerException("key is null");
+            }
+            if (value < 0) {
+                throw new IllegalArgumentException("value must not be negative: " + value);
+            }
+            if (mBuilt) {
+                throw new IllegalStateException("the transducer has already been built");
+            }
+            int length = key.length();
+            int common = 0;
+            if (mLastKey != null) {
+                int lastLength = mLastKey.length();
+                while (common < length && common < lastLength && key.charAt(common) == mLastKey.charAt(common)) {
+                    common++;
+                }
+                if (common == length || (common < lastLength && key.charAt(common) < mLastKey.charAt(common))) {
+                    throw new IllegalArgumentException("keys must be added in strictly ascending order: \"" + key
+                            + "\" after \"" + mLastKey + "\"");
+                }
+                closeStates(common);
+            } else {
+                mLastKey = new StringBuilder();
+            }
+            if (mPath.length <= length) {
+                int oldLength = mPath.length;
+                mPath = Arrays.copyOf(mPath, Math.max(length + 1, oldLength * 2));
+                for (int i = oldLength; i < mPath.length; ++i) {
+                    mPath[i] = new OpenState();
+                }
+            }
+            // the common prefix keeps the part of its outputs which is shared by both keys, the rest is pushed down
+            // onto the following state
+            long output = value;
+            for (int depth = 0; depth < common; ++depth) {
+                OpenState state = mPath[depth];
+                int last = state.mSize - 1;
+                long shared = Math.min(state.mOutputs[last], output);
+                if (state.mOutputs[last] > shared) {
+                    mPath[depth + 1].prependOutput(state.mOutputs[last] - shared);
+                    state.mOutputs[last] = shared;
+                }
+                output -= shared;
+            }
+            if (length == 0) {
+                mPath[0].mFinal = true;
+                mPath[0].mFinalOutput = output;
+            } else {
+                for (int depth = common; depth < length; ++depth) {
+                    mPath[depth].addTransition(key.charAt(depth), depth == common ? output : 0);
+                    mPath[depth + 1].reset();
+                }
+                mPath[length].mFinal = true;
+            }
+            mLastKey.setLength(common);
+            mLastKey.append(key, common, length);
+            mSize++;
+            return this;
+        }
+
+        /**
+         * Adds all entries of the given map in the order of its iteration.
+         *
+         * @see #add(CharSequence, long)
+         */
+        public Builder addAll(Map<? extends CharSequence, Long> map) {
+            for (Entry<? extends CharSequence, Long> entry : map.entrySet()) {
+                Long value = entry.getValue();
+                if (value == null) {
+                    throw new NullPointerException("value of key \"" + entry.getKey() + "\" is null");
+                }
+                add(entry.getKey(), value);
+            }
+            return this;
+        }
+
+        /**
+         * Returns the bytes of the transducer of all entries added so far, which can be read with
+         * {@link FiniteStateTransducer#FiniteStateTransducer(byte[])}.
+         */
+        public byte[] toByteArray() {
+            finish();
+            return Arrays.copyOf(mBytes, mLength);
+        }
+
+        /**
+         * Creates the transducer of all entries added so far.
+         */
+        public FiniteStateTransducer build() {
+            return new FiniteStateTransducer(toByteArray());
+        }
+
+        private void finish() {
+            if (mBuilt) {
+                return;
+            }
+            if (mLastKey != null) {
+                closeStates(0);
+            }
+            int root = register(mPath[0]);
+            mBuilt = true;
+            mRegister.clear();
+            mPath = null;
+            int[] header = {MAGIC, VERSION, root, mSize, mStateCount, mTransitionCount};
+            for (int i = 0; i < header.length; ++i) {
+                for (int j = 0; j < 4; ++j) {
+                    mBytes[i * 4 + j] = (byte) (header[i] >>> (24 - j * 8));
+                }
+            }
+        }
+
+        /**
+         * Closes the open states of the last key below the given depth, starting with the deepest one. Each closed
+         * state is replaced by its equivalent in the register, and the transition of its parent is redirected to it.
+         */
+        private void closeStates(int depth) {
+            for (int i = mLastKey.length(); i > depth; --i) {
+                mPath[i - 1].setLastTarget(register(mPath[i]));
+            }
+        }
+
+        /**
+         * Returns the address of the written state which is equivalent to the given open state, writing the open
+         * state if there is no such state yet. Two states are equivalent if they agree in being final, in their final
+         * output and in their outgoing transitions, since all targets have been written before.
+         */
+        private int register(OpenState state) {
+            StateSignature signature = new StateSignature(state);
+            Integer registered = mRegister.get(signature);
+            if (registered != null) {
+                return registered;
+            }
+            int address = write(state);
+            mRegister.put(signature, address);
+            return address;
+        }
+
+        private int write(OpenState state) {
+            // flags, transition count, final output and per transition the label, the distance and the output
+            long maximumLength = mLength + 1L + 5 + 10 + state.mSize * (3L + 5 + 10);
+            if (maximumLength > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("the transducer exceeds the maximum size of 2 GB");
+            }
+            if (maximumLength > mBytes.length) {
+                mBytes = Arrays.copyOf(mBytes, (int) Math.min(Integer.MAX_VALUE - 8,
+                        Math.max(maximumLength, mBytes.length * 2L)));
+            }
+            int address = mLength;
+            boolean hasFinalOutput = state.mFinal && state.mFinalOutput != 0;
+            mBytes[mLength++] = (byte) ((state.mFinal ? FINAL : 0) | (hasFinalOutput ? HAS_FINAL_OUTPUT : 0));
+            writeNumber(state.mSize);
+            if (hasFinalOutput) {
+                writeNumber(state.mFinalOutput);
+            }
+            for (int i = 0; i < state.mSize; ++i) {
+                int start = mLength;
+                writeNumber(state.mLabels[i]);
+                writeNumber(start - state.mTargets[i]);
+                writeNumber(state.mOutputs[i]);
+            }
+            mStateCount++;
+            mTransitionCount += state.mSize;
+            return address;
+        }
+
+        private void writeNumber(long value) {
+            while ((value & ~0x7FL) != 0) {
+                mBytes[mLength++] = (byte) (value | 0x80);
+                value >>>= 7;
+            }
+            mBytes[mLength++] = (byte) value;
+        }
+    }
+
+    /**
+     * A state on the path of the last added key, which can still receive transitions. The target of the last
+     * transition is not known before the state it leads to has been closed.
+     */
+    private static final class OpenState {
+        private boolean mFinal;
+        private long mFinalOutput;
+        private char[] mLabels = new char[4];
+        private int[] mTargets = new int[4];
+        private long[] mOutputs = new long[4];
+        private int mSize;
+
+        public void reset() {
+            mFinal = false;
+            mFinalOutput = 0;
+            mSize = 0;
+        }
+
+        public void addTransition(char label, long output) {
+            if (mSize == mLabels.length) {
+                mLabels = Arrays.copyOf(mLabels, mSize * 2);
+                mTargets = Arrays.copyOf(mTargets, mSize * 2);
+                mOutputs = Arrays.copyOf(mOutputs, mSize * 2);
+            }
+            mLabels[mSize] = label;
+            mTargets[mSize] = -1;
+            mOutputs[mSize] = output;
+            mSize++;
+        }
+
+        public void setLastTarget(int target) {
+            mTargets[mSize - 1] = target;
+        }
+
+        /**
+         * Adds the given output in front of every key which can be read from this state.
+         */
+        public void prependOutput(long output) {
+            for (int i = 0; i < mSize; ++i) {
+                mOutputs[i] += output;
+            }
+            if (mFinal) {
+                mFinalOutput += output;
+            }
+        }
+    }
+
+    /**
+     * The key of a state in the register: the final flag, the final output and the labels, targets and outputs of all
+     * transitions.
+     */
+    private static final class StateSignature {
+        private final long[] mData;
+        private final int mHashCode;
+
+        public StateSignature(OpenState state) {
+            mData = new long[2 + 3 * state.mSize];
+            mData[0] = state.mFinal ? 1 : 0;
+            mData[1] = state.mFinalOutput;
+            for (int i = 0; i < state.mSize; ++i) {
+                mData[2 + 3 * i] = state.mLabels[i];
+                mData[3 + 3 * i] = state.mTargets[i];
+                mData[4 + 3 * i] = state.mOutputs[i];
+            }
+            mHashCode = Arrays.hashCode(mData);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StateSignature && Arrays.equals(mData, ((StateSignature) other).mData);
+        }
+    }
+}
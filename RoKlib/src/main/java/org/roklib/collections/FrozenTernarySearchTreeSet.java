@@ -0,0 +1,564 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.util.*;
+
+/**
+ * An immutable sorted set of strings which is stored as a minimal directed acyclic word graph (DAWG). A ternary search
+ * tree shares the common prefixes of its keys, but each key still has a path of its own from the point where it
+ * deviates from its neighbours. In a DAWG, equivalent states are merged, i.e. states from which exactly the same set of
+ * suffixes can be read. Common suffixes are therefore stored only once, too. For natural-language word lists with
+ * many inflected forms this results in a fraction of the nodes needed by a ternary search tree.<BR>
+ * <BR>
+ * The graph is built incrementally from the words in ascending order with a {@link Builder} or by freezing a
+ * {@link TernarySearchTreeSet} with {@link TernarySearchTreeSet#freeze()}. The builder keeps the states on the path of
+ * the last added word open. Whenever a word has been added, the states which can no longer receive new transitions are
+ * looked up in a register of the states built so far and replaced by an equivalent state if there is one, so that the
+ * graph is minimal at all times without ever building the full tree.<BR>
+ * <BR>
+ * The states are stored in flat arrays with the outgoing transitions of each state sorted in one contiguous section.
+ * Each state additionally keeps the number of words which can be read from it. This number does not depend on how the
+ * state has been reached, so that it survives the merging of states and allows to compute the rank of a word and to
+ * select the word with a given index in time proportional to the word length and the alphabet size. The set supports
+ * {@link #contains(Object)}, prefix iteration, {@link #matchAlmost(CharSequence, int, int)} and the positional queries
+ * of {@link TernarySearchTreeSet}. All methods which would modify the set throw an
+ * {@link UnsupportedOperationException}. Since the set is immutable, it can be used by any number of threads
+ * concurrently.
+ *
+ * @author Roland Krueger
+ */
+public class FrozenTernarySearchTreeSet extends AbstractSet<CharSequence> implements SortedSet<CharSequence>,
+        TernarySearchTreeQuery {
+    private final int mRootState;
+    private final int[] mFirstTransition;   // the transitions of state s are at [mFirstTransition[s], mFirstTransition[s + 1])
+    private final char[] mLabels;
+    private final int[] mTargets;
+    private final int[] mWordCounts;        // number of words which can be read from each state
+    private final boolean[] mFinal;
+
+    private FrozenTernarySearchTreeSet(Builder builder, int rootState) {
+        int stateCount = builder.mStateCount;
+        int transitionCount = builder.mTransitionCount;
+        mRootState = rootState;
+        mFirstTransition = Arrays.copyOf(builder.mFirstTransition, stateCount + 1);
+        mLabels = Arrays.copyOf(builder.mLabels, transitionCount);
+        mTargets = Arrays.copyOf(builder.mTargets, transitionCount);
+        mWordCounts = Arrays.copyOf(builder.mWordCounts, stateCount);
+        mFinal = Arrays.copyOf(builder.mFinal, stateCount);
+    }
+
+    /**
+     * Returns the number of states of the word graph.
+     */
+    public int getStateCount() {
+        return mWordCounts.length;
+    }
+
+    /**
+     * Returns the number of transitions of the word graph.
+     */
+    public int getTransitionCount() {
+        return mLabels.length;
+    }
+
+    /**
+     * Returns the state reached from the given state with the given character or -1 if there is no such transition.
+     */
+    private int step(int state, char c) {
+        int low = mFirstTransition[state];
+        int high = mFirstTransition[state + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char label = mLabels[middle];
+            if (label < c) {
+                low = middle + 1;
+            } else if (label > c) {
+                high = middle - 1;
+            } else {
+                return mTargets[middle];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the state reached by reading the given string from the root or -1 if the string is not a prefix of any
+     * word of this set.
+     */
+    private int walk(CharSequence string) {
+        int state = mRootState;
+        for (int i = 0, length = string.length(); i < length && state >= 0; ++i) {
+            state = step(state, string.charAt(i));
+        }
+        return state;
+    }
+
+    @Override
+    public int size() {
+        return mWordCounts[mRootState];
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        int state = walk(AbstractTernarySearchTreeMap.toKey(object));
+        return state >= 0 && mFinal[state];
+    }
+
+    public int indexOf(CharSequence string) {
+        return contains(string) ? rank(string) : -1;
+    }
+
+    public int rank(CharSequence string) {
+        int rank = 0;
+        int state = mRootState;
+        for (int i = 0, length = string.length(); i < length; ++i) {
+            char c = string.charAt(i);
+            if (mFinal[state]) {
+                rank++;
+            }
+            int transition = mFirstTransition[state];
+            int end = mFirstTransition[state + 1];
+            while (transition < end && mLabels[transition] < c) {
+                rank += mWordCounts[mTargets[transition]];
+                transition++;
+            }
+            if (transition == end || mLabels[transition] != c) {
+                return rank;
+            }
+            state = mTargets[transition];
+        }
+        return rank;
+    }
+
+    public int countPrefix(CharSequence prefix) {
+        int state = walk(prefix);
+        return state < 0 ? 0 : mWordCounts[state];
+    }
+
+    /**
+     * Returns the word with the given index in the sorted order of this set.
+     *
+     * @throws IndexOutOfBoundsException if the index is negative or not smaller than the size of this set
+     */
+    public CharSequence getElementAt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        StringBuilder word = new StringBuilder();
+        int state = mRootState;
+        while (true) {
+            if (mFinal[state]) {
+                if (index == 0) {
+                    return word.toString();
+                }
+                index--;
+            }
+            int transition = mFirstTransition[state];
+            while (index >= mWordCounts[mTargets[transition]]) {
+                index -= mWordCounts[mTargets[transition]];
+                transition++;
+            }
+            word.append(mLabels[transition]);
+            state = mTargets[transition];
+        }
+    }
+
+    public CharSequence predecessor(CharSequence forElement) {
+        int index = rank(forElement);
+        return index == 0 ? null : getElementAt(index - 1);
+    }
+
+    public CharSequence successor(CharSequence forElement) {
+        int index = rank(forElement) + (contains(forElement) ? 1 : 0);
+        return index < size() ? getElementAt(index) : null;
+    }
+
+    public Iterable<CharSequence> getPrefixMatch(CharSequence prefix) {
+        if (prefix == null) {
+            throw new NullPointerException("prefix is null");
+        }
+        final int fromIndex = rank(prefix);
+        final int toIndex = fromIndex + countPrefix(prefix);
+        return new Iterable<CharSequence>() {
+            public Iterator<CharSequence> iterator() {
+                return new IndexRangeIterator(fromIndex, toIndex);
+            }
+        };
+    }
+
+    public SortedSet<CharSequence> matchAlmost(CharSequence string, int distance, int lengthTolerance) {
+        if (string == null) {
+            throw new NullPointerException("string is null");
+        }
+        SortedSet<CharSequence> result = new TreeSet<CharSequence>();
+        int maxDepth = string.length() + lengthTolerance;
+        if (maxDepth > 0) {
+            matchAlmost(mRootState, string, new char[maxDepth], 0, distance, lengthTolerance, result);
+        }
+        return result;
+    }
+
+    /**
+     * Collects the words which can be read from the given state and which differ from the string in at most
+     * <code>remaining</code> positions. Like {@link TernarySearchTreeMap#matchAlmost(CharSequence, int, int)}, each
+     * character read at a position where it does not match the string, including positions beyond the string's end,
+     * counts as one difference.
+     */
+    private void matchAlmost(int state, CharSequence string, char[] prefix, int depth, int remaining,
+                             int lengthTolerance, SortedSet<CharSequence> result) {
+        int length = string.length();
+        for (int transition = mFirstTransition[state]; transition < mFirstTransition[state + 1]; ++transition) {
+            char label = mLabels[transition];
+            int nextRemaining = depth < length && string.charAt(depth) == label ? remaining : remaining - 1;
+            if (nextRemaining < 0) {
+                continue;
+            }
+            int target = mTargets[transition];
+            prefix[depth] = label;
+            if (mFinal[target] && Math.abs(length - depth - 1) <= lengthTolerance) {
+                result.add(new String(prefix, 0, depth + 1));
+            }
+            if (depth + 1 < prefix.length) {
+                matchAlmost(target, string, prefix, depth + 1, nextRemaining, lengthTolerance, result);
+            }
+        }
+    }
+
+    @Override
+    public Iterator<CharSequence> iterator() {
+        return new IndexRangeIterator(0, size());
+    }
+
+    public Comparator<? super CharSequence> comparator() {
+        // this SortedSet uses the natural ordering of its elements
+        return null;
+    }
+
+    public CharSequence first() {
+        return isEmpty() ? null : getElementAt(0);
+    }
+
+    public CharSequence last() {
+        return isEmpty() ? null : getElementAt(size() - 1);
+    }
+
+    public SortedSet<CharSequence> headSet(CharSequence toElement) {
+        return new SubSet(0, rank(toElement));
+    }
+
+    public SortedSet<CharSequence> subSet(CharSequence fromElement, CharSequence toElement) {
+        return new SubSet(rank(fromElement), rank(toElement));
+    }
+
+    public SortedSet<CharSequence> tailSet(CharSequence fromElement) {
+        return new SubSet(rank(fromElement), size());
+    }
+
+    private class IndexRangeIterator implements Iterator<CharSequence> {
+        private int mNextIndex;
+        private final int mEndIndex;
+
+        public IndexRangeIterator(int fromIndex, int toIndex) {
+            mNextIndex = fromIndex;
+            mEndIndex = toIndex;
+        }
+
+        public boolean hasNext() {
+            return mNextIndex < mEndIndex;
+        }
+
+        public CharSequence next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return getElementAt(mNextIndex++);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("the set is immutable");
+        }
+    }
+
+    /**
+     * A view on the words with an index in <code>[fromIndex, toIndex)</code>.
+     */
+    private class SubSet extends AbstractSet<CharSequence> implements SortedSet<CharSequence> {
+        private final int mFromIndex;
+        private final int mToIndex;
+
+        private SubSet(int fromIndex, int toIndex) {
+            if (fromIndex > toIndex) {
+                throw new IllegalArgumentException("Invalid parameters: fromElement > toElement");
+            }
+            mFromIndex = fromIndex;
+            mToIndex = toIndex;
+        }
+
+        private int clamp(int index) {
+            return Math.max(mFromIndex, Math.min(mToIndex, index));
+        }
+
+        @Override
+        public Iterator<CharSequence> iterator() {
+            return new IndexRangeIterator(mFromIndex, mToIndex);
+        }
+
+        @Override
+        public int size() {
+            return mToIndex - mFromIndex;
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            int index = indexOf(AbstractTernarySearchTreeMap.toKey(object));
+            return index >= mFromIndex && index < mToIndex;
+        }
+
+        public Comparator<? super CharSequence> comparator() {
+            return null;
+        }
+
+        public CharSequence first() {
+            return isEmpty() ? null : getElementAt(mFromIndex);
+        }
+
+        public CharSequence last() {
+            return isEmpty() ? null : getElementAt(mToIndex - 1);
+        }
+
+        public SortedSet<CharSequence> headSet(CharSequence toElement) {
+            return new SubSet(mFromIndex, clamp(rank(toElement)));
+        }
+
+        public SortedSet<CharSequence> subSet(CharSequence fromElement, CharSequence toElement) {
+            return new SubSet(clamp(rank(fromElement)), clamp(rank(toElement)));
+        }
+
+        public SortedSet<CharSequence> tailSet(CharSequence fromElement) {
+            return new SubSet(clamp(rank(fromElement)), mToIndex);
+        }
+    }
+
+    /**
+     * Builds a {@link FrozenTernarySearchTreeSet} from words which are added in ascending order. The order is the
+     * same as the one of {@link TernarySearchTreeSet}, i.e. words are compared character by character. A builder can
+     * only be used once.
+     *
+     * @author Roland Krueger
+     */
+    public static class Builder {
+        private final Map<StateSignature, Integer> mRegister = new HashMap<StateSignature, Integer>();
+        private OpenState[] mPath = {new OpenState()};     // open states of the last word, indexed by depth
+        private StringBuilder mLastWord;
+        private boolean mBuilt;
+
+        private int[] mFirstTransition = new int[64];
+        private char[] mLabels = new char[64];
+        private int[] mTargets = new int[64];
+        private int[] mWordCounts = new int[64];
+        private boolean[] mFinal = new boolean[64];
+        private int mStateCount;
+        private int mTransitionCount;
+
+        /**
+         * Adds the given word. Adding a word which is equal to the last added word has no effect.
+         *
+         * @throws IllegalArgumentException if the word is smaller than the last added word
+         * @throws IllegalStateException    if the set has already been built
+         */
+        public Builder add(CharSequence word) {
+            if (word == null) {
+                throw new NullPointerException("word is null");
+            }
+            if (mBuilt) {
+                throw new IllegalStateException("the set has already been built");
+            }
+            int length = word.length();
+            int common = 0;
+            if (mLastWord != null) {
+                int lastLength = mLastWord.length();
+                while (common < length && common < lastLength && word.charAt(common) == mLastWord.charAt(common)) {
+                    common++;
+                }
+                if (common == length && common == lastLength) {
+                    return this;
+                }
+                if (common == length || (common < lastLength && word.charAt(common) < mLastWord.charAt(common))) {
+                    throw new IllegalArgumentException("words must be added in ascending order: \"" + word
+                            + "\" after \"" + mLastWord + "\"");
+                }
+                closeStates(common);
+            } else {
+                mLastWord = new StringBuilder();
+            }
+            if (mPath.length <= length) {
+                int oldLength = mPath.length;
+                mPath = Arrays.copyOf(mPath, Math.max(length + 1, oldLength * 2));
+                for (int i = oldLength; i < mPath.length; ++i) {
+                    mPath[i] = new OpenState();
+                }
+            }
+            for (int depth = common; depth < length; ++depth) {
+                mPath[depth].addTransition(word.charAt(depth));
+                mPath[depth + 1].reset();
+            }
+            mPath[length].mFinal = true;
+            mLastWord.setLength(common);
+            mLastWord.append(word, common, length);
+            return this;
+        }
+
+        /**
+         * Adds all words of the given collection in the order of its iterator.
+         */
+        public Builder addAll(Iterable<? extends CharSequence> words) {
+            for (CharSequence word : words) {
+                add(word);
+            }
+            return this;
+        }
+
+        /**
+         * Creates the set of all words added so far.
+         *
+         * @throws IllegalStateException if the set has already been built
+         */
+        public FrozenTernarySearchTreeSet build() {
+            if (mBuilt) {
+                throw new IllegalStateException("the set has already been built");
+            }
+            if (mLastWord != null) {
+                closeStates(0);
+            }
+            int root = register(mPath[0]);
+            mBuilt = true;
+            mRegister.clear();
+            return new FrozenTernarySearchTreeSet(this, root);
+        }
+
+        /**
+         * Closes the open states of the last word below the given depth, starting with the deepest one. Each closed
+         * state is replaced by its equivalent in the register, and the transition of its parent is redirected to it.
+         */
+        private void closeStates(int depth) {
+            for (int i = mLastWord.length(); i > depth; --i) {
+                mPath[i - 1].setLastTarget(register(mPath[i]));
+            }
+        }
+
+        /**
+         * Returns the registered state which is equivalent to the given open state, registering the open state if
+         * there is no such state yet. Two states are equivalent if they agree in being final and in their outgoing
+         * transitions, since all targets have been registered before.
+         */
+        private int register(OpenState state) {
+            StateSignature signature = new StateSignature(state);
+            Integer registered = mRegister.get(signature);
+            if (registered != null) {
+                return registered;
+            }
+            int id = mStateCount++;
+            if (mStateCount + 1 > mFirstTransition.length) {
+                int capacity = mFirstTransition.length * 2;
+                mFirstTransition = Arrays.copyOf(mFirstTransition, capacity);
+                mWordCounts = Arrays.copyOf(mWordCounts, capacity);
+                mFinal = Arrays.copyOf(mFinal, capacity);
+            }
+            if (mTransitionCount + state.mSize > mLabels.length) {
+                int capacity = Math.max(mTransitionCount + state.mSize, mLabels.length * 2);
+                mLabels = Arrays.copyOf(mLabels, capacity);
+                mTargets = Arrays.copyOf(mTargets, capacity);
+            }
+            int wordCount = state.mFinal ? 1 : 0;
+            mFirstTransition[id] = mTransitionCount;
+            for (int i = 0; i < state.mSize; ++i) {
+                mLabels[mTransitionCount] = state.mLabels[i];
+                mTargets[mTransitionCount] = state.mTargets[i];
+                wordCount += mWordCounts[state.mTargets[i]];
+                mTransitionCount++;
+            }
+            mFirstTransition[id + 1] = mTransitionCount;
+            mWordCounts[id] = wordCount;
+            mFinal[id] = state.mFinal;
+            mRegister.put(signature, id);
+            return id;
+        }
+    }
+
+    /**
+     * A state on the path of the last added word, which can still receive transitions. The target of the last
+     * transition is not known before the state it leads to has been closed.
+     */
+    private static final class OpenState {
+        private boolean mFinal;
+        private char[] mLabels = new char[4];
+        private int[] mTargets = new int[4];
+        private int mSize;
+
+        public void reset() {
+            mFinal = false;
+            mSize = 0;
+        }
+
+        public void addTransition(char label) {
+            if (mSize == mLabels.length) {
+                mLabels = Arrays.copyOf(mLabels, mSize * 2);
+                mTargets = Arrays.copyOf(mTargets, mSize * 2);
+            }
+            mLabels[mSize] = label;
+            mTargets[mSize] = -1;
+            mSize++;
+        }
+
+        public void setLastTarget(int target) {
+            mTargets[mSize - 1] = target;
+        }
+    }
+
+    /**
+     * The key of a state in the register: the final flag and the labels and targets of all transitions.
+     */
+    private static final class StateSignature {
+        private final int[] mData;
+        private final int mHashCode;
+
+        public StateSignature(OpenState state) {
+            mData = new int[1 + 2 * state.mSize];
+            mData[0] = state.mFinal ? 1 : 0;
+            for (int i = 0; i < state.mSize; ++i) {
+                mData[1 + 2 * i] = state.mLabels[i];
+                mData[2 + 2 * i] = state.mTargets[i];
+            }
+            mHashCode = Arrays.hashCode(mData);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StateSignature && Arrays.equals(mData, ((StateSignature) other).mData);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+/**
+ * A finite automaton which decides whether a key is accepted by reading it one character at a time. Searches like
+ * {@link TernarySearchTreeMap#partialMatch(CharSequence)} drive an automaton over a ternary search tree: the state of a
+ * node's eq child is computed from the node's state with {@link #step(long, char)}, while the lo and hi children share
+ * the state of their parent. A child only has to be visited if the automaton can still read a character from the
+ * respective side of the parent's split character, and a subtree can be skipped as soon as its state is dead.<BR>
+ * <BR>
+ * States are encoded as <code>long</code> values by the implementations. The value 0 always denotes the dead state,
+ * i.e. a state from which no accepting state can be reached any more.
+ *
+ * @author Roland Krueger
+ */
+interface KeyAutomaton {
+    /**
+     * Returns the state before any character has been read.
+     */
+    long start();
+
+    /**
+     * Returns the state after reading the given character in the given state.
+     */
+    long step(long state, char c);
+
+    /**
+     * Returns true if the characters read so far form an accepted key.
+     */
+    boolean isMatch(long state);
+
+    /**
+     * Returns true if a character smaller than the given one leads from the given state to a state which is not dead.
+     */
+    boolean canMatchBelow(long state, char c);
+
+    /**
+     * Returns true if a character greater than the given one leads from the given state to a state which is not dead.
+     */
+    boolean canMatchAbove(long state, char c);
+
+    /**
+     * Returns the only character which leads from the given non-accepting state to a state which is not dead, or -1 if
+     * the state is accepting or there is more than one such character. A search can follow the path of such forced
+     * characters directly instead of branching at each node.
+     */
+    int forcedChar(long state);
+}
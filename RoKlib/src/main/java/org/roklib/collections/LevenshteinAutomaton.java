@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+/**
+ * A Levenshtein automaton which accepts all strings within a maximum edit distance of a pattern. Instead of compiling
+ * the automaton into an explicit transition table, each state is represented by a row of the dynamic programming
+ * matrix used to compute the edit distance: after reading a string <code>s</code>, entry <code>i</code> of the row is
+ * the edit distance between <code>s</code> and the first <code>i</code> characters of the pattern. Entries greater
+ * than the maximum distance are capped at <code>maxDistance + 1</code>, since their exact value does not matter.<BR>
+ * <BR>
+ * The automaton is immutable. The rows are owned by the caller, so that one automaton can drive any number of
+ * searches at the same time. When a search walks down a tree, it keeps one row for each depth and computes the row of
+ * a child from the row of its parent with {@link #step(int[], int[], char, char, int[])}. A subtree can be skipped as
+ * soon as the smallest entry of its root's row, which is returned by that method, exceeds the maximum distance.<BR>
+ * <BR>
+ * If transpositions are enabled, swapping two adjacent characters counts as a single edit (restricted Damerau
+ * distance, also known as optimal string alignment distance).
+ *
+ * @author Roland Krueger
+ */
+final class LevenshteinAutomaton {
+    private final String mPattern;
+    private final int mMaxDistance;
+    private final boolean mTranspositions;
+
+    public LevenshteinAutomaton(CharSequence pattern, int maxDistance, boolean transpositions) {
+        if (pattern == null) {
+            throw new NullPointerException("pattern is null");
+        }
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("maximum distance must not be negative: " + maxDistance);
+        }
+        mPattern = pattern.toString();
+        mMaxDistance = maxDistance;
+        mTranspositions = transpositions;
+    }
+
+    public int getMaxDistance() {
+        return mMaxDistance;
+    }
+
+    /**
+     * Returns an automaton for the same pattern and kind of edit distance, but with a different maximum distance.
+     */
+    public LevenshteinAutomaton withMaxDistance(int maxDistance) {
+        return maxDistance == mMaxDistance ? this : new LevenshteinAutomaton(mPattern, maxDistance, mTranspositions);
+    }
+
+    /**
+     * Returns the length of the longest string this automaton can accept. A search does not have to descend any
+     * deeper.
+     */
+    public int getMaxLength() {
+        return mPattern.length() + mMaxDistance;
+    }
+
+    /**
+     * Creates a new row which can hold a state of this automaton.
+     */
+    public int[] newRow() {
+        return new int[mPattern.length() + 1];
+    }
+
+    /**
+     * Sets the given row to the start state, i.e. the state after reading the empty string.
+     */
+    public void start(int[] row) {
+        for (int i = 0; i < row.length; ++i) {
+            row[i] = Math.min(i, mMaxDistance + 1);
+        }
+    }
+
+    /**
+     * Computes the state after reading one more character.
+     *
+     * @param row          the current state
+     * @param previousRow  the state before the last character was read, only needed for transpositions. May be
+     *                     <code>null</code> if <code>row</code> is the start state.
+     * @param previousChar the last character read before <code>c</code>. Ignored if <code>previousRow</code> is
+     *                     <code>null</code>.
+     * @param c            the next character
+     * @param result       receives the new state
+     * @return the smallest entry of the new state
+     */
+    public int step(int[] row, int[] previousRow, char previousChar, char c, int[] result) {
+        int limit = mMaxDistance + 1;
+        int min = result[0] = Math.min(row[0] + 1, limit);
+        for (int i = 1; i < result.length; ++i) {
+            char patternChar = mPattern.charAt(i - 1);
+            int distance = Math.min(row[i - 1] + (patternChar == c ? 0 : 1), Math.min(row[i], result[i - 1]) + 1);
+            if (mTranspositions && previousRow != null && i > 1 && patternChar == previousChar
+                    && mPattern.charAt(i - 2) == c) {
+                distance = Math.min(distance, previousRow[i - 2] + 1);
+            }
+            result[i] = distance = Math.min(distance, limit);
+            min = Math.min(min, distance);
+        }
+        return min;
+    }
+
+    /**
+     * Returns true if the given state is accepting, i.e. if the string read so far is within the maximum distance of
+     * the pattern.
+     */
+    public boolean isMatch(int[] row) {
+        return row[row.length - 1] <= mMaxDistance;
+    }
+
+    /**
+     * Returns the edit distance between the string read so far and the pattern, or <code>maxDistance + 1</code> if it
+     * exceeds the maximum distance.
+     */
+    public int getDistance(int[] row) {
+        return row[row.length - 1];
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only ternary search tree map which is served directly from a file written by
+ * {@link MappedTernarySearchTreeWriter}. The file is mapped into memory with {@link FileChannel#map}, so opening a map
+ * only reads the file header: neither the nodes nor the values are loaded onto the heap. The operating system pages in
+ * the parts of the file which are actually accessed, and all JVMs on the same host which map the same file share these
+ * pages in the page cache.<BR>
+ * <BR>
+ * The map supports all read operations of {@link TernarySearchTreeMap}, including the positional access with
+ * {@link #indexOf(CharSequence)} and {@link #getKeyAt(int)}, prefix iteration and {@link #matchAlmost(CharSequence,
+ * int, int)}. Values are decoded with a {@link TSTValueCodec} each time they are read. All methods which would modify
+ * the map throw an {@link UnsupportedOperationException}. Since the map is immutable, it can be used by any number of
+ * threads concurrently.<BR>
+ * <BR>
+ * The file consists of three sections. All numbers are stored in big-endian byte order.
+ * <ul>
+ * <li>The header: a magic number, the format version, the number of node records, the index of the root node, the
+ * number of keys, the offset of the value of the empty string key (or -1), and the file offsets of the value section
+ * and of the node section.</li>
+ * <li>The value section: each value is stored as its length in bytes followed by the bytes written by the codec.</li>
+ * <li>The node section: one record of fixed size for each node, containing the split character, the indices of the
+ * lo, eq and hi child, the number of keys in the node's subtree and the offset of the node's value (or -1). Node index
+ * 0 is an empty record which stands for a missing child, so that its key count can be read like any other. The nodes
+ * are stored in post-order with the eq child last, so that the subtree of each node lies in one contiguous region of
+ * the file.</li>
+ * </ul>
+ *
+ * @author Roland Krueger
+ */
+public class MappedTernarySearchTree<V> extends AbstractTernarySearchTreeMap<V> {
+    static final int MAGIC = 0x54535446;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 48;
+    static final int NODE_SIZE = 28;
+    static final int NO_NODE = 0;
+    static final long NO_VALUE = -1;
+
+    // field offsets within a node record
+    private static final int SPLIT_CHAR = 0;
+    private static final int LOKID = 4;
+    private static final int EQKID = 8;
+    private static final int HIKID = 12;
+    private static final int SUBARRAY_LENGTH = 16;
+    private static final int VALUE = 20;
+
+    // a single mapping cannot exceed 2 GB, so the file is mapped in segments. Each segment overlaps the next one by a
+    // few bytes, so that every number can be read from a single segment.
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int SEGMENT_OVERLAP = 8;
+
+    private final TSTValueCodec<? extends V> mCodec;
+    private final ByteBuffer[] mSegments;
+    private final int mNodeCount;
+    private final int mRootNode;
+    private final int mSize;
+    private final long mEmptyStringKeyValue;
+    private final long mNodesOffset;
+
+    /**
+     * Maps the given file into memory.
+     *
+     * @param file  a file written by {@link MappedTernarySearchTreeWriter}
+     * @param codec the codec to be used for decoding the values. This has to be a codec which can read the values
+     *              written by the writer's codec.
+     * @throws IOException if the file cannot be read or is not a valid ternary search tree file
+     */
+    public MappedTernarySearchTree(File file, TSTValueCodec<? extends V> codec) throws IOException {
+        if (codec == null) {
+            throw new NullPointerException("codec is null");
+        }
+        mCodec = codec;
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            long length = channel.size();
+            if (length < HEADER_SIZE) {
+                throw new IOException(file + " is not a ternary search tree file");
+            }
+            mSegments = new ByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < mSegments.length; ++i) {
+                long start = (long) i << SEGMENT_SHIFT;
+                long size = Math.min(length - start, (1L << SEGMENT_SHIFT) + SEGMENT_OVERLAP);
+                mSegments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            }
+        } finally {
+            input.close();
+        }
+
+        ByteBuffer header = mSegments[0];
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a ternary search tree file");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("unsupported file format version " + header.getInt(4) + " in " + file);
+        }
+        mNodeCount = header.getInt(8);
+        mRootNode = header.getInt(12);
+        mSize = header.getInt(16);
+        mEmptyStringKeyValue = header.getLong(24);
+        mNodesOffset = header.getLong(40);
+        long fileLength = ((long) (mSegments.length - 1) << SEGMENT_SHIFT) + mSegments[mSegments.length - 1].limit();
+        if (mNodeCount < 1 || mRootNode < 0 || mRootNode >= mNodeCount
+                || mNodesOffset + (long) mNodeCount * NODE_SIZE != fileLength) {
+            throw new IOException(file + " is truncated or corrupt");
+        }
+    }
+
+    private char getChar(long position) {
+        return mSegments[(int) (position >>> SEGMENT_SHIFT)].getChar((int) (position & SEGMENT_MASK));
+    }
+
+    private int getInt(long position) {
+        return mSegments[(int) (position >>> SEGMENT_SHIFT)].getInt((int) (position & SEGMENT_MASK));
+    }
+
+    private long getLong(long position) {
+        return mSegments[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & SEGMENT_MASK));
+    }
+
+    private long nodePosition(int node) {
+        return mNodesOffset + (long) node * NODE_SIZE;
+    }
+
+    private char splitChar(int node) {
+        return getChar(nodePosition(node) + SPLIT_CHAR);
+    }
+
+    private int lokid(int node) {
+        return getInt(nodePosition(node) + LOKID);
+    }
+
+    private int eqkid(int node) {
+        return getInt(nodePosition(node) + EQKID);
+    }
+
+    private int hikid(int node) {
+        return getInt(nodePosition(node) + HIKID);
+    }
+
+    private int subarrayLength(int node) {
+        return getInt(nodePosition(node) + SUBARRAY_LENGTH);
+    }
+
+    private long valueOffset(int node) {
+        return getLong(nodePosition(node) + VALUE);
+    }
+
+    /**
+     * Decodes the value stored at the given offset of the file. The codec reads the value directly from the mapped
+     * segment unless the value spans two segments, in which case its bytes are copied first.
+     */
+    private V readValue(long offset) {
+        if (offset == NO_VALUE) {
+            return null;
+        }
+        int length = getInt(offset);
+        long start = offset + 4;
+        int position = (int) (start & SEGMENT_MASK);
+        ByteBuffer bytes;
+        if (position + length <= 1L << SEGMENT_SHIFT) {
+            bytes = mSegments[(int) (start >>> SEGMENT_SHIFT)].duplicate();
+            // call the methods on Buffer, which return Buffer on every Java version
+            ((Buffer) bytes).limit(position + length);
+            ((Buffer) bytes).position(position);
+        } else {
+            byte[] data = new byte[length];
+            int copied = 0;
+            while (copied < length) {
+                long current = start + copied;
+                ByteBuffer segment = mSegments[(int) (current >>> SEGMENT_SHIFT)].duplicate();
+                int segmentPosition = (int) (current & SEGMENT_MASK);
+                int count = (int) Math.min(length - copied, (1L << SEGMENT_SHIFT) - segmentPosition);
+                ((Buffer) segment).position(segmentPosition);
+                segment.get(data, copied, count);
+                copied += count;
+            }
+            bytes = ByteBuffer.wrap(data);
+        }
+        return mCodec.decode(bytes);
+    }
+
+    /**
+     * Returns the number of node records in the file, including the record reserved for missing children.
+     */
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    protected NodeCursor<V> nodeCursor() {
+        return new Cursor();
+    }
+
+    @Override
+    public V get(Object key) {
+        CharSequence keyChars = toKey(key);
+        if (keyChars.length() == 0) {
+            return readValue(mEmptyStringKeyValue);
+        }
+        Cursor cursor = new Cursor();
+        return findNode(cursor, keyChars) ? cursor.value() : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        CharSequence keyChars = toKey(key);
+        if (keyChars.length() == 0) {
+            return mEmptyStringKeyValue != NO_VALUE;
+        }
+        Cursor cursor = new Cursor();
+        return findNode(cursor, keyChars) && cursor.hasValue();
+    }
+
+
+    private final class Cursor extends IndexNodeCursor<V> {
+        @Override
+        protected boolean hasEmptyStringKeyValue() {
+            return mEmptyStringKeyValue != NO_VALUE;
+        }
+
+        @Override
+        protected V emptyStringKeyValue() {
+            return readValue(mEmptyStringKeyValue);
+        }
+
+        @Override
+        protected int rootNode() {
+            return mRootNode;
+        }
+
+        @Override
+        protected char splitChar(int node) {
+            return MappedTernarySearchTree.this.splitChar(node);
+        }
+
+        @Override
+        protected int lokid(int node) {
+            return MappedTernarySearchTree.this.lokid(node);
+        }
+
+        @Override
+        protected int eqkid(int node) {
+            return MappedTernarySearchTree.this.eqkid(node);
+        }
+
+        @Override
+        protected int hikid(int node) {
+            return MappedTernarySearchTree.this.hikid(node);
+        }
+
+        @Override
+        protected int subarrayLength(int node) {
+            return MappedTernarySearchTree.this.subarrayLength(node);
+        }
+
+        @Override
+        protected boolean hasValue(int node) {
+            return valueOffset(node) != NO_VALUE;
+        }
+
+        @Override
+        protected V value(int node) {
+            return readValue(valueOffset(node));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import org.roklib.collections.TernarySearchTreeMap.BalancedTreeBuilder;
+import org.roklib.collections.TernarySearchTreeMap.SortedInput;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import static org.roklib.collections.MappedTernarySearchTree.*;
+
+/**
+ * Writes the contents of a map with {@link CharSequence} keys into a file which can be read with
+ * {@link MappedTernarySearchTree}. The values are encoded with a {@link TSTValueCodec}.<BR>
+ * <BR>
+ * The search tree stored in the file is optimally balanced in the same way as a {@link TernarySearchTreeMap} created
+ * from a sorted map: on each character level, the character of the median key becomes the root node of the lo/hi
+ * subtree. The values are written first in the order of their keys, then the node records are written sequentially
+ * while the tree is built, so apart from the map itself, only a list of the map's keys and values and the file offset
+ * of each value has to be kept in memory. The node section is collected in a temporary file in the target file's
+ * directory and appended to the target file at the end.
+ *
+ * @author Roland Krueger
+ */
+public class MappedTernarySearchTreeWriter<V> {
+    private final TSTValueCodec<? super V> mCodec;
+
+    public MappedTernarySearchTreeWriter(TSTValueCodec<? super V> codec) {
+        if (codec == null) {
+            throw new NullPointerException("codec is null");
+        }
+        mCodec = codec;
+    }
+
+    /**
+     * Writes the given map into the given file. An existing file is overwritten. The map's keys are sorted first if the
+     * map does not return them in ascending order.
+     *
+     * @throws NullPointerException if one of the map's keys or values is <code>null</code>
+     */
+    public void write(Map<? extends CharSequence, ? extends V> map, File file) throws IOException {
+        SortedInput input = new SortedInput(map.size());
+        for (Entry<? extends CharSequence, ? extends V> entry : map.entrySet()) {
+            input.add(entry.getKey(), entry.getValue());
+        }
+        if (!input.isStrictlyAscending()) {
+            input.sort();
+        }
+        File nodeFile = File.createTempFile("tst", ".nodes", file.getAbsoluteFile().getParentFile());
+        try {
+            new TreeFileBuilder(input).write(file, nodeFile);
+        } finally {
+            nodeFile.delete();
+        }
+    }
+
+    /**
+     * Builds the search tree with {@link TernarySearchTreeMap}'s balanced tree builder, but writes each node record as
+     * soon as its subtrees are complete instead of creating node objects.
+     */
+    private class TreeFileBuilder extends BalancedTreeBuilder<Integer, IOException> {
+        private final SortedInput mInput;
+        private long[] mValueOffsets;
+        private DataOutputStream mValues;
+        private DataOutputStream mNodes;
+        private long mValuesPosition;
+        private int mNodeCount;
+        private final ByteArrayOutputStream mEncodedValue = new ByteArrayOutputStream();
+        private final DataOutputStream mEncoder = new DataOutputStream(mEncodedValue);
+
+        public TreeFileBuilder(SortedInput input) {
+            super(input);
+            mInput = input;
+        }
+
+        public void write(File file, File nodeFile) throws IOException {
+            long emptyStringKeyValue = NO_VALUE;
+            int rootNode = NO_NODE;
+            mValues = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                mNodes = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(nodeFile)));
+                try {
+                    mValues.write(new byte[HEADER_SIZE]);
+                    mValuesPosition = HEADER_SIZE;
+                    mValueOffsets = new long[mInput.size()];
+                    for (int i = 0; i < mInput.size(); ++i) {
+                        mValueOffsets[i] = writeValue(mInput.getValue(i));
+                    }
+                    if (mInput.size() > 0 && mInput.getKey(0).length() == 0) {
+                        emptyStringKeyValue = mValueOffsets[0];
+                    }
+                    writeNode('\0', NO_NODE, NO_NODE, NO_NODE, 0, NO_VALUE);
+                    Integer root = build();
+                    if (root != null) {
+                        rootNode = root;
+                    }
+                } finally {
+                    mNodes.close();
+                }
+            } finally {
+                mValues.close();
+            }
+
+            RandomAccessFile output = new RandomAccessFile(file, "rw");
+            try {
+                FileChannel channel = output.getChannel();
+                FileInputStream nodes = new FileInputStream(nodeFile);
+                try {
+                    FileChannel nodeChannel = nodes.getChannel();
+                    long size = nodeChannel.size();
+                    for (long transferred = 0; transferred < size; ) {
+                        transferred += nodeChannel.transferTo(transferred, size - transferred,
+                                channel.position(mValuesPosition + transferred));
+                    }
+                } finally {
+                    nodes.close();
+                }
+                output.seek(0);
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(mNodeCount);
+                output.writeInt(rootNode);
+                output.writeInt(mInput.size());
+                output.writeInt(0);
+                output.writeLong(emptyStringKeyValue);
+                output.writeLong(HEADER_SIZE);
+                output.writeLong(mValuesPosition);
+            } finally {
+                output.close();
+            }
+        }
+
+        /**
+         * Appends the encoded value to the value section and returns its offset in the file.
+         */
+        @SuppressWarnings("unchecked")
+        private long writeValue(Object value) throws IOException {
+            mEncodedValue.reset();
+            mCodec.encode((V) value, mEncoder);
+            mEncoder.flush();
+            long offset = mValuesPosition;
+            mValues.writeInt(mEncodedValue.size());
+            mEncodedValue.writeTo(mValues);
+            mValuesPosition += 4 + mEncodedValue.size();
+            return offset;
+        }
+
+        /**
+         * Appends a node record to the node section and returns the index of the new node.
+         */
+        private int writeNode(char splitChar, int lokid, int eqkid, int hikid, int subarrayLength, long value)
+                throws IOException {
+            if (mNodeCount == Integer.MAX_VALUE) {
+                throw new IOException("too many nodes");
+            }
+            mNodes.writeChar(splitChar);
+            mNodes.writeShort(0);
+            mNodes.writeInt(lokid);
+            mNodes.writeInt(eqkid);
+            mNodes.writeInt(hikid);
+            mNodes.writeInt(subarrayLength);
+            mNodes.writeLong(value);
+            return mNodeCount++;
+        }
+
+        @Override
+        protected Integer newNode(char splitChar, int valueIndex, Integer lokid, Integer eqkid, Integer hikid,
+                                  int subarrayLength) throws IOException {
+            return writeNode(splitChar, nodeIndex(lokid), nodeIndex(eqkid), nodeIndex(hikid), subarrayLength,
+                    valueIndex < 0 ? NO_VALUE : mValueOffsets[valueIndex]);
+        }
+
+        private int nodeIndex(Integer node) {
+            return node == null ? NO_NODE : node;
+        }
+    }
+}
@@ -0,0 +1,696 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SortedSet;
+
+/**
+ * A ternary search tree map which keeps its nodes and values outside of the Java heap. Like
+ * {@link CompactTernarySearchTreeMap}, each node is identified by an <code>int</code> index, but the node records are
+ * stored in direct {@link ByteBuffer}s which are allocated in slabs of a fixed size. The values are converted into
+ * their binary representation with a {@link TSTValueCodec} and are stored in slabs of direct memory as well, so that
+ * neither the nodes nor the values are seen by the garbage collector. The heap usage of the map only consists of a few
+ * small objects and one buffer reference per slab, regardless of the number of keys. Values are decoded each time they
+ * are read; for small primitive values such as {@link TSTValueCodec#INTEGER} or {@link TSTValueCodec#LONG} this is
+ * merely a read from the buffer and the creation of the boxed value.<BR>
+ * <BR>
+ * Each node occupies a record of 32 bytes which holds the split character, the indices of the lo, eq and hi child, the
+ * number of keys in the node's subtree and the 8-byte handle of the node's value, so that a slab holds a power of two
+ * of records. Node index 0 is an empty record which stands for a missing child. Freed nodes are recycled for
+ * subsequent insertions. A value is stored as its length followed by the encoded bytes in a block whose size is a
+ * power of two; freed blocks are kept in one free list per block size and are reused for values of the same size
+ * class.<BR>
+ * <BR>
+ * The direct memory is not released before the map is closed with {@link #close()}. Afterwards, all methods of the
+ * map and of its views throw an {@link IllegalStateException}. {@link #clear()} releases the memory as well, but keeps
+ * the map usable. Like {@link TernarySearchTreeMap}, this map does not allow <code>null</code> keys or values. It is not
+ * thread-safe.
+ *
+ * @author Roland Krueger
+ */
+public class OffHeapTernarySearchTreeMap<V> extends AbstractTernarySearchTreeMap<V> implements Closeable {
+    public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    private static final int MIN_SLAB_SIZE = 1 << 12;
+    private static final int NO_NODE = 0;
+    private static final long NO_VALUE = 0;
+
+    // field offsets within a node record
+    private static final int NODE_SHIFT = 5;
+    private static final int SPLIT_CHAR = 0;
+    private static final int LOKID = 4;
+    private static final int EQKID = 8;
+    private static final int HIKID = 12;
+    private static final int SUBARRAY_LENGTH = 16;
+    private static final int VALUE = 24;
+
+    // a value block starts with the length of the encoded value; the smallest block holds the link of a free list
+    private static final int MIN_BLOCK_SHIFT = 4;
+    private static final int BLOCK_HEADER_SIZE = 4;
+
+    private static final BufferCleaner CLEANER = BufferCleaner.create();
+
+    private final TSTValueCodec<V> mCodec;
+    private final int mSlabSize;
+    private final int mNodeSlabShift;                       // number of nodes per slab as a power of two
+    private final int mNodeSlabMask;
+    private ByteBuffer[] mNodeSlabs;
+    private int mNodeCount;                                 // highest node index in use
+    private int mFreeNodes = NO_NODE;                       // freed nodes, linked through their lo child
+    private ByteBuffer[] mValueSlabs;
+    private int mValueSlabCount;
+    private int mValueSlabPosition;                         // first unused byte of the last value slab
+    private final long[] mFreeBlocks = new long[32];        // freed value blocks for each block size
+    private int mRootNode = NO_NODE;
+    private long mEmptyStringKeyValue = NO_VALUE;
+    private boolean mClosed;
+    private int[] mPath;                                    // path buffer for put() and remove()
+    private ValueEncoder mEncoder;
+
+    /**
+     * Creates an empty map which stores its values with the given codec and allocates direct memory in slabs of
+     * {@link #DEFAULT_SLAB_SIZE} bytes.
+     */
+    public OffHeapTernarySearchTreeMap(TSTValueCodec<V> codec) {
+        this(codec, DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * Creates an empty map which stores its values with the given codec and allocates direct memory in slabs of the
+     * given size. An encoded value must fit into a single slab.
+     *
+     * @param slabSize the size of a slab in bytes. This has to be a power of two of at least 4096.
+     * @throws IllegalArgumentException if the slab size is invalid
+     */
+    public OffHeapTernarySearchTreeMap(TSTValueCodec<V> codec, int slabSize) {
+        if (codec == null) {
+            throw new NullPointerException("codec is null");
+        }
+        if (slabSize < MIN_SLAB_SIZE || Integer.bitCount(slabSize) != 1) {
+            throw new IllegalArgumentException("slab size must be a power of two of at least " + MIN_SLAB_SIZE + ": "
+                    + slabSize);
+        }
+        mCodec = codec;
+        mSlabSize = slabSize;
+        mNodeSlabShift = Integer.numberOfTrailingZeros(slabSize) - NODE_SHIFT;
+        mNodeSlabMask = (1 << mNodeSlabShift) - 1;
+        initialize();
+    }
+
+    /**
+     * Releases the direct memory of this map. Afterwards, every method of this map and of its views throws an
+     * {@link IllegalStateException}. Closing a map which has already been closed has no effect.
+     */
+    public void close() {
+        if (!mClosed) {
+            releaseMemory();
+            mClosed = true;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if this map has been closed.
+     */
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    private void ensureOpen() {
+        if (mClosed) {
+            throw new IllegalStateException("the map has been closed");
+        }
+    }
+
+    private void releaseMemory() {
+        for (ByteBuffer slab : mNodeSlabs) {
+            CLEANER.free(slab);
+        }
+        for (int i = 0; i < mValueSlabCount; ++i) {
+            CLEANER.free(mValueSlabs[i]);
+        }
+        mNodeSlabs = null;
+        mValueSlabs = null;
+        mValueSlabCount = 0;
+        mPath = null;
+    }
+
+    private void initialize() {
+        // the first node slab holds the null node
+        mNodeSlabs = new ByteBuffer[]{ByteBuffer.allocateDirect(mSlabSize)};
+        mNodeCount = 0;
+        mFreeNodes = NO_NODE;
+        mValueSlabs = new ByteBuffer[4];
+        mValueSlabCount = 0;
+        mValueSlabPosition = 0;
+        Arrays.fill(mFreeBlocks, NO_VALUE);
+        mRootNode = NO_NODE;
+        mEmptyStringKeyValue = NO_VALUE;
+        mPath = null;
+    }
+
+    /**
+     * Returns the number of nodes currently used by this tree.
+     */
+    public int getNodeCount() {
+        ensureOpen();
+        int freeNodes = 0;
+        for (int node = mFreeNodes; node != NO_NODE; node = lokid(node)) {
+            freeNodes++;
+        }
+        return mNodeCount - freeNodes;
+    }
+
+    /**
+     * Returns the number of bytes of direct memory allocated by this map.
+     */
+    public long getAllocatedMemory() {
+        if (mClosed) {
+            return 0;
+        }
+        return (long) (mNodeSlabs.length + mValueSlabCount) * mSlabSize;
+    }
+
+    // --- node records
+
+    private ByteBuffer nodeSlab(int node) {
+        return mNodeSlabs[node >>> mNodeSlabShift];
+    }
+
+    private int nodeOffset(int node, int field) {
+        return ((node & mNodeSlabMask) << NODE_SHIFT) + field;
+    }
+
+    private char splitChar(int node) {
+        return nodeSlab(node).getChar(nodeOffset(node, SPLIT_CHAR));
+    }
+
+    private int lokid(int node) {
+        return nodeSlab(node).getInt(nodeOffset(node, LOKID));
+    }
+
+    private int eqkid(int node) {
+        return nodeSlab(node).getInt(nodeOffset(node, EQKID));
+    }
+
+    private int hikid(int node) {
+        return nodeSlab(node).getInt(nodeOffset(node, HIKID));
+    }
+
+    private int subarrayLength(int node) {
+        return nodeSlab(node).getInt(nodeOffset(node, SUBARRAY_LENGTH));
+    }
+
+    private long valueHandle(int node) {
+        return nodeSlab(node).getLong(nodeOffset(node, VALUE));
+    }
+
+    private void setInt(int node, int field, int value) {
+        nodeSlab(node).putInt(nodeOffset(node, field), value);
+    }
+
+    private void setValueHandle(int node, long handle) {
+        nodeSlab(node).putLong(nodeOffset(node, VALUE), handle);
+    }
+
+    private int newNode(char splitChar) {
+        int node;
+        if (mFreeNodes != NO_NODE) {
+            node = mFreeNodes;
+            mFreeNodes = lokid(node);
+            setInt(node, LOKID, NO_NODE);
+        } else {
+            node = ++mNodeCount;
+            if (node < 0) {
+                throw new IllegalStateException("the maximum number of nodes has been exceeded");
+            }
+            int slab = node >>> mNodeSlabShift;
+            if (slab == mNodeSlabs.length) {
+                mNodeSlabs = Arrays.copyOf(mNodeSlabs, slab + 1);
+                mNodeSlabs[slab] = ByteBuffer.allocateDirect(mSlabSize);
+            }
+        }
+        nodeSlab(node).putChar(nodeOffset(node, SPLIT_CHAR), splitChar);
+        return node;
+    }
+
+    private void freeNode(int node) {
+        ByteBuffer slab = nodeSlab(node);
+        int offset = nodeOffset(node, 0);
+        for (int i = 0; i < 1 << NODE_SHIFT; i += 8) {
+            slab.putLong(offset + i, 0);
+        }
+        setInt(node, LOKID, mFreeNodes);
+        mFreeNodes = node;
+    }
+
+    // --- value blocks. A handle is the slab index plus one in the upper half and the offset in the lower half, so
+    // that a zeroed node record carries no value.
+
+    private ByteBuffer valueSlab(long handle) {
+        return mValueSlabs[(int) (handle >>> 32) - 1];
+    }
+
+    private static int valueOffset(long handle) {
+        return (int) handle;
+    }
+
+    private static int blockShift(int valueLength) {
+        int blockSize = valueLength + BLOCK_HEADER_SIZE;
+        return Math.max(MIN_BLOCK_SHIFT, 32 - Integer.numberOfLeadingZeros(blockSize - 1));
+    }
+
+    private long storeValue(V value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        if (mEncoder == null) {
+            mEncoder = new ValueEncoder();
+        }
+        int length = mEncoder.encode(mCodec, value);
+        int blockShift = blockShift(length);
+        if (blockShift >= 31 || 1 << blockShift > mSlabSize) {
+            throw new IllegalArgumentException("encoded value of " + length + " bytes does not fit into a slab of "
+                    + mSlabSize + " bytes");
+        }
+        long handle = mFreeBlocks[blockShift];
+        if (handle != NO_VALUE) {
+            mFreeBlocks[blockShift] = valueSlab(handle).getLong(valueOffset(handle));
+        } else {
+            int blockSize = 1 << blockShift;
+            if (mValueSlabCount == 0 || mValueSlabPosition + blockSize > mSlabSize) {
+                if (mValueSlabCount == mValueSlabs.length) {
+                    mValueSlabs = Arrays.copyOf(mValueSlabs, mValueSlabCount * 2);
+                }
+                mValueSlabs[mValueSlabCount++] = ByteBuffer.allocateDirect(mSlabSize);
+                mValueSlabPosition = 0;
+            }
+            handle = ((long) mValueSlabCount << 32) | mValueSlabPosition;
+            mValueSlabPosition += blockSize;
+        }
+        ByteBuffer slab = valueSlab(handle);
+        int offset = valueOffset(handle);
+        slab.putInt(offset, length);
+        ByteBuffer target = slab.duplicate();
+        target.position(offset + BLOCK_HEADER_SIZE);
+        target.put(mEncoder.buffer(), 0, length);
+        return handle;
+    }
+
+    private V loadValue(long handle) {
+        if (handle == NO_VALUE) {
+            return null;
+        }
+        ByteBuffer bytes = valueSlab(handle).duplicate();
+        int offset = valueOffset(handle);
+        int start = offset + BLOCK_HEADER_SIZE;
+        bytes.limit(start + bytes.getInt(offset)).position(start);
+        return mCodec.decode(bytes.slice());
+    }
+
+    private void freeValue(long handle) {
+        ByteBuffer slab = valueSlab(handle);
+        int offset = valueOffset(handle);
+        int blockShift = blockShift(slab.getInt(offset));
+        slab.putLong(offset, mFreeBlocks[blockShift]);
+        mFreeBlocks[blockShift] = handle;
+    }
+
+    private int[] path(int minLength) {
+        if (mPath == null || mPath.length < minLength) {
+            mPath = new int[Math.max(minLength, 32)];
+        }
+        return mPath;
+    }
+
+    // --- map operations
+
+    @Override
+    public int size() {
+        ensureOpen();
+        return subarrayLength(mRootNode) + (mEmptyStringKeyValue == NO_VALUE ? 0 : 1);
+    }
+
+    /**
+     * Removes all mappings from this map and releases the direct memory allocated so far.
+     */
+    @Override
+    public void clear() {
+        ensureOpen();
+        releaseMemory();
+        initialize();
+    }
+
+    /**
+     * Returns a cursor over the nodes of this map. Since the inherited queries obtain their cursor first, this also
+     * rejects queries on a closed map.
+     */
+    @Override
+    protected NodeCursor<V> nodeCursor() {
+        ensureOpen();
+        return new Cursor();
+    }
+
+    @Override
+    public V get(Object key) {
+        ensureOpen();
+        CharSequence keyChars = toKey(key);
+        if (keyChars.length() == 0) {
+            return loadValue(mEmptyStringKeyValue);
+        }
+        Cursor cursor = new Cursor();
+        return findNode(cursor, keyChars) ? cursor.value() : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        ensureOpen();
+        CharSequence keyChars = toKey(key);
+        if (keyChars.length() == 0) {
+            return mEmptyStringKeyValue != NO_VALUE;
+        }
+        Cursor cursor = new Cursor();
+        return findNode(cursor, keyChars) && cursor.hasValue();
+    }
+
+    @Override
+    public V put(CharSequence key, V value) {
+        ensureOpen();
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        long handle = storeValue(value);
+        int keyLength = key.length();
+        if (keyLength == 0) {
+            long oldHandle = mEmptyStringKeyValue;
+            mEmptyStringKeyValue = handle;
+            return replacedValue(oldHandle);
+        }
+
+        int depth;
+        boolean linked = false;
+        try {
+            depth = createPath(key);
+            linked = true;
+        } finally {
+            if (!linked) {
+                freeValue(handle);
+            }
+        }
+
+        int[] path = mPath;
+        int node = path[depth - 1];
+        long oldHandle = valueHandle(node);
+        setValueHandle(node, handle);
+        if (oldHandle == NO_VALUE) {
+            for (int i = 0; i < depth; ++i) {
+                setInt(path[i], SUBARRAY_LENGTH, subarrayLength(path[i]) + 1);
+            }
+        }
+        return replacedValue(oldHandle);
+    }
+
+    /**
+     * Walks down the path of the given non-empty key, creating the missing nodes, and stores the visited nodes in
+     * {@link #mPath}. Returns the length of the path; its last node is the one of the key's last character.
+     */
+    private int createPath(CharSequence key) {
+        int keyLength = key.length();
+        int[] path = path(keyLength);
+        int depth = 0;
+        int parent = NO_NODE;
+        int branch = LOKID;                                 // child field of parent
+        int node = mRootNode;
+        int charIndex = 0;
+        char keyChar = key.charAt(0);
+        while (true) {
+            if (node == NO_NODE) {
+                node = newNode(keyChar);
+                if (parent == NO_NODE) {
+                    mRootNode = node;
+                } else {
+                    setInt(parent, branch, node);
+                }
+            }
+            if (depth == path.length) {
+                path = mPath = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = node;
+            char splitChar = splitChar(node);
+            parent = node;
+            if (keyChar < splitChar) {
+                branch = LOKID;
+                node = lokid(node);
+            } else if (keyChar > splitChar) {
+                branch = HIKID;
+                node = hikid(node);
+            } else if (++charIndex == keyLength) {
+                break;
+            } else {
+                keyChar = key.charAt(charIndex);
+                branch = EQKID;
+                node = eqkid(node);
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Decodes and frees the value with the given handle.
+     */
+    private V replacedValue(long handle) {
+        if (handle == NO_VALUE) {
+            return null;
+        }
+        V value = loadValue(handle);
+        freeValue(handle);
+        return value;
+    }
+
+    @Override
+    public V remove(Object key) {
+        ensureOpen();
+        CharSequence keyChars = toKey(key);
+        int keyLength = keyChars.length();
+        if (keyLength == 0) {
+            long oldHandle = mEmptyStringKeyValue;
+            mEmptyStringKeyValue = NO_VALUE;
+            return replacedValue(oldHandle);
+        }
+
+        int[] path = path(keyLength);
+        int depth = 0;
+        int node = mRootNode;
+        int charIndex = 0;
+        char keyChar = keyChars.charAt(0);
+        while (true) {
+            if (node == NO_NODE) {
+                return null;
+            }
+            if (depth == path.length) {
+                path = mPath = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = node;
+            char splitChar = splitChar(node);
+            if (keyChar < splitChar) {
+                node = lokid(node);
+            } else if (keyChar > splitChar) {
+                node = hikid(node);
+            } else if (++charIndex == keyLength) {
+                break;
+            } else {
+                keyChar = keyChars.charAt(charIndex);
+                node = eqkid(node);
+            }
+        }
+
+        long oldHandle = valueHandle(node);
+        if (oldHandle == NO_VALUE) {
+            return null;
+        }
+        setValueHandle(node, NO_VALUE);
+        // decrease the subarray lengths on the path and unlink all nodes whose subtree has become empty
+        for (int i = depth - 1; i >= 0; --i) {
+            int pathNode = path[i];
+            int length = subarrayLength(pathNode) - 1;
+            setInt(pathNode, SUBARRAY_LENGTH, length);
+            if (length == 0) {
+                if (i == 0) {
+                    mRootNode = NO_NODE;
+                } else {
+                    int parent = path[i - 1];
+                    if (lokid(parent) == pathNode) {
+                        setInt(parent, LOKID, NO_NODE);
+                    } else if (eqkid(parent) == pathNode) {
+                        setInt(parent, EQKID, NO_NODE);
+                    } else {
+                        setInt(parent, HIKID, NO_NODE);
+                    }
+                }
+                freeNode(pathNode);
+            }
+        }
+        return replacedValue(oldHandle);
+    }
+
+    @Override
+    public int rank(CharSequence key) {
+        ensureOpen();
+        return super.rank(key);
+    }
+
+    @Override
+    public SortedSet<CharSequence> matchAlmost(CharSequence key, int distance, int lengthTolerance) {
+        ensureOpen();
+        return super.matchAlmost(key, distance, lengthTolerance);
+    }
+
+    private final class Cursor extends IndexNodeCursor<V> {
+        @Override
+        protected boolean hasEmptyStringKeyValue() {
+            return mEmptyStringKeyValue != NO_VALUE;
+        }
+
+        @Override
+        protected V emptyStringKeyValue() {
+            return loadValue(mEmptyStringKeyValue);
+        }
+
+        @Override
+        protected int rootNode() {
+            return mRootNode;
+        }
+
+        @Override
+        protected char splitChar(int node) {
+            return OffHeapTernarySearchTreeMap.this.splitChar(node);
+        }
+
+        @Override
+        protected int lokid(int node) {
+            return OffHeapTernarySearchTreeMap.this.lokid(node);
+        }
+
+        @Override
+        protected int eqkid(int node) {
+            return OffHeapTernarySearchTreeMap.this.eqkid(node);
+        }
+
+        @Override
+        protected int hikid(int node) {
+            return OffHeapTernarySearchTreeMap.this.hikid(node);
+        }
+
+        @Override
+        protected int subarrayLength(int node) {
+            return OffHeapTernarySearchTreeMap.this.subarrayLength(node);
+        }
+
+        @Override
+        protected boolean hasValue(int node) {
+            return valueHandle(node) != NO_VALUE;
+        }
+
+        @Override
+        protected V value(int node) {
+            return loadValue(valueHandle(node));
+        }
+    }
+
+    /**
+     * Reusable buffer for encoding values before they are copied into a value block.
+     */
+    private static final class ValueEncoder extends ByteArrayOutputStream {
+        private final DataOutputStream mOutput = new DataOutputStream(this);
+
+        public <V> int encode(TSTValueCodec<V> codec, V value) {
+            reset();
+            try {
+                codec.encode(value, mOutput);
+                mOutput.flush();
+            } catch (IOException e) {
+                throw new IllegalArgumentException("value could not be encoded: " + value, e);
+            }
+            return count;
+        }
+
+        public byte[] buffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * Releases the memory of a direct buffer immediately instead of waiting for the buffer to be garbage collected.
+     * This relies on <code>sun.misc.Unsafe.invokeCleaner()</code> on Java 9 and later and on the buffer's cleaner on
+     * Java 8. If neither is available, the memory is released by the garbage collector once the buffer is no longer
+     * referenced.
+     */
+    private abstract static class BufferCleaner {
+        public abstract void free(ByteBuffer buffer);
+
+        public static BufferCleaner create() {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+                unsafeField.setAccessible(true);
+                final Object unsafe = unsafeField.get(null);
+                final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                return new BufferCleaner() {
+                    public void free(ByteBuffer buffer) {
+                        try {
+                            invokeCleaner.invoke(unsafe, buffer);
+                        } catch (Exception e) {
+                            // the buffer is left to the garbage collector
+                        }
+                    }
+                };
+            } catch (Exception e) {
+                // not available before Java 9
+            }
+            try {
+                final Method cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                final Method cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+                return new BufferCleaner() {
+                    public void free(ByteBuffer buffer) {
+                        try {
+                            cleanMethod.invoke(cleanerMethod.invoke(buffer));
+                        } catch (Exception e) {
+                            // the buffer is left to the garbage collector
+                        }
+                    }
+                };
+            } catch (Exception e) {
+                // neither mechanism is available
+            }
+            return new BufferCleaner() {
+                public void free(ByteBuffer buffer) {
+                }
+            };
+        }
+    }
+}
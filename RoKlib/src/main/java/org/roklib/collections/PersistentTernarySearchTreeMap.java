@@ -0,0 +1,565 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A ternary search tree map whose nodes are never modified once they have been created. Instead of changing a node,
+ * {@link #put(CharSequence, Object)} and {@link #remove(Object)} create copies of the nodes on the path from the root
+ * to the changed node and publish the new root. All other nodes are shared with the previous version of the tree, so
+ * that an update takes time and memory proportional to the key length, just like an update of a
+ * {@link TernarySearchTreeMap}.<BR>
+ * <BR>
+ * Since a version of the tree is never changed, taking a snapshot of the map only means to remember the current root:
+ * {@link #snapshot()} returns a read-only map of the current contents in constant time, regardless of the size of the
+ * map. Later updates of this map do not affect the snapshot, and the snapshot shares all nodes with this map which have
+ * not been replaced since. This makes the map a good fit for publishing consistent versions of a dictionary to readers
+ * while it is being updated. In addition, {@link #with(CharSequence, Object)} and {@link #without(Object)} derive a new
+ * read-only version from any version of the map without changing the map itself.<BR>
+ * <BR>
+ * Updates are serialized by synchronizing on the map. This includes the compound operations of {@link Map} such as
+ * {@link #putIfAbsent(CharSequence, Object)}, {@link #compute(CharSequence, BiFunction)} and
+ * {@link #merge(CharSequence, Object, BiFunction)}, which are therefore atomic. Reading methods do not lock: each of
+ * them works on the version that is current when it is called, and iterators keep working on the version that was
+ * current when they were created, so that they never throw a {@link ConcurrentModificationException}. A single method
+ * call therefore always sees a consistent state, but consecutive calls may see different versions if the map is
+ * updated concurrently. If several reads have to agree with each other, they should be made on a snapshot.<BR>
+ * <BR>
+ * Like {@link TernarySearchTreeMap}, every node keeps the number of keys in its subtree, so that positional access
+ * and rank queries take time proportional to the key length. This map does not allow <code>null</code> keys or values.
+ *
+ * @author Roland Krueger
+ */
+public class PersistentTernarySearchTreeMap<V> extends AbstractTernarySearchTreeMap<V> implements Serializable {
+    private static final long serialVersionUID = 4185720693518237461L;
+
+    private static final byte LO = 0;
+    private static final byte EQ = 1;
+    private static final byte HI = 2;
+
+    private final boolean mReadOnly;
+    private transient volatile Version<V> mVersion;
+
+    public PersistentTernarySearchTreeMap() {
+        this(Version.<V>empty(), false);
+    }
+
+    public PersistentTernarySearchTreeMap(Map<? extends CharSequence, ? extends V> map) {
+        this();
+        putAll(map);
+    }
+
+    private PersistentTernarySearchTreeMap(Version<V> version, boolean readOnly) {
+        mVersion = version;
+        mReadOnly = readOnly;
+    }
+
+    private static int subarrayLength(Node<?> node) {
+        return node == null ? 0 : node.mSubarrayLength;
+    }
+
+    /**
+     * Returns a read-only map with the current contents of this map. The snapshot is created in constant time and is
+     * not affected by later updates of this map.
+     */
+    public PersistentTernarySearchTreeMap<V> snapshot() {
+        return mReadOnly ? this : new PersistentTernarySearchTreeMap<V>(mVersion, true);
+    }
+
+    /**
+     * Returns a read-only map which contains the mappings of this map and additionally maps the given key to the given
+     * value. This map is not changed.
+     *
+     * @throws NullPointerException if the key or the value is <code>null</code>
+     */
+    public PersistentTernarySearchTreeMap<V> with(CharSequence key, V value) {
+        checkKeyAndValue(key, value);
+        return new PersistentTernarySearchTreeMap<V>(insert(mVersion, key, value), true);
+    }
+
+    /**
+     * Returns a read-only map which contains the mappings of this map except for the one of the given key. This map is
+     * not changed.
+     *
+     * @throws NullPointerException if the key is <code>null</code>
+     */
+    public PersistentTernarySearchTreeMap<V> without(Object key) {
+        return new PersistentTernarySearchTreeMap<V>(delete(mVersion, toKey(key)), true);
+    }
+
+    /**
+     * Returns <code>true</code> if this map is a snapshot or a version created by {@link #with(CharSequence, Object)}
+     * or {@link #without(Object)}, which cannot be modified.
+     */
+    public boolean isReadOnly() {
+        return mReadOnly;
+    }
+
+    private void checkWritable() {
+        if (mReadOnly) {
+            throw new UnsupportedOperationException("this version of the map is read-only");
+        }
+    }
+
+    private static void checkKeyAndValue(CharSequence key, Object value) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+    }
+
+    @Override
+    public int size() {
+        return mVersion.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        checkWritable();
+        mVersion = Version.empty();
+    }
+
+    @Override
+    public V get(Object key) {
+        return get(mVersion, toKey(key));
+    }
+
+    @Override
+    public synchronized V put(CharSequence key, V value) {
+        checkWritable();
+        checkKeyAndValue(key, value);
+        Version<V> version = mVersion;
+        V oldValue = get(version, key);
+        if (oldValue != value) {
+            mVersion = insert(version, key, value);
+        }
+        return oldValue;
+    }
+
+    /**
+     * Adds all mappings of the given map to this map. The mappings are published together as one new version, so that
+     * readers see either none or all of them.
+     */
+    @Override
+    public synchronized void putAll(Map<? extends CharSequence, ? extends V> map) {
+        checkWritable();
+        Version<V> version = mVersion;
+        for (Entry<? extends CharSequence, ? extends V> entry : map.entrySet()) {
+            checkKeyAndValue(entry.getKey(), entry.getValue());
+            version = insert(version, entry.getKey(), entry.getValue());
+        }
+        mVersion = version;
+    }
+
+    @Override
+    public synchronized V remove(Object key) {
+        checkWritable();
+        CharSequence keyChars = toKey(key);
+        Version<V> version = mVersion;
+        V oldValue = get(version, keyChars);
+        if (oldValue != null) {
+            mVersion = delete(version, keyChars);
+        }
+        return oldValue;
+    }
+
+    /**
+     * Holds the lock of this map while the inherited implementation reads the current value and then updates it, so
+     * that no other update can come in between. The same holds for the other compound operations below.
+     */
+    @Override
+    public synchronized V putIfAbsent(CharSequence key, V value) {
+        return super.putIfAbsent(key, value);
+    }
+
+    @Override
+    public synchronized boolean remove(Object key, Object value) {
+        return super.remove(key, value);
+    }
+
+    @Override
+    public synchronized V replace(CharSequence key, V value) {
+        return super.replace(key, value);
+    }
+
+    @Override
+    public synchronized boolean replace(CharSequence key, V oldValue, V newValue) {
+        return super.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public synchronized void replaceAll(BiFunction<? super CharSequence, ? super V, ? extends V> function) {
+        super.replaceAll(function);
+    }
+
+    @Override
+    public synchronized V computeIfAbsent(CharSequence key,
+                                          Function<? super CharSequence, ? extends V> mappingFunction) {
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public synchronized V computeIfPresent(CharSequence key,
+                                           BiFunction<? super CharSequence, ? super V, ? extends V> remappingFunction) {
+        return super.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public synchronized V compute(CharSequence key,
+                                  BiFunction<? super CharSequence, ? super V, ? extends V> remappingFunction) {
+        return super.compute(key, remappingFunction);
+    }
+
+    @Override
+    public synchronized V merge(CharSequence key, V value,
+                                BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return super.merge(key, value, remappingFunction);
+    }
+
+    private static <V> V get(Version<V> version, CharSequence key) {
+        if (key.length() == 0) {
+            return version.mEmptyStringKeyValue;
+        }
+        Cursor<V> cursor = new Cursor<V>(version);
+        return findNode(cursor, key) ? cursor.value() : null;
+    }
+
+    @Override
+    protected NodeCursor<V> nodeCursor() {
+        return new Cursor<V>(mVersion);
+    }
+
+    /**
+     * Returns a new version in which the given key is mapped to the given value. Only the nodes on the path of the key
+     * are copied.
+     */
+    private static <V> Version<V> insert(Version<V> version, CharSequence key, V value) {
+        int keyLength = key.length();
+        if (keyLength == 0) {
+            return new Version<V>(version.mRootNode, value);
+        }
+        Path<V> path = new Path<V>(keyLength);
+        Node<V> node = version.mRootNode;
+        int charIndex = 0;
+        Node<V> replacement = null;
+        while (node != null) {
+            char keyChar = key.charAt(charIndex);
+            if (keyChar < node.mSplitChar) {
+                path.push(node, LO);
+                node = node.mLokid;
+            } else if (keyChar > node.mSplitChar) {
+                path.push(node, HI);
+                node = node.mHikid;
+            } else if (charIndex == keyLength - 1) {
+                replacement = new Node<V>(node.mSplitChar, node.mLokid, node.mEqkid, node.mHikid, value);
+                break;
+            } else {
+                path.push(node, EQ);
+                charIndex++;
+                node = node.mEqkid;
+            }
+        }
+        if (replacement == null) {
+            // the key leaves the tree at charIndex: append a chain of new nodes for the remaining characters
+            replacement = new Node<V>(key.charAt(keyLength - 1), null, null, null, value);
+            for (int i = keyLength - 2; i >= charIndex; --i) {
+                replacement = new Node<V>(key.charAt(i), null, replacement, null, null);
+            }
+        }
+        return new Version<V>(path.copy(replacement), version.mEmptyStringKeyValue);
+    }
+
+    /**
+     * Returns a new version without the given key. Only the nodes on the path of the key are copied; nodes which
+     * neither carry a value nor lead to another key are dropped from the copied path.
+     */
+    private static <V> Version<V> delete(Version<V> version, CharSequence key) {
+        int keyLength = key.length();
+        if (keyLength == 0) {
+            return version.mEmptyStringKeyValue == null ? version : new Version<V>(version.mRootNode, null);
+        }
+        Path<V> path = new Path<V>(keyLength);
+        Node<V> node = version.mRootNode;
+        int charIndex = 0;
+        while (node != null) {
+            char keyChar = key.charAt(charIndex);
+            if (keyChar < node.mSplitChar) {
+                path.push(node, LO);
+                node = node.mLokid;
+            } else if (keyChar > node.mSplitChar) {
+                path.push(node, HI);
+                node = node.mHikid;
+            } else if (charIndex == keyLength - 1) {
+                break;
+            } else {
+                path.push(node, EQ);
+                charIndex++;
+                node = node.mEqkid;
+            }
+        }
+        if (node == null || node.mData == null) {
+            return version;
+        }
+        Node<V> replacement = prune(new Node<V>(node.mSplitChar, node.mLokid, node.mEqkid, node.mHikid, null));
+        return new Version<V>(path.copy(replacement), version.mEmptyStringKeyValue);
+    }
+
+    /**
+     * Returns the given node or, if the node neither has a value nor an eq child, the subtree which can replace it.
+     * Such a node is only removed if at most one of its lo and hi children exists.
+     */
+    private static <V> Node<V> prune(Node<V> node) {
+        if (node.mData != null || node.mEqkid != null) {
+            return node;
+        }
+        if (node.mLokid == null) {
+            return node.mHikid;
+        }
+        return node.mHikid == null ? node.mLokid : node;
+    }
+
+    /**
+     * Returns an iterator over the entries with a position in <code>[fromIndex, toIndex)</code> of the version which is
+     * current when this method is called. Updates made while iterating, including removals through the iterator, do
+     * not affect the iterator.
+     */
+    @Override
+    protected Iterator<Entry<CharSequence, V>> entryIterator(final int fromIndex, int toIndex) {
+        final Version<V> version = mVersion;
+        final int endIndex = Math.min(toIndex, version.size());
+        final Cursor<V> cursor = new Cursor<V>(version);
+        return new Iterator<Entry<CharSequence, V>>() {
+            private int mNextIndex = fromIndex;
+            private Entry<CharSequence, V> mLastReturned;
+
+            public boolean hasNext() {
+                return mNextIndex < endIndex;
+            }
+
+            public Entry<CharSequence, V> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                mLastReturned = entryAt(cursor, mNextIndex++);
+                return mLastReturned;
+            }
+
+            public void remove() {
+                if (mLastReturned == null) {
+                    throw new IllegalStateException("Iterator.next() must be called prior to Iterator.remove().");
+                }
+                PersistentTernarySearchTreeMap.this.remove(mLastReturned.getKey());
+                mLastReturned = null;
+            }
+        };
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        Version<V> version = mVersion;
+        out.defaultWriteObject();
+        out.writeInt(version.size());
+        Iterator<Entry<CharSequence, V>> iterator = entryIterator(0, version.size());
+        while (iterator.hasNext()) {
+            Entry<CharSequence, V> entry = iterator.next();
+            out.writeObject(entry.getKey().toString());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    /**
+     * Reads the entries written by {@link #writeObject(ObjectOutputStream)}. They are inserted into a single new
+     * version in the order given by {@link #balancedInsertionOrder(int)}.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int size = in.readInt();
+        String[] keys = new String[size];
+        Object[] values = new Object[size];
+        for (int i = 0; i < size; ++i) {
+            keys[i] = (String) in.readObject();
+            values[i] = in.readObject();
+        }
+        Version<V> version = Version.empty();
+        for (int index : balancedInsertionOrder(size)) {
+            version = insert(version, keys[index], (V) values[index]);
+        }
+        mVersion = version;
+    }
+
+    /**
+     * One version of the map: the root of an immutable tree and the value of the empty string key.
+     */
+    private static final class Version<V> {
+        private static final Version<Object> EMPTY = new Version<Object>(null, null);
+
+        private final Node<V> mRootNode;
+        private final V mEmptyStringKeyValue;
+
+        public Version(Node<V> rootNode, V emptyStringKeyValue) {
+            mRootNode = rootNode;
+            mEmptyStringKeyValue = emptyStringKeyValue;
+        }
+
+        @SuppressWarnings("unchecked")
+        public static <V> Version<V> empty() {
+            return (Version<V>) EMPTY;
+        }
+
+        public int size() {
+            return subarrayLength(mRootNode) + (mEmptyStringKeyValue == null ? 0 : 1);
+        }
+    }
+
+    /**
+     * A cursor over the tree of one version of the map.
+     */
+    private static final class Cursor<V> extends ReferenceNodeCursor<Node<V>, V> {
+        private final Version<V> mVersion;
+
+        public Cursor(Version<V> version) {
+            mVersion = version;
+        }
+
+        @Override
+        protected boolean hasEmptyStringKeyValue() {
+            return mVersion.mEmptyStringKeyValue != null;
+        }
+
+        @Override
+        protected V emptyStringKeyValue() {
+            return mVersion.mEmptyStringKeyValue;
+        }
+
+        @Override
+        protected Node<V> rootNode() {
+            return mVersion.mRootNode;
+        }
+
+        @Override
+        protected char splitChar(Node<V> node) {
+            return node.mSplitChar;
+        }
+
+        @Override
+        protected Node<V> lokid(Node<V> node) {
+            return node.mLokid;
+        }
+
+        @Override
+        protected Node<V> eqkid(Node<V> node) {
+            return node.mEqkid;
+        }
+
+        @Override
+        protected Node<V> hikid(Node<V> node) {
+            return node.mHikid;
+        }
+
+        @Override
+        protected int subarrayLength(Node<V> node) {
+            return PersistentTernarySearchTreeMap.subarrayLength(node);
+        }
+
+        @Override
+        protected boolean hasValue(Node<V> node) {
+            return node.mData != null;
+        }
+
+        @Override
+        protected V value(Node<V> node) {
+            return node.mData;
+        }
+    }
+
+    /**
+     * The nodes visited on the way down to a key, together with the child through which each node has been left.
+     */
+    private static final class Path<V> {
+        private Node<V>[] mNodes;
+        private byte[] mDirections;
+        private int mDepth;
+
+        @SuppressWarnings("unchecked")
+        public Path(int capacity) {
+            mNodes = (Node<V>[]) new Node<?>[capacity + 8];
+            mDirections = new byte[mNodes.length];
+        }
+
+        public void push(Node<V> node, byte direction) {
+            if (mDepth == mNodes.length) {
+                mNodes = Arrays.copyOf(mNodes, mDepth * 2);
+                mDirections = Arrays.copyOf(mDirections, mDepth * 2);
+            }
+            mNodes[mDepth] = node;
+            mDirections[mDepth] = direction;
+            mDepth++;
+        }
+
+        /**
+         * Copies the nodes of this path bottom-up, replacing the child at the end of the path with the given subtree,
+         * and returns the new root.
+         */
+        public Node<V> copy(Node<V> replacement) {
+            Node<V> child = replacement;
+            for (int i = mDepth - 1; i >= 0; --i) {
+                Node<V> node = mNodes[i];
+                if (mDirections[i] == LO) {
+                    child = new Node<V>(node.mSplitChar, child, node.mEqkid, node.mHikid, node.mData);
+                } else if (mDirections[i] == EQ) {
+                    child = new Node<V>(node.mSplitChar, node.mLokid, child, node.mHikid, node.mData);
+                } else {
+                    child = new Node<V>(node.mSplitChar, node.mLokid, node.mEqkid, child, node.mData);
+                }
+                child = prune(child);
+            }
+            return child;
+        }
+    }
+
+    private static final class Node<V> {
+        private final char mSplitChar;
+        private final Node<V> mLokid;
+        private final Node<V> mEqkid;
+        private final Node<V> mHikid;
+        private final V mData;
+        private final int mSubarrayLength;                  // number of keys in this node's subtree
+
+        public Node(char splitChar, Node<V> lokid, Node<V> eqkid, Node<V> hikid, V data) {
+            mSplitChar = splitChar;
+            mLokid = lokid;
+            mEqkid = eqkid;
+            mHikid = hikid;
+            mData = data;
+            mSubarrayLength = subarrayLength(lokid) + subarrayLength(eqkid) + subarrayLength(hikid)
+                    + (data == null ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,736 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A path-compressed ternary search tree map. In a plain ternary search tree, each character of a key needs a node of
+ * its own, so that long keys with few branches, such as URLs or file paths, result in long chains of nodes which only
+ * have an eq child. This map stores such a chain in a single node instead: each node holds a segment of characters,
+ * the first of which acts as the split character for the node's lo and hi children. The node's value and eq child
+ * belong to the key prefix which ends with the last character of the segment.<BR>
+ * <BR>
+ * The tree is kept in its compressed form at all times. When a key is inserted which ends within a segment or deviates
+ * from it, the segment is split in two. When a key is removed, a node without a value whose eq child has no lo or hi
+ * children is merged with its eq child, and a node which neither has a value nor an eq child is removed from the tree.
+ * <BR>
+ * <BR>
+ * Like {@link TernarySearchTreeMap}, every node keeps the number of keys in its subtree, so that positional access and
+ * rank queries take time proportional to the key length. This map does not allow <code>null</code> keys or values and
+ * is not thread-safe.
+ *
+ * @author Roland Krueger
+ */
+public class RadixTernarySearchTreeMap<V> extends AbstractTernarySearchTreeMap<V> implements Serializable {
+    private static final long serialVersionUID = -2467093320594829301L;
+
+    private transient Node<V> mRootNode;
+    private transient V mEmptyStringKeyValue;
+    private transient int mNodeCount;
+    private transient Node<V>[] mPath;                      // path buffer for put() and remove()
+
+    public RadixTernarySearchTreeMap() {
+    }
+
+    public RadixTernarySearchTreeMap(Map<? extends CharSequence, ? extends V> map) {
+        putAll(map);
+    }
+
+    private static int subarrayLength(Node<?> node) {
+        return node == null ? 0 : node.mSubarrayLength;
+    }
+
+    /**
+     * Returns the number of keys which end in the given node or below its eq child, i.e. the number of keys which
+     * start with the node's key prefix including its whole segment.
+     */
+    private static int eqLength(Node<?> node) {
+        return node.mSubarrayLength - subarrayLength(node.mLokid) - subarrayLength(node.mHikid);
+    }
+
+    /**
+     * Returns the number of characters of the given segment which are equal to the characters of the key starting at
+     * <code>start</code>. The first character of the segment is known to match.
+     */
+    private static int matchSegment(char[] segment, CharSequence key, int start) {
+        int limit = Math.min(segment.length, key.length() - start);
+        int matched = 1;
+        while (matched < limit && key.charAt(start + matched) == segment[matched]) {
+            matched++;
+        }
+        return matched;
+    }
+
+    @Override
+    public int size() {
+        return subarrayLength(mRootNode) + (mEmptyStringKeyValue == null ? 0 : 1);
+    }
+
+    @Override
+    public void clear() {
+        mRootNode = null;
+        mEmptyStringKeyValue = null;
+        mNodeCount = 0;
+        mPath = null;
+    }
+
+    /**
+     * Returns the number of nodes of the tree.
+     */
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    /**
+     * Returns the node whose segment ends with the last character of the given non-empty key or <code>null</code> if
+     * there is no such node. The returned node does not necessarily carry a value.
+     */
+    private Node<V> findNode(CharSequence key) {
+        Node<V> node = mRootNode;
+        int keyLength = key.length();
+        int charIndex = 0;
+        while (node != null) {
+            char keyChar = key.charAt(charIndex);
+            char[] segment = node.mChars;
+            if (keyChar < segment[0]) {
+                node = node.mLokid;
+            } else if (keyChar > segment[0]) {
+                node = node.mHikid;
+            } else {
+                int matched = matchSegment(segment, key, charIndex);
+                charIndex += matched;
+                if (matched < segment.length) {
+                    return null;
+                }
+                if (charIndex == keyLength) {
+                    return node;
+                }
+                node = node.mEqkid;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Walks down the path of the given non-empty key and stores the visited nodes in {@link #mPath}. Returns the
+     * length of the path if the key is contained in the map. Otherwise, the path buffer is cleared again and -1 is
+     * returned.
+     */
+    private int findPath(CharSequence key) {
+        int keyLength = key.length();
+        int depth = 0;
+        Node<V> node = mRootNode;
+        int charIndex = 0;
+        while (node != null) {
+            depth = pushPath(depth, node);
+            char keyChar = key.charAt(charIndex);
+            char[] segment = node.mChars;
+            if (keyChar < segment[0]) {
+                node = node.mLokid;
+            } else if (keyChar > segment[0]) {
+                node = node.mHikid;
+            } else {
+                int matched = matchSegment(segment, key, charIndex);
+                charIndex += matched;
+                if (matched < segment.length) {
+                    break;
+                }
+                if (charIndex == keyLength) {
+                    if (node.mData != null) {
+                        return depth;
+                    }
+                    break;
+                }
+                node = node.mEqkid;
+            }
+        }
+        clearPath(depth);
+        return -1;
+    }
+
+    /**
+     * Releases the references to the first nodes in {@link #mPath}, so that the buffer does not keep removed nodes
+     * reachable.
+     */
+    private void clearPath(int depth) {
+        for (int i = 0; i < depth; ++i) {
+            mPath[i] = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int pushPath(int depth, Node<V> node) {
+        if (mPath == null) {
+            mPath = (Node<V>[]) new Node<?>[32];
+        } else if (depth == mPath.length) {
+            mPath = Arrays.copyOf(mPath, depth * 2);
+        }
+        mPath[depth] = node;
+        return depth + 1;
+    }
+
+    @Override
+    public V get(Object key) {
+        CharSequence keyChars = toKey(key);
+        if (keyChars.length() == 0) {
+            return mEmptyStringKeyValue;
+        }
+        Node<V> node = findNode(keyChars);
+        return node == null ? null : node.mData;
+    }
+
+    @Override
+    public V put(CharSequence key, V value) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        int keyLength = key.length();
+        if (keyLength == 0) {
+            V oldValue = mEmptyStringKeyValue;
+            mEmptyStringKeyValue = value;
+            return oldValue;
+        }
+
+        int depth = 0;
+        Node<V> parent = null;
+        int branch = 0;                                     // child slot of parent: 0 = lo, 1 = eq, 2 = hi
+        Node<V> node = mRootNode;
+        int charIndex = 0;
+        while (true) {
+            if (node == null) {
+                // the remaining characters of the key form the segment of a new leaf
+                char[] segment = new char[keyLength - charIndex];
+                for (int i = 0; i < segment.length; ++i) {
+                    segment[i] = key.charAt(charIndex + i);
+                }
+                node = new Node<V>(segment);
+                mNodeCount++;
+                if (parent == null) {
+                    mRootNode = node;
+                } else if (branch == 0) {
+                    parent.mLokid = node;
+                } else if (branch == 1) {
+                    parent.mEqkid = node;
+                } else {
+                    parent.mHikid = node;
+                }
+                depth = pushPath(depth, node);
+                break;
+            }
+            depth = pushPath(depth, node);
+            parent = node;
+            char keyChar = key.charAt(charIndex);
+            char[] segment = node.mChars;
+            if (keyChar < segment[0]) {
+                branch = 0;
+                node = node.mLokid;
+            } else if (keyChar > segment[0]) {
+                branch = 2;
+                node = node.mHikid;
+            } else {
+                int matched = matchSegment(segment, key, charIndex);
+                charIndex += matched;
+                if (matched < segment.length) {
+                    // the key ends within the segment or deviates from it: the rest of the segment becomes the eq
+                    // child, and the key either ends in this node or continues below the new eq child
+                    split(node, matched);
+                }
+                if (charIndex == keyLength) {
+                    break;
+                }
+                branch = 1;
+                node = node.mEqkid;
+            }
+        }
+
+        V oldValue = node.mData;
+        node.mData = value;
+        if (oldValue == null) {
+            for (int i = 0; i < depth; ++i) {
+                mPath[i].mSubarrayLength++;
+            }
+        }
+        clearPath(depth);
+        return oldValue;
+    }
+
+    /**
+     * Splits the segment of the given node after the given number of characters. The second part of the segment moves
+     * into a new node which takes over the node's value and eq child and becomes the node's new eq child.
+     */
+    private void split(Node<V> node, int length) {
+        char[] segment = node.mChars;
+        Node<V> tail = new Node<V>(Arrays.copyOfRange(segment, length, segment.length));
+        tail.mData = node.mData;
+        tail.mEqkid = node.mEqkid;
+        tail.mSubarrayLength = eqLength(node);
+        node.mChars = Arrays.copyOf(segment, length);
+        node.mData = null;
+        node.mEqkid = tail;
+        mNodeCount++;
+    }
+
+    @Override
+    public V remove(Object key) {
+        CharSequence keyChars = toKey(key);
+        if (keyChars.length() == 0) {
+            V oldValue = mEmptyStringKeyValue;
+            mEmptyStringKeyValue = null;
+            return oldValue;
+        }
+        int depth = findPath(keyChars);
+        if (depth < 0) {
+            return null;
+        }
+        Node<V> node = mPath[depth - 1];
+        V oldValue = node.mData;
+        node.mData = null;
+        for (int i = 0; i < depth; ++i) {
+            mPath[i].mSubarrayLength--;
+        }
+        // only the nodes on the path may have lost their compressed form. Since fixing a node can only affect its
+        // parent, the path is processed bottom-up.
+        for (int i = depth - 1; i >= 0; --i) {
+            Node<V> pathNode = mPath[i];
+            mPath[i] = null;
+            if (pathNode.mData != null) {
+                continue;
+            }
+            if (pathNode.mEqkid == null) {
+                replaceChild(i == 0 ? null : mPath[i - 1], pathNode, combine(pathNode.mLokid, pathNode.mHikid));
+                mNodeCount--;
+            } else if (pathNode.mEqkid.mLokid == null && pathNode.mEqkid.mHikid == null) {
+                merge(pathNode);
+            }
+        }
+        return oldValue;
+    }
+
+    /**
+     * Appends the segment of the given node's eq child, which has neither a lo nor a hi child, to the node's segment
+     * and removes the eq child from the tree.
+     */
+    private void merge(Node<V> node) {
+        Node<V> eqkid = node.mEqkid;
+        char[] segment = Arrays.copyOf(node.mChars, node.mChars.length + eqkid.mChars.length);
+        System.arraycopy(eqkid.mChars, 0, segment, node.mChars.length, eqkid.mChars.length);
+        node.mChars = segment;
+        node.mData = eqkid.mData;
+        node.mEqkid = eqkid.mEqkid;
+        mNodeCount--;
+    }
+
+    /**
+     * Combines the lo and hi subtrees of a node which is removed from the tree into a single subtree. All keys of the
+     * lo subtree are smaller than the keys of the hi subtree, so the hi subtree can be attached as the hi child of the
+     * lo subtree's rightmost node.
+     */
+    private static <V> Node<V> combine(Node<V> lokid, Node<V> hikid) {
+        if (lokid == null) {
+            return hikid;
+        }
+        if (hikid == null) {
+            return lokid;
+        }
+        int hiLength = hikid.mSubarrayLength;
+        Node<V> node = lokid;
+        while (true) {
+            node.mSubarrayLength += hiLength;
+            if (node.mHikid == null) {
+                node.mHikid = hikid;
+                return lokid;
+            }
+            node = node.mHikid;
+        }
+    }
+
+    private void replaceChild(Node<V> parent, Node<V> child, Node<V> replacement) {
+        if (parent == null) {
+            mRootNode = replacement;
+        } else if (parent.mLokid == child) {
+            parent.mLokid = replacement;
+        } else if (parent.mEqkid == child) {
+            parent.mEqkid = replacement;
+        } else {
+            parent.mHikid = replacement;
+        }
+    }
+
+    @Override
+    public int rank(CharSequence key) {
+        int keyLength = key.length();
+        if (keyLength == 0) {
+            return 0;
+        }
+        int rank = mEmptyStringKeyValue == null ? 0 : 1;
+        Node<V> node = mRootNode;
+        int charIndex = 0;
+        while (node != null) {
+            char keyChar = key.charAt(charIndex);
+            char[] segment = node.mChars;
+            if (keyChar < segment[0]) {
+                node = node.mLokid;
+            } else if (keyChar > segment[0]) {
+                rank += node.mSubarrayLength - subarrayLength(node.mHikid);
+                node = node.mHikid;
+            } else {
+                rank += subarrayLength(node.mLokid);
+                int matched = matchSegment(segment, key, charIndex);
+                charIndex += matched;
+                if (matched < segment.length) {
+                    // the key ends within the segment, so that it is smaller than all keys continuing the segment,
+                    // or it deviates from the segment
+                    if (charIndex < keyLength && key.charAt(charIndex) > segment[matched]) {
+                        rank += eqLength(node);
+                    }
+                    return rank;
+                }
+                if (charIndex == keyLength) {
+                    return rank;
+                }
+                if (node.mData != null) {
+                    rank++;
+                }
+                node = node.mEqkid;
+            }
+        }
+        return rank;
+    }
+
+    @Override
+    public int countPrefix(CharSequence prefix) {
+        int prefixLength = prefix.length();
+        if (prefixLength == 0) {
+            return size();
+        }
+        Node<V> node = mRootNode;
+        int charIndex = 0;
+        while (node != null) {
+            char keyChar = prefix.charAt(charIndex);
+            char[] segment = node.mChars;
+            if (keyChar < segment[0]) {
+                node = node.mLokid;
+            } else if (keyChar > segment[0]) {
+                node = node.mHikid;
+            } else {
+                int matched = matchSegment(segment, prefix, charIndex);
+                charIndex += matched;
+                if (charIndex == prefixLength) {
+                    return eqLength(node);
+                }
+                if (matched < segment.length) {
+                    return 0;
+                }
+                node = node.mEqkid;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    protected Entry<CharSequence, V> entryAt(int index) {
+        if (mEmptyStringKeyValue != null) {
+            if (index == 0) {
+                return newEntry("", mEmptyStringKeyValue);
+            }
+            index--;
+        }
+        StringBuilder key = new StringBuilder();
+        Node<V> node = mRootNode;
+        while (true) {
+            int loLength = subarrayLength(node.mLokid);
+            if (index < loLength) {
+                node = node.mLokid;
+                continue;
+            }
+            index -= loLength;
+            int eqLength = eqLength(node);
+            if (index < eqLength) {
+                key.append(node.mChars);
+                if (node.mData != null) {
+                    if (index == 0) {
+                        return newEntry(key.toString(), node.mData);
+                    }
+                    index--;
+                }
+                node = node.mEqkid;
+            } else {
+                index -= eqLength;
+                node = node.mHikid;
+            }
+        }
+    }
+
+    @Override
+    protected Iterator<Entry<CharSequence, V>> entryIterator(int fromIndex, int toIndex) {
+        return new RadixIterator(fromIndex, toIndex);
+    }
+
+    public SortedSet<CharSequence> matchAlmost(CharSequence key, int distance, int lengthTolerance) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        SortedSet<CharSequence> result = new TreeSet<CharSequence>();
+        int keyLength = key.length();
+        int maxDepth = keyLength + lengthTolerance;
+        if (maxDepth <= 0 || mRootNode == null) {
+            return result;
+        }
+        char[] prefix = new char[maxDepth];
+
+        // the eq child is pushed last so that the prefix characters of all pending stack entries stay valid
+        @SuppressWarnings("unchecked")
+        Node<V>[] nodes = (Node<V>[]) new Node<?>[16];
+        int[] states = new int[32];
+        int stackSize = 0;
+        nodes[0] = mRootNode;
+        states[0] = 0;
+        states[1] = distance;
+        stackSize++;
+        while (stackSize > 0) {
+            stackSize--;
+            Node<V> node = nodes[stackSize];
+            int charIndex = states[2 * stackSize];
+            int remaining = states[2 * stackSize + 1];
+            if (node == null || remaining < 0 || charIndex >= maxDepth) {
+                continue;
+            }
+            if (stackSize + 3 > nodes.length) {
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                states = Arrays.copyOf(states, states.length * 2);
+            }
+            nodes[stackSize] = node.mLokid;
+            states[2 * stackSize] = charIndex;
+            states[2 * stackSize + 1] = remaining;
+            stackSize++;
+            nodes[stackSize] = node.mHikid;
+            states[2 * stackSize] = charIndex;
+            states[2 * stackSize + 1] = remaining;
+            stackSize++;
+
+            // follow the segment as long as the keys may still match
+            char[] segment = node.mChars;
+            int end = charIndex;
+            for (int i = 0; i < segment.length && remaining >= 0 && end < maxDepth; ++i, ++end) {
+                if (end >= keyLength || key.charAt(end) != segment[i]) {
+                    remaining--;
+                }
+                prefix[end] = segment[i];
+            }
+            if (end < charIndex + segment.length || remaining < 0) {
+                continue;
+            }
+            if (Math.abs(keyLength - end) <= lengthTolerance && node.mData != null) {
+                result.add(new String(prefix, 0, end));
+            }
+            nodes[stackSize] = node.mEqkid;
+            states[2 * stackSize] = end;
+            states[2 * stackSize + 1] = remaining;
+            stackSize++;
+        }
+        return result;
+    }
+
+    /**
+     * Writes the entries in key order, each as the key's string representation followed by the value.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size());
+        for (Entry<CharSequence, V> entry : entrySet()) {
+            out.writeObject(entry.getKey().toString());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    /**
+     * Reads the entries written by {@link #writeObject(ObjectOutputStream)} and inserts them in the order given by
+     * {@link #balancedInsertionOrder(int)}.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int size = in.readInt();
+        String[] keys = new String[size];
+        Object[] values = new Object[size];
+        for (int i = 0; i < size; ++i) {
+            keys[i] = (String) in.readObject();
+            values[i] = in.readObject();
+        }
+        for (int index : balancedInsertionOrder(size)) {
+            put(keys[index], (V) values[index]);
+        }
+    }
+
+    /**
+     * Iterates in key order over a range of entries. The iterator descends to the first entry of the range once and
+     * then walks the tree with a stack of pending nodes. Removing the entry returned last may merge a node with its eq
+     * child, but the detached eq child still holds the same segment, value and eq subtree, so that the walk yields the
+     * same entries.
+     */
+    private class RadixIterator implements Iterator<Entry<CharSequence, V>> {
+        private Node<V>[] mNodes;
+        // for every pending node: the length of the key prefix above its segment, shifted left by one, with the lowest
+        // bit set if its lo subtree has already been visited
+        private int[] mStates = new int[16];
+        private int mStackSize;
+        private char[] mKey = new char[16];
+        private boolean mEmptyStringKeyPending;
+        private int mRemaining;
+        private Entry<CharSequence, V> mLastReturned;
+
+        @SuppressWarnings("unchecked")
+        public RadixIterator(int fromIndex, int toIndex) {
+            mNodes = (Node<V>[]) new Node<?>[16];
+            mRemaining = toIndex - fromIndex;
+            if (mRemaining > 0) {
+                seek(fromIndex);
+            }
+        }
+
+        private void seek(int index) {
+            if (mEmptyStringKeyValue != null) {
+                if (index == 0) {
+                    mEmptyStringKeyPending = true;
+                    push(mRootNode, 0, false);
+                    return;
+                }
+                index--;
+            }
+            int length = 0;
+            Node<V> node = mRootNode;
+            while (node != null) {
+                int loLength = subarrayLength(node.mLokid);
+                if (index < loLength) {
+                    push(node, length, true);
+                    node = node.mLokid;
+                    continue;
+                }
+                index -= loLength;
+                int eqLength = eqLength(node);
+                if (index < eqLength) {
+                    if (node.mData != null && index == 0) {
+                        push(node, length, true);
+                        return;
+                    }
+                    if (node.mData != null) {
+                        index--;
+                    }
+                    push(node.mHikid, length, false);
+                    length = appendSegment(node, length);
+                    node = node.mEqkid;
+                } else {
+                    index -= eqLength;
+                    node = node.mHikid;
+                }
+            }
+        }
+
+        private void push(Node<V> node, int length, boolean loVisited) {
+            if (mStackSize == mNodes.length) {
+                mNodes = Arrays.copyOf(mNodes, mStackSize * 2);
+                mStates = Arrays.copyOf(mStates, mStackSize * 2);
+            }
+            mNodes[mStackSize] = node;
+            mStates[mStackSize++] = length << 1 | (loVisited ? 1 : 0);
+        }
+
+        private int appendSegment(Node<V> node, int length) {
+            char[] segment = node.mChars;
+            if (length + segment.length > mKey.length) {
+                mKey = Arrays.copyOf(mKey, Math.max(mKey.length * 2, length + segment.length));
+            }
+            System.arraycopy(segment, 0, mKey, length, segment.length);
+            return length + segment.length;
+        }
+
+        public boolean hasNext() {
+            return mRemaining > 0;
+        }
+
+        public Entry<CharSequence, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            mRemaining--;
+            if (mEmptyStringKeyPending) {
+                mEmptyStringKeyPending = false;
+                mLastReturned = newEntry("", mEmptyStringKeyValue);
+                return mLastReturned;
+            }
+            while (mStackSize > 0) {
+                Node<V> node = mNodes[--mStackSize];
+                mNodes[mStackSize] = null;
+                int state = mStates[mStackSize];
+                int length = state >>> 1;
+                boolean loVisited = (state & 1) != 0;
+                while (node != null) {
+                    if (!loVisited) {
+                        // descend the lo chain, leaving every node on it to be visited after its lo subtree
+                        for (; node.mLokid != null; node = node.mLokid) {
+                            push(node, length, true);
+                        }
+                    }
+                    int end = appendSegment(node, length);
+                    push(node.mHikid, length, false);
+                    if (node.mData != null) {
+                        push(node.mEqkid, end, false);
+                        mLastReturned = newEntry(new String(mKey, 0, end), node.mData);
+                        return mLastReturned;
+                    }
+                    node = node.mEqkid;
+                    length = end;
+                    loVisited = false;
+                }
+            }
+            throw new ConcurrentModificationException();
+        }
+
+        public void remove() {
+            if (mLastReturned == null) {
+                throw new IllegalStateException("Iterator.next() must be called prior to Iterator.remove().");
+            }
+            RadixTernarySearchTreeMap.this.remove(mLastReturned.getKey());
+            mLastReturned = null;
+        }
+    }
+
+    private static final class Node<V> {
+        private char[] mChars;                              // segment, the first character is the split character
+        private Node<V> mLokid;
+        private Node<V> mEqkid;
+        private Node<V> mHikid;
+        private V mData;                                    // value of the key ending with the segment
+        private int mSubarrayLength;                        // number of keys in this node's subtree
+
+        public Node(char[] chars) {
+            mChars = chars;
+        }
+    }
+}
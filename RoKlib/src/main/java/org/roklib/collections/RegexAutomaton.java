@@ -0,0 +1,670 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.util.*;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A deterministic finite automaton which accepts the strings matched by a regular expression. The expression is
+ * parsed into a nondeterministic automaton (Thompson construction), from which the states of the deterministic
+ * automaton are built on demand by the subset construction. Only the states actually reached by a search are ever
+ * built, so that the exponential worst case of the subset construction does not matter for a search on a tree.<BR>
+ * <BR>
+ * States of the nondeterministic automaton from which the accepting state cannot be reached are removed before the
+ * subset construction. The empty subset is therefore the only dead state, and it is detected as soon as a key leaves
+ * the language of the expression.<BR>
+ * <BR>
+ * A key is accepted if the whole key matches the expression, as with {@link java.util.regex.Matcher#matches()}. The
+ * following subset of the {@link java.util.regex.Pattern} syntax is supported: literal characters, <code>.</code>,
+ * character classes with ranges and negation, the escapes <code>\d \D \w \W \s \S \t \n \r \f</code> and
+ * <code>\</code><i>uhhhh</i>, escaped punctuation, groups <code>(...)</code> and <code>(?:...)</code>, alternation
+ * and the greedy or reluctant quantifiers <code>* + ? {n} {n,} {n,m}</code>. A <code>^</code> at the beginning and a
+ * <code>$</code> at the end of the expression are allowed and ignored. Everything else, such as back references or
+ * lookaround, is rejected with a {@link PatternSyntaxException}.<BR>
+ * <BR>
+ * Since the deterministic states are cached, an automaton must not be used by several threads at the same time.
+ *
+ * @author Roland Krueger
+ */
+final class RegexAutomaton implements KeyAutomaton {
+    private static final int MAX_REPETITIONS = 1000;
+    private static final int MAX_NFA_STATES = 100000;
+    private static final char[] DIGIT = {'0', '9'};
+    private static final char[] WORD = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+    private static final char[] SPACE = {'\t', '\r', ' ', ' '};
+    private static final char[] LINE_TERMINATORS = {'\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029'};
+
+    private final String mRegex;
+    private int mPosition;                                  // parse position
+
+    // nondeterministic automaton
+    private final List<NfaState> mNfaStates = new ArrayList<NfaState>();
+    private final int mAcceptState;
+
+    // deterministic automaton, state 0 is the dead state
+    private final Map<BitSet, Integer> mDfaIds = new HashMap<BitSet, Integer>();
+    private final List<DfaState> mDfaStates = new ArrayList<DfaState>();
+    private final long mStartState;
+
+    /**
+     * @throws PatternSyntaxException if the expression is malformed or uses an unsupported construct
+     */
+    public RegexAutomaton(String regex) {
+        if (regex == null) {
+            throw new NullPointerException("regex is null");
+        }
+        mRegex = regex;
+        if (regex.startsWith("^")) {
+            mPosition = 1;
+        }
+        Node root = parseAlternation();
+        if (!atEnd()) {
+            throw syntaxError("unmatched closing parenthesis");
+        }
+        int start = newNfaState();
+        mAcceptState = compile(root, start);
+        removeDeadNfaStates();
+
+        mDfaStates.add(new DfaState(new BitSet(), false));
+        mDfaIds.put(new BitSet(), 0);
+        BitSet startSet = new BitSet();
+        if (mNfaStates.get(start).mLive) {
+            startSet.set(start);
+        }
+        mStartState = dfaState(startSet);
+    }
+
+    private PatternSyntaxException syntaxError(String description) {
+        return new PatternSyntaxException(description, mRegex, mPosition);
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // parser
+
+    private boolean atEnd() {
+        return mPosition == mRegex.length() || mPosition == mRegex.length() - 1 && mRegex.charAt(mPosition) == '$'
+                && (mPosition == 0 || mRegex.charAt(mPosition - 1) != '\\');
+    }
+
+    private Node parseAlternation() {
+        List<Node> alternatives = new ArrayList<Node>();
+        alternatives.add(parseSequence());
+        while (!atEnd() && mRegex.charAt(mPosition) == '|') {
+            mPosition++;
+            alternatives.add(parseSequence());
+        }
+        return alternatives.size() == 1 ? alternatives.get(0) : new Node(Node.ALTERNATION, alternatives);
+    }
+
+    private Node parseSequence() {
+        List<Node> elements = new ArrayList<Node>();
+        while (!atEnd() && mRegex.charAt(mPosition) != '|' && mRegex.charAt(mPosition) != ')') {
+            elements.add(parseRepetition());
+        }
+        return new Node(Node.SEQUENCE, elements);
+    }
+
+    private Node parseRepetition() {
+        Node node = parseAtom();
+        while (!atEnd()) {
+            char c = mRegex.charAt(mPosition);
+            int min;
+            int max;
+            if (c == '*') {
+                min = 0;
+                max = -1;
+            } else if (c == '+') {
+                min = 1;
+                max = -1;
+            } else if (c == '?') {
+                min = 0;
+                max = 1;
+            } else if (c == '{') {
+                mPosition++;
+                min = parseNumber();
+                max = min;
+                if (mPosition < mRegex.length() && mRegex.charAt(mPosition) == ',') {
+                    mPosition++;
+                    max = mPosition < mRegex.length() && mRegex.charAt(mPosition) == '}' ? -1 : parseNumber();
+                }
+                if (mPosition == mRegex.length() || mRegex.charAt(mPosition) != '}') {
+                    throw syntaxError("unclosed counted closure");
+                }
+                if (max >= 0 && max < min) {
+                    throw syntaxError("illegal repetition range");
+                }
+            } else {
+                return node;
+            }
+            mPosition++;
+            if (mPosition < mRegex.length() && mRegex.charAt(mPosition) == '?') {
+                mPosition++;                                // reluctant quantifiers match the same keys
+            } else if (mPosition < mRegex.length() && mRegex.charAt(mPosition) == '+') {
+                throw syntaxError("possessive quantifiers are not supported");
+            }
+            node = new Node(node, min, max);
+        }
+        return node;
+    }
+
+    private int parseNumber() {
+        int start = mPosition;
+        int value = 0;
+        while (mPosition < mRegex.length() && Character.isDigit(mRegex.charAt(mPosition))) {
+            value = value * 10 + Character.digit(mRegex.charAt(mPosition++), 10);
+            if (value > MAX_REPETITIONS) {
+                throw syntaxError("repetition count exceeds " + MAX_REPETITIONS);
+            }
+        }
+        if (mPosition == start) {
+            throw syntaxError("number expected");
+        }
+        return value;
+    }
+
+    private Node parseAtom() {
+        char c = mRegex.charAt(mPosition++);
+        switch (c) {
+            case '(':
+                if (mRegex.startsWith("?:", mPosition)) {
+                    mPosition += 2;
+                } else if (mPosition < mRegex.length() && mRegex.charAt(mPosition) == '?') {
+                    throw syntaxError("unsupported group construct");
+                }
+                Node group = parseAlternation();
+                if (atEnd() || mRegex.charAt(mPosition) != ')') {
+                    throw syntaxError("unclosed group");
+                }
+                mPosition++;
+                return group;
+            case '[':
+                return new Node(parseClass());
+            case '.':
+                return new Node(complement(LINE_TERMINATORS));
+            case '\\':
+                return new Node(parseEscape(false));
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                mPosition--;
+                throw syntaxError("dangling meta character '" + c + "'");
+            case '^':
+            case '$':
+                mPosition--;
+                throw syntaxError("anchors are only supported at the beginning and the end of the expression");
+            default:
+                return new Node(new char[]{c, c});
+        }
+    }
+
+    /**
+     * Parses an escape sequence after the backslash and returns the ranges of the characters it denotes.
+     */
+    private char[] parseEscape(boolean inClass) {
+        if (mPosition == mRegex.length()) {
+            throw syntaxError("unexpected end of expression after escape character");
+        }
+        char c = mRegex.charAt(mPosition++);
+        switch (c) {
+            case 'd':
+                return DIGIT;
+            case 'D':
+                return complement(DIGIT);
+            case 'w':
+                return WORD;
+            case 'W':
+                return complement(WORD);
+            case 's':
+                return SPACE;
+            case 'S':
+                return complement(SPACE);
+            case 't':
+                return new char[]{'\t', '\t'};
+            case 'n':
+                return new char[]{'\n', '\n'};
+            case 'r':
+                return new char[]{'\r', '\r'};
+            case 'f':
+                return new char[]{'\f', '\f'};
+            case 'u':
+                if (mPosition + 4 > mRegex.length()) {
+                    throw syntaxError("illegal unicode escape sequence");
+                }
+                try {
+                    char unicode = (char) Integer.parseInt(mRegex.substring(mPosition, mPosition + 4), 16);
+                    mPosition += 4;
+                    return new char[]{unicode, unicode};
+                } catch (NumberFormatException e) {
+                    throw syntaxError("illegal unicode escape sequence");
+                }
+            default:
+                if (Character.isLetterOrDigit(c)) {
+                    mPosition--;
+                    throw syntaxError("unsupported escape sequence \\" + c);
+                }
+                return new char[]{c, c};
+        }
+    }
+
+    /**
+     * Parses a character class after the opening bracket and returns its sorted and disjoint ranges.
+     */
+    private char[] parseClass() {
+        boolean negated = false;
+        if (mPosition < mRegex.length() && mRegex.charAt(mPosition) == '^') {
+            negated = true;
+            mPosition++;
+        }
+        char[] ranges = new char[0];
+        boolean first = true;
+        while (true) {
+            if (mPosition == mRegex.length()) {
+                throw syntaxError("unclosed character class");
+            }
+            char c = mRegex.charAt(mPosition++);
+            if (c == ']' && !first) {
+                break;
+            }
+            first = false;
+            if (c == '[' || c == '&' && mPosition < mRegex.length() && mRegex.charAt(mPosition) == '&') {
+                mPosition--;
+                throw syntaxError("nested classes and intersections are not supported");
+            }
+            char[] element;
+            if (c == '\\') {
+                element = parseEscape(true);
+            } else {
+                element = new char[]{c, c};
+            }
+            if (element.length == 2 && element[0] == element[1] && mPosition + 1 < mRegex.length()
+                    && mRegex.charAt(mPosition) == '-' && mRegex.charAt(mPosition + 1) != ']') {
+                mPosition++;
+                char high = mRegex.charAt(mPosition++);
+                if (high == '\\') {
+                    char[] escaped = parseEscape(true);
+                    if (escaped.length != 2 || escaped[0] != escaped[1]) {
+                        throw syntaxError("illegal character range");
+                    }
+                    high = escaped[0];
+                }
+                if (high < element[0]) {
+                    throw syntaxError("illegal character range");
+                }
+                element = new char[]{element[0], high};
+            }
+            ranges = union(ranges, element);
+        }
+        return negated ? complement(ranges) : ranges;
+    }
+
+    /**
+     * Returns the sorted and disjoint ranges covering the characters of both given range lists.
+     */
+    private static char[] union(char[] first, char[] second) {
+        int count = (first.length + second.length) / 2;
+        int[][] ranges = new int[count][];
+        for (int i = 0; i < first.length; i += 2) {
+            ranges[i / 2] = new int[]{first[i], first[i + 1]};
+        }
+        for (int i = 0; i < second.length; i += 2) {
+            ranges[first.length / 2 + i / 2] = new int[]{second[i], second[i + 1]};
+        }
+        Arrays.sort(ranges, new Comparator<int[]>() {
+            public int compare(int[] a, int[] b) {
+                return a[0] - b[0];
+            }
+        });
+        char[] result = new char[2 * count];
+        int length = 0;
+        for (int[] range : ranges) {
+            if (length > 0 && range[0] <= result[length - 1] + 1) {
+                result[length - 1] = (char) Math.max(result[length - 1], range[1]);
+            } else {
+                result[length++] = (char) range[0];
+                result[length++] = (char) range[1];
+            }
+        }
+        return Arrays.copyOf(result, length);
+    }
+
+    /**
+     * Returns the ranges of all characters not covered by the given sorted and disjoint ranges.
+     */
+    private static char[] complement(char[] ranges) {
+        char[] result = new char[ranges.length + 2];
+        int length = 0;
+        int next = Character.MIN_VALUE;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > next) {
+                result[length++] = (char) next;
+                result[length++] = (char) (ranges[i] - 1);
+            }
+            next = ranges[i + 1] + 1;
+        }
+        if (next <= Character.MAX_VALUE) {
+            result[length++] = (char) next;
+            result[length++] = Character.MAX_VALUE;
+        }
+        return Arrays.copyOf(result, length);
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // nondeterministic automaton
+
+    private int newNfaState() {
+        if (mNfaStates.size() == MAX_NFA_STATES) {
+            throw syntaxError("expression is too large");
+        }
+        mNfaStates.add(new NfaState());
+        return mNfaStates.size() - 1;
+    }
+
+    /**
+     * Compiles the given syntax tree node into a fragment starting at the given state, which does not have any
+     * outgoing transitions yet. Returns the end state of the fragment, which again has no outgoing transitions.
+     */
+    private int compile(Node node, int start) {
+        switch (node.mType) {
+            case Node.CHARACTERS: {
+                int end = newNfaState();
+                NfaState state = mNfaStates.get(start);
+                state.mRanges = node.mRanges;
+                state.mNext = end;
+                return end;
+            }
+            case Node.SEQUENCE: {
+                int state = start;
+                for (Node child : node.mChildren) {
+                    state = compile(child, state);
+                }
+                return state;
+            }
+            case Node.ALTERNATION: {
+                int end = newNfaState();
+                for (Node child : node.mChildren) {
+                    int alternative = newNfaState();
+                    mNfaStates.get(start).addEpsilon(alternative);
+                    mNfaStates.get(compile(child, alternative)).addEpsilon(end);
+                }
+                return end;
+            }
+            default: {
+                int state = start;
+                for (int i = 0; i < node.mMin; ++i) {
+                    state = compile(node.mChildren.get(0), state);
+                }
+                if (node.mMax < 0) {
+                    int body = newNfaState();
+                    mNfaStates.get(state).addEpsilon(body);
+                    mNfaStates.get(compile(node.mChildren.get(0), body)).addEpsilon(state);
+                    int end = newNfaState();
+                    mNfaStates.get(state).addEpsilon(end);
+                    return end;
+                }
+                int end = newNfaState();
+                for (int i = node.mMin; i < node.mMax; ++i) {
+                    mNfaStates.get(state).addEpsilon(end);
+                    int body = newNfaState();
+                    mNfaStates.get(state).addEpsilon(body);
+                    state = compile(node.mChildren.get(0), body);
+                }
+                mNfaStates.get(state).addEpsilon(end);
+                return end;
+            }
+        }
+    }
+
+    /**
+     * Marks all states from which the accepting state can be reached as live. Only live states are included in the
+     * subsets of the deterministic automaton.
+     */
+    private void removeDeadNfaStates() {
+        int stateCount = mNfaStates.size();
+        List<List<Integer>> predecessors = new ArrayList<List<Integer>>(stateCount);
+        for (int i = 0; i < stateCount; ++i) {
+            predecessors.add(new ArrayList<Integer>(2));
+        }
+        for (int i = 0; i < stateCount; ++i) {
+            NfaState state = mNfaStates.get(i);
+            if (state.mNext >= 0 && state.mRanges.length > 0) {
+                predecessors.get(state.mNext).add(i);
+            }
+            for (int j = 0; j < state.mEpsilonCount; ++j) {
+                predecessors.get(state.mEpsilons[j]).add(i);
+            }
+        }
+        Deque<Integer> pending = new ArrayDeque<Integer>();
+        mNfaStates.get(mAcceptState).mLive = true;
+        pending.push(mAcceptState);
+        while (!pending.isEmpty()) {
+            for (int predecessor : predecessors.get(pending.pop())) {
+                if (!mNfaStates.get(predecessor).mLive) {
+                    mNfaStates.get(predecessor).mLive = true;
+                    pending.push(predecessor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds all live states reachable through epsilon transitions to the given set.
+     */
+    private void closure(BitSet states) {
+        Deque<Integer> pending = new ArrayDeque<Integer>();
+        for (int i = states.nextSetBit(0); i >= 0; i = states.nextSetBit(i + 1)) {
+            pending.push(i);
+        }
+        while (!pending.isEmpty()) {
+            NfaState state = mNfaStates.get(pending.pop());
+            for (int j = 0; j < state.mEpsilonCount; ++j) {
+                int target = state.mEpsilons[j];
+                if (mNfaStates.get(target).mLive && !states.get(target)) {
+                    states.set(target);
+                    pending.push(target);
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // deterministic automaton
+
+    /**
+     * Returns the deterministic state for the given set of live states, which is not yet closed under epsilon
+     * transitions. The state's transitions are computed when they are needed for the first time.
+     */
+    private int dfaState(BitSet states) {
+        closure(states);
+        Integer id = mDfaIds.get(states);
+        if (id == null) {
+            id = mDfaStates.size();
+            mDfaStates.add(new DfaState(states, states.get(mAcceptState)));
+            mDfaIds.put(states, id);
+        }
+        return id;
+    }
+
+    /**
+     * Computes the transitions of the given state. The character range is split at the bounds of the ranges of all
+     * contained states, so that all characters of an interval lead to the same target state.
+     */
+    private DfaState transitions(long id) {
+        DfaState dfaState = mDfaStates.get((int) id);
+        if (dfaState.mStarts != null) {
+            return dfaState;
+        }
+        BitSet states = dfaState.mStates;
+        TreeSet<Integer> bounds = new TreeSet<Integer>();
+        bounds.add((int) Character.MIN_VALUE);
+        for (int i = states.nextSetBit(0); i >= 0; i = states.nextSetBit(i + 1)) {
+            NfaState state = mNfaStates.get(i);
+            if (state.mNext < 0 || !mNfaStates.get(state.mNext).mLive) {
+                continue;
+            }
+            for (int j = 0; j < state.mRanges.length; j += 2) {
+                bounds.add((int) state.mRanges[j]);
+                bounds.add(state.mRanges[j + 1] + 1);
+            }
+        }
+        bounds.remove(Character.MAX_VALUE + 1);
+
+        int[] starts = new int[bounds.size()];
+        int[] targets = new int[bounds.size()];
+        int count = 0;
+        for (int start : bounds) {
+            BitSet targetStates = new BitSet();
+            for (int i = states.nextSetBit(0); i >= 0; i = states.nextSetBit(i + 1)) {
+                NfaState state = mNfaStates.get(i);
+                if (state.mNext >= 0 && mNfaStates.get(state.mNext).mLive && contains(state.mRanges, (char) start)) {
+                    targetStates.set(state.mNext);
+                }
+            }
+            int target = targetStates.isEmpty() ? 0 : dfaState(targetStates);
+            if (count == 0 || targets[count - 1] != target) {
+                starts[count] = start;
+                targets[count++] = target;
+            }
+        }
+        dfaState.mStarts = Arrays.copyOf(starts, count);
+        dfaState.mTargets = Arrays.copyOf(targets, count);
+        dfaState.mMinLiveChar = -1;
+        dfaState.mMaxLiveChar = -1;
+        for (int i = 0; i < count; ++i) {
+            if (targets[i] != 0) {
+                if (dfaState.mMinLiveChar < 0) {
+                    dfaState.mMinLiveChar = starts[i];
+                }
+                dfaState.mMaxLiveChar = i + 1 < count ? starts[i + 1] - 1 : Character.MAX_VALUE;
+            }
+        }
+        return dfaState;
+    }
+
+    private static boolean contains(char[] ranges, char c) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (c >= ranges[i] && c <= ranges[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long start() {
+        return mStartState;
+    }
+
+    public long step(long state, char c) {
+        if (state == 0) {
+            return 0;
+        }
+        DfaState dfaState = transitions(state);
+        int index = Arrays.binarySearch(dfaState.mStarts, c);
+        return dfaState.mTargets[index >= 0 ? index : -index - 2];
+    }
+
+    public boolean isMatch(long state) {
+        return mDfaStates.get((int) state).mAccepting;
+    }
+
+    public boolean canMatchBelow(long state, char c) {
+        return state != 0 && transitions(state).mMinLiveChar >= 0 && transitions(state).mMinLiveChar < c;
+    }
+
+    public boolean canMatchAbove(long state, char c) {
+        return state != 0 && transitions(state).mMaxLiveChar > c;
+    }
+
+    public int forcedChar(long state) {
+        if (state == 0 || isMatch(state)) {
+            return -1;
+        }
+        DfaState dfaState = transitions(state);
+        return dfaState.mMinLiveChar >= 0 && dfaState.mMinLiveChar == dfaState.mMaxLiveChar ? dfaState.mMinLiveChar
+                : -1;
+    }
+
+    /**
+     * A node of the syntax tree: a set of characters, a sequence, an alternation or a repetition.
+     */
+    private static final class Node {
+        static final int CHARACTERS = 0;
+        static final int SEQUENCE = 1;
+        static final int ALTERNATION = 2;
+        static final int REPETITION = 3;
+
+        private final int mType;
+        private final char[] mRanges;
+        private final List<Node> mChildren;
+        private final int mMin;
+        private final int mMax;                             // -1 for an unbounded repetition
+
+        public Node(char[] ranges) {
+            this(CHARACTERS, ranges, Collections.<Node>emptyList(), 0, 0);
+        }
+
+        public Node(int type, List<Node> children) {
+            this(type, null, children, 0, 0);
+        }
+
+        public Node(Node child, int min, int max) {
+            this(REPETITION, null, Collections.singletonList(child), min, max);
+        }
+
+        private Node(int type, char[] ranges, List<Node> children, int min, int max) {
+            mType = type;
+            mRanges = ranges;
+            mChildren = children;
+            mMin = min;
+            mMax = max;
+        }
+    }
+
+    private static final class NfaState {
+        private char[] mRanges;                             // characters leading to mNext
+        private int mNext = -1;
+        private int[] mEpsilons = new int[2];
+        private int mEpsilonCount;
+        private boolean mLive;
+
+        private void addEpsilon(int target) {
+            if (mEpsilonCount == mEpsilons.length) {
+                mEpsilons = Arrays.copyOf(mEpsilons, mEpsilonCount * 2);
+            }
+            mEpsilons[mEpsilonCount++] = target;
+        }
+    }
+
+    private static final class DfaState {
+        private final BitSet mStates;
+        private final boolean mAccepting;
+        private int[] mStarts;                              // first character of each interval, null if not computed
+        private int[] mTargets;                             // target state of each interval
+        private int mMinLiveChar;                           // smallest character not leading to the dead state or -1
+        private int mMaxLiveChar;
+
+        public DfaState(BitSet states, boolean accepting) {
+            mStates = states;
+            mAccepting = accepting;
+        }
+    }
+}
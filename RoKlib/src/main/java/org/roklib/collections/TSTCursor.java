@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+/**
+ * A cursor for iterating over the entries of a ternary search tree map in key order without creating an object for
+ * each visited entry. In contrast to an {@link java.util.Iterator}, the cursor does not return the current entry, but
+ * moves to the next entry with {@link #advance()}. Afterwards, the key and the value of the entry can be queried.
+ * <BR>
+ * <BR>
+ * The key is provided by {@link #keyView()} as a character sequence which is backed by the cursor's internal buffer. It
+ * is only valid until the next call of {@link #advance()}; if the key has to be kept, {@link #key()} creates a copy
+ * of it. A cursor is fail-fast: if the map is structurally modified after the cursor has been created,
+ * {@link #advance()} throws a {@link java.util.ConcurrentModificationException}.<BR>
+ * <BR>
+ * Typical usage:
+ *
+ * <pre>
+ * TSTCursor&lt;V&gt; cursor = map.cursor();
+ * while (cursor.advance()) {
+ *     process(cursor.keyView(), cursor.value());
+ * }
+ * </pre>
+ *
+ * @author Roland Krueger
+ * @see TernarySearchTreeMap#cursor()
+ */
+public interface TSTCursor<V> {
+    /**
+     * Moves the cursor to the next entry.
+     *
+     * @return <code>true</code> if the cursor has been moved to the next entry, <code>false</code> if there are no
+     * more entries.
+     */
+    public abstract boolean advance();
+
+    /**
+     * Returns the key of the current entry as a view on the cursor's internal buffer. The contents of the view change
+     * with the next call of {@link #advance()}.
+     *
+     * @throws java.util.NoSuchElementException if the cursor is not positioned on an entry
+     */
+    public abstract CharSequence keyView();
+
+    /**
+     * Returns a copy of the key of the current entry.
+     *
+     * @throws java.util.NoSuchElementException if the cursor is not positioned on an entry
+     */
+    public abstract String key();
+
+    /**
+     * Returns the value of the current entry.
+     *
+     * @throws java.util.NoSuchElementException if the cursor is not positioned on an entry
+     */
+    public abstract V value();
+}
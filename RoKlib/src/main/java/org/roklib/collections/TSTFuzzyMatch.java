@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.util.AbstractMap;
+
+/**
+ * A key/value pair found by a fuzzy search on a ternary search tree map, together with the edit distance between the
+ * key and the search pattern. The entry is a snapshot of the mapping; it does not write through to the map.
+ *
+ * @author Roland Krueger
+ * @see TernarySearchTreeMap#fuzzyMatch(CharSequence, int, boolean, boolean)
+ */
+public class TSTFuzzyMatch<V> extends AbstractMap.SimpleImmutableEntry<CharSequence, V> {
+    private static final long serialVersionUID = 2368193057236475903L;
+
+    private final int mDistance;
+
+    public TSTFuzzyMatch(CharSequence key, V value, int distance) {
+        super(key, value);
+        mDistance = distance;
+    }
+
+    /**
+     * Returns the edit distance between this entry's key and the search pattern.
+     */
+    public int getDistance() {
+        return mDistance;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts the values of a ternary search tree map into a binary representation and back. A codec is used to store a
+ * map in a file which can be read with {@link MappedTernarySearchTree}. The codec has to be able to decode a value from
+ * exactly the bytes it has written when encoding the value.<BR>
+ * <BR>
+ * Codecs for {@link String}, {@link Integer} and {@link Long} values are provided as constants of this interface.
+ *
+ * @author Roland Krueger
+ */
+public interface TSTValueCodec<V> {
+    /**
+     * Encodes strings in UTF-8.
+     */
+    public static final TSTValueCodec<String> STRING = new TSTValueCodec<String>() {
+        public void encode(String value, DataOutput out) throws IOException {
+            out.write(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public String decode(ByteBuffer bytes) {
+            if (bytes.hasArray()) {
+                return new String(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining(),
+                        StandardCharsets.UTF_8);
+            }
+            byte[] data = new byte[bytes.remaining()];
+            bytes.get(data);
+            return new String(data, StandardCharsets.UTF_8);
+        }
+    };
+
+    public static final TSTValueCodec<Integer> INTEGER = new TSTValueCodec<Integer>() {
+        public void encode(Integer value, DataOutput out) throws IOException {
+            out.writeInt(value);
+        }
+
+        public Integer decode(ByteBuffer bytes) {
+            return bytes.getInt(bytes.position());
+        }
+    };
+
+    public static final TSTValueCodec<Long> LONG = new TSTValueCodec<Long>() {
+        public void encode(Long value, DataOutput out) throws IOException {
+            out.writeLong(value);
+        }
+
+        public Long decode(ByteBuffer bytes) {
+            return bytes.getLong(bytes.position());
+        }
+    };
+
+    /**
+     * Writes the binary representation of the given value.
+     *
+     * @param value the value to be encoded, never <code>null</code>
+     * @param out   the output to which the value is written
+     */
+    public abstract void encode(V value, DataOutput out) throws IOException;
+
+    /**
+     * Reads a value from the given buffer. The buffer's remaining bytes are exactly the bytes written by
+     * {@link #encode(Object, DataOutput)}. The codec may change the buffer's position but must not keep a reference to
+     * the buffer.
+     */
+    public abstract V decode(ByteBuffer bytes);
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A ternary search tree map with primitive <code>int</code> values. The values are stored in a <code>int[]</code>
+ * array alongside the nodes, so that {@link #getInt(CharSequence)}, {@link #put(CharSequence, int)},
+ * {@link #addTo(CharSequence, int)} and {@link #increment(CharSequence)} do not create any objects. This makes the
+ * map well suited for counting words or for mapping strings to numeric IDs. The tree itself is stored in parallel
+ * arrays like in {@link CompactTernarySearchTreeMap} and supports the same prefix, rank and positional queries and
+ * {@link #matchAlmost(CharSequence, int, int)}.<BR>
+ * <BR>
+ * The primitive accessors return a configurable <i>no-entry value</i> for keys which are not contained in the map,
+ * since every int value can be stored. {@link #containsKey(Object)} tells whether a key is contained. The map also
+ * implements the {@link java.util.SortedMap} interface with boxed values, where an absent key results in
+ * <code>null</code> as usual. Like {@link TernarySearchTreeMap}, this map does not allow <code>null</code> keys. It
+ * is not thread-safe.
+ *
+ * @author Roland Krueger
+ */
+public class TernarySearchTreeIntMap extends AbstractPrimitiveTernarySearchTreeMap<Integer> {
+    private static final long serialVersionUID = 3904611768425330191L;
+
+    private final int mNoEntryValue;
+    private int[] mValues;
+
+    public TernarySearchTreeIntMap() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty map which returns the given value from the primitive accessors for absent keys.
+     */
+    public TernarySearchTreeIntMap(int noEntryValue) {
+        super(DEFAULT_CAPACITY);
+        mNoEntryValue = noEntryValue;
+        mValues = new int[slotCapacity()];
+    }
+
+    public TernarySearchTreeIntMap(Map<? extends CharSequence, ? extends Integer> map) {
+        this();
+        putAll(map);
+    }
+
+    @Override
+    protected void setValueCapacity(int capacity) {
+        mValues = Arrays.copyOf(mValues, capacity);
+    }
+
+    @Override
+    protected Integer boxedValue(int slot) {
+        return mValues[slot];
+    }
+
+    /**
+     * Returns the value which the primitive accessors return for absent keys.
+     */
+    public int getNoEntryValue() {
+        return mNoEntryValue;
+    }
+
+    /**
+     * Returns the value of the given key or the no-entry value if the key is not contained in this map.
+     */
+    public int getInt(CharSequence key) {
+        int slot = findSlot(key);
+        return slot == NO_SLOT ? mNoEntryValue : mValues[slot];
+    }
+
+    /**
+     * Maps the given key to the given value.
+     *
+     * @return the previous value of the key or the no-entry value if the key has not been contained in this map
+     */
+    public int put(CharSequence key, int value) {
+        int slot = addSlot(key);
+        if (slot < 0) {
+            mValues[~slot] = value;
+            return mNoEntryValue;
+        }
+        int oldValue = mValues[slot];
+        mValues[slot] = value;
+        return oldValue;
+    }
+
+    @Override
+    public Integer put(CharSequence key, Integer value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        int slot = addSlot(key);
+        if (slot < 0) {
+            mValues[~slot] = value;
+            return null;
+        }
+        int oldValue = mValues[slot];
+        mValues[slot] = value;
+        return oldValue;
+    }
+
+    /**
+     * Adds the given amount to the value of the given key. A key which is not contained in this map is added with the
+     * given amount as its value, i.e. absent keys count as zero regardless of the no-entry value.
+     *
+     * @return the new value of the key
+     */
+    public int addTo(CharSequence key, int amount) {
+        int slot = addSlot(key);
+        if (slot < 0) {
+            mValues[~slot] = amount;
+            return amount;
+        }
+        return mValues[slot] += amount;
+    }
+
+    /**
+     * Increments the value of the given key by one. See {@link #addTo(CharSequence, int)}.
+     *
+     * @return the new value of the key
+     */
+    public int increment(CharSequence key) {
+        return addTo(key, 1);
+    }
+
+    /**
+     * Removes the given key from this map.
+     *
+     * @return the value of the removed key or the no-entry value if the key has not been contained in this map
+     */
+    public int removeInt(CharSequence key) {
+        int slot = removeSlot(key);
+        return slot == NO_SLOT ? mNoEntryValue : mValues[slot];
+    }
+
+    @Override
+    public Integer remove(Object key) {
+        int slot = removeSlot(toKey(key));
+        return slot == NO_SLOT ? null : mValues[slot];
+    }
+}
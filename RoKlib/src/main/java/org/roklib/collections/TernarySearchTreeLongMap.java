@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A ternary search tree map with primitive <code>long</code> values. The values are stored in a <code>long[]</code>
+ * array alongside the nodes, so that {@link #getLong(CharSequence)}, {@link #put(CharSequence, long)},
+ * {@link #addTo(CharSequence, long)} and {@link #increment(CharSequence)} do not create any objects. This makes the
+ * map well suited for counting words or for mapping strings to numeric IDs. The tree itself is stored in parallel
+ * arrays like in {@link CompactTernarySearchTreeMap} and supports the same prefix, rank and positional queries and
+ * {@link #matchAlmost(CharSequence, int, int)}.<BR>
+ * <BR>
+ * The primitive accessors return a configurable <i>no-entry value</i> for keys which are not contained in the map,
+ * since every long value can be stored. {@link #containsKey(Object)} tells whether a key is contained. The map also
+ * implements the {@link java.util.SortedMap} interface with boxed values, where an absent key results in
+ * <code>null</code> as usual. Like {@link TernarySearchTreeMap}, this map does not allow <code>null</code> keys. It
+ * is not thread-safe.
+ *
+ * @author Roland Krueger
+ */
+public class TernarySearchTreeLongMap extends AbstractPrimitiveTernarySearchTreeMap<Long> {
+    private static final long serialVersionUID = -7140885026377541962L;
+
+    private final long mNoEntryValue;
+    private long[] mValues;
+
+    public TernarySearchTreeLongMap() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty map which returns the given value from the primitive accessors for absent keys.
+     */
+    public TernarySearchTreeLongMap(long noEntryValue) {
+        super(DEFAULT_CAPACITY);
+        mNoEntryValue = noEntryValue;
+        mValues = new long[slotCapacity()];
+    }
+
+    public TernarySearchTreeLongMap(Map<? extends CharSequence, ? extends Long> map) {
+        this();
+        putAll(map);
+    }
+
+    @Override
+    protected void setValueCapacity(int capacity) {
+        mValues = Arrays.copyOf(mValues, capacity);
+    }
+
+    @Override
+    protected Long boxedValue(int slot) {
+        return mValues[slot];
+    }
+
+    /**
+     * Returns the value which the primitive accessors return for absent keys.
+     */
+    public long getNoEntryValue() {
+        return mNoEntryValue;
+    }
+
+    /**
+     * Returns the value of the given key or the no-entry value if the key is not contained in this map.
+     */
+    public long getLong(CharSequence key) {
+        int slot = findSlot(key);
+        return slot == NO_SLOT ? mNoEntryValue : mValues[slot];
+    }
+
+    /**
+     * Maps the given key to the given value.
+     *
+     * @return the previous value of the key or the no-entry value if the key has not been contained in this map
+     */
+    public long put(CharSequence key, long value) {
+        int slot = addSlot(key);
+        if (slot < 0) {
+            mValues[~slot] = value;
+            return mNoEntryValue;
+        }
+        long oldValue = mValues[slot];
+        mValues[slot] = value;
+        return oldValue;
+    }
+
+    @Override
+    public Long put(CharSequence key, Long value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        int slot = addSlot(key);
+        if (slot < 0) {
+            mValues[~slot] = value;
+            return null;
+        }
+        long oldValue = mValues[slot];
+        mValues[slot] = value;
+        return oldValue;
+    }
+
+    /**
+     * Adds the given amount to the value of the given key. A key which is not contained in this map is added with the
+     * given amount as its value, i.e. absent keys count as zero regardless of the no-entry value.
+     *
+     * @return the new value of the key
+     */
+    public long addTo(CharSequence key, long amount) {
+        int slot = addSlot(key);
+        if (slot < 0) {
+            mValues[~slot] = amount;
+            return amount;
+        }
+        return mValues[slot] += amount;
+    }
+
+    /**
+     * Increments the value of the given key by one. See {@link #addTo(CharSequence, long)}.
+     *
+     * @return the new value of the key
+     */
+    public long increment(CharSequence key) {
+        return addTo(key, 1);
+    }
+
+    /**
+     * Removes the given key from this map.
+     *
+     * @return the value of the removed key or the no-entry value if the key has not been contained in this map
+     */
+    public long removeLong(CharSequence key) {
+        int slot = removeSlot(key);
+        return slot == NO_SLOT ? mNoEntryValue : mValues[slot];
+    }
+
+    @Override
+    public Long remove(Object key) {
+        int slot = removeSlot(toKey(key));
+        return slot == NO_SLOT ? null : mValues[slot];
+    }
+}
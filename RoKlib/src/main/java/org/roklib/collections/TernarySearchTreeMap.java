@@ -23,8 +23,15 @@ package org.roklib.collections;
 
 import org.roklib.util.helper.CheckForNull;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /*
  * TODO: 
@@ -64,17 +71,24 @@ import java.util.*;
  */
 public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implements Serializable,
         TernarySearchTreeMapInterface<V> {
-    private static final long serialVersionUID = 8532235443989332299L;
+    private static final long serialVersionUID = -4032498707436298614L;
 
     private enum NodeType implements Serializable {
         NONE, LOKID, EQKID, HIKID
     }
 
-    private TSTNode<V> mRootNode;
-    private TreeSet<CharSequence> mMatchingKeys;                  // needed for method
-    // matchAlmost()
-    private int mLengthTolerance;               // needed as a global variable for
-    // matchAlmost()
+    // elements returned by a TSTSpliterator
+    private enum ElementType {
+        KEYS, VALUES, ENTRIES
+    }
+
+    // flags describing a node in the serialized form
+    private static final int HAS_LOKID = 1;
+    private static final int HAS_EQKID = 2;
+    private static final int HAS_HIKID = 4;
+    private static final int HAS_DATA = 8;
+
+    private transient TSTNode<V> mRootNode;                 // written by writeObject()
     private boolean mContainsEmptyStringKey = false;
     private V mEmptyStringKeyValue = null;
     private final Comparator<? super CharSequence> mComparator = null;
@@ -82,6 +96,12 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
     // statistical data
     private int mNodeCount;
 
+    private transient int mModCount;                        // number of write operations, used to detect
+    // modifications by the functions passed to compute() and merge()
+    private transient TSTNode<V>[] mPath;                   // nodes visited by the current write operation,
+    // cleared when the operation finishes
+    private transient int mPathLength;
+
     /**
      * Private default constructor.
      */
@@ -89,8 +109,21 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
         mRootNode = new TSTNode<V>();
     }
 
+    /**
+     * Creates a map with the mappings of the given sorted map. The search tree is built in a single pass over the
+     * sorted keys and is optimally balanced (see {@link #fromSortedEntries(Iterator)}). If the given map is not sorted
+     * by the natural ordering of its keys, the keys are sorted first.
+     */
     public TernarySearchTreeMap(SortedMap<? extends CharSequence, V> map) {
-        this((Map<? extends CharSequence, V>) map);
+        this();
+        SortedInput input = new SortedInput(map.size());
+        for (Entry<? extends CharSequence, V> entry : map.entrySet()) {
+            input.add(entry.getKey(), entry.getValue());
+        }
+        if (!input.isStrictlyAscending()) {
+            input.sort();
+        }
+        build(input);
     }
 
     public TernarySearchTreeMap(Map<? extends CharSequence, V> map) {
@@ -98,11 +131,56 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
         putAll(map);
     }
 
+    /**
+     * Creates a map from entries which are supplied in strictly ascending order of their keys, such as the entries of a
+     * {@link SortedMap} or of a sorted stream. Inserting sorted keys one by one with {@link #put(CharSequence, Object)}
+     * results in degenerate lo/hi chains. This method builds the search tree directly instead: on each character level,
+     * the character of the median key becomes the root node of the lo/hi subtree. The subtree sizes needed for the
+     * positional access are set in the same pass. The tree is thus built in time proportional to the total length of
+     * the keys.
+     *
+     * @param sortedEntries the entries of the new map in strictly ascending order of their keys
+     * @throws IllegalArgumentException if the keys are not in strictly ascending order
+     * @throws NullPointerException     if one of the keys or values is <code>null</code>
+     */
+    public static <V> TernarySearchTreeMap<V> fromSortedEntries(
+            Iterator<? extends Entry<? extends CharSequence, ? extends V>> sortedEntries) {
+        SortedInput input = new SortedInput(16);
+        while (sortedEntries.hasNext()) {
+            Entry<? extends CharSequence, ? extends V> entry = sortedEntries.next();
+            input.add(entry.getKey(), entry.getValue());
+        }
+        if (!input.isStrictlyAscending()) {
+            throw new IllegalArgumentException("keys are not in strictly ascending order");
+        }
+        TernarySearchTreeMap<V> result = new TernarySearchTreeMap<V>();
+        result.build(input);
+        return result;
+    }
+
+    /**
+     * Creates a map which maps each of the given keys to the same value. The search tree is built like in
+     * {@link #fromSortedEntries(Iterator)}. The keys are sorted first if necessary.
+     */
+    static <V> TernarySearchTreeMap<V> fromKeys(Collection<? extends CharSequence> keys, V value) {
+        SortedInput input = new SortedInput(keys.size());
+        for (CharSequence key : keys) {
+            input.add(key, value);
+        }
+        if (!input.isStrictlyAscending()) {
+            input.sort();
+        }
+        TernarySearchTreeMap<V> result = new TernarySearchTreeMap<V>();
+        result.build(input);
+        return result;
+    }
+
     public String getMapStructureAsString() {
         return mRootNode.toString();
     }
 
     public void clear() {
+        mModCount++;
         mRootNode = new TSTNode<V>();
         mContainsEmptyStringKey = false;
         mEmptyStringKeyValue = null;
@@ -155,83 +233,223 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
     }
 
     public V remove(Object key) {
-        if (key == null) {
-            throw new NullPointerException("key is null");
+        CharSequence keyChars = checkKey(key);
+        mModCount++;
+        int keyLength = keyChars.length();
+        if (keyLength == 0) {
+            V oldValue = mEmptyStringKeyValue;
+            mContainsEmptyStringKey = false;
+            mEmptyStringKeyValue = null;
+            return oldValue;
         }
-        try {
-            String keyString = key.toString();
-            V oldValue;
-            if (keyString.equals("") && mContainsEmptyStringKey) {
-                mContainsEmptyStringKey = false;
-                oldValue = mEmptyStringKeyValue;
-                mEmptyStringKeyValue = null;
-                return oldValue;
-            }
-            Stack<TSTStackNode<V>> stack = new Stack<TSTStackNode<V>>();
-            TSTNode<V> currentNode = mRootNode;
-            TSTStackNode<V> currentStackNode;
-            int charIndex = 0;
-            int keyStringLength = keyString.length();
-
-            while (true) {
-                if (currentNode == null) {
-                    return null; // return null if key is not stored in map
-                } else {
-                    currentStackNode = new TSTStackNode<V>(currentNode);
-                }
-                stack.push(currentStackNode);
-                char splitChar = currentNode.mSplitChar;
-                char keyChar = keyString.charAt(charIndex);
-
-                if (keyChar == splitChar) {
-                    charIndex++;
-                    if ((charIndex == keyStringLength) && (currentNode.mData != null)) {
-                        // we've reached the node that stores a value
-                        oldValue = currentNode.mData;
-                        currentNode.mData = null;
-                        while ((currentNode.mLokid == null) && (currentNode.mEqkid == null) && (currentNode.mHikid == null)) {
-                            // delete current node as long as it has no children
-                            if ((stack.size() == 0) && (mRootNode.mData != null)) {
-                                // We've reached the root node. The map contains has only
-                                // one element left residing in the root.
-                                return oldValue;
-                            } else if (stack.size() == 0) {
-                                mRootNode.mSplitChar = '\0';
-                                return oldValue;
-                            }
-                            currentNode = stack.pop().mNode; // get parent node
-                            currentNode.mSubarrayLength--; // decrease the size of the node's subarray.
-                            charIndex--; // take previous character for comparison
-
-                            // we've completely erased all of key's characters from the tree.
-                            // and delete the correct child node
-                            if (charIndex < 0)
-                                break;
-                            if (currentNode.mEqkid != null && currentNode.mEqkid.mSubarrayLength == 0)
-                                currentNode.mEqkid = null;
-                            else if (currentNode.mHikid != null && currentNode.mHikid.mSubarrayLength == 0)
-                                currentNode.mHikid = null;
-                        }
-                        while (stack.size() > 0) {
-                            currentNode = stack.pop().mNode;
-                            currentNode.mSubarrayLength--; // decrease the size of the node's
-                            // subarray.
-                        }
-                        return oldValue;
-                    } else {
-                        currentNode = currentNode.mEqkid;
-                    }
-                } else if (keyChar < splitChar) {
-                    currentNode = currentNode.mLokid;
-                } else {
-                    currentNode = currentNode.mHikid;
+        clearPath();
+        TSTNode<V> node = mRootNode;
+        int charIndex = 0;
+        char keyChar = keyChars.charAt(0);
+        while (true) {
+            if (node == null) {
+                clearPath();
+                return null; // the key is not stored in the map
+            }
+            if (mPath == null || mPathLength == mPath.length) {
+                growPath();
+            }
+            mPath[mPathLength++] = node;
+            char splitChar = node.mSplitChar;
+            if (keyChar == splitChar) {
+                if (++charIndex == keyLength) {
+                    break;
                 }
+                keyChar = keyChars.charAt(charIndex);
+                node = node.mEqkid;
+            } else if (keyChar < splitChar) {
+                node = node.mLokid;
+            } else {
+                node = node.mHikid;
             }
-        } finally {
-            if (isEmpty()) {
+        }
+        V oldValue = node.mData;
+        if (oldValue == null) {
+            clearPath();
+            return null; // the key is only a prefix of other keys in the map
+        }
+        node.mData = null;
+
+        // decrease the subarray lengths on the path and unlink the topmost node whose subtree has become empty
+        int firstEmptyNode = -1;
+        for (int i = 0; i < mPathLength; ++i) {
+            if (--mPath[i].mSubarrayLength == 0 && firstEmptyNode < 0) {
+                firstEmptyNode = i;
+            }
+        }
+        if (firstEmptyNode == 0) {
+            mRootNode = new TSTNode<V>();
+        } else if (firstEmptyNode > 0) {
+            unlinkChild(mPath[firstEmptyNode - 1], mPath[firstEmptyNode]);
+        }
+        clearPath();
+        return oldValue;
+    }
+
+    /**
+     * Removes all keys which start with the given prefix, including the prefix itself. Instead of removing the keys
+     * one by one, the subtree below the node of the prefix is detached as a whole, and the subarray lengths on the path
+     * to this node are adjusted once. This takes time proportional to the length of the path, regardless of the number
+     * of removed keys. The empty prefix clears the map.
+     *
+     * @return the number of removed keys
+     */
+    public int removePrefix(CharSequence prefix) {
+        if (prefix == null) {
+            throw new NullPointerException("prefix is null");
+        }
+        int prefixLength = prefix.length();
+        if (prefixLength == 0) {
+            int removed = size();
+            if (removed > 0) {
                 clear();
             }
+            return removed;
         }
+        clearPath();
+        TSTNode<V> node = mRootNode;
+        int charIndex = 0;
+        char prefixChar = prefix.charAt(0);
+        while (true) {
+            if (node == null) {
+                clearPath();
+                return 0;
+            }
+            if (mPath == null || mPathLength == mPath.length) {
+                growPath();
+            }
+            mPath[mPathLength++] = node;
+            char splitChar = node.mSplitChar;
+            if (prefixChar == splitChar) {
+                if (++charIndex == prefixLength) {
+                    break;
+                }
+                prefixChar = prefix.charAt(charIndex);
+                node = node.mEqkid;
+            } else if (prefixChar < splitChar) {
+                node = node.mLokid;
+            } else {
+                node = node.mHikid;
+            }
+        }
+        int removed = subarrayLength(node.mEqkid) + (node.mData == null ? 0 : 1);
+        if (removed == 0) {
+            clearPath();
+            return 0;
+        }
+        mModCount++;
+        node.mData = null;
+        node.mEqkid = null;
+
+        // decrease the subarray lengths on the path and unlink the topmost node whose subtree has become empty
+        int firstEmptyNode = -1;
+        for (int i = 0; i < mPathLength; ++i) {
+            mPath[i].mSubarrayLength -= removed;
+            if (mPath[i].mSubarrayLength == 0 && firstEmptyNode < 0) {
+                firstEmptyNode = i;
+            }
+        }
+        if (firstEmptyNode == 0) {
+            mRootNode = new TSTNode<V>();
+        } else if (firstEmptyNode > 0) {
+            unlinkChild(mPath[firstEmptyNode - 1], mPath[firstEmptyNode]);
+        }
+        clearPath();
+        return removed;
+    }
+
+    /**
+     * Removes all keys from <code>fromKey</code>, inclusive, to <code>toKey</code>, exclusive, i.e. the keys of
+     * {@link #subMap(CharSequence, CharSequence)}. Only the nodes on the search paths of the two bounds are visited:
+     * every subtree which lies between these paths is detached as a whole, and the subarray lengths of the visited
+     * nodes are adjusted once. This takes time proportional to the length of the two paths, regardless of the number
+     * of removed keys.
+     *
+     * @return the number of removed keys
+     * @throws IllegalArgumentException if <code>fromKey</code> is greater than <code>toKey</code>
+     */
+    public int removeRange(CharSequence fromKey, CharSequence toKey) {
+        if (fromKey == null || toKey == null) {
+            throw new NullPointerException("One of the range endpoints is null.");
+        }
+        if (compareCharSequences(fromKey, toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        int removed = 0;
+        if (mContainsEmptyStringKey && fromKey.length() == 0 && toKey.length() > 0) {
+            mContainsEmptyStringKey = false;
+            mEmptyStringKeyValue = null;
+            removed++;
+        }
+        if (mRootNode.mSubarrayLength > 0) {
+            removed += removeRange(mRootNode, 0, fromKey, toKey);
+            if (mRootNode.mSubarrayLength == 0) {
+                mRootNode = new TSTNode<V>();
+            }
+        }
+        if (removed > 0) {
+            mModCount++;
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the keys in the subtree of the given node which lie in the range of {@link #removeRange(CharSequence,
+     * CharSequence)} and returns their number. All keys of the subtree share their first <code>depth</code>
+     * characters. A bound is only passed on to a child as long as the keys of the child's subtree can lie on both
+     * sides of it; otherwise it is <code>null</code>, since it holds for every key of the subtree. Children whose
+     * subtrees become empty are unlinked, the caller unlinks the given node if its subtree has become empty.
+     */
+    private int removeRange(TSTNode<V> node, int depth, CharSequence fromKey, CharSequence toKey) {
+        if (fromKey != null && depth == fromKey.length()) {
+            fromKey = null; // all keys of the subtree are longer than fromKey
+        }
+        if (toKey != null && depth == toKey.length()) {
+            return 0; // all keys of the subtree start with toKey
+        }
+        if (fromKey == null && toKey == null) {
+            int removed = node.mSubarrayLength;
+            node.mSubarrayLength = 0;
+            return removed;
+        }
+        char splitChar = node.mSplitChar;
+        int fromChar = fromKey == null ? -1 : fromKey.charAt(depth);
+        int toChar = toKey == null ? Character.MAX_VALUE + 1 : toKey.charAt(depth);
+        int removed = 0;
+        if (node.mLokid != null && splitChar > fromChar) {
+            removed += removeRange(node.mLokid, depth, fromKey, splitChar <= toChar ? null : toKey);
+            if (node.mLokid.mSubarrayLength == 0) {
+                node.mLokid = null;
+            }
+        }
+        if (splitChar >= fromChar && splitChar <= toChar) {
+            CharSequence eqFromKey = splitChar == fromChar ? fromKey : null;
+            CharSequence eqToKey = splitChar == toChar ? toKey : null;
+            if (node.mData != null && (eqFromKey == null || depth + 1 == fromKey.length())
+                    && (eqToKey == null || depth + 1 < toKey.length())) {
+                node.mData = null;
+                removed++;
+            }
+            if (node.mEqkid != null) {
+                removed += removeRange(node.mEqkid, depth + 1, eqFromKey, eqToKey);
+                if (node.mEqkid.mSubarrayLength == 0) {
+                    node.mEqkid = null;
+                }
+            }
+        }
+        if (node.mHikid != null && splitChar < toChar) {
+            removed += removeRange(node.mHikid, depth, splitChar >= fromChar ? null : fromKey, toKey);
+            if (node.mHikid.mSubarrayLength == 0) {
+                node.mHikid = null;
+            }
+        }
+        node.mSubarrayLength -= removed;
+        return removed;
     }
 
     public Collection<V> values() {
@@ -276,22 +494,21 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
      * @see org.roklib.util.TernarySearchTreeMapInterface#matchAlmost(java.lang.CharSequence, int, int)
      */
     public SortedSet<CharSequence> matchAlmost(CharSequence key, int distance, int lengthTolerance) {
-        mMatchingKeys = new TreeSet<CharSequence>();
-        this.mLengthTolerance = lengthTolerance;
-        matchAlmost(key.toString(), 0, mRootNode, distance, new StringBuilder(), key.toString().length());
-        TreeSet<CharSequence> result = mMatchingKeys;
-        mMatchingKeys = null;
+        TreeSet<CharSequence> result = new TreeSet<CharSequence>();
+        matchAlmost(key.toString(), 0, mRootNode, distance, new StringBuilder(), key.toString().length(),
+                lengthTolerance, result);
         return result;
     }
 
-    private void matchAlmost(String key, int i, TSTNode<V> currentNode, int distance, StringBuilder prefix, int keyLength) {
+    private void matchAlmost(String key, int i, TSTNode<V> currentNode, int distance, StringBuilder prefix, int keyLength,
+                             int lengthTolerance, Set<CharSequence> matchingKeys) {
         int nextDist;
         prefix.setLength(i);
-        if ((currentNode == null) || (distance < 0) || (i >= keyLength + mLengthTolerance)) {
+        if ((currentNode == null) || (distance < 0) || (i >= keyLength + lengthTolerance)) {
             return;
         }
 
-        matchAlmost(key, i, currentNode.mLokid, distance, prefix, keyLength);
+        matchAlmost(key, i, currentNode.mLokid, distance, prefix, keyLength, lengthTolerance, matchingKeys);
 
         if (i < keyLength)
             nextDist = (key.charAt(i) == currentNode.mSplitChar) ? distance : distance - 1;
@@ -301,19 +518,105 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
             return;
         prefix.append(currentNode.mSplitChar);
 
-        if ((Math.abs(keyLength - i - 1) <= mLengthTolerance) && (nextDist >= 0) && (currentNode.mData != null)) {
-            mMatchingKeys.add(prefix.toString());
+        if ((Math.abs(keyLength - i - 1) <= lengthTolerance) && (nextDist >= 0) && (currentNode.mData != null)) {
+            matchingKeys.add(prefix.toString());
         }
 
-        matchAlmost(key, i + 1, currentNode.mEqkid, nextDist, prefix, keyLength);
-        matchAlmost(key, i, currentNode.mHikid, distance, prefix, keyLength);
+        matchAlmost(key, i + 1, currentNode.mEqkid, nextDist, prefix, keyLength, lengthTolerance, matchingKeys);
+        matchAlmost(key, i, currentNode.mHikid, distance, prefix, keyLength, lengthTolerance, matchingKeys);
+    }
+
+    /**
+     * Returns all entries whose keys are within the given Levenshtein distance of the given key, sorted by key. See
+     * {@link #fuzzyMatch(CharSequence, int, boolean, boolean)}.
+     */
+    public Iterable<TSTFuzzyMatch<V>> fuzzyMatch(CharSequence key, int maxDistance) {
+        return fuzzyMatch(key, maxDistance, false, false);
     }
 
+    /**
+     * Returns all entries whose keys are within the given edit distance of the given key. In contrast to
+     * {@link #matchAlmost(CharSequence, int, int)}, insertions and deletions count as a single edit, so no length
+     * tolerance is needed.<BR>
+     * <BR>
+     * The search drives a {@link LevenshteinAutomaton} over the tree: each node's automaton state is computed from the
+     * state of its parent, and a subtree is skipped as soon as no key in it can be within the maximum distance any more.
+     * The entries are found lazily while iterating, and each iterator keeps its own search state, so several searches
+     * may run on the same map at the same time. The map must not be modified while a search is iterated.
+     *
+     * @param key            the search pattern
+     * @param maxDistance    the maximum edit distance of the returned keys
+     * @param transpositions if true, swapping two adjacent characters counts as a single edit (Damerau distance),
+     *                       otherwise as two edits (Levenshtein distance)
+     * @param sortByDistance if true, the entries are returned in ascending order of their distance and entries with
+     *                       the same distance in ascending order of their keys. Otherwise they are sorted by key.
+     * @throws IllegalArgumentException if <code>maxDistance</code> is negative
+     */
+    public Iterable<TSTFuzzyMatch<V>> fuzzyMatch(final CharSequence key, int maxDistance, boolean transpositions,
+                                                 final boolean sortByDistance) {
+        final LevenshteinAutomaton automaton = new LevenshteinAutomaton(key, maxDistance, transpositions);
+        return new Iterable<TSTFuzzyMatch<V>>() {
+            public Iterator<TSTFuzzyMatch<V>> iterator() {
+                return new FuzzyMatchIterator(automaton, sortByDistance);
+            }
+        };
+    }
+
+    /**
+     * Returns all entries whose keys match the given wildcard pattern, sorted by key. A <code>?</code> matches any
+     * single character, a <code>*</code> any sequence of characters and <code>[...]</code> one character of a
+     * character class; see {@link WildcardPattern} for the complete syntax. For example, <code>c?t</code> matches
+     * "cat" and "cut", and <code>pre*fix</code> matches "prefix" and "prepostfix".<BR>
+     * <BR>
+     * The search follows a single path for each literal character of the pattern and only branches into the lo and hi
+     * subtrees where a wildcard or character class may match a different character, so subtrees which cannot contain
+     * a match are never visited. The entries are found lazily while iterating. The map must not be modified while a
+     * search is iterated.
+     *
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    public Iterable<Entry<CharSequence, V>> partialMatch(CharSequence pattern) {
+        final WildcardPattern compiledPattern = new WildcardPattern(pattern);
+        return new Iterable<Entry<CharSequence, V>>() {
+            public Iterator<Entry<CharSequence, V>> iterator() {
+                return new AutomatonSearchIterator(compiledPattern);
+            }
+        };
+    }
+
+    /**
+     * Returns all entries whose keys match the given regular expression as a whole, sorted by key. See
+     * {@link RegexAutomaton} for the supported syntax.<BR>
+     * <BR>
+     * The expression is compiled into a deterministic automaton which is walked together with the tree, so that a
+     * subtree is skipped as soon as no key in it can match any more. A literal prefix of the expression, such as
+     * <code>cpu\.load\.</code> in <code>cpu\.load\.(min|max)</code>, is looked up directly. The entries are found
+     * lazily while iterating. The map must not be modified while a search is iterated.
+     *
+     * @throws java.util.regex.PatternSyntaxException if the expression is malformed or uses an unsupported construct
+     */
+    public Iterable<Entry<CharSequence, V>> search(final String regex) {
+        new RegexAutomaton(regex);                          // reject invalid expressions right away
+        return new Iterable<Entry<CharSequence, V>>() {
+            public Iterator<Entry<CharSequence, V>> iterator() {
+                // the automaton builds its states on demand, so each iterator gets its own instance
+                return new AutomatonSearchIterator(new RegexAutomaton(regex));
+            }
+        };
+    }
+
+    /**
+     * Returns the value to which the given key is mapped. The characters of the key are read directly from the given
+     * {@link CharSequence}, so that no intermediate objects are created for the lookup. Keys which are not a
+     * {@link CharSequence} are represented by their string representation.
+     */
     public V get(Object key) {
-        Entry<CharSequence, V> result = getEntry(key);
-        if (result == null)
-            return null;
-        return result.getValue();
+        CharSequence keyChars = checkKey(key);
+        if (keyChars.length() == 0) {
+            return mEmptyStringKeyValue;
+        }
+        TSTNode<V> node = findNode(keyChars);
+        return node == null ? null : node.mData;
     }
 
     /*
@@ -323,36 +626,8 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
      */
     public Entry<CharSequence, V> getEntry(Object key) {
         CheckForNull.check(key);
-        String keyString = key.toString();
-        if (keyString.equals("") && mContainsEmptyStringKey)
-            return new TSTEntry<CharSequence, V>(keyString, mEmptyStringKeyValue);
-        else if (keyString.equals("") && !mContainsEmptyStringKey)
-            return null;
-
-        TSTNode<V> currentNode = mRootNode;
-        int charIndex = 0;
-        int keyStringLength = keyString.length();
-        while (true) {
-            if (currentNode == null) {
-                return null; // given key is not contained in map
-            }
-
-            char splitChar = currentNode.mSplitChar;
-            char keyChar = keyString.charAt(charIndex);
-
-            if (keyChar == splitChar) {
-                charIndex++;
-                if (charIndex == keyStringLength) {
-                    return currentNode.mData == null ? null : new TSTEntry<CharSequence, V>(keyString, currentNode.mData);
-                } else {
-                    currentNode = currentNode.mEqkid;
-                }
-            } else if (keyChar < splitChar) {
-                currentNode = currentNode.mLokid;
-            } else {
-                currentNode = currentNode.mHikid;
-            }
-        }
+        V value = get(key);
+        return value == null ? null : new TSTEntry<CharSequence, V>(key.toString(), value);
     }
 
     /*
@@ -447,59 +722,181 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
      * @see org.roklib.util.TernarySearchTreeMapInterface#indexOf(java.lang.CharSequence)
      */
     public int indexOf(CharSequence key) {
-        String keyString = key.toString();
-        if (mContainsEmptyStringKey && keyString.equals("")) {
-            return 0;
+        return rank(key, true);
+    }
+
+    public int rank(CharSequence key) {
+        return rank(key, false);
+    }
+
+    /**
+     * Determines the number of keys which are strictly smaller than the given key by walking down the path of the key
+     * once. If <code>exactMatch</code> is <code>true</code>, -1 is returned for keys which are not contained in the map.
+     */
+    private int rank(CharSequence key, boolean exactMatch) {
+        int keyLength = key.length();
+        if (keyLength == 0) {
+            return mContainsEmptyStringKey || !exactMatch ? 0 : -1;
         }
 
         TSTNode<V> currentNode = mRootNode;
         int charIndex = 0;
         int index = mContainsEmptyStringKey ? 1 : 0;
-        int keyStringLength = keyString.length();
-        int offset, loLength, eqLength;
 
-        while (true) {
-            if (currentNode == null)
-                return -1;
-            offset = 0;
-            // get children's subarray length values
-            if (currentNode.mLokid != null)
-                loLength = currentNode.mLokid.mSubarrayLength;
-            else
-                loLength = 0;
-            if (currentNode.mEqkid != null)
-                eqLength = currentNode.mEqkid.mSubarrayLength;
-            else
-                eqLength = 0;
+        while (currentNode != null) {
+            char keyChar = key.charAt(charIndex);
+            if (keyChar == currentNode.mSplitChar) {
+                // the keys in the lo subtree are smaller than the key
+                index += subarrayLength(currentNode.mLokid);
+                if (++charIndex == keyLength) {
+                    return exactMatch && currentNode.mData == null ? -1 : index;
+                }
+                if (currentNode.mData != null) {
+                    // the key terminating in this node is a proper prefix of the key
+                    index++;
+                }
+                currentNode = currentNode.mEqkid;
+            } else if (keyChar < currentNode.mSplitChar) {
+                currentNode = currentNode.mLokid;
+            } else {
+                // all keys of this subtree apart from the ones in the hi subtree are smaller than the key
+                index += currentNode.mSubarrayLength - subarrayLength(currentNode.mHikid);
+                currentNode = currentNode.mHikid;
+            }
+        }
+        return exactMatch ? -1 : index;
+    }
 
-            if (currentNode.mData != null) {
-                // if the currently examined node contains data itself, it is part of
-                // the subset it comprises. Then an additional offset is needed in the
-                // following index calculations.
-                offset = 1;
+    public int countPrefix(CharSequence prefix) {
+        if (prefix.length() == 0) {
+            return size();
+        }
+        TSTNode<V> node = findNode(prefix);
+        if (node == null) {
+            return 0;
+        }
+        return subarrayLength(node.mEqkid) + (node.mData == null ? 0 : 1);
+    }
+
+    /**
+     * Returns the entry with the longest key which is a prefix of the given input, or <code>null</code> if no key is a
+     * prefix of the input. See {@link #longestPrefixOf(CharSequence, int, int)}.
+     */
+    public Entry<CharSequence, V> longestPrefixOf(CharSequence input) {
+        return longestPrefixOf(input, 0, input.length());
+    }
+
+    /**
+     * Returns the entry with the longest key which is a prefix of the given section of the input, or <code>null</code>
+     * if no key is a prefix of it. This is the longest match used for routing paths or for tokenizing a text against
+     * a dictionary. The empty key, if contained in the map, is a prefix of every input.<BR>
+     * <BR>
+     * The tree is descended once along the characters of the input, so the lookup takes time proportional to the
+     * length of the section. The characters are read directly from the input, so that a large buffer can be scanned
+     * without creating substrings. Only the key of the returned entry is copied.
+     *
+     * @param input  the characters to match
+     * @param offset the index of the first character of the section
+     * @param length the number of characters of the section
+     * @throws IndexOutOfBoundsException if the section does not lie within the input
+     */
+    public Entry<CharSequence, V> longestPrefixOf(CharSequence input, int offset, int length) {
+        checkSection(input, offset, length);
+        int matchLength = -1;
+        V matchValue = null;
+        if (mContainsEmptyStringKey) {
+            matchLength = 0;
+            matchValue = mEmptyStringKeyValue;
+        }
+        TSTNode<V> node = mRootNode;
+        int charIndex = 0;
+        while (node != null && charIndex < length) {
+            char keyChar = input.charAt(offset + charIndex);
+            if (keyChar == node.mSplitChar) {
+                charIndex++;
+                if (node.mData != null) {
+                    matchLength = charIndex;
+                    matchValue = node.mData;
+                }
+                node = node.mEqkid;
+            } else if (keyChar < node.mSplitChar) {
+                node = node.mLokid;
+            } else {
+                node = node.mHikid;
             }
+        }
+        if (matchLength < 0) {
+            return null;
+        }
+        return new TSTEntry<CharSequence, V>(input.subSequence(offset, offset + matchLength).toString(), matchValue);
+    }
+
+    /**
+     * Returns the entries of all keys which are a prefix of the given input, ordered from the shortest to the longest
+     * key. See {@link #prefixesOf(CharSequence, int, int)}.
+     */
+    public List<Entry<CharSequence, V>> prefixesOf(CharSequence input) {
+        return prefixesOf(input, 0, input.length());
+    }
 
-            if (keyString.charAt(charIndex) == currentNode.mSplitChar) {
+    /**
+     * Returns the entries of all keys which are a prefix of the given section of the input, ordered from the shortest
+     * to the longest key. Like {@link #longestPrefixOf(CharSequence, int, int)}, this takes a single descent of the
+     * tree along the characters of the section.
+     *
+     * @param input  the characters to match
+     * @param offset the index of the first character of the section
+     * @param length the number of characters of the section
+     * @throws IndexOutOfBoundsException if the section does not lie within the input
+     */
+    public List<Entry<CharSequence, V>> prefixesOf(CharSequence input, int offset, int length) {
+        checkSection(input, offset, length);
+        List<Entry<CharSequence, V>> result = new ArrayList<Entry<CharSequence, V>>();
+        if (mContainsEmptyStringKey) {
+            result.add(new TSTEntry<CharSequence, V>("", mEmptyStringKeyValue));
+        }
+        TSTNode<V> node = mRootNode;
+        int charIndex = 0;
+        while (node != null && charIndex < length) {
+            char keyChar = input.charAt(offset + charIndex);
+            if (keyChar == node.mSplitChar) {
                 charIndex++;
-                if ((charIndex == keyStringLength) && (currentNode.mData != null)) {
-                    // we have reached the correct node
-                    return index;
-                } else if ((charIndex == keyStringLength) && (currentNode.mData == null)) {
-                    // we have worked through the search string, but it's no valid key as
-                    // the node we have
-                    // reached so far contains no data
-                    return -1;
-                } else {
-                    index += loLength + offset;
-                    currentNode = currentNode.mEqkid;
+                if (node.mData != null) {
+                    result.add(new TSTEntry<CharSequence, V>(input.subSequence(offset, offset + charIndex).toString(),
+                            node.mData));
                 }
-            } else if (keyString.charAt(charIndex) < currentNode.mSplitChar) {
-                currentNode = currentNode.mLokid;
+                node = node.mEqkid;
+            } else if (keyChar < node.mSplitChar) {
+                node = node.mLokid;
             } else {
-                index += loLength + eqLength + offset;
-                currentNode = currentNode.mHikid;
+                node = node.mHikid;
             }
         }
+        return result;
+    }
+
+    private static void checkSection(CharSequence input, int offset, int length) {
+        if (input == null) {
+            throw new NullPointerException("input is null");
+        }
+        if (offset < 0 || length < 0 || offset > input.length() - length) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length + ", input length: "
+                    + input.length());
+        }
+    }
+
+    /**
+     * Returns the number of entries whose keys lie in the range <code>[fromKey, toKey)</code>. A <code>null</code>
+     * bound denotes an open end of the range.
+     */
+    private int rangeSize(CharSequence fromKey, CharSequence toKey) {
+        int toIndex = toKey == null ? size() : rank(toKey);
+        int fromIndex = fromKey == null ? 0 : rank(fromKey);
+        return Math.max(0, toIndex - fromIndex);
+    }
+
+    private int subarrayLength(TSTNode<V> node) {
+        return node == null ? 0 : node.mSubarrayLength;
     }
 
     public CharSequence predecessor(CharSequence forElement) {
@@ -512,6 +909,35 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
         return entry == null ? null : entry.getKey();
     }
 
+    /**
+     * Returns a cursor over all entries of this map in key order. A full scan with the cursor does not create any
+     * objects apart from the cursor itself.
+     */
+    public TSTCursor<V> cursor() {
+        return new TSTCursorImpl("");
+    }
+
+    /**
+     * Returns a cursor over the entries of this map whose keys start with the given prefix in key order.
+     */
+    public TSTCursor<V> cursor(CharSequence prefix) {
+        CheckForNull.check(prefix);
+        return new TSTCursorImpl(prefix);
+    }
+
+    /**
+     * Performs the given action for each entry of this map in key order. In contrast to an iteration over the entry
+     * set, no entry objects are created, but each key is passed as a newly created string.
+     */
+    @Override
+    public void forEach(BiConsumer<? super CharSequence, ? super V> action) {
+        CheckForNull.check(action);
+        TSTCursor<V> cursor = cursor();
+        while (cursor.advance()) {
+            action.accept(cursor.key(), cursor.value());
+        }
+    }
+
     public Iterable<CharSequence> getPrefixMatch(final CharSequence prefix) {
         return new Iterable<CharSequence>() {
             private final Iterator<CharSequence> mIterator = new Iterator<CharSequence>() {
@@ -535,6 +961,11 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
             public Iterator<CharSequence> iterator() {
                 return mIterator;
             }
+
+            @Override
+            public Spliterator<CharSequence> spliterator() {
+                return prefixSpliterator(ElementType.KEYS, prefix, false);
+            }
         };
     }
 
@@ -550,6 +981,12 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
             public Iterator<Map.Entry<CharSequence, V>> iterator() {
                 return mIterator;
             }
+
+            @Override
+            public Spliterator<Entry<CharSequence, V>> spliterator() {
+                CheckForNull.check(pPrefix);
+                return prefixSpliterator(ElementType.ENTRIES, pPrefix, inverseSearch);
+            }
         };
     }
 
@@ -605,107 +1042,406 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
         if (value == null) {
             throw new NullPointerException("value is null");
         }
-        if (key.equals("")) {
+        if (key.length() == 0) {
+            mModCount++;
+            V oldValue = mEmptyStringKeyValue;
             mEmptyStringKeyValue = value;
             mContainsEmptyStringKey = true;
-            return value;
+            return oldValue;
         }
-        V prevValue = null; // stores previous value associated with specified key
-        TSTNode<V> currentNode = mRootNode;
+        TSTNode<V> node = findOrCreateNode(key);
+        V oldValue = node.mData;
+        node.mData = value;
+        if (oldValue == null) {
+            incrementSubarrayLengthsOnPath();
+        } else {
+            clearPath();
+        }
+        return oldValue;
+    }
 
-        TSTNode<V> prevNode = new TSTNode<V>(); // node that was examined during
-        // preceding iteration
-        String keyString = key.toString();
-        int keyStringLength = keyString.length();
-        // needed to calculate the element's position within the ArrayList
+    /**
+     * Returns the node which terminates the given non-empty key. Missing nodes are created on the way down, but the
+     * subarray lengths are left unchanged. All visited nodes are recorded in <code>mPath</code>. If a value is stored
+     * in the returned node for a new key, {@link #incrementSubarrayLengthsOnPath()} has to be called afterwards.
+     * Otherwise, the path has to be released with {@link #clearPath()} and the nodes created by this call have to be
+     * removed with {@link #removeCreatedNodes(CharSequence)}.
+     */
+    private TSTNode<V> findOrCreateNode(CharSequence key) {
+        mModCount++;
+        clearPath();
+        int keyLength = key.length();
+        char keyChar = key.charAt(0);
+        if (mRootNode.mSubarrayLength == 0) {
+            // the tree is empty, so the root node does not have a valid split character yet
+            mRootNode = new TSTNode<V>(keyChar);
+        }
+        TSTNode<V> node = mRootNode;
         int charIndex = 0;
-        // specifies which child has been selected in preceding iteration
-        NodeType prevBranch = NodeType.NONE;
-        boolean keyAlreadyInList = containsKey(key);
-        char currentChar = keyString.charAt(charIndex);
-
         while (true) {
-            if ((currentNode == null) || (mRootNode.mSplitChar == '\0')) {
-                // we reached a leaf node, thus create new node
-                if (currentNode == mRootNode) {
-                    mRootNode.mSplitChar = currentChar;
-                } else {
-                    currentNode = new TSTNode<V>(currentChar);
-                    switch (prevBranch) {
-                        case HIKID:
-                            prevNode.mHikid = currentNode;
-                            break;
-                        case EQKID:
-                            prevNode.mEqkid = currentNode;
-                            break;
-                        case LOKID:
-                            prevNode.mLokid = currentNode;
-                            break;
-                        default: // case NONE:
-                    }
+            if (mPath == null || mPathLength == mPath.length) {
+                growPath();
+            }
+            mPath[mPathLength++] = node;
+            char splitChar = node.mSplitChar;
+            if (keyChar == splitChar) {
+                if (++charIndex == keyLength) {
+                    return node;
+                }
+                keyChar = key.charAt(charIndex);
+                if (node.mEqkid == null) {
+                    node.mEqkid = new TSTNode<V>(keyChar);
                 }
+                node = node.mEqkid;
+            } else if (keyChar < splitChar) {
+                if (node.mLokid == null) {
+                    node.mLokid = new TSTNode<V>(keyChar);
+                }
+                node = node.mLokid;
+            } else {
+                if (node.mHikid == null) {
+                    node.mHikid = new TSTNode<V>(keyChar);
+                }
+                node = node.mHikid;
             }
-            if (currentChar == currentNode.mSplitChar) {
-                ++charIndex;
-                if (charIndex == keyStringLength) {
-                    // we have reached the element's final destination
-                    // put the data element into the tree
-                    if (prevValue == null) {
-                        prevValue = currentNode.mData;
-                    }
-                    currentNode.mData = value;
-                    if (!keyAlreadyInList)
-                        ++currentNode.mSubarrayLength; // increase the
-                    // length of
-                    // the
-                    // current node's subarray.
-                    return prevValue; // we're done...
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void growPath() {
+        int capacity = mPath == null ? 32 : mPath.length * 2;
+        TSTNode<V>[] path = (TSTNode<V>[]) new TernarySearchTreeMap<?>.TSTNode<?>[capacity];
+        if (mPath != null) {
+            System.arraycopy(mPath, 0, path, 0, mPathLength);
+        }
+        mPath = path;
+    }
+
+    /**
+     * Increments the subarray lengths of the nodes on the path recorded by the last call of
+     * {@link #findOrCreateNode(CharSequence)} and releases the path.
+     */
+    private void incrementSubarrayLengthsOnPath() {
+        for (int i = 0; i < mPathLength; ++i) {
+            mPath[i].mSubarrayLength++;
+        }
+        clearPath();
+    }
+
+    /**
+     * Releases the nodes recorded in <code>mPath</code>, so that the path does not keep removed nodes reachable after
+     * an operation has finished.
+     */
+    private void clearPath() {
+        if (mPathLength > 0) {
+            Arrays.fill(mPath, 0, mPathLength, null);
+            mPathLength = 0;
+        }
+    }
+
+    /**
+     * Unlinks the nodes which have been created by {@link #findOrCreateNode(CharSequence)} for the given key if no
+     * value has been stored below them. These are the nodes on the path of the key from the topmost node whose subtree
+     * does not contain any key on, since every other node of the tree contains at least one key. Unlike
+     * <code>mPath</code>, this also identifies the created nodes after a (re)mapping function has modified the map.
+     */
+    private void removeCreatedNodes(CharSequence key) {
+        TSTNode<V> parent = null;
+        TSTNode<V> node = mRootNode;
+        int keyLength = key.length();
+        int charIndex = 0;
+        char keyChar = key.charAt(0);
+        while (node != null) {
+            if (node.mSubarrayLength == 0) {
+                if (parent == null) {
+                    mRootNode = new TSTNode<V>();
                 } else {
-                    currentChar = keyString.charAt(charIndex);
-                    if (!keyAlreadyInList)
-                        ++currentNode.mSubarrayLength; // increase the
-                    // length of
-                    // the
-                    // current node's subarray.
-                    prevNode = currentNode;
-                    currentNode = currentNode.mEqkid;
-                    prevBranch = NodeType.EQKID;
-                }
-            } else if (currentChar < currentNode.mSplitChar) {
-                if (!keyAlreadyInList)
-                    ++currentNode.mSubarrayLength; // increase the
-                // length of the
-                // current
-                // node's subarray.
-                prevNode = currentNode;
-                currentNode = currentNode.mLokid;
-                prevBranch = NodeType.LOKID;
+                    unlinkChild(parent, node);
+                }
+                return;
+            }
+            parent = node;
+            char splitChar = node.mSplitChar;
+            if (keyChar == splitChar) {
+                if (++charIndex == keyLength) {
+                    return;
+                }
+                keyChar = key.charAt(charIndex);
+                node = node.mEqkid;
+            } else if (keyChar < splitChar) {
+                node = node.mLokid;
             } else {
-                if (!keyAlreadyInList)
-                    ++currentNode.mSubarrayLength; // increase the
-                // length of the
-                // current
-                // node's subarray.
-                prevNode = currentNode;
-                currentNode = currentNode.mHikid;
-                prevBranch = NodeType.HIKID;
+                node = node.mHikid;
             }
         }
     }
 
+    private void unlinkChild(TSTNode<V> parent, TSTNode<V> child) {
+        if (parent.mLokid == child) {
+            parent.mLokid = null;
+        } else if (parent.mEqkid == child) {
+            parent.mEqkid = null;
+        } else if (parent.mHikid == child) {
+            parent.mHikid = null;
+        }
+    }
+
+    /**
+     * Returns the node which terminates the given non-empty key or <code>null</code> if there is no such node. The
+     * returned node does not necessarily contain a value.
+     */
+    private TSTNode<V> findNode(CharSequence key) {
+        TSTNode<V> node = mRootNode;
+        int keyLength = key.length();
+        int charIndex = 0;
+        char keyChar = key.charAt(0);
+        while (node != null) {
+            char splitChar = node.mSplitChar;
+            if (keyChar == splitChar) {
+                if (++charIndex == keyLength) {
+                    return node;
+                }
+                keyChar = key.charAt(charIndex);
+                node = node.mEqkid;
+            } else if (keyChar < splitChar) {
+                node = node.mLokid;
+            } else {
+                node = node.mHikid;
+            }
+        }
+        return null;
+    }
+
+    private static CharSequence checkKey(Object key) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        return key instanceof CharSequence ? (CharSequence) key : key.toString();
+    }
+
+    private void checkForComodification(int expectedModCount) {
+        if (mModCount != expectedModCount) {
+            throw new ConcurrentModificationException("the map has been modified by the (re)mapping function");
+        }
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public V putIfAbsent(CharSequence key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        if (checkKey(key).length() == 0) {
+            return TernarySearchTreeMapInterface.super.putIfAbsent(key, value);
+        }
+        TSTNode<V> node = findOrCreateNode(key);
+        V oldValue = node.mData;
+        if (oldValue == null) {
+            node.mData = value;
+            incrementSubarrayLengthsOnPath();
+        } else {
+            clearPath();
+        }
+        return oldValue;
+    }
+
+    @Override
+    public V replace(CharSequence key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        if (checkKey(key).length() == 0) {
+            return TernarySearchTreeMapInterface.super.replace(key, value);
+        }
+        TSTNode<V> node = findNode(key);
+        if (node == null || node.mData == null) {
+            return null;
+        }
+        mModCount++;
+        V oldValue = node.mData;
+        node.mData = value;
+        return oldValue;
+    }
+
+    @Override
+    public boolean replace(CharSequence key, V oldValue, V newValue) {
+        if (oldValue == null || newValue == null) {
+            throw new NullPointerException("value is null");
+        }
+        if (checkKey(key).length() == 0) {
+            return TernarySearchTreeMapInterface.super.replace(key, oldValue, newValue);
+        }
+        TSTNode<V> node = findNode(key);
+        if (node == null || !oldValue.equals(node.mData)) {
+            return false;
+        }
+        mModCount++;
+        node.mData = newValue;
+        return true;
+    }
+
+    /**
+     * {@inheritDoc} If the key is not contained in the map, the missing nodes are created before the mapping function
+     * is called and removed again if the function returns <code>null</code> or modifies this map.
+     *
+     * @throws ConcurrentModificationException if the mapping function modifies this map
+     */
+    @Override
+    public V computeIfAbsent(CharSequence key, Function<? super CharSequence, ? extends V> mappingFunction) {
+        if (mappingFunction == null) {
+            throw new NullPointerException("mappingFunction is null");
+        }
+        if (checkKey(key).length() == 0) {
+            return TernarySearchTreeMapInterface.super.computeIfAbsent(key, mappingFunction);
+        }
+        TSTNode<V> node = findOrCreateNode(key);
+        if (node.mData != null) {
+            clearPath();
+            return node.mData;
+        }
+        int expectedModCount = mModCount;
+        V newValue = null;
+        try {
+            newValue = mappingFunction.apply(key);
+        } finally {
+            if (newValue == null || mModCount != expectedModCount) {
+                clearPath();
+                removeCreatedNodes(key);
+            }
+        }
+        checkForComodification(expectedModCount);
+        if (newValue != null) {
+            node.mData = newValue;
+            incrementSubarrayLengthsOnPath();
+        }
+        return newValue;
+    }
+
+    /**
+     * {@inheritDoc} If the remapping function returns <code>null</code>, the mapping is removed with
+     * {@link #remove(Object)}.
+     *
+     * @throws ConcurrentModificationException if the remapping function modifies this map
+     */
+    @Override
+    public V computeIfPresent(CharSequence key,
+                              BiFunction<? super CharSequence, ? super V, ? extends V> remappingFunction) {
+        if (remappingFunction == null) {
+            throw new NullPointerException("remappingFunction is null");
+        }
+        if (checkKey(key).length() == 0) {
+            return TernarySearchTreeMapInterface.super.computeIfPresent(key, remappingFunction);
+        }
+        TSTNode<V> node = findNode(key);
+        if (node == null || node.mData == null) {
+            return null;
+        }
+        int expectedModCount = mModCount;
+        V newValue = remappingFunction.apply(key, node.mData);
+        checkForComodification(expectedModCount);
+        if (newValue == null) {
+            remove(key);
+        } else {
+            mModCount++;
+            node.mData = newValue;
+        }
+        return newValue;
+    }
+
+    /**
+     * {@inheritDoc} If the key is not contained in the map, the missing nodes are created before the remapping function
+     * is called and removed again if the function returns <code>null</code> or modifies this map.
+     *
+     * @throws ConcurrentModificationException if the remapping function modifies this map
+     */
+    @Override
+    public V compute(CharSequence key, BiFunction<? super CharSequence, ? super V, ? extends V> remappingFunction) {
+        if (remappingFunction == null) {
+            throw new NullPointerException("remappingFunction is null");
+        }
+        if (checkKey(key).length() == 0) {
+            return TernarySearchTreeMapInterface.super.compute(key, remappingFunction);
+        }
+        TSTNode<V> node = findOrCreateNode(key);
+        V oldValue = node.mData;
+        int expectedModCount = mModCount;
+        V newValue = null;
+        try {
+            newValue = remappingFunction.apply(key, oldValue);
+        } finally {
+            if (oldValue == null && newValue == null || mModCount != expectedModCount) {
+                clearPath();
+                removeCreatedNodes(key);
+            }
+        }
+        checkForComodification(expectedModCount);
+        return storeComputedValue(key, node, oldValue, newValue);
+    }
+
+    /**
+     * {@inheritDoc} If the key is not contained in the map, the value is inserted in a single pass over the tree.
+     *
+     * @throws ConcurrentModificationException if the remapping function modifies this map
+     */
+    @Override
+    public V merge(CharSequence key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        if (remappingFunction == null) {
+            throw new NullPointerException("remappingFunction is null");
+        }
+        if (checkKey(key).length() == 0) {
+            return TernarySearchTreeMapInterface.super.merge(key, value, remappingFunction);
+        }
+        TSTNode<V> node = findOrCreateNode(key);
+        V oldValue = node.mData;
+        if (oldValue == null) {
+            node.mData = value;
+            incrementSubarrayLengthsOnPath();
+            return value;
+        }
+        clearPath();
+        int expectedModCount = mModCount;
+        V newValue = remappingFunction.apply(oldValue, value);
+        checkForComodification(expectedModCount);
+        return storeComputedValue(key, node, oldValue, newValue);
+    }
+
+    /**
+     * Stores the result of a (re)mapping function in the node returned by the last call of
+     * {@link #findOrCreateNode(CharSequence)}.
+     */
+    private V storeComputedValue(CharSequence key, TSTNode<V> node, V oldValue, V newValue) {
+        if (newValue == null) {
+            clearPath();
+            if (oldValue != null) {
+                remove(key);
+            }
+        } else {
+            node.mData = newValue;
+            if (oldValue == null) {
+                incrementSubarrayLengthsOnPath();
+            } else {
+                clearPath();
+            }
+        }
+        return newValue;
+    }
+
     /*
      * (non-Javadoc)
      *
      * @see org.roklib.util.TernarySearchTreeMapInterface#predecessor(java.lang.Object)
      */
     public Entry<CharSequence, V> predecessorEntry(Object keyObject) {
-        CharSequence key = (CharSequence) keyObject;
-
-        if (key.equals(""))
-            return null; // the empty string is always the first entry in the map
-        SortedMap<CharSequence, V> headMap = headMap(key);
-        CharSequence prevKey = headMap.lastKey();
-        return prevKey == null ? null : getEntry(prevKey);
+        int index = rank((CharSequence) keyObject);
+        return index == 0 ? null : getElementAt(index - 1);
     }
 
     /*
@@ -715,12 +1451,8 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
      */
     public Entry<CharSequence, V> successorEntry(Object keyObject) {
         CharSequence key = (CharSequence) keyObject;
-
-        Iterator<Map.Entry<CharSequence, V>> it = tailMap(key).entrySet().iterator();
-        if (containsKey(key)) {
-            it.next();
-        }
-        return it.hasNext() ? it.next() : null;
+        int index = rank(key) + (containsKey(key) ? 1 : 0);
+        return index < size() ? getElementAt(index) : null;
     }
 
     public int size() {
@@ -736,17 +1468,343 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
         return new TSTEntrySet(null, null);
     }
 
-    private class TSTStackNode<NodeValue> implements Serializable {
-        private static final long serialVersionUID = -9203260538139494037L;
+    /**
+     * Writes the search tree in preorder, without recursion. Each node is written as a byte with flags denoting
+     * which of its children follow and whether it carries a value, followed by its split character as a variable-length
+     * integer and its value if there is one. The subtree sizes are not written since they can be restored from the tree
+     * structure.
+     *
+     * @serialData the number of keys in the tree (excluding the empty string key) as a variable-length integer,
+     * followed by the nodes in preorder if there are any
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        int keyCount = mRootNode.mSubarrayLength;
+        writeVarInt(out, keyCount);
+        if (keyCount == 0) {
+            return;
+        }
+        List<TSTNode<V>> stack = new ArrayList<TSTNode<V>>();
+        stack.add(mRootNode);
+        while (!stack.isEmpty()) {
+            TSTNode<V> node = stack.remove(stack.size() - 1);
+            int flags = (node.mLokid == null ? 0 : HAS_LOKID) | (node.mEqkid == null ? 0 : HAS_EQKID)
+                    | (node.mHikid == null ? 0 : HAS_HIKID) | (node.mData == null ? 0 : HAS_DATA);
+            out.writeByte(flags);
+            writeVarInt(out, node.mSplitChar);
+            if (node.mData != null) {
+                out.writeObject(node.mData);
+            }
+            // push in reverse order so that the lo child is written first
+            if (node.mHikid != null) {
+                stack.add(node.mHikid);
+            }
+            if (node.mEqkid != null) {
+                stack.add(node.mEqkid);
+            }
+            if (node.mLokid != null) {
+                stack.add(node.mLokid);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the search tree written by {@link #writeObject(ObjectOutputStream)}. The nodes which still wait for
+     * some of their children are kept on a stack together with the flags of the missing children. A node's subtree
+     * size is computed when it is taken from the stack, i.e. when all of its children have been read.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        mRootNode = new TSTNode<V>();
+        if (readVarInt(in) == 0) {
+            return;
+        }
+        List<TSTNode<V>> stack = new ArrayList<TSTNode<V>>();
+        int[] missingChildren = new int[16];
+        do {
+            int flags = in.readUnsignedByte();
+            TSTNode<V> node = new TSTNode<V>((char) readVarInt(in));
+            if ((flags & HAS_DATA) != 0) {
+                node.mData = (V) in.readObject();
+            }
+            if (stack.isEmpty()) {
+                mRootNode = node;
+            } else {
+                int top = stack.size() - 1;
+                TSTNode<V> parent = stack.get(top);
+                int slot = Integer.lowestOneBit(missingChildren[top]);
+                missingChildren[top] &= ~slot;
+                if (slot == HAS_LOKID) {
+                    parent.mLokid = node;
+                } else if (slot == HAS_EQKID) {
+                    parent.mEqkid = node;
+                } else {
+                    parent.mHikid = node;
+                }
+            }
+            int children = flags & (HAS_LOKID | HAS_EQKID | HAS_HIKID);
+            if (children == 0) {
+                restoreSubarrayLength(node);
+            } else {
+                if (stack.size() == missingChildren.length) {
+                    missingChildren = Arrays.copyOf(missingChildren, stack.size() * 2);
+                }
+                missingChildren[stack.size()] = children;
+                stack.add(node);
+            }
+            while (!stack.isEmpty() && missingChildren[stack.size() - 1] == 0) {
+                restoreSubarrayLength(stack.remove(stack.size() - 1));
+            }
+        } while (!stack.isEmpty());
+    }
+
+    private void restoreSubarrayLength(TSTNode<V> node) {
+        node.mSubarrayLength = (node.mData == null ? 0 : 1) + (node.mLokid == null ? 0 : node.mLokid.mSubarrayLength)
+                + (node.mEqkid == null ? 0 : node.mEqkid.mSubarrayLength)
+                + (node.mHikid == null ? 0 : node.mHikid.mSubarrayLength);
+    }
+
+    private static void writeVarInt(ObjectOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(ObjectInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed variable-length integer");
+    }
+
+    private static int compareCharSequences(CharSequence first, CharSequence second) {
+        int length = Math.min(first.length(), second.length());
+        for (int i = 0; i < length; ++i) {
+            char firstChar = first.charAt(i);
+            char secondChar = second.charAt(i);
+            if (firstChar != secondChar) {
+                return firstChar - secondChar;
+            }
+        }
+        return first.length() - second.length();
+    }
+
+    /**
+     * Collects the keys and values for {@link BalancedTreeBuilder} and for {@link MappedTernarySearchTreeWriter}.
+     */
+    static final class SortedInput {
+        private CharSequence[] mKeys;
+        private Object[] mValues;
+        private int mSize;
+
+        public SortedInput(int initialCapacity) {
+            mKeys = new CharSequence[Math.max(initialCapacity, 1)];
+            mValues = new Object[mKeys.length];
+        }
+
+        public void add(CharSequence key, Object value) {
+            if (key == null) {
+                throw new NullPointerException("key is null");
+            }
+            if (value == null) {
+                throw new NullPointerException("value is null");
+            }
+            if (mSize == mKeys.length) {
+                mKeys = Arrays.copyOf(mKeys, mSize * 2);
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            mKeys[mSize] = key;
+            mValues[mSize++] = value;
+        }
+
+        public int size() {
+            return mSize;
+        }
+
+        public CharSequence getKey(int index) {
+            return mKeys[index];
+        }
+
+        public Object getValue(int index) {
+            return mValues[index];
+        }
+
+        public boolean isStrictlyAscending() {
+            for (int i = 1; i < mSize; ++i) {
+                if (compareCharSequences(mKeys[i - 1], mKeys[i]) >= 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Sorts the keys in ascending order. If a key occurs more than once, the value added last is kept.
+         */
+        public void sort() {
+            Integer[] order = new Integer[mSize];
+            for (int i = 0; i < mSize; ++i) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer first, Integer second) {
+                    return compareCharSequences(mKeys[first], mKeys[second]);
+                }
+            });
+            CharSequence[] keys = new CharSequence[mSize];
+            Object[] values = new Object[mSize];
+            int size = 0;
+            for (Integer index : order) {
+                if (size > 0 && compareCharSequences(keys[size - 1], mKeys[index]) == 0) {
+                    values[size - 1] = mValues[index];
+                } else {
+                    keys[size] = mKeys[index];
+                    values[size++] = mValues[index];
+                }
+            }
+            mKeys = keys;
+            mValues = values;
+            mSize = size;
+        }
+    }
+
+    /**
+     * Replaces the contents of this map with the entries of the given input, which must be in strictly ascending order.
+     */
+    @SuppressWarnings("unchecked")
+    private void build(final SortedInput input) {
+        clear();
+        if (input.size() > 0 && input.getKey(0).length() == 0) {
+            mContainsEmptyStringKey = true;
+            mEmptyStringKeyValue = (V) input.getValue(0);
+        }
+        TSTNode<V> rootNode = new BalancedTreeBuilder<TSTNode<V>, RuntimeException>(input) {
+            @Override
+            protected TSTNode<V> newNode(char splitChar, int valueIndex, TSTNode<V> lokid, TSTNode<V> eqkid,
+                                         TSTNode<V> hikid, int subarrayLength) {
+                TSTNode<V> node = new TSTNode<V>(splitChar);
+                node.mLokid = lokid;
+                node.mEqkid = eqkid;
+                node.mHikid = hikid;
+                node.mSubarrayLength = subarrayLength;
+                if (valueIndex >= 0) {
+                    node.mData = (V) input.getValue(valueIndex);
+                }
+                return node;
+            }
+        }.build();
+        if (rootNode != null) {
+            mRootNode = rootNode;
+        }
+    }
 
-        public TSTStackNode(TSTNode<NodeValue> node) {
-            mNode = node;
+    /**
+     * Builds an optimally balanced search tree from a list of keys in strictly ascending order. All keys in a range of
+     * the list which share their first <code>charIndex</code> characters are split into groups with the same character
+     * at position <code>charIndex</code>. The group containing the median key of the range becomes the root node of
+     * the lo/hi subtree, and the groups before and after it are processed recursively as its lo and hi subtrees. The
+     * eq subtree of each group is built from the group's keys on the next character level.<BR>
+     * <BR>
+     * The nodes are created by {@link #newNode(char, int, Object, Object, Object, int)} once their subtrees are
+     * complete, so that subclasses can either create node objects or write node records of type <code>N</code>. The
+     * eq subtree of a node is built last, directly before the node itself. <code>X</code> is the exception which
+     * creating a node may throw.
+     */
+    abstract static class BalancedTreeBuilder<N, X extends Exception> {
+        private final CharSequence[] mKeys;
+        private final int mSize;
+        private int[] mGroupStarts = new int[64];       // the group boundaries of all character levels being built
+        private int mGroupCount;
+
+        public BalancedTreeBuilder(SortedInput input) {
+            mKeys = input.mKeys;
+            mSize = input.mSize;
+        }
+
+        /**
+         * Creates a node with the given split character and subtrees, which are <code>null</code> if they are empty.
+         * <code>valueIndex</code> is the index of the key which ends in the new node or -1 if there is no such key.
+         */
+        protected abstract N newNode(char splitChar, int valueIndex, N lokid, N eqkid, N hikid, int subarrayLength)
+                throws X;
+
+        /**
+         * Builds the search tree for all keys except the empty string, which can only be the first key, and returns
+         * its root node or <code>null</code> if there are no such keys.
+         */
+        public N build() throws X {
+            int from = mSize > 0 && mKeys[0].length() == 0 ? 1 : 0;
+            return from < mSize ? buildSubtree(from, mSize, 0) : null;
+        }
+
+        private void addGroupStart(int index) {
+            if (mGroupCount == mGroupStarts.length) {
+                mGroupStarts = Arrays.copyOf(mGroupStarts, mGroupCount * 2);
+            }
+            mGroupStarts[mGroupCount++] = index;
+        }
+
+        /**
+         * Builds the subtree for the keys in <code>[from, to)</code>, which have a length greater than
+         * <code>charIndex</code> and share their first <code>charIndex</code> characters.
+         */
+        private N buildSubtree(int from, int to, int charIndex) throws X {
+            int firstGroup = mGroupCount;
+            char previousChar = 0;
+            for (int i = from; i < to; ++i) {
+                char currentChar = mKeys[i].charAt(charIndex);
+                if (i == from || currentChar != previousChar) {
+                    addGroupStart(i);
+                }
+                previousChar = currentChar;
+            }
+            addGroupStart(to);
+            N node = buildGroups(firstGroup, mGroupCount - 1, charIndex);
+            mGroupCount = firstGroup;
+            return node;
         }
 
-        public final TSTNode<NodeValue> mNode;
-        public boolean mNeedsRecheck = false;
-        public int mCharIndex;
-        public boolean mRecheckHiKid = false;
+        /**
+         * Builds the lo/hi subtree for the groups in <code>[firstGroup, endGroup)</code>.
+         */
+        private N buildGroups(int firstGroup, int endGroup, int charIndex) throws X {
+            if (firstGroup == endGroup) {
+                return null;
+            }
+            int from = mGroupStarts[firstGroup];
+            int to = mGroupStarts[endGroup];
+            int median = (from + to) >>> 1;
+            int group = firstGroup;
+            int high = endGroup - 1;
+            while (group < high) {
+                int middle = (group + high + 1) >>> 1;
+                if (mGroupStarts[middle] <= median) {
+                    group = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            int groupStart = mGroupStarts[group];
+            int groupEnd = mGroupStarts[group + 1];
+
+            char splitChar = mKeys[groupStart].charAt(charIndex);
+            int valueIndex = -1;
+            if (mKeys[groupStart].length() == charIndex + 1) {
+                valueIndex = groupStart++;
+            }
+            N lokid = buildGroups(firstGroup, group, charIndex);
+            N hikid = buildGroups(group + 1, endGroup, charIndex);
+            N eqkid = groupStart < groupEnd ? buildSubtree(groupStart, groupEnd, charIndex + 1) : null;
+            return newNode(splitChar, valueIndex, lokid, eqkid, hikid, to - from);
+        }
     }
 
     private class TSTNode<NodeValue> implements Serializable {
@@ -845,7 +1903,9 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
             mBuffer = new StringBuilder();
             mStack = new Stack<TSTItStackNode>();
             mPrefix = "";
-            if (startNode != null)
+            if (startNode == mRootNode && "".equals(prefix) && mFromKey != null && mFromKey.length() > 0)
+                seek(mFromKey);
+            else if (startNode != null)
                 mStack.push(new TSTItStackNode(startNode));
             if (prefix != null)
                 mPrefix = prefix;
@@ -856,6 +1916,41 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
             }
         }
 
+        /**
+         * Fills the stack as if the traversal had already returned all keys smaller than the given non-empty key. For
+         * this, the path of the key is followed down from the root. Each node on the path is pushed with the state it
+         * would have while its lo or eq subtree is traversed, whereas nodes whose hi subtree is entered are left out
+         * since they have nothing more to return. A finished node on top of the stack makes
+         * {@link #goToNextElement()} continue with the ascent to the first key not smaller than the given key.
+         */
+        private void seek(CharSequence key) {
+            TSTNode<V> node = mRootNode;
+            int keyLength = key.length();
+            int charIndex = 0;
+            while (node != null) {
+                char keyChar = key.charAt(charIndex);
+                if (keyChar < node.mSplitChar) {
+                    mStack.push(new TSTItStackNode(node, TSTItStackNode.LOKID));
+                    node = node.mLokid;
+                } else if (keyChar > node.mSplitChar) {
+                    node = node.mHikid;
+                } else if (++charIndex == keyLength) {
+                    // the key itself is returned next if it is contained in the map, otherwise its eq subtree follows
+                    mStack.push(new TSTItStackNode(node, TSTItStackNode.LOKID));
+                    break;
+                } else {
+                    TSTItStackNode stackNode = new TSTItStackNode(node, TSTItStackNode.LOEQKID);
+                    stackNode.mReturned = true;
+                    mStack.push(stackNode);
+                    mBuffer.append(node.mSplitChar);
+                    node = node.mEqkid;
+                }
+            }
+            TSTItStackNode finished = new TSTItStackNode(mRootNode, TSTItStackNode.ALL);
+            finished.mReturned = true;
+            mStack.push(finished);
+        }
+
         private void goToNextElement() {
             TSTItStackNode currentNode;
             // go to next smallest element in TST
@@ -1001,6 +2096,671 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
         }
     } // End of private class TSTIterator
 
+    /**
+     * Returns a spliterator over the elements whose keys lie in the range <code>[fromKey, toKey)</code>. A
+     * <code>null</code> bound denotes an open end of the range.
+     */
+    private <T> Spliterator<T> rangeSpliterator(ElementType elementType, CharSequence fromKey, CharSequence toKey) {
+        int low = fromKey == null ? 0 : rank(fromKey);
+        int high = toKey == null ? size() : rank(toKey);
+        return new TSTSpliterator<T>(elementType, low, Math.max(low, high), 0, 0);
+    }
+
+    /**
+     * Returns a spliterator over the elements whose keys start with the given prefix, or over all other elements if
+     * <code>inverse</code> is <code>true</code>.
+     */
+    private <T> Spliterator<T> prefixSpliterator(ElementType elementType, CharSequence prefix, boolean inverse) {
+        int start = rank(prefix);
+        int end = start + countPrefix(prefix);
+        if (inverse) {
+            return new TSTSpliterator<T>(elementType, 0, size(), start, end);
+        }
+        return new TSTSpliterator<T>(elementType, start, end, 0, 0);
+    }
+
+    /**
+     * A spliterator over the elements with an index in <code>[low, high)</code> which is not contained in the excluded
+     * index range. The part of the tree which is still to be traversed is kept as a list of disjoint subtrees and
+     * single entries in key order. As every subtree covers a contiguous range of indices, which follows from the
+     * subarray lengths, the number of elements in range is known exactly for each part. A split hands over the first
+     * half of the remaining elements to the new spliterator, expanding subtrees into their children where necessary.
+     * Hence, both halves are of equal size and a split costs time proportional to the height of the tree.<BR>
+     * <BR>
+     * The spliterator is fail-fast: if the map is modified after the spliterator has been created,
+     * {@link ConcurrentModificationException} is thrown. Entries are returned as immutable snapshots.
+     */
+    private class TSTSpliterator<T> implements Spliterator<T> {
+        private final ElementType mElementType;
+        private final ArrayDeque<SpliteratorPart> mParts;
+        private final int mLow;
+        private final int mHigh;
+        private final int mExcludedLow;
+        private final int mExcludedHigh;
+        private final int mExpectedModCount;
+        private int mSize;
+
+        public TSTSpliterator(ElementType elementType, int low, int high, int excludedLow, int excludedHigh) {
+            mElementType = elementType;
+            mParts = new ArrayDeque<SpliteratorPart>();
+            mLow = low;
+            mHigh = high;
+            mExcludedLow = excludedLow;
+            mExcludedHigh = excludedHigh;
+            mExpectedModCount = mModCount;
+            if (mContainsEmptyStringKey) {
+                addLast(new SpliteratorPart(null, "", mEmptyStringKeyValue, 0));
+            }
+            addLast(new SpliteratorPart(mRootNode, "", null, mContainsEmptyStringKey ? 1 : 0));
+        }
+
+        private TSTSpliterator(TSTSpliterator<T> parent, ArrayDeque<SpliteratorPart> parts, int size) {
+            mElementType = parent.mElementType;
+            mParts = parts;
+            mLow = parent.mLow;
+            mHigh = parent.mHigh;
+            mExcludedLow = parent.mExcludedLow;
+            mExcludedHigh = parent.mExcludedHigh;
+            mExpectedModCount = parent.mExpectedModCount;
+            mSize = size;
+        }
+
+        private void addLast(SpliteratorPart part) {
+            int size = sizeOf(part);
+            if (size > 0) {
+                mParts.addLast(part);
+                mSize += size;
+            }
+        }
+
+        private void addFirst(TSTNode<V> node, String prefix, int index) {
+            if (node != null) {
+                SpliteratorPart part = new SpliteratorPart(node, prefix, null, index);
+                if (sizeOf(part) > 0) {
+                    mParts.addFirst(part);
+                }
+            }
+        }
+
+        /**
+         * Returns the number of elements of the given part which lie in the index range of this spliterator.
+         */
+        private int sizeOf(SpliteratorPart part) {
+            int start = part.mIndex;
+            int end = part.mNode == null ? start + 1 : start + part.mNode.mSubarrayLength;
+            return overlap(start, end, mLow, mHigh) - overlap(start, end, mExcludedLow, mExcludedHigh);
+        }
+
+        private int overlap(int start, int end, int low, int high) {
+            return Math.max(0, Math.min(end, high) - Math.max(start, low));
+        }
+
+        /**
+         * Replaces a subtree with its lo subtree, the entry of its root, its eq subtree and its hi subtree. The size of
+         * this spliterator is not changed by this.
+         */
+        private void expand(SpliteratorPart part) {
+            TSTNode<V> node = part.mNode;
+            String key = part.mKey + node.mSplitChar;
+            int dataIndex = part.mIndex + subarrayLength(node.mLokid);
+            addFirst(node.mHikid, part.mKey, part.mIndex + node.mSubarrayLength - subarrayLength(node.mHikid));
+            addFirst(node.mEqkid, key, node.mData == null ? dataIndex : dataIndex + 1);
+            if (node.mData != null) {
+                SpliteratorPart entry = new SpliteratorPart(null, key, node.mData, dataIndex);
+                if (sizeOf(entry) > 0) {
+                    mParts.addFirst(entry);
+                }
+            }
+            addFirst(node.mLokid, part.mKey, part.mIndex);
+        }
+
+        @SuppressWarnings("unchecked")
+        private T element(SpliteratorPart part) {
+            switch (mElementType) {
+                case KEYS:
+                    return (T) part.mKey;
+                case VALUES:
+                    return (T) part.mValue;
+                default:
+                    return (T) new AbstractMap.SimpleImmutableEntry<CharSequence, V>(part.mKey, part.mValue);
+            }
+        }
+
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            if (mModCount != mExpectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            SpliteratorPart part;
+            while ((part = mParts.pollFirst()) != null) {
+                if (part.mNode == null) {
+                    mSize--;
+                    action.accept(element(part));
+                    return true;
+                }
+                expand(part);
+            }
+            return false;
+        }
+
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            SpliteratorPart part;
+            while ((part = mParts.pollFirst()) != null) {
+                if (part.mNode == null) {
+                    mSize--;
+                    action.accept(element(part));
+                } else {
+                    expand(part);
+                }
+            }
+            if (mModCount != mExpectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        public Spliterator<T> trySplit() {
+            int half = mSize / 2;
+            if (half == 0) {
+                return null;
+            }
+            ArrayDeque<SpliteratorPart> prefix = new ArrayDeque<SpliteratorPart>();
+            int taken = 0;
+            while (taken < half) {
+                SpliteratorPart part = mParts.pollFirst();
+                int size = sizeOf(part);
+                if (taken + size <= half) {
+                    prefix.addLast(part);
+                    taken += size;
+                } else {
+                    // only subtrees can be too large, since a single entry would fit in
+                    expand(part);
+                }
+            }
+            mSize -= taken;
+            return new TSTSpliterator<T>(this, prefix, taken);
+        }
+
+        public long estimateSize() {
+            return mSize;
+        }
+
+        public int characteristics() {
+            int characteristics = ORDERED | SIZED | SUBSIZED | NONNULL;
+            if (mElementType == ElementType.KEYS) {
+                characteristics |= SORTED | DISTINCT;
+            } else if (mElementType == ElementType.ENTRIES) {
+                characteristics |= DISTINCT;
+            }
+            return characteristics;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            if (mElementType == ElementType.KEYS) {
+                // the keys are strings which are sorted by their natural ordering
+                return null;
+            }
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Traverses the tree in key order with a stack of nodes held in arrays. For each node on the stack, the stack keeps
+     * the length of the key prefix leading to the node and the number of steps of the traversal which have already
+     * been taken for the node. The characters of the current key are kept in a buffer which is exposed through a
+     * reusable view. A node's hi subtree replaces the node on the stack, so the stack only grows with the number of
+     * lo and eq descents.
+     */
+    private class TSTCursorImpl implements TSTCursor<V> {
+        // traversal steps of a node on the stack
+        private static final int VISIT_LOKID = 0;
+        private static final int VISIT_NODE = 1;
+        private static final int VISIT_EQKID = 2;
+        private static final int VISIT_HIKID = 3;
+
+        private final int mExpectedModCount = mModCount;
+        private TSTNode<V>[] mNodes;
+        private int[] mDepths;
+        private int[] mSteps;
+        private int mStackSize;
+        private char[] mKey;
+        private int mKeyLength = -1;                        // -1 if the cursor is not positioned on an entry
+        private V mValue;
+        private V mPrefixValue;                             // value of the prefix itself, returned first
+        private final int mPrefixLength;
+        private final CharSequence mKeyView = new KeyView();
+
+        @SuppressWarnings("unchecked")
+        public TSTCursorImpl(CharSequence prefix) {
+            int prefixLength = prefix.length();
+            mPrefixLength = prefixLength;
+            mNodes = (TSTNode<V>[]) new TernarySearchTreeMap<?>.TSTNode<?>[16];
+            mDepths = new int[16];
+            mSteps = new int[16];
+            mKey = new char[Math.max(16, prefixLength * 2)];
+            if (prefixLength == 0) {
+                mPrefixValue = mContainsEmptyStringKey ? mEmptyStringKeyValue : null;
+                if (mRootNode.mSubarrayLength > 0) {
+                    push(mRootNode, 0);
+                }
+                return;
+            }
+            TSTNode<V> node = findNode(prefix);
+            if (node != null) {
+                for (int i = 0; i < prefixLength; ++i) {
+                    mKey[i] = prefix.charAt(i);
+                }
+                mPrefixValue = node.mData;
+                if (node.mEqkid != null) {
+                    push(node.mEqkid, prefixLength);
+                }
+            }
+        }
+
+        private void push(TSTNode<V> node, int depth) {
+            if (mStackSize == mNodes.length) {
+                mNodes = Arrays.copyOf(mNodes, mStackSize * 2);
+                mDepths = Arrays.copyOf(mDepths, mStackSize * 2);
+                mSteps = Arrays.copyOf(mSteps, mStackSize * 2);
+            }
+            mNodes[mStackSize] = node;
+            mDepths[mStackSize] = depth;
+            mSteps[mStackSize] = VISIT_LOKID;
+            mStackSize++;
+        }
+
+        public boolean advance() {
+            if (mModCount != mExpectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (mPrefixValue != null) {
+                mValue = mPrefixValue;
+                mPrefixValue = null;
+                mKeyLength = mPrefixLength;
+                return true;
+            }
+            while (mStackSize > 0) {
+                int top = mStackSize - 1;
+                TSTNode<V> node = mNodes[top];
+                int depth = mDepths[top];
+                switch (mSteps[top]++) {
+                    case VISIT_LOKID:
+                        if (node.mLokid != null) {
+                            push(node.mLokid, depth);
+                        }
+                        break;
+                    case VISIT_NODE:
+                        if (node.mData != null) {
+                            setKeyChar(depth, node.mSplitChar);
+                            mKeyLength = depth + 1;
+                            mValue = node.mData;
+                            return true;
+                        }
+                        break;
+                    case VISIT_EQKID:
+                        if (node.mEqkid != null) {
+                            setKeyChar(depth, node.mSplitChar);
+                            push(node.mEqkid, depth + 1);
+                        }
+                        break;
+                    default:
+                        if (node.mHikid != null) {
+                            mNodes[top] = node.mHikid;
+                            mSteps[top] = VISIT_LOKID;
+                        } else {
+                            mNodes[top] = null;
+                            mStackSize--;
+                        }
+                }
+            }
+            mKeyLength = -1;
+            mValue = null;
+            return false;
+        }
+
+        private void setKeyChar(int index, char c) {
+            if (index == mKey.length) {
+                mKey = Arrays.copyOf(mKey, index * 2);
+            }
+            mKey[index] = c;
+        }
+
+        private void checkPosition() {
+            if (mKeyLength < 0) {
+                throw new NoSuchElementException();
+            }
+        }
+
+        public CharSequence keyView() {
+            checkPosition();
+            return mKeyView;
+        }
+
+        public String key() {
+            checkPosition();
+            return new String(mKey, 0, mKeyLength);
+        }
+
+        public V value() {
+            checkPosition();
+            return mValue;
+        }
+
+        private class KeyView implements CharSequence {
+            public int length() {
+                return mKeyLength;
+            }
+
+            public char charAt(int index) {
+                if (index < 0 || index >= mKeyLength) {
+                    throw new IndexOutOfBoundsException(String.valueOf(index));
+                }
+                return mKey[index];
+            }
+
+            public CharSequence subSequence(int start, int end) {
+                if (start < 0 || end > mKeyLength || start > end) {
+                    throw new IndexOutOfBoundsException();
+                }
+                return new String(mKey, start, end - start);
+            }
+
+            @Override
+            public String toString() {
+                return new String(mKey, 0, mKeyLength);
+            }
+        }
+    }
+
+    /**
+     * A subtree which is still to be traversed by a {@link TSTSpliterator} or, if <code>mNode</code> is
+     * <code>null</code>, a single entry. <code>mKey</code> is the common prefix of all keys of the subtree or the key
+     * of the entry, respectively, and <code>mIndex</code> is the index of the first entry.
+     */
+    private class SpliteratorPart {
+        private final TSTNode<V> mNode;
+        private final String mKey;
+        private final V mValue;
+        private final int mIndex;
+
+        private SpliteratorPart(TSTNode<V> node, String key, V value, int index) {
+            mNode = node;
+            mKey = key;
+            mValue = value;
+            mIndex = index;
+        }
+    }
+
+    /**
+     * Traverses the tree in key order with an explicit stack, computing the automaton state of each node from the
+     * state of its parent. For the results sorted by distance, the tree is searched once for each distance from 0 to
+     * the maximum distance, and each search only returns the keys with exactly that distance. This repeats work for
+     * the smaller distances, but these searches are the cheapest ones since the automaton can prune more of the tree.
+     */
+    private class FuzzyMatchIterator implements Iterator<TSTFuzzyMatch<V>> {
+        private final LevenshteinAutomaton mAutomaton;
+        private final boolean mSortByDistance;
+        private final int mExpectedModCount = mModCount;
+        private final int[][] mRows;                        // automaton state after reading the prefix of each length
+        private final char[] mPrefix;
+        private LevenshteinAutomaton mPass;                 // automaton of the current search
+        private int mPassDistance;                          // distance of the keys returned by the current search
+        private final List<TSTNode<V>> mNodes = new ArrayList<TSTNode<V>>();
+        private int[] mDepths = new int[16];                // depth of each pending node; negative if the node's
+        // lo child has already been pushed
+        private TSTFuzzyMatch<V> mNext;
+
+        public FuzzyMatchIterator(LevenshteinAutomaton automaton, boolean sortByDistance) {
+            mAutomaton = automaton;
+            mSortByDistance = sortByDistance;
+            mRows = new int[automaton.getMaxLength() + 1][];
+            mPrefix = new char[automaton.getMaxLength()];
+            mPassDistance = sortByDistance ? 0 : automaton.getMaxDistance();
+            startPass();
+        }
+
+        private void startPass() {
+            mPass = mSortByDistance ? mAutomaton.withMaxDistance(mPassDistance) : mAutomaton;
+            if (mRows[0] == null) {
+                mRows[0] = mPass.newRow();
+            }
+            mPass.start(mRows[0]);
+            if (mContainsEmptyStringKey && isReturned(mRows[0])) {
+                mNext = new TSTFuzzyMatch<V>("", mEmptyStringKeyValue, mPass.getDistance(mRows[0]));
+            }
+            if (mRootNode.mSubarrayLength > 0) {
+                push(mRootNode, 0);
+            }
+        }
+
+        private boolean isReturned(int[] row) {
+            return mSortByDistance ? mPass.getDistance(row) == mPassDistance : mPass.isMatch(row);
+        }
+
+        private void push(TSTNode<V> node, int depth) {
+            if (mNodes.size() == mDepths.length) {
+                mDepths = Arrays.copyOf(mDepths, mDepths.length * 2);
+            }
+            mDepths[mNodes.size()] = depth;
+            mNodes.add(node);
+        }
+
+        private void findNext() {
+            while (mNext == null) {
+                if (mNodes.isEmpty()) {
+                    if (!mSortByDistance || mPassDistance == mAutomaton.getMaxDistance()) {
+                        return;
+                    }
+                    mPassDistance++;
+                    startPass();
+                    continue;
+                }
+                int top = mNodes.size() - 1;
+                TSTNode<V> node = mNodes.get(top);
+                int depth = mDepths[top];
+                if (depth >= 0) {
+                    // visit the lo subtree first, the node itself is visited when it is on top of the stack again
+                    mDepths[top] = -depth - 1;
+                    if (node.mLokid != null) {
+                        push(node.mLokid, depth);
+                    }
+                    continue;
+                }
+                depth = -depth - 1;
+                mNodes.remove(top);
+                if (node.mHikid != null) {
+                    push(node.mHikid, depth);
+                }
+                if (depth == mPrefix.length) {
+                    continue;
+                }
+                mPrefix[depth] = node.mSplitChar;
+                if (mRows[depth + 1] == null) {
+                    mRows[depth + 1] = mPass.newRow();
+                }
+                int[] row = mRows[depth + 1];
+                int min = mPass.step(mRows[depth], depth == 0 ? null : mRows[depth - 1],
+                        depth == 0 ? '\0' : mPrefix[depth - 1], node.mSplitChar, row);
+                if (min > mPass.getMaxDistance()) {
+                    continue;
+                }
+                if (node.mEqkid != null) {
+                    push(node.mEqkid, depth + 1);
+                }
+                if (node.mData != null && isReturned(row)) {
+                    mNext = new TSTFuzzyMatch<V>(new String(mPrefix, 0, depth + 1), node.mData, mPass.getDistance(row));
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            if (mModCount != mExpectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            findNext();
+            return mNext != null;
+        }
+
+        public TSTFuzzyMatch<V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            TSTFuzzyMatch<V> result = mNext;
+            mNext = null;
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("remove() is not supported by fuzzy search results");
+        }
+    }
+
+    /**
+     * Drives a {@link KeyAutomaton} over the tree and returns the accepted keys in key order. As long as the automaton
+     * only accepts a single character, the iterator follows that character's path directly. From there on, the tree is
+     * traversed with an explicit stack, where each pending node is stored together with the automaton's state before
+     * reading the node's split character.
+     */
+    private class AutomatonSearchIterator implements Iterator<Entry<CharSequence, V>> {
+        private final KeyAutomaton mAutomaton;
+        private final int mExpectedModCount = mModCount;
+        private final List<TSTNode<V>> mNodes = new ArrayList<TSTNode<V>>();
+        private long[] mStates = new long[16];
+        private int[] mDepths = new int[16];                // negative if the node's lo child has already been pushed
+        private char[] mPrefix = new char[16];
+        private Entry<CharSequence, V> mNext;
+
+        public AutomatonSearchIterator(KeyAutomaton automaton) {
+            mAutomaton = automaton;
+            long state = automaton.start();
+            if (state == 0 || mRootNode.mSubarrayLength == 0 && !mContainsEmptyStringKey) {
+                return;
+            }
+            if (automaton.forcedChar(state) < 0) {
+                if (mContainsEmptyStringKey && automaton.isMatch(state)) {
+                    mNext = new AbstractMap.SimpleImmutableEntry<CharSequence, V>("", mEmptyStringKeyValue);
+                }
+                if (mRootNode.mSubarrayLength > 0) {
+                    push(mRootNode, state, 0);
+                }
+                return;
+            }
+            seekForcedPrefix(state);
+        }
+
+        /**
+         * Follows the path of the characters the automaton is forced to read. The key ending with the last of these
+         * characters is the smallest key which can be accepted, and the search continues below its node.
+         */
+        private void seekForcedPrefix(long state) {
+            TSTNode<V> node = mRootNode.mSubarrayLength == 0 ? null : mRootNode;
+            int depth = 0;
+            int forcedChar;
+            while ((forcedChar = mAutomaton.forcedChar(state)) >= 0) {
+                if (depth > 0) {
+                    node = node.mEqkid;
+                }
+                while (node != null && node.mSplitChar != forcedChar) {
+                    node = forcedChar < node.mSplitChar ? node.mLokid : node.mHikid;
+                }
+                if (node == null) {
+                    return;
+                }
+                setPrefixChar(depth++, (char) forcedChar);
+                state = mAutomaton.step(state, (char) forcedChar);
+            }
+            if (state == 0) {
+                return;
+            }
+            if (node.mData != null && mAutomaton.isMatch(state)) {
+                mNext = new AbstractMap.SimpleImmutableEntry<CharSequence, V>(new String(mPrefix, 0, depth),
+                        node.mData);
+            }
+            if (node.mEqkid != null) {
+                push(node.mEqkid, state, depth);
+            }
+        }
+
+        private void setPrefixChar(int depth, char c) {
+            if (depth == mPrefix.length) {
+                mPrefix = Arrays.copyOf(mPrefix, depth * 2);
+            }
+            mPrefix[depth] = c;
+        }
+
+        private void push(TSTNode<V> node, long state, int depth) {
+            int size = mNodes.size();
+            if (size == mDepths.length) {
+                mDepths = Arrays.copyOf(mDepths, size * 2);
+                mStates = Arrays.copyOf(mStates, size * 2);
+            }
+            mDepths[size] = depth;
+            mStates[size] = state;
+            mNodes.add(node);
+        }
+
+        private void findNext() {
+            while (mNext == null && !mNodes.isEmpty()) {
+                int top = mNodes.size() - 1;
+                TSTNode<V> node = mNodes.get(top);
+                long state = mStates[top];
+                int depth = mDepths[top];
+                char splitChar = node.mSplitChar;
+                if (depth >= 0) {
+                    // visit the lo subtree first, the node itself is visited when it is on top of the stack again
+                    mDepths[top] = -depth - 1;
+                    if (node.mLokid != null && mAutomaton.canMatchBelow(state, splitChar)) {
+                        push(node.mLokid, state, depth);
+                    }
+                    continue;
+                }
+                depth = -depth - 1;
+                mNodes.remove(top);
+                if (node.mHikid != null && mAutomaton.canMatchAbove(state, splitChar)) {
+                    push(node.mHikid, state, depth);
+                }
+                long nextState = mAutomaton.step(state, splitChar);
+                if (nextState == 0) {
+                    continue;
+                }
+                setPrefixChar(depth, splitChar);
+                if (node.mEqkid != null) {
+                    push(node.mEqkid, nextState, depth + 1);
+                }
+                if (node.mData != null && mAutomaton.isMatch(nextState)) {
+                    mNext = new AbstractMap.SimpleImmutableEntry<CharSequence, V>(new String(mPrefix, 0, depth + 1),
+                            node.mData);
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            if (mModCount != mExpectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            findNext();
+            return mNext != null;
+        }
+
+        public Entry<CharSequence, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<CharSequence, V> result = mNext;
+            mNext = null;
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("remove() is not supported by search results");
+        }
+    }
+
     private class TSTValuesCollection extends AbstractCollection<V> implements Serializable {
         private static final long serialVersionUID = 8889125197129391125L;
 
@@ -1138,16 +2898,12 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
         }
 
         public int size() {
-            if (mFromKey == null && mExclusiveToKey == null) {
-                return TernarySearchTreeMap.this.size();
-            } else {
-                int count = 0;
-                for (Iterator<Entry<CharSequence, V>> it = new TSTIterator(mFromKey, mExclusiveToKey); it.hasNext(); ) {
-                    it.next();
-                    ++count;
-                }
-                return count;
-            }
+            return rangeSize(mFromKey, mExclusiveToKey);
+        }
+
+        @Override
+        public Spliterator<V> spliterator() {
+            return rangeSpliterator(ElementType.VALUES, mFromKey, mExclusiveToKey);
         }
     }
 
@@ -1250,18 +3006,12 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
         }
 
         public int size() {
-            if ("".equals(mExclusiveToKey))
-                return 0;
-            if (mFromKey == null && mExclusiveToKey == null) {
-                return TernarySearchTreeMap.this.size();
-            } else {
-                int count = 0;
-                for (Iterator<Entry<CharSequence, V>> it = new TSTIterator(mFromKey, mExclusiveToKey); it.hasNext(); ) {
-                    it.next();
-                    ++count;
-                }
-                return count;
-            }
+            return rangeSize(mFromKey, mExclusiveToKey);
+        }
+
+        @Override
+        public Spliterator<CharSequence> spliterator() {
+            return rangeSpliterator(ElementType.KEYS, mFromKey, mExclusiveToKey);
         }
     }
 
@@ -1371,14 +3121,12 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
         // }
 
         public int size() {
-            if (mFromKey == null && mExclusiveToKey == null)
-                return TernarySearchTreeMap.this.size();
-            int count = 0;
-            for (Iterator<Entry<CharSequence, V>> it = iterator(); it.hasNext(); ) {
-                it.next();
-                ++count;
-            }
-            return count;
+            return rangeSize(mFromKey, mExclusiveToKey);
+        }
+
+        @Override
+        public Spliterator<Entry<CharSequence, V>> spliterator() {
+            return rangeSpliterator(ElementType.ENTRIES, mFromKey, mExclusiveToKey);
         }
     } // End of private class TSTEntrySet
 
@@ -1463,23 +3211,13 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
         }
 
         public CharSequence firstKey() {
-            Iterator<Entry<CharSequence, V>> it = new TSTIterator(mFromKey, mExclusiveToKey);
-            if (it.hasNext())
-                return it.next().getKey();
-            return null;
+            int fromIndex = mFromKey == null ? 0 : rank(mFromKey);
+            return rangeSize(mFromKey, mExclusiveToKey) == 0 ? null : getKeyAt(fromIndex);
         }
 
         public CharSequence lastKey() {
-            return lastKey(true);
-        }
-
-        private CharSequence lastKey(boolean throwException) {
-            Iterator<Entry<CharSequence, V>> it = new TSTIterator(mFromKey, mExclusiveToKey);
-            Entry<CharSequence, V> entry = null;
-            while (it.hasNext()) {
-                entry = it.next();
-            }
-            return entry == null ? null : entry.getKey();
+            int toIndex = mExclusiveToKey == null ? TernarySearchTreeMap.this.size() : rank(mExclusiveToKey);
+            return rangeSize(mFromKey, mExclusiveToKey) == 0 ? null : getKeyAt(toIndex - 1);
         }
 
         public SortedMap<CharSequence, V> headMap(CharSequence toKey) {
@@ -1553,14 +3291,7 @@ public class TernarySearchTreeMap<V> extends AbstractMap<CharSequence, V> implem
         }
 
         public int size() {
-            if (TernarySearchTreeMap.this.isEmpty() || "".equals(mExclusiveToKey))
-                return 0;
-            int count = 0;
-            for (Iterator<Entry<CharSequence, V>> it = new TSTIterator(mFromKey, mExclusiveToKey); it.hasNext(); ) {
-                it.next();
-                ++count;
-            }
-            return count;
+            return rangeSize(mFromKey, mExclusiveToKey);
         }
 
         public Set<Map.Entry<CharSequence, V>> entrySet() {
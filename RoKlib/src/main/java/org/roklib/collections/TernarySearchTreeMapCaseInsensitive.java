@@ -20,29 +20,61 @@
  */
 package org.roklib.collections;
 
-
 import org.roklib.util.helper.CheckForNull;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.*;
-import java.util.AbstractMap.SimpleEntry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A ternary search tree map whose keys are compared without regard to case. The split characters of the tree are
+ * stored in lower case, and the characters of a key are folded one at a time while the tree is traversed. The folding
+ * is done with a lookup table which maps every <code>char</code> to its lower case counterpart for the map's locale.
+ * The tables are computed once per locale and shared by all maps, so that a lookup neither creates a lower case copy
+ * of the key nor any other object.<BR>
+ * <BR>
+ * The key with which an entry was last put into the map is stored in the node which terminates the key. It is
+ * returned in its original case by all methods which yield keys, such as {@link #keySet()} or
+ * {@link #getKeyAt(int)}. The keys are sorted by their lower case representation.<BR>
+ * <BR>
+ * Since characters are folded one by one, the result differs from {@link String#toLowerCase(Locale)} of the whole key
+ * in a few cases:
+ * <ul>
+ * <li>The Greek final sigma (U+03C2) is folded to the small sigma (U+03C3), like the capital sigma (U+03A3). A key
+ * which ends with a capital sigma therefore matches the same word written with either small sigma, whereas converting
+ * the whole key would turn its last capital sigma into a final sigma and match only the word with the final sigma.</li>
+ * <li>Lower case mappings of a locale which expand a character into several characters are not applied; the locale
+ * independent mapping of {@link Character#toLowerCase(char)} is used instead. Outside of the Turkish and Azeri
+ * locales, the capital I with dot above (U+0130) is thus folded to a plain 'i' instead of 'i' followed by a combining
+ * dot above (U+0307), so that it matches an 'i' of a stored key.</li>
+ * <li>Characters outside of the Basic Multilingual Plane are compared as they are.</li>
+ * </ul>
+ * This map does not allow <code>null</code> keys or values and is not thread-safe.
+ *
+ * @author Roland Krueger
+ */
+public class TernarySearchTreeMapCaseInsensitive<V> extends AbstractTernarySearchTreeMap<V> implements Serializable {
+    private static final long serialVersionUID = 2606721449333786040L;
 
-public class TernarySearchTreeMapCaseInsensitive<V> implements TernarySearchTreeMapInterface<V> {
-    private static final long serialVersionUID = 6106815305526987949L;
+    private static final ConcurrentMap<Locale, char[]> FOLDING_TABLES = new ConcurrentHashMap<Locale, char[]>();
 
-    private final TernarySearchTreeMap<Map.Entry<CharSequence, V>> mData;
-    private Locale mLocale;
+    private final Locale mLocale;
+    private transient char[] mFoldingTable;                 // lower case character for each char value
+    private transient Node<V> mRootNode;
+    private transient V mEmptyStringKeyValue;
+    private transient Node<V>[] mPath;                      // path buffer for put() and remove()
 
     public TernarySearchTreeMapCaseInsensitive() {
         this((Locale) null);
     }
 
     public TernarySearchTreeMapCaseInsensitive(Locale pLocale) {
-        mLocale = pLocale;
-        if (mLocale == null) {
-            mLocale = Locale.getDefault();
-        }
-        mData = new TernarySearchTreeMap<Map.Entry<CharSequence, V>>();
+        mLocale = pLocale == null ? Locale.getDefault() : pLocale;
+        mFoldingTable = getFoldingTable(mLocale);
     }
 
     public TernarySearchTreeMapCaseInsensitive(Map<? extends CharSequence, ? extends V> map) {
@@ -55,449 +87,450 @@ public class TernarySearchTreeMapCaseInsensitive<V> implements TernarySearchTree
         putAll(map);
     }
 
-    public SortedSet<CharSequence> matchAlmost(CharSequence key, int distance, int lengthTolerance) {
-        CheckForNull.check(key);
-        SortedSet<CharSequence> result = new TreeSet<CharSequence>();
-        for (CharSequence resultKey : mData.matchAlmost(key.toString().toLowerCase(mLocale), distance, lengthTolerance)) {
-            result.add(mData.get(resultKey).getKey());
+    private static char[] getFoldingTable(Locale locale) {
+        char[] table = FOLDING_TABLES.get(locale);
+        if (table == null) {
+            table = createFoldingTable(locale);
+            char[] existingTable = FOLDING_TABLES.putIfAbsent(locale, table);
+            if (existingTable != null) {
+                table = existingTable;
+            }
         }
-        return result;
-    }
-
-    public Entry<CharSequence, V> getEntry(Object key) {
-        String keyString = key.toString().toLowerCase(mLocale);
-        Entry<CharSequence, Map.Entry<CharSequence, V>> entry = mData.getEntry(keyString);
-        return entry == null ? null : new AbstractMap.SimpleEntry<CharSequence, V>(entry.getValue().getKey(), entry
-                .getValue().getValue());
-    }
-
-    public V getValueAt(int index) {
-        return mData.getValueAt(index).getValue();
-    }
-
-    public CharSequence getKeyAt(int index) {
-        return mData.get(mData.getKeyAt(index)).getKey();
-    }
-
-    public int indexOf(CharSequence key) {
-        return mData.indexOf(key.toString().toLowerCase(mLocale));
-    }
-
-    public CharSequence predecessor(CharSequence forElement) {
-        Map.Entry<CharSequence, Map.Entry<CharSequence, V>> entry = mData.predecessorEntry(forElement.toString()
-                .toLowerCase(mLocale));
-        return entry == null ? null : entry.getValue().getKey();
-    }
-
-    public CharSequence successor(CharSequence forElement) {
-        Map.Entry<CharSequence, Map.Entry<CharSequence, V>> entry = mData.successorEntry(forElement.toString()
-                .toLowerCase(mLocale));
-        return entry == null ? null : entry.getValue().getKey();
-    }
-
-    public Iterable<CharSequence> getPrefixMatch(CharSequence prefix) {
-        CheckForNull.check(prefix);
-        final Iterator<Entry<CharSequence, Map.Entry<CharSequence, V>>> iterator = mData.getPrefixSubtreeIterator(
-                prefix.toString().toLowerCase(mLocale), false).iterator();
-
-        return new Iterable<CharSequence>() {
-            public Iterator<CharSequence> iterator() {
-                return new Iterator<CharSequence>() {
-
-                    public boolean hasNext() {
-                        return iterator.hasNext();
-                    }
-
-                    public CharSequence next() {
-                        return iterator.next().getValue().getKey();
-                    }
-
-                    public void remove() {
-                        iterator.remove();
-                    }
-                };
+        return table;
+    }
+
+    /**
+     * Creates the lower case mapping of all <code>char</code> values for the given locale. Only characters which have
+     * a lower case mapping at all can be mapped differently by a locale, so {@link String#toLowerCase(Locale)} is only
+     * consulted for these. If the locale maps a character to more than one character, the locale independent mapping
+     * is used instead. The final sigma, which has no upper case mapping of its own, is folded to the ordinary sigma.
+     */
+    private static char[] createFoldingTable(Locale locale) {
+        char[] table = new char[Character.MAX_VALUE + 1];
+        for (int i = 0; i <= Character.MAX_VALUE; ++i) {
+            char c = (char) i;
+            char lowerCase = Character.toLowerCase(c);
+            if (lowerCase != c) {
+                String localized = String.valueOf(c).toLowerCase(locale);
+                if (localized.length() == 1) {
+                    lowerCase = localized.charAt(0);
+                }
             }
-        };
+            table[i] = lowerCase;
+        }
+        table['\u03C2'] = '\u03C3';
+        return table;
     }
 
-    public Iterable<Entry<CharSequence, V>> getPrefixSubtreeIterator(CharSequence prefix) {
-        return getPrefixSubtreeIterator(prefix, false);
+    private char fold(char c) {
+        return mFoldingTable[c];
     }
 
-    public Iterable<Entry<CharSequence, V>> getPrefixSubtreeIterator(final CharSequence pPrefix,
-                                                                     final boolean inverseSearch) {
-        return new Iterable<Map.Entry<CharSequence, V>>() {
-            private final Iterator<Map.Entry<CharSequence, V>> mIterator = getPrefixSubtreeIteratorImpl(pPrefix, inverseSearch);
-
-            public Iterator<java.util.Map.Entry<CharSequence, V>> iterator() {
-                return mIterator;
-            }
-        };
+    /**
+     * Returns the table which maps each character to the character it is folded to for comparing keys.
+     */
+    char[] foldingTable() {
+        return mFoldingTable;
     }
 
-    private Iterator<Entry<CharSequence, V>> getPrefixSubtreeIteratorImpl(CharSequence pPrefix, boolean inverseSearch) {
-        CheckForNull.check(pPrefix);
-        final Iterator<Entry<CharSequence, Map.Entry<CharSequence, V>>> iterator = mData.getPrefixSubtreeIterator(
-                pPrefix.toString().toLowerCase(mLocale), inverseSearch).iterator();
-
-        return new Iterator<Map.Entry<CharSequence, V>>() {
-
-            public boolean hasNext() {
-                return iterator.hasNext();
-            }
-
-            public java.util.Map.Entry<CharSequence, V> next() {
-                return iterator.next().getValue();
-            }
-
-            public void remove() {
-                iterator.remove();
-            }
-        };
+    private static int subarrayLength(Node<?> node) {
+        return node == null ? 0 : node.mSubarrayLength;
     }
 
-    public Entry<CharSequence, V> predecessorEntry(Object keyObject) {
-        Map.Entry<CharSequence, Map.Entry<CharSequence, V>> entry = mData.predecessorEntry(keyObject
-                .toString().toLowerCase(mLocale));
-        return entry == null ? null : entry.getValue();
-    }
-
-    public Entry<CharSequence, V> successorEntry(Object keyObject) {
-        Map.Entry<CharSequence, Map.Entry<CharSequence, V>> entry = mData.successorEntry(keyObject
-                .toString().toLowerCase(mLocale));
-        return entry == null ? null : entry.getValue();
+    @Override
+    protected int compareKeys(CharSequence first, CharSequence second) {
+        int firstLength = first.length();
+        int secondLength = second.length();
+        int length = Math.min(firstLength, secondLength);
+        for (int i = 0; i < length; ++i) {
+            char firstChar = fold(first.charAt(i));
+            char secondChar = fold(second.charAt(i));
+            if (firstChar != secondChar) {
+                return firstChar - secondChar;
+            }
+        }
+        return firstLength - secondLength;
     }
 
+    @Override
     public int size() {
-        return mData.size();
+        return subarrayLength(mRootNode) + (mEmptyStringKeyValue == null ? 0 : 1);
     }
 
-    public boolean isEmpty() {
-        return mData.isEmpty();
+    @Override
+    public void clear() {
+        mRootNode = null;
+        mEmptyStringKeyValue = null;
+        mPath = null;
+    }
+
+    /**
+     * Returns the node which terminates the given non-empty key or <code>null</code> if there is no such node. The
+     * returned node does not necessarily contain a value. Unlike the searches which go through {@link #nodeCursor()},
+     * this lookup walks the nodes directly, so that {@link #get(Object)} does not allocate a cursor.
+     */
+    private Node<V> findNode(CharSequence key) {
+        Node<V> node = mRootNode;
+        int keyLength = key.length();
+        int charIndex = 0;
+        char keyChar = fold(key.charAt(0));
+        while (node != null) {
+            char splitChar = node.mSplitChar;
+            if (keyChar == splitChar) {
+                if (++charIndex == keyLength) {
+                    return node;
+                }
+                keyChar = fold(key.charAt(charIndex));
+                node = node.mEqkid;
+            } else if (keyChar < splitChar) {
+                node = node.mLokid;
+            } else {
+                node = node.mHikid;
+            }
+        }
+        return null;
     }
 
     @Override
-    public String toString() {
-        return entrySet().toString();
+    protected NodeCursor<V> nodeCursor() {
+        return new Cursor();
     }
 
-    public boolean containsKey(Object key) {
-        return mData.containsKey(key.toString().toLowerCase(mLocale));
+    @SuppressWarnings("unchecked")
+    private int pushPath(int depth, Node<V> node) {
+        if (mPath == null) {
+            mPath = (Node<V>[]) new Node<?>[32];
+        } else if (depth == mPath.length) {
+            mPath = Arrays.copyOf(mPath, depth * 2);
+        }
+        mPath[depth] = node;
+        return depth + 1;
     }
 
-    public boolean containsValue(Object pValue) {
-        for (Map.Entry<CharSequence, V> entry : mData.values()) {
-            if (entry.getValue().equals(pValue))
-                return true;
+    @Override
+    public V get(Object key) {
+        CharSequence keyChars = toKey(key);
+        if (keyChars.length() == 0) {
+            return mEmptyStringKeyValue;
         }
-        return false;
+        Node<V> node = findNode(keyChars);
+        return node == null ? null : node.mData;
     }
 
-    public V get(Object key) {
-        String keyString = key.toString().toLowerCase(mLocale);
-        Map.Entry<CharSequence, V> result = mData.get(keyString);
-        return result == null ? null : result.getValue();
+    @Override
+    public Entry<CharSequence, V> getEntry(Object key) {
+        CharSequence keyChars = toKey(key);
+        if (keyChars.length() == 0) {
+            return mEmptyStringKeyValue == null ? null : newEntry("", mEmptyStringKeyValue);
+        }
+        Node<V> node = findNode(keyChars);
+        return node == null || node.mData == null ? null : newEntry(node.mKey, node.mData);
     }
 
+    /**
+     * Associates the given value with the given key. If the map already contains a key which differs from the given
+     * key only in case, its value is replaced and the given key replaces the stored key.
+     */
+    @Override
     public V put(CharSequence key, V value) {
         CheckForNull.check(key, value);
-        SimpleEntry<CharSequence, V> entry = new SimpleEntry<CharSequence, V>(key, value);
-        Map.Entry<CharSequence, V> oldValue = mData.put(key.toString().toLowerCase(mLocale), entry);
-        return oldValue == null ? null : oldValue.getValue();
-    }
-
-    public V remove(Object key) {
-        String keyString = key.toString().toLowerCase(mLocale);
-        Map.Entry<CharSequence, V> entry = mData.remove(keyString);
-        return entry == null ? null : entry.getValue();
-    }
-
-    public void putAll(Map<? extends CharSequence, ? extends V> map) {
-        for (Map.Entry<? extends CharSequence, ? extends V> entry : map.entrySet()) {
-            put(entry.getKey(), entry.getValue());
+        int keyLength = key.length();
+        if (keyLength == 0) {
+            V oldValue = mEmptyStringKeyValue;
+            mEmptyStringKeyValue = value;
+            return oldValue;
+        }
+
+        int depth = 0;
+        int charIndex = 0;
+        char keyChar = fold(key.charAt(0));
+        if (mRootNode == null) {
+            mRootNode = new Node<V>(keyChar);
+        }
+        Node<V> node = mRootNode;
+        while (true) {
+            depth = pushPath(depth, node);
+            char splitChar = node.mSplitChar;
+            if (keyChar == splitChar) {
+                if (++charIndex == keyLength) {
+                    break;
+                }
+                keyChar = fold(key.charAt(charIndex));
+                if (node.mEqkid == null) {
+                    node.mEqkid = new Node<V>(keyChar);
+                }
+                node = node.mEqkid;
+            } else if (keyChar < splitChar) {
+                if (node.mLokid == null) {
+                    node.mLokid = new Node<V>(keyChar);
+                }
+                node = node.mLokid;
+            } else {
+                if (node.mHikid == null) {
+                    node.mHikid = new Node<V>(keyChar);
+                }
+                node = node.mHikid;
+            }
         }
-    }
-
-    public void clear() {
-        mData.clear();
-    }
-
-    public Comparator<? super CharSequence> comparator() {
-        return mData.comparator();
-    }
-
-    public SortedMap<CharSequence, V> subMap(CharSequence fromKey, CharSequence toKey) {
-        return new TSTSubMapCaseInsensitive(fromKey, toKey);
-    }
 
-    public SortedMap<CharSequence, V> headMap(CharSequence toKey) {
-        return new TSTSubMapCaseInsensitive(null, toKey);
-    }
-
-    public SortedMap<CharSequence, V> tailMap(CharSequence fromKey) {
-        return new TSTSubMapCaseInsensitive(fromKey, null);
-    }
-
-    public CharSequence firstKey() {
-        if (mData.isEmpty())
-            return null;
-        return mData.get(mData.firstKey()).getKey();
-    }
-
-    public CharSequence lastKey() {
-        if (mData.isEmpty())
-            return null;
-        return mData.get(mData.lastKey()).getKey();
-    }
-
-    public Set<CharSequence> keySet() {
-        return new TSTKeySetCaseInsensitive();
-    }
-
-    public Collection<V> values() {
-        Collection<Map.Entry<CharSequence, V>> mapValues = mData.values();
-        List<V> result = new ArrayList<V>(mapValues.size());
-        for (Map.Entry<CharSequence, V> entry : mapValues) {
-            result.add(entry.getValue());
+        V oldValue = node.mData;
+        node.mData = value;
+        node.mKey = key.toString();
+        if (oldValue == null) {
+            for (int i = 0; i < depth; ++i) {
+                mPath[i].mSubarrayLength++;
+            }
         }
-        return result;
-    }
-
-    public Set<Map.Entry<CharSequence, V>> entrySet() {
-        return new TSTEntrySetCaseInsensitive(null, null);
+        for (int i = 0; i < depth; ++i) {
+            mPath[i] = null;
+        }
+        return oldValue;
     }
 
-    private class TSTEntrySetCaseInsensitive extends AbstractSet<Entry<CharSequence, V>> implements Serializable {
-        private static final long serialVersionUID = -291147638123041581L;
-        private final Set<Map.Entry<CharSequence, Map.Entry<CharSequence, V>>> mEntrySet;
-
-        public TSTEntrySetCaseInsensitive(CharSequence fromKey, CharSequence toKey) {
-            if (fromKey != null && toKey != null) {
-                mEntrySet = mData.subMap(fromKey.toString().toLowerCase(mLocale), toKey.toString().toLowerCase(mLocale))
-                        .entrySet();
-            } else if (fromKey != null) {
-                mEntrySet = mData.tailMap(fromKey.toString().toLowerCase(mLocale)).entrySet();
-            } else if (toKey != null) {
-                mEntrySet = mData.headMap(toKey.toString().toLowerCase(mLocale)).entrySet();
+    @Override
+    public V remove(Object key) {
+        CharSequence keyChars = toKey(key);
+        int keyLength = keyChars.length();
+        if (keyLength == 0) {
+            V oldValue = mEmptyStringKeyValue;
+            mEmptyStringKeyValue = null;
+            return oldValue;
+        }
+        int depth = 0;
+        int charIndex = 0;
+        char keyChar = fold(keyChars.charAt(0));
+        Node<V> node = mRootNode;
+        while (true) {
+            if (node == null) {
+                return null;
+            }
+            depth = pushPath(depth, node);
+            char splitChar = node.mSplitChar;
+            if (keyChar == splitChar) {
+                if (++charIndex == keyLength) {
+                    break;
+                }
+                keyChar = fold(keyChars.charAt(charIndex));
+                node = node.mEqkid;
+            } else if (keyChar < splitChar) {
+                node = node.mLokid;
             } else {
-                mEntrySet = mData.entrySet();
+                node = node.mHikid;
             }
         }
-
-        @Override
-        public Iterator<Map.Entry<CharSequence, V>> iterator() {
-            final Iterator<Entry<CharSequence, Map.Entry<CharSequence, V>>> entryIterator = mEntrySet.iterator();
-
-            return new Iterator<Map.Entry<CharSequence, V>>() {
-
-                public boolean hasNext() {
-                    return entryIterator.hasNext();
+        V oldValue = node.mData;
+        if (oldValue != null) {
+            node.mData = null;
+            node.mKey = null;
+            // decrease the subarray lengths on the path and unlink the topmost node whose subtree has become empty
+            int firstEmptyNode = -1;
+            for (int i = 0; i < depth; ++i) {
+                if (--mPath[i].mSubarrayLength == 0 && firstEmptyNode < 0) {
+                    firstEmptyNode = i;
                 }
+            }
+            if (firstEmptyNode == 0) {
+                mRootNode = null;
+            } else if (firstEmptyNode > 0) {
+                mPath[firstEmptyNode - 1].unlinkChild(mPath[firstEmptyNode]);
+            }
+        }
+        for (int i = 0; i < depth; ++i) {
+            mPath[i] = null;
+        }
+        return oldValue;
+    }
 
-                public java.util.Map.Entry<CharSequence, V> next() {
-                    return entryIterator.next().getValue();
-                }
+    @Override
+    protected Set<Entry<CharSequence, V>> newEntrySet(CharSequence fromKey, CharSequence toKey) {
+        return new EntrySetCaseInsensitive(fromKey, toKey);
+    }
+
+    /**
+     * Returns all entries whose keys match the given wildcard pattern without regard to case, sorted by key. See
+     * {@link TernarySearchTreeMap#partialMatch(CharSequence)} for details. The literal characters of the pattern are
+     * folded like the keys. The map must not be modified while a search is iterated.
+     *
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    public Iterable<Entry<CharSequence, V>> partialMatch(CharSequence pattern) {
+        final WildcardPattern compiledPattern = new WildcardPattern(pattern, mFoldingTable);
+        return new Iterable<Entry<CharSequence, V>>() {
+            public Iterator<Entry<CharSequence, V>> iterator() {
+                return automatonIterator(compiledPattern);
+            }
+        };
+    }
 
-                public void remove() {
-                    entryIterator.remove();
-                }
-            };
+    /**
+     * Writes the entries in key order, each as the original key followed by the value.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size());
+        for (Entry<CharSequence, V> entry : entrySet()) {
+            out.writeObject(entry.getKey().toString());
+            out.writeObject(entry.getValue());
         }
+    }
 
-        @Override
-        public int size() {
-            return mEntrySet.size();
+    /**
+     * Reads the entries written by {@link #writeObject(ObjectOutputStream)}, inserting them in a balanced order.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        mFoldingTable = getFoldingTable(mLocale);
+        int size = in.readInt();
+        String[] keys = new String[size];
+        Object[] values = new Object[size];
+        for (int i = 0; i < size; ++i) {
+            keys[i] = (String) in.readObject();
+            values[i] = in.readObject();
         }
-
-        @Override
-        public boolean isEmpty() {
-            return mEntrySet.isEmpty();
+        for (int index : balancedInsertionOrder(size)) {
+            put(keys[index], (V) values[index]);
         }
+    }
 
-        @Override
-        @SuppressWarnings({"rawtypes", "unchecked"})
-        public boolean contains(Object object) {
-            if (!(object instanceof Map.Entry))
-                return false;
-            Map.Entry entry = (Map.Entry) object;
-            if (entry.getKey() == null)
-                return false;
-            String lowerCaseKey = entry.getKey().toString().toLowerCase(mLocale);
-            Map.Entry value = mData.get(lowerCaseKey);
-            return value != null && mEntrySet.contains(new SimpleEntry<CharSequence, Entry<CharSequence, V>>(lowerCaseKey, new SimpleEntry(value.getKey(), entry.getValue())));
+    /**
+     * The entry set of a key range. Since <code>contains()</code> and <code>remove()</code> look up the key of the
+     * given entry, an entry also matches if its key differs from the stored key in case. The bulk operations match
+     * entries in the same way.
+     */
+    private class EntrySetCaseInsensitive extends TSTRangeEntrySet {
+        public EntrySetCaseInsensitive(CharSequence fromKey, CharSequence toKey) {
+            super(fromKey, toKey);
         }
 
         @Override
-        public boolean add(Map.Entry<CharSequence, V> e) {
-            throw new UnsupportedOperationException("TernarySearchTreeMapCaseInsensitive's entry set: add() not allowed!");
+        public boolean addAll(Collection<? extends Entry<CharSequence, V>> collection) {
+            throw new UnsupportedOperationException("addAll() is not supported by the entry set");
         }
 
+        /**
+         * Removes the given entries with {@link #remove(Object)}, so that they are matched by a key lookup in the map
+         * rather than by {@link Entry#equals(Object)}.
+         */
         @Override
-        @SuppressWarnings({"rawtypes", "unchecked"})
-        public boolean remove(Object object) {
-            if (!(object instanceof Map.Entry))
-                return false;
-            Map.Entry entry = (Map.Entry) object;
-            if (entry.getKey() == null)
-                return false;
-            String lowerCaseKey = entry.getKey().toString().toLowerCase(mLocale);
-            Map.Entry value = mData.get(lowerCaseKey);
-            return value != null && mEntrySet.remove(new SimpleEntry<CharSequence, Entry<CharSequence, V>>(lowerCaseKey, new SimpleEntry(value.getKey(), entry.getValue())));
+        public boolean removeAll(Collection<?> collection) {
+            boolean modified = false;
+            for (Object object : collection) {
+                modified |= remove(object);
+            }
+            return modified;
         }
 
+        /**
+         * Retains the entries which are matched by one of the given entries. As with {@link #contains(Object)}, an
+         * entry is matched if the map finds it when looking up the given entry's key.
+         */
         @Override
         public boolean retainAll(Collection<?> collection) {
-            return super.retainAll(getEntriesFromMap(collection));
-        }
-
-        @SuppressWarnings({"rawtypes", "unchecked"})
-        private Collection<?> getEntriesFromMap(Collection<?> collection) {
-            List list = new LinkedList();
-            for (Object obj : collection) {
-                if (!(obj instanceof Map.Entry))
-                    continue;
-                Map.Entry entry = (Map.Entry) obj;
-                Map.Entry mapEntry = getEntry(entry.getKey());
-                if (mapEntry != null)
-                    list.add(mapEntry);
+            Set<String> retainedKeys = new HashSet<String>();
+            for (Object object : collection) {
+                if (contains(object)) {
+                    retainedKeys.add(getEntry(((Entry<?, ?>) object).getKey()).getKey().toString());
+                }
+            }
+            boolean modified = false;
+            for (Iterator<Entry<CharSequence, V>> it = iterator(); it.hasNext(); ) {
+                if (!retainedKeys.contains(it.next().getKey().toString())) {
+                    it.remove();
+                    modified = true;
+                }
             }
-            return list;
+            return modified;
         }
+    }
 
+    /**
+     * Cursor which folds the characters of search keys with the map's folding table and yields the original keys
+     * stored in the nodes.
+     */
+    private final class Cursor extends ReferenceNodeCursor<Node<V>, V> {
         @Override
-        public boolean removeAll(Collection<?> collection) {
-            return super.removeAll(getEntriesFromMap(collection));
+        protected boolean hasEmptyStringKeyValue() {
+            return mEmptyStringKeyValue != null;
         }
 
         @Override
-        public boolean addAll(Collection<? extends Map.Entry<CharSequence, V>> c) {
-            throw new UnsupportedOperationException("TernarySearchTreeMapCaseInsensitive's entry set: addAll() not allowed!");
+        protected V emptyStringKeyValue() {
+            return mEmptyStringKeyValue;
         }
 
         @Override
-        public void clear() {
-            mEntrySet.clear();
+        protected Node<V> rootNode() {
+            return mRootNode;
         }
-    }
-
-    private class TSTSubMapCaseInsensitive extends AbstractMap<CharSequence, V> implements SortedMap<CharSequence, V>,
-            Serializable {
-        private static final long serialVersionUID = 6887075934244545880L;
-
-        private SortedMap<CharSequence, Map.Entry<CharSequence, V>> mSubMap;
-        private CharSequence mFromKey;
-        private CharSequence mExclusiveToKey;
 
-        public TSTSubMapCaseInsensitive() {
-        }
-
-        public TSTSubMapCaseInsensitive(CharSequence fromKey, CharSequence toKey) {
-            mFromKey = fromKey;
-            mExclusiveToKey = toKey;
-            if (fromKey == null && toKey != null) {
-                mSubMap = mData.headMap(toKey.toString().toLowerCase(mLocale));
-            } else if (toKey == null && fromKey != null) {
-                mSubMap = mData.tailMap(fromKey.toString().toLowerCase(mLocale));
-            } else if (fromKey != null) {
-                mSubMap = mData.subMap(fromKey.toString().toLowerCase(mLocale), toKey.toString().toLowerCase(mLocale));
-            } else {
-                throw new IllegalArgumentException("fromKey is null and toKey is null");
-            }
-        }
-
-        public Comparator<? super CharSequence> comparator() {
-            return mData.comparator();
+        @Override
+        protected char splitChar(Node<V> node) {
+            return node.mSplitChar;
         }
 
-        public V put(CharSequence key, V value) {
-            CheckForNull.check(key, value);
-            SimpleEntry<CharSequence, V> entry = new SimpleEntry<CharSequence, V>(key, value);
-            Map.Entry<CharSequence, V> oldValue = mSubMap.put(key.toString().toLowerCase(mLocale), entry);
-            return oldValue == null ? null : oldValue.getValue();
+        @Override
+        protected Node<V> lokid(Node<V> node) {
+            return node.mLokid;
         }
 
         @Override
-        public boolean containsKey(Object key) {
-            return key != null && key instanceof CharSequence && mSubMap.containsKey(key.toString().toLowerCase(mLocale));
+        protected Node<V> eqkid(Node<V> node) {
+            return node.mEqkid;
         }
 
-        public SortedMap<CharSequence, V> subMap(CharSequence fromKey, CharSequence toKey) {
-            TSTSubMapCaseInsensitive result = new TSTSubMapCaseInsensitive();
-            result.mSubMap = mSubMap.subMap(fromKey.toString().toLowerCase(mLocale),
-                    toKey.toString().toLowerCase(mLocale));
-            return result;
+        @Override
+        protected Node<V> hikid(Node<V> node) {
+            return node.mHikid;
         }
 
-        public SortedMap<CharSequence, V> headMap(CharSequence toKey) {
-            TSTSubMapCaseInsensitive result = new TSTSubMapCaseInsensitive();
-            result.mSubMap = mSubMap.headMap(toKey.toString().toLowerCase(mLocale));
-            return result;
+        @Override
+        protected int subarrayLength(Node<V> node) {
+            return TernarySearchTreeMapCaseInsensitive.subarrayLength(node);
         }
 
-        public SortedMap<CharSequence, V> tailMap(CharSequence fromKey) {
-            TSTSubMapCaseInsensitive result = new TSTSubMapCaseInsensitive();
-            result.mSubMap = mSubMap.tailMap(fromKey.toString().toLowerCase(mLocale));
-            return result;
+        @Override
+        protected boolean hasValue(Node<V> node) {
+            return node.mData != null;
         }
 
-        public CharSequence firstKey() {
-            CharSequence firstKey = mSubMap.firstKey();
-            return firstKey == null ? null : mSubMap.get(firstKey).getKey();
+        @Override
+        protected V value(Node<V> node) {
+            return node.mData;
         }
 
-        public CharSequence lastKey() {
-            CharSequence lastKey = mSubMap.lastKey();
-            return lastKey == null ? null : mSubMap.get(lastKey).getKey();
+        @Override
+        protected char fold(char c) {
+            return mFoldingTable[c];
         }
 
         @Override
-        public Set<Entry<CharSequence, V>> entrySet() {
-            return new TSTEntrySetCaseInsensitive(mFromKey, mExclusiveToKey);
+        protected String key(char[] path, int length) {
+            return node().mKey;
         }
     }
 
-    private class TSTKeySetCaseInsensitive extends TernarySearchTreeMap<Map.Entry<CharSequence, V>>.TSTKeySet {
-        private static final long serialVersionUID = -4830094843193803479L;
-
-        private CharSequence mFromKey;
-        private CharSequence mExclusiveToKey;
+    private static final class Node<V> {
+        private final char mSplitChar;                      // in lower case
+        private Node<V> mLokid;
+        private Node<V> mEqkid;
+        private Node<V> mHikid;
+        private String mKey;                                // original key of the entry terminating in this node
+        private V mData;
+        private int mSubarrayLength;                        // number of keys in this node's subtree
 
-        public TSTKeySetCaseInsensitive() {
-            mData.super();
+        public Node(char splitChar) {
+            mSplitChar = splitChar;
         }
 
-        @Override
-        public boolean contains(Object o) {
-            return super.contains(o.toString().toLowerCase(mLocale));
-        }
-
-        @Override
-        public boolean remove(Object o) {
-            return super.remove(o.toString().toLowerCase(mLocale));
-        }
-
-        @Override
-        public Iterator<CharSequence> iterator() {
-            final Iterator<Entry<CharSequence, Map.Entry<CharSequence, V>>> entryIterator;
-            if (mFromKey != null || mExclusiveToKey != null) {
-                entryIterator = mData.subMap(mFromKey, mExclusiveToKey).entrySet().iterator();
-            } else {
-                entryIterator = mData.entrySet().iterator();
+        private void unlinkChild(Node<V> child) {
+            if (mLokid == child) {
+                mLokid = null;
+            } else if (mEqkid == child) {
+                mEqkid = null;
+            } else if (mHikid == child) {
+                mHikid = null;
             }
-
-            return new Iterator<CharSequence>() {
-                public boolean hasNext() {
-                    return entryIterator.hasNext();
-                }
-
-                public CharSequence next() {
-                    return entryIterator.next().getValue().getKey();
-                }
-
-                public void remove() {
-                    entryIterator.remove();
-                }
-            };
         }
     }
 }
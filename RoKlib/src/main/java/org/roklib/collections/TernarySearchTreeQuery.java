@@ -33,6 +33,27 @@ interface TernarySearchTreeQuery {
      */
     public abstract int indexOf(CharSequence string);
 
+    /**
+     * Returns the number of elements of the tree which are strictly smaller than the given string. In contrast to
+     * {@link #indexOf(CharSequence)}, the string itself does not need to be contained in the tree. For a contained
+     * string, the rank is equal to its index. The rank is determined in time proportional to the length of the string.
+     *
+     * @param string The string whose rank is to be returned.
+     * @return the number of elements smaller than <code>string</code>.
+     */
+    public abstract int rank(CharSequence string);
+
+    /**
+     * Returns the number of elements of the tree which start with the given prefix. The prefix itself is counted if it
+     * is an element of the tree. Together with {@link #rank(CharSequence)} this allows to page through the elements
+     * with a given prefix: these occupy the indices <code>[rank(prefix), rank(prefix) + countPrefix(prefix))</code>.
+     * The count is determined in time proportional to the length of the prefix.
+     *
+     * @param prefix The prefix whose matching elements are to be counted.
+     * @return the number of elements starting with <code>prefix</code>.
+     */
+    public abstract int countPrefix(CharSequence prefix);
+
     public abstract CharSequence predecessor(CharSequence forElement);
 
     public abstract CharSequence successor(CharSequence forElement);
@@ -62,8 +62,18 @@ public class TernarySearchTreeSet extends AbstractSet<CharSequence> implements S
         addAll(values);
     }
 
+    /**
+     * Creates a set with the given values. If the set is not case-insensitive, the search tree is built directly from
+     * the sorted values with {@link TernarySearchTreeMap#fromKeys(Collection, Object)}, which results in an optimally
+     * balanced tree.
+     */
     public TernarySearchTreeSet(SortedSet<? extends CharSequence> values, boolean caseInsensitive) {
-        this((Collection<? extends CharSequence>) values, caseInsensitive);
+        if (caseInsensitive) {
+            data = new TernarySearchTreeMapCaseInsensitive<Object>();
+            addAll(values);
+        } else {
+            data = TernarySearchTreeMap.fromKeys(values, MARKER);
+        }
     }
 
     public Comparator<? super CharSequence> comparator() {
@@ -106,6 +116,11 @@ public class TernarySearchTreeSet extends AbstractSet<CharSequence> implements S
         return data.keySet().iterator();
     }
 
+    @Override
+    public Spliterator<CharSequence> spliterator() {
+        return data.keySet().spliterator();
+    }
+
     public boolean remove(Object element) {
         if (element == null) {
             throw new NullPointerException();
@@ -121,6 +136,14 @@ public class TernarySearchTreeSet extends AbstractSet<CharSequence> implements S
         return data.indexOf(string);
     }
 
+    public int rank(CharSequence string) {
+        return data.rank(string);
+    }
+
+    public int countPrefix(CharSequence prefix) {
+        return data.countPrefix(prefix);
+    }
+
     public CharSequence getElementAt(int index) {
         return data.getKeyAt(index);
     }
@@ -143,6 +166,61 @@ public class TernarySearchTreeSet extends AbstractSet<CharSequence> implements S
         return data.matchAlmost(string, distance, lengthTolerance);
     }
 
+    /**
+     * Returns all strings of this set which match the given wildcard pattern, sorted in ascending order. See
+     * {@link TernarySearchTreeMap#partialMatch(CharSequence)} for the pattern syntax. For a case-insensitive set, the
+     * pattern is matched without regard to case.
+     *
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    public Iterable<CharSequence> partialMatch(CharSequence pattern) {
+        final Iterable<Map.Entry<CharSequence, Object>> matches;
+        if (data instanceof TernarySearchTreeMapCaseInsensitive) {
+            matches = ((TernarySearchTreeMapCaseInsensitive<Object>) data).partialMatch(pattern);
+        } else {
+            matches = ((TernarySearchTreeMap<Object>) data).partialMatch(pattern);
+        }
+        return new Iterable<CharSequence>() {
+            public Iterator<CharSequence> iterator() {
+                final Iterator<Map.Entry<CharSequence, Object>> iterator = matches.iterator();
+                return new Iterator<CharSequence>() {
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    public CharSequence next() {
+                        return iterator.next().getKey();
+                    }
+
+                    public void remove() {
+                        iterator.remove();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Creates an immutable copy of this set which is stored as a minimal directed acyclic word graph. The copy shares
+     * common suffixes of the strings in addition to common prefixes and thus usually needs considerably less memory
+     * than this set. See {@link FrozenTernarySearchTreeSet}.
+     *
+     * @throws UnsupportedOperationException if this set is case-insensitive
+     */
+    public FrozenTernarySearchTreeSet freeze() {
+        if (data instanceof TernarySearchTreeMapCaseInsensitive) {
+            throw new UnsupportedOperationException("a case-insensitive set cannot be frozen");
+        }
+        return new FrozenTernarySearchTreeSet.Builder().addAll(this).build();
+    }
+
+    /**
+     * Returns the map which backs this set.
+     */
+    TernarySearchTreeMapInterface<Object> backingMap() {
+        return data;
+    }
+
     @Override
     public String toString() {
         return data.keySet().toString();
@@ -194,6 +272,11 @@ public class TernarySearchTreeSet extends AbstractSet<CharSequence> implements S
             return mParent.keySet().iterator();
         }
 
+        @Override
+        public Spliterator<CharSequence> spliterator() {
+            return mParent.keySet().spliterator();
+        }
+
         public boolean remove(Object element) {
             if (element == null) {
                 throw new NullPointerException();
@@ -0,0 +1,561 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A ternary search tree map which stores a score with each key and can return the highest scoring keys which start
+ * with a given prefix, e.g. the most popular completions of the text typed into a search box.<BR>
+ * <BR>
+ * Besides its own score, each node holds the maximum score of all keys in its subtree. {@link #topK(CharSequence,
+ * int)} uses these maxima for a best-first search: a priority queue holds the subtrees and keys found so far, ordered
+ * by their (maximum) score, and the search always expands the subtree with the highest maximum. Since no key in a
+ * subtree can score higher than the subtree's maximum, the keys are found in descending order of their scores and the
+ * search can stop as soon as <code>k</code> keys have been found. Its cost thus depends on <code>k</code> and the
+ * length of the keys, not on the number of keys starting with the prefix. Whenever the queue grows beyond twice the
+ * number of keys still missing, it is pruned to the best candidates, so that it never holds more than
+ * <code>O(k)</code> candidates.<BR>
+ * <BR>
+ * Scores can be changed at any time with {@link #setScore(CharSequence, double)}. After an update, the maxima are
+ * recomputed on the path from the key's node to the root, stopping at the first node whose maximum does not change.
+ * Keys which are added with {@link #put(CharSequence, Object)} get a score of {@link #DEFAULT_SCORE}; replacing the
+ * value of an existing key keeps its score.<BR>
+ * <BR>
+ * Apart from the scores, this map behaves like {@link TernarySearchTreeMap}. It does not allow <code>null</code> keys
+ * or values and is not thread-safe.
+ *
+ * @author Roland Krueger
+ */
+public class WeightedTernarySearchTreeMap<V> extends AbstractTernarySearchTreeMap<V> implements Serializable {
+    private static final long serialVersionUID = 6093176620183725094L;
+
+    /**
+     * The score of keys which are added without an explicit score.
+     */
+    public static final double DEFAULT_SCORE = 0.0;
+
+    private transient Node<V> mRootNode;
+    private transient V mEmptyStringKeyValue;
+    private transient double mEmptyStringKeyScore;
+    private transient Node<V>[] mPath;                      // path buffer for put(), remove() and setScore()
+
+    public WeightedTernarySearchTreeMap() {
+    }
+
+    public WeightedTernarySearchTreeMap(Map<? extends CharSequence, ? extends V> map) {
+        putAll(map);
+    }
+
+    private static int subarrayLength(Node<?> node) {
+        return node == null ? 0 : node.mSubarrayLength;
+    }
+
+    private static double maxScore(Node<?> node) {
+        return node == null ? Double.NEGATIVE_INFINITY : node.mMaxScore;
+    }
+
+    private static void checkScore(double score) {
+        if (Double.isNaN(score)) {
+            throw new IllegalArgumentException("score is NaN");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node<V>[] path(int minLength) {
+        if (mPath == null || mPath.length < minLength) {
+            mPath = (Node<V>[]) new Node<?>[Math.max(minLength, 32)];
+        }
+        return mPath;
+    }
+
+    @Override
+    public int size() {
+        return subarrayLength(mRootNode) + (mEmptyStringKeyValue == null ? 0 : 1);
+    }
+
+    @Override
+    public void clear() {
+        mRootNode = null;
+        mEmptyStringKeyValue = null;
+        mEmptyStringKeyScore = DEFAULT_SCORE;
+        mPath = null;
+    }
+
+    /**
+     * Returns the node which terminates the given non-empty key or <code>null</code> if there is no such node. The
+     * returned node does not necessarily carry a value.
+     */
+    private Node<V> findNode(CharSequence key) {
+        Cursor cursor = new Cursor();
+        return findNode(cursor, key) ? cursor.node() : null;
+    }
+
+    @Override
+    protected NodeCursor<V> nodeCursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Walks down the path of the given non-empty key and stores the visited nodes in {@link #mPath}. Returns the
+     * length of the path if the key is contained in the map or -1 otherwise.
+     */
+    private int findPath(CharSequence key) {
+        int keyLength = key.length();
+        Node<V>[] path = path(keyLength);
+        int depth = 0;
+        Node<V> node = mRootNode;
+        int charIndex = 0;
+        char keyChar = key.charAt(0);
+        while (node != null) {
+            if (depth == path.length) {
+                path = mPath = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = node;
+            if (keyChar < node.mSplitChar) {
+                node = node.mLokid;
+            } else if (keyChar > node.mSplitChar) {
+                node = node.mHikid;
+            } else if (++charIndex == keyLength) {
+                return node.mData == null ? -1 : depth;
+            } else {
+                keyChar = key.charAt(charIndex);
+                node = node.mEqkid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Recomputes the maximum scores of the first <code>depth</code> nodes in {@link #mPath}, starting at the deepest
+     * node. The ancestors of a node whose maximum has not changed do not need to be updated.
+     */
+    private void updateMaxScores(int depth) {
+        for (int i = depth - 1; i >= 0; --i) {
+            Node<V> node = mPath[i];
+            double max = Math.max(node.mData == null ? Double.NEGATIVE_INFINITY : node.mScore,
+                    Math.max(maxScore(node.mEqkid), Math.max(maxScore(node.mLokid), maxScore(node.mHikid))));
+            if (max == node.mMaxScore) {
+                return;
+            }
+            node.mMaxScore = max;
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        CharSequence keyChars = toKey(key);
+        if (keyChars.length() == 0) {
+            return mEmptyStringKeyValue;
+        }
+        Node<V> node = findNode(keyChars);
+        return node == null ? null : node.mData;
+    }
+
+    /**
+     * Returns the score of the given key or <code>null</code> if the key is not contained in this map.
+     */
+    public Double getScore(Object key) {
+        CharSequence keyChars = toKey(key);
+        if (keyChars.length() == 0) {
+            return mEmptyStringKeyValue == null ? null : mEmptyStringKeyScore;
+        }
+        Node<V> node = findNode(keyChars);
+        return node == null || node.mData == null ? null : node.mScore;
+    }
+
+    /**
+     * Associates the given value with the given key. A new key gets the score {@link #DEFAULT_SCORE}; if the key is
+     * already contained in the map, its score is not changed.
+     */
+    @Override
+    public V put(CharSequence key, V value) {
+        return put(key, value, DEFAULT_SCORE, true);
+    }
+
+    /**
+     * Associates the given value and score with the given key.
+     *
+     * @throws IllegalArgumentException if the score is NaN
+     */
+    public V put(CharSequence key, V value, double score) {
+        checkScore(score);
+        return put(key, value, score, false);
+    }
+
+    private V put(CharSequence key, V value, double score, boolean keepScore) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        if (value == null) {
+            throw new NullPointerException("value is null");
+        }
+        int keyLength = key.length();
+        if (keyLength == 0) {
+            V oldValue = mEmptyStringKeyValue;
+            mEmptyStringKeyValue = value;
+            if (oldValue == null || !keepScore) {
+                mEmptyStringKeyScore = score;
+            }
+            return oldValue;
+        }
+
+        Node<V>[] path = path(keyLength);
+        int depth = 0;
+        Node<V> parent = null;
+        int branch = 0;                                     // child slot of parent: 0 = lo, 1 = eq, 2 = hi
+        Node<V> node = mRootNode;
+        int charIndex = 0;
+        char keyChar = key.charAt(0);
+        while (true) {
+            if (node == null) {
+                node = new Node<V>(keyChar);
+                if (parent == null) {
+                    mRootNode = node;
+                } else if (branch == 0) {
+                    parent.mLokid = node;
+                } else if (branch == 1) {
+                    parent.mEqkid = node;
+                } else {
+                    parent.mHikid = node;
+                }
+            }
+            if (depth == path.length) {
+                path = mPath = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = node;
+            parent = node;
+            if (keyChar < node.mSplitChar) {
+                branch = 0;
+                node = node.mLokid;
+            } else if (keyChar > node.mSplitChar) {
+                branch = 2;
+                node = node.mHikid;
+            } else if (++charIndex == keyLength) {
+                break;
+            } else {
+                keyChar = key.charAt(charIndex);
+                branch = 1;
+                node = node.mEqkid;
+            }
+        }
+
+        V oldValue = node.mData;
+        node.mData = value;
+        if (oldValue == null) {
+            for (int i = 0; i < depth; ++i) {
+                path[i].mSubarrayLength++;
+            }
+        }
+        if (oldValue == null || !keepScore) {
+            node.mScore = score;
+            updateMaxScores(depth);
+        }
+        return oldValue;
+    }
+
+    /**
+     * Changes the score of the given key.
+     *
+     * @return true if the key is contained in this map, false if the map has not been changed
+     * @throws IllegalArgumentException if the score is NaN
+     */
+    public boolean setScore(CharSequence key, double score) {
+        checkScore(score);
+        if (key.length() == 0) {
+            if (mEmptyStringKeyValue == null) {
+                return false;
+            }
+            mEmptyStringKeyScore = score;
+            return true;
+        }
+        int depth = findPath(key);
+        if (depth < 0) {
+            return false;
+        }
+        mPath[depth - 1].mScore = score;
+        updateMaxScores(depth);
+        return true;
+    }
+
+    @Override
+    public V remove(Object key) {
+        CharSequence keyChars = toKey(key);
+        if (keyChars.length() == 0) {
+            V oldValue = mEmptyStringKeyValue;
+            mEmptyStringKeyValue = null;
+            mEmptyStringKeyScore = DEFAULT_SCORE;
+            return oldValue;
+        }
+        int depth = findPath(keyChars);
+        if (depth < 0) {
+            return null;
+        }
+        Node<V> node = mPath[depth - 1];
+        V oldValue = node.mData;
+        node.mData = null;
+        node.mScore = DEFAULT_SCORE;
+        // decrease the subarray lengths on the path. The subtree of the topmost node whose subarray length drops to 0
+        // does not contain any keys any more and is unlinked from its parent.
+        int remainingDepth = depth;
+        for (int i = 0; i < depth; ++i) {
+            Node<V> pathNode = mPath[i];
+            if (--pathNode.mSubarrayLength == 0 && remainingDepth == depth) {
+                remainingDepth = i;
+                if (i == 0) {
+                    mRootNode = null;
+                } else {
+                    Node<V> parent = mPath[i - 1];
+                    if (parent.mLokid == pathNode) {
+                        parent.mLokid = null;
+                    } else if (parent.mEqkid == pathNode) {
+                        parent.mEqkid = null;
+                    } else {
+                        parent.mHikid = null;
+                    }
+                }
+            }
+        }
+        updateMaxScores(remainingDepth);
+        return oldValue;
+    }
+
+    /**
+     * Returns the <code>k</code> entries with the highest scores among all entries whose keys start with the given
+     * prefix, in descending order of their scores. Entries with the same score are returned in no particular order. If
+     * there are less than <code>k</code> such entries, all of them are returned.
+     *
+     * @throws IllegalArgumentException if <code>k</code> is negative
+     */
+    public List<Entry<CharSequence, V>> topK(CharSequence prefix, int k) {
+        if (prefix == null) {
+            throw new NullPointerException("prefix is null");
+        }
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        List<Entry<CharSequence, V>> result = new ArrayList<Entry<CharSequence, V>>(Math.min(k, size()));
+        if (k == 0) {
+            return result;
+        }
+        PriorityQueue<Candidate<V>> queue = new PriorityQueue<Candidate<V>>();
+        if (prefix.length() == 0) {
+            if (mEmptyStringKeyValue != null) {
+                queue.add(new Candidate<V>("", mEmptyStringKeyValue, mEmptyStringKeyScore));
+            }
+            if (mRootNode != null) {
+                queue.add(new Candidate<V>(mRootNode, ""));
+            }
+        } else {
+            Node<V> node = findNode(prefix);
+            if (node == null) {
+                return result;
+            }
+            String key = prefix.toString();
+            if (node.mData != null) {
+                queue.add(new Candidate<V>(key, node.mData, node.mScore));
+            }
+            if (node.mEqkid != null) {
+                queue.add(new Candidate<V>(node.mEqkid, key));
+            }
+        }
+
+        while (result.size() < k && !queue.isEmpty()) {
+            int remaining = k - result.size();
+            if (queue.size() > 2 * remaining) {
+                queue = prune(queue, remaining);
+            }
+            Candidate<V> candidate = queue.poll();
+            Node<V> node = candidate.mNode;
+            if (node == null) {
+                result.add(newEntry(candidate.mKey, candidate.mValue));
+                continue;
+            }
+            if (node.mLokid != null) {
+                queue.add(new Candidate<V>(node.mLokid, candidate.mKey));
+            }
+            if (node.mHikid != null) {
+                queue.add(new Candidate<V>(node.mHikid, candidate.mKey));
+            }
+            String key = candidate.mKey + node.mSplitChar;
+            if (node.mData != null) {
+                queue.add(new Candidate<V>(key, node.mData, node.mScore));
+            }
+            if (node.mEqkid != null) {
+                queue.add(new Candidate<V>(node.mEqkid, key));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a queue with the <code>count</code> best candidates of the given queue. The candidates of a queue belong
+     * to disjoint sets of keys and each of them stands for at least one key with the candidate's score. The
+     * <code>count</code> best candidates thus stand for <code>count</code> keys which score at least as high as any
+     * key of the dropped candidates, so that the dropped candidates cannot contribute to the result.
+     */
+    private static <V> PriorityQueue<Candidate<V>> prune(PriorityQueue<Candidate<V>> queue, int count) {
+        PriorityQueue<Candidate<V>> pruned = new PriorityQueue<Candidate<V>>(2 * count + 4);
+        for (int i = 0; i < count; ++i) {
+            pruned.add(queue.poll());
+        }
+        return pruned;
+    }
+
+    /**
+     * Writes the entries in key order, each as the key's string representation, the value and the score.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size());
+        for (Entry<CharSequence, V> entry : entrySet()) {
+            out.writeObject(entry.getKey().toString());
+            out.writeObject(entry.getValue());
+            out.writeDouble(getScore(entry.getKey()));
+        }
+    }
+
+    /**
+     * Reads the entries written by {@link #writeObject(ObjectOutputStream)} together with their scores. The entries
+     * are inserted in the order given by {@link #balancedInsertionOrder(int)}.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int size = in.readInt();
+        String[] keys = new String[size];
+        Object[] values = new Object[size];
+        double[] scores = new double[size];
+        for (int i = 0; i < size; ++i) {
+            keys[i] = (String) in.readObject();
+            values[i] = in.readObject();
+            scores[i] = in.readDouble();
+        }
+        for (int index : balancedInsertionOrder(size)) {
+            put(keys[index], (V) values[index], scores[index]);
+        }
+    }
+
+    private final class Cursor extends ReferenceNodeCursor<Node<V>, V> {
+        @Override
+        protected boolean hasEmptyStringKeyValue() {
+            return mEmptyStringKeyValue != null;
+        }
+
+        @Override
+        protected V emptyStringKeyValue() {
+            return mEmptyStringKeyValue;
+        }
+
+        @Override
+        protected Node<V> rootNode() {
+            return mRootNode;
+        }
+
+        @Override
+        protected char splitChar(Node<V> node) {
+            return node.mSplitChar;
+        }
+
+        @Override
+        protected Node<V> lokid(Node<V> node) {
+            return node.mLokid;
+        }
+
+        @Override
+        protected Node<V> eqkid(Node<V> node) {
+            return node.mEqkid;
+        }
+
+        @Override
+        protected Node<V> hikid(Node<V> node) {
+            return node.mHikid;
+        }
+
+        @Override
+        protected int subarrayLength(Node<V> node) {
+            return WeightedTernarySearchTreeMap.subarrayLength(node);
+        }
+
+        @Override
+        protected boolean hasValue(Node<V> node) {
+            return node.mData != null;
+        }
+
+        @Override
+        protected V value(Node<V> node) {
+            return node.mData;
+        }
+    }
+
+    private static final class Node<V> {
+        private final char mSplitChar;
+        private Node<V> mLokid;
+        private Node<V> mEqkid;
+        private Node<V> mHikid;
+        private V mData;
+        private int mSubarrayLength;                        // number of keys in this node's subtree
+        private double mScore;                              // score of the key ending in this node
+        private double mMaxScore = Double.NEGATIVE_INFINITY;// maximum score of all keys in this node's subtree
+
+        public Node(char splitChar) {
+            mSplitChar = splitChar;
+        }
+    }
+
+    /**
+     * An entry of the priority queue used by {@link #topK(CharSequence, int)}: either a subtree whose keys start with
+     * the given key prefix, or a complete key with its value. Candidates with higher scores come first; if the scores
+     * are equal, complete keys are preferred over subtrees.
+     */
+    private static final class Candidate<V> implements Comparable<Candidate<V>> {
+        private final Node<V> mNode;
+        private final String mKey;
+        private final V mValue;
+        private final double mScore;
+
+        public Candidate(Node<V> subtree, String keyPrefix) {
+            mNode = subtree;
+            mKey = keyPrefix;
+            mValue = null;
+            mScore = subtree.mMaxScore;
+        }
+
+        public Candidate(String key, V value, double score) {
+            mNode = null;
+            mKey = key;
+            mValue = value;
+            mScore = score;
+        }
+
+        public int compareTo(Candidate<V> other) {
+            int result = Double.compare(other.mScore, mScore);
+            if (result == 0) {
+                result = (mNode == null ? 0 : 1) - (other.mNode == null ? 0 : 1);
+            }
+            return result;
+        }
+    }
+}
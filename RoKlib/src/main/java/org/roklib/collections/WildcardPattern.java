@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections;
+
+import java.util.Arrays;
+
+/**
+ * A compiled wildcard pattern which is matched against the keys of a ternary search tree one character at a time. The
+ * following elements are supported:
+ * <ul>
+ * <li><code>?</code> matches any single character.</li>
+ * <li><code>*</code> matches any sequence of characters, including the empty sequence.</li>
+ * <li><code>[abc]</code> matches one of the listed characters. Ranges like <code>[a-z]</code> are allowed, and a
+ * leading <code>^</code> or <code>!</code> negates the class.</li>
+ * <li><code>\</code> escapes the following character, which is then matched literally.</li>
+ * </ul>
+ * Every other character matches itself. The pattern is compiled into a nondeterministic automaton with one state for
+ * each pattern element plus an accepting state. A set of active states is represented by the bits of a
+ * <code>long</code>, so a pattern must not consist of more than {@value #MAX_ELEMENTS} elements.<BR>
+ * <BR>
+ * Like {@link LevenshteinAutomaton}, the pattern is immutable, so that one pattern can drive any number of searches at
+ * the same time. The empty state set is the dead state of the {@link KeyAutomaton}.
+ *
+ * @author Roland Krueger
+ */
+final class WildcardPattern implements KeyAutomaton {
+    static final int MAX_ELEMENTS = 63;
+
+    private static final char[] ANY_CHAR = {Character.MIN_VALUE, Character.MAX_VALUE};
+
+    private final int mLength;                              // number of elements
+    private final boolean[] mStar;
+    private final char[][] mRanges;                         // inclusive character ranges of each element
+    private final boolean[] mNegated;
+    private final char[] mMinChar;                          // smallest character an element can match
+    private final char[] mMaxChar;                          // largest character an element can match
+    private final char[] mFoldingTable;
+
+    public WildcardPattern(CharSequence pattern) {
+        this(pattern, null);
+    }
+
+    /**
+     * Compiles a pattern for a tree whose split characters have been folded with the given table. The literal
+     * characters of the pattern are folded with the same table, and each range of a character class additionally
+     * matches its folded counterpart if the folding maps the range onto a range of the same size.
+     *
+     * @param foldingTable maps every <code>char</code> value to its folded character. May be <code>null</code> if the
+     *                     tree's characters are not folded.
+     * @throws IllegalArgumentException if the pattern is malformed or has too many elements
+     */
+    public WildcardPattern(CharSequence pattern, char[] foldingTable) {
+        if (pattern == null) {
+            throw new NullPointerException("pattern is null");
+        }
+        mFoldingTable = foldingTable;
+        int capacity = Math.min(pattern.length(), MAX_ELEMENTS + 1);
+        mStar = new boolean[capacity];
+        mRanges = new char[capacity][];
+        mNegated = new boolean[capacity];
+        mMinChar = new char[capacity];
+        mMaxChar = new char[capacity];
+        int length = 0;
+        int i = 0;
+        while (i < pattern.length()) {
+            if (length == MAX_ELEMENTS) {
+                throw new IllegalArgumentException("pattern has more than " + MAX_ELEMENTS + " elements: " + pattern);
+            }
+            char c = pattern.charAt(i++);
+            if (c == '*') {
+                if (length > 0 && mStar[length - 1]) {
+                    continue;                               // consecutive stars are equivalent to a single one
+                }
+                mStar[length] = true;
+                mRanges[length] = ANY_CHAR;
+            } else if (c == '?') {
+                mRanges[length] = ANY_CHAR;
+            } else if (c == '[') {
+                i = parseClass(pattern, i, length);
+            } else {
+                if (c == '\\') {
+                    if (i == pattern.length()) {
+                        throw new IllegalArgumentException("pattern ends with an escape character: " + pattern);
+                    }
+                    c = pattern.charAt(i++);
+                }
+                c = fold(c);
+                mRanges[length] = new char[]{c, c};
+            }
+            setBounds(length);
+            length++;
+        }
+        mLength = length;
+    }
+
+    /**
+     * Parses the character class starting after the opening bracket at the given position and returns the position
+     * after the closing bracket. A closing bracket directly after the opening bracket or the negation is taken
+     * literally.
+     */
+    private int parseClass(CharSequence pattern, int start, int element) {
+        int i = start;
+        if (i < pattern.length() && (pattern.charAt(i) == '^' || pattern.charAt(i) == '!')) {
+            mNegated[element] = true;
+            i++;
+        }
+        char[] ranges = new char[8];
+        int rangeCount = 0;
+        boolean first = true;
+        while (true) {
+            if (i == pattern.length()) {
+                throw new IllegalArgumentException("unterminated character class in pattern: " + pattern);
+            }
+            char low = pattern.charAt(i++);
+            if (low == ']' && !first) {
+                break;
+            }
+            first = false;
+            if (low == '\\' && i < pattern.length()) {
+                low = pattern.charAt(i++);
+            }
+            char high = low;
+            if (i + 1 < pattern.length() && pattern.charAt(i) == '-' && pattern.charAt(i + 1) != ']') {
+                high = pattern.charAt(i + 1);
+                i += 2;
+                if (high == '\\' && i < pattern.length()) {
+                    high = pattern.charAt(i++);
+                }
+                if (high < low) {
+                    throw new IllegalArgumentException("invalid range " + low + "-" + high + " in pattern: " + pattern);
+                }
+            }
+            if (rangeCount + 4 > ranges.length) {
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            }
+            ranges[rangeCount++] = low;
+            ranges[rangeCount++] = high;
+            if (mFoldingTable != null) {
+                char foldedLow = fold(low);
+                char foldedHigh = fold(high);
+                if (foldedHigh - foldedLow == high - low && foldedLow != low) {
+                    ranges[rangeCount++] = foldedLow;
+                    ranges[rangeCount++] = foldedHigh;
+                }
+            }
+        }
+        mRanges[element] = Arrays.copyOf(ranges, rangeCount);
+        return i;
+    }
+
+    private void setBounds(int element) {
+        char[] ranges = mRanges[element];
+        if (mNegated[element]) {
+            mMinChar[element] = Character.MIN_VALUE;
+            mMaxChar[element] = Character.MAX_VALUE;
+            return;
+        }
+        char min = Character.MAX_VALUE;
+        char max = Character.MIN_VALUE;
+        for (int i = 0; i < ranges.length; i += 2) {
+            min = (char) Math.min(min, ranges[i]);
+            max = (char) Math.max(max, ranges[i + 1]);
+        }
+        mMinChar[element] = min;
+        mMaxChar[element] = max;
+    }
+
+    private char fold(char c) {
+        return mFoldingTable == null ? c : mFoldingTable[c];
+    }
+
+    private boolean matches(int element, char c) {
+        char[] ranges = mRanges[element];
+        boolean inRange = false;
+        for (int i = 0; i < ranges.length && !inRange; i += 2) {
+            inRange = c >= ranges[i] && c <= ranges[i + 1];
+        }
+        return inRange != mNegated[element];
+    }
+
+    /**
+     * Adds the states which can be reached without reading a character, i.e. the states after each star.
+     */
+    private long closure(long states) {
+        for (int i = 0; i < mLength; ++i) {
+            if (mStar[i] && (states & (1L << i)) != 0) {
+                states |= 1L << (i + 1);
+            }
+        }
+        return states;
+    }
+
+    public long start() {
+        return closure(1L);
+    }
+
+    public long step(long states, char c) {
+        long next = 0;
+        for (int i = 0; i < mLength; ++i) {
+            if ((states & (1L << i)) != 0 && matches(i, c)) {
+                next |= 1L << (mStar[i] ? i : i + 1);
+            }
+        }
+        return closure(next);
+    }
+
+    public boolean isMatch(long states) {
+        return (states & (1L << mLength)) != 0;
+    }
+
+    public boolean canMatchBelow(long states, char c) {
+        for (int i = 0; i < mLength; ++i) {
+            if ((states & (1L << i)) != 0 && mMinChar[i] < c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean canMatchAbove(long states, char c) {
+        for (int i = 0; i < mLength; ++i) {
+            if ((states & (1L << i)) != 0 && mMaxChar[i] > c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int forcedChar(long states) {
+        if (isMatch(states) || Long.bitCount(states) != 1) {
+            return -1;
+        }
+        int element = Long.numberOfTrailingZeros(states);
+        char[] ranges = mRanges[element];
+        if (mStar[element] || mNegated[element] || ranges.length != 2 || ranges[0] != ranges[1]) {
+            return -1;
+        }
+        return ranges[0];
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.Map.Entry;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the {@link SortedMap} behavior of a ternary search tree map variant with the behavior of a {@link TreeMap},
+ * which serves as the reference implementation. Subclasses provide the map under test.
+ *
+ * @author Roland Krueger
+ */
+public abstract class AbstractTSTMapConformanceTest {
+    private static final String[] WORDS = {"", "a", "ab", "abc", "abd", "b", "ba", "bab", "banana", "band", "bandana",
+            "c", "cab", "zz", "zzz", "ärger", "Apache", "apache", "ape", "x"};
+
+    private SortedMap<CharSequence, String> testObj;
+    private TreeMap<CharSequence, String> reference;
+
+    public abstract SortedMap<CharSequence, String> createObjectUnderTest();
+
+    @Before
+    public void setUp() {
+        testObj = createObjectUnderTest();
+        reference = new TreeMap<CharSequence, String>();
+    }
+
+    private void putWords() {
+        for (String word : WORDS) {
+            assertEquals(reference.put(word, word.toUpperCase()), testObj.put(word, word.toUpperCase()));
+        }
+    }
+
+    private void assertSameContent(SortedMap<CharSequence, String> expected, SortedMap<CharSequence, String> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        assertEquals(new ArrayList<CharSequence>(expected.keySet()), new ArrayList<CharSequence>(actual.keySet()));
+        assertEquals(new ArrayList<String>(expected.values()), new ArrayList<String>(actual.values()));
+        assertEquals(expected, actual);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        if (!expected.isEmpty()) {
+            assertEquals(expected.firstKey(), actual.firstKey());
+            assertEquals(expected.lastKey(), actual.lastKey());
+        }
+    }
+
+    @Test
+    public void testPutAndGet() {
+        putWords();
+        assertSameContent(reference, testObj);
+        for (String word : WORDS) {
+            assertEquals(word.toUpperCase(), testObj.get(word));
+            assertEquals(word.toUpperCase(), testObj.get(new StringBuilder(word)));
+            assertTrue(testObj.containsKey(word));
+        }
+        assertNull(testObj.get("abe"));
+        assertNull(testObj.get("zzzz"));
+        assertFalse(testObj.containsKey("bandan"));
+        assertEquals("BAND", testObj.put("band", "BAND2"));
+        assertEquals("BAND2", testObj.get("band"));
+        assertEquals(WORDS.length, testObj.size());
+    }
+
+    @Test
+    public void testEmptyMap() {
+        assertTrue(testObj.isEmpty());
+        assertEquals(0, testObj.size());
+        assertNull(testObj.get("a"));
+        assertFalse(testObj.entrySet().iterator().hasNext());
+        assertEquals(0, testObj.headMap("x").size());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testPutNullValue() {
+        testObj.put("key", null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testPutNullKey() {
+        testObj.put(null, "value");
+    }
+
+    @Test
+    public void testRemove() {
+        putWords();
+        for (int i = WORDS.length - 1; i >= 0; i -= 2) {
+            assertEquals(reference.remove(WORDS[i]), testObj.remove(WORDS[i]));
+            assertSameContent(reference, testObj);
+        }
+        assertNull(testObj.remove("not in map"));
+        assertNull(testObj.remove("ban"));
+        for (String word : WORDS) {
+            assertEquals(reference.remove(word), testObj.remove(word));
+        }
+        assertTrue(testObj.isEmpty());
+        putWords();
+        assertSameContent(reference, testObj);
+    }
+
+    @Test
+    public void testClear() {
+        putWords();
+        testObj.clear();
+        reference.clear();
+        assertTrue(testObj.isEmpty());
+        assertNull(testObj.get("banana"));
+        putWords();
+        assertSameContent(reference, testObj);
+    }
+
+    @Test
+    public void testSubMaps() {
+        putWords();
+        assertSameContent(reference.subMap("ab", "band"), testObj.subMap("ab", "band"));
+        assertSameContent(reference.subMap("aa", "ba"), testObj.subMap("aa", "ba"));
+        assertSameContent(reference.headMap("b"), testObj.headMap("b"));
+        assertSameContent(reference.headMap(""), testObj.headMap(""));
+        assertSameContent(reference.tailMap("bandana"), testObj.tailMap("bandana"));
+        assertSameContent(reference.tailMap("zzzz"), testObj.tailMap("zzzz"));
+        assertSameContent(reference.subMap("ab", "zz").headMap("c").tailMap("b"),
+                testObj.subMap("ab", "zz").headMap("c").tailMap("b"));
+        assertNull(testObj.subMap("bz", "c").get("banana"));
+        assertNull(testObj.subMap("bz", "c").firstKey());
+    }
+
+    @Test
+    public void testRemoveThroughViews() {
+        putWords();
+        for (Iterator<Entry<CharSequence, String>> it = testObj.subMap("b", "c").entrySet().iterator(); it.hasNext(); ) {
+            if (it.next().getKey().length() > 2) {
+                it.remove();
+            }
+        }
+        for (Iterator<Entry<CharSequence, String>> it = reference.subMap("b", "c").entrySet().iterator(); it.hasNext(); ) {
+            if (it.next().getKey().length() > 2) {
+                it.remove();
+            }
+        }
+        assertSameContent(reference, testObj);
+
+        testObj.keySet().remove("zz");
+        reference.keySet().remove("zz");
+        testObj.headMap("ab").clear();
+        reference.headMap("ab").clear();
+        assertSameContent(reference, testObj);
+        assertTrue(testObj.entrySet().remove(new AbstractMap.SimpleEntry<CharSequence, String>("c", "C")));
+        assertFalse(testObj.entrySet().remove(new AbstractMap.SimpleEntry<CharSequence, String>("x", "Y")));
+    }
+
+    @Test
+    public void testEntrySetValue() {
+        putWords();
+        Entry<CharSequence, String> entry = testObj.tailMap("band").entrySet().iterator().next();
+        assertEquals("band", entry.getKey());
+        entry.setValue("new value");
+        assertEquals("new value", testObj.get("band"));
+    }
+
+    @Test
+    public void testRandomOperations() {
+        Random random = new Random(4711);
+        for (int i = 0; i < 3000; ++i) {
+            String key = randomKey(random);
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(key), testObj.remove(key));
+            } else {
+                assertEquals(reference.put(key, key), testObj.put(key, key));
+            }
+        }
+        assertSameContent(reference, testObj);
+        String from = randomKey(random);
+        String to = randomKey(random);
+        if (from.compareTo(to) > 0) {
+            String tmp = from;
+            from = to;
+            to = tmp;
+        }
+        assertSameContent(reference.subMap(from, to), testObj.subMap(from, to));
+    }
+
+    @Test
+    public void testRandomRemoveWhileIterating() {
+        Random random = new Random(815);
+        for (int i = 0; i < 2000; ++i) {
+            String key = randomKey(random);
+            reference.put(key, key);
+            testObj.put(key, key);
+        }
+        String from = randomKey(random);
+        Iterator<Entry<CharSequence, String>> expected = reference.tailMap(from).entrySet().iterator();
+        Iterator<Entry<CharSequence, String>> actual = testObj.tailMap(from).entrySet().iterator();
+        while (expected.hasNext()) {
+            assertTrue(actual.hasNext());
+            assertEquals(expected.next(), actual.next());
+            if (random.nextBoolean()) {
+                expected.remove();
+                actual.remove();
+            }
+        }
+        assertFalse(actual.hasNext());
+        assertSameContent(reference, testObj);
+    }
+
+    private static String randomKey(Random random) {
+        int length = random.nextInt(6);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('a' + random.nextInt(4)));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Test;
+import org.roklib.collections.CompactTernarySearchTreeMap;
+import org.roklib.collections.TernarySearchTreeMap;
+
+import java.io.*;
+import java.util.*;
+import java.util.Map.Entry;
+
+import static org.junit.Assert.*;
+
+public class CompactTSTMapTest extends AbstractTSTMapConformanceTest {
+    private static final String[] KEYS = {"", "abc", "abd", "ab", "xyz", "xy", "boo", "bar", "baz", "foo", "foobar"};
+
+    @Override
+    public SortedMap<CharSequence, String> createObjectUnderTest() {
+        return new CompactTernarySearchTreeMap<String>();
+    }
+
+    private static void fill(Map<CharSequence, String> map) {
+        for (String key : KEYS) {
+            map.put(key, key);
+        }
+    }
+
+    @Test
+    public void testIndexQueriesMatchTernarySearchTreeMap() {
+        CompactTernarySearchTreeMap<String> testObj = new CompactTernarySearchTreeMap<String>();
+        TernarySearchTreeMap<String> expected = new TernarySearchTreeMap<String>();
+        fill(testObj);
+        fill(expected);
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.getKeyAt(i), testObj.getKeyAt(i));
+            assertEquals(expected.getValueAt(i), testObj.getValueAt(i));
+            assertEquals(i, testObj.indexOf(expected.getKeyAt(i)));
+        }
+        assertEquals(-1, testObj.indexOf("ba"));
+        assertEquals(-1, testObj.indexOf("fooba"));
+        assertEquals("abc", testObj.successor("ab"));
+        assertEquals("bar", testObj.successor("abd"));
+        assertEquals("abd", testObj.predecessor("ac"));
+        assertEquals("", testObj.predecessor("a"));
+        assertNull(testObj.predecessor(""));
+        assertNull(testObj.successor("xyz"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetKeyAtOutOfBounds() {
+        CompactTernarySearchTreeMap<String> testObj = new CompactTernarySearchTreeMap<String>();
+        fill(testObj);
+        testObj.getKeyAt(KEYS.length);
+    }
+
+    @Test
+    public void testPrefixQueries() {
+        CompactTernarySearchTreeMap<String> testObj = new CompactTernarySearchTreeMap<String>();
+        fill(testObj);
+        List<CharSequence> result = new ArrayList<CharSequence>();
+        for (CharSequence key : testObj.getPrefixMatch("ab")) {
+            result.add(key);
+        }
+        assertEquals(Arrays.<CharSequence>asList("ab", "abc", "abd"), result);
+
+        result.clear();
+        for (Entry<CharSequence, String> entry : testObj.getPrefixSubtreeIterator("b", true)) {
+            result.add(entry.getKey());
+        }
+        assertEquals(Arrays.<CharSequence>asList("", "ab", "abc", "abd", "foo", "foobar", "xy", "xyz"), result);
+        assertFalse(testObj.getPrefixMatch("q").iterator().hasNext());
+    }
+
+    @Test
+    public void testMatchAlmost() {
+        CompactTernarySearchTreeMap<String> testObj = new CompactTernarySearchTreeMap<String>();
+        TernarySearchTreeMap<String> expected = new TernarySearchTreeMap<String>();
+        fill(testObj);
+        fill(expected);
+        assertEquals(expected.matchAlmost("bax", 1, 0), testObj.matchAlmost("bax", 1, 0));
+        assertEquals(expected.matchAlmost("fob", 1, 3), testObj.matchAlmost("fob", 1, 3));
+        assertEquals(expected.matchAlmost("abc", 2, 1), testObj.matchAlmost("abc", 2, 1));
+    }
+
+    @Test
+    public void testTrimToSizeKeepsContent() {
+        CompactTernarySearchTreeMap<String> testObj = new CompactTernarySearchTreeMap<String>();
+        fill(testObj);
+        testObj.remove("foobar");
+        testObj.remove("xy");
+        TreeMap<CharSequence, String> expected = new TreeMap<CharSequence, String>(testObj);
+        int nodeCount = testObj.getNodeCount();
+        testObj.trimToSize();
+        assertEquals(nodeCount, testObj.getNodeCount());
+        assertEquals(expected, testObj);
+        testObj.put("foobar", "foobar");
+        assertEquals("foobar", testObj.get("foobar"));
+    }
+
+    @Test
+    public void testTrimToSizeBetweenRandomOperations() {
+        Random random = new Random(4711);
+        CompactTernarySearchTreeMap<String> testObj = new CompactTernarySearchTreeMap<String>();
+        TreeMap<CharSequence, String> expected = new TreeMap<CharSequence, String>();
+        for (int i = 0; i < 20000; ++i) {
+            String key = randomKey(random);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), testObj.remove(key));
+            } else {
+                assertEquals(expected.put(key, key + i), testObj.put(key, key + i));
+            }
+            if (i % 5000 == 4999) {
+                testObj.trimToSize();
+                assertEquals(expected, testObj);
+            }
+        }
+        int index = 0;
+        for (CharSequence key : expected.keySet()) {
+            assertEquals(index++, testObj.indexOf(key));
+        }
+    }
+
+    @Test
+    public void testNodesAreRecycled() {
+        CompactTernarySearchTreeMap<String> testObj = new CompactTernarySearchTreeMap<String>();
+        fill(testObj);
+        int nodeCount = testObj.getNodeCount();
+        testObj.remove("foobar");
+        assertEquals(nodeCount - 3, testObj.getNodeCount());
+        testObj.put("foobaz", "foobaz");
+        assertEquals(nodeCount, testObj.getNodeCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSerialization() throws Exception {
+        CompactTernarySearchTreeMap<String> testObj = new CompactTernarySearchTreeMap<String>();
+        fill(testObj);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(testObj);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        CompactTernarySearchTreeMap<String> copy = (CompactTernarySearchTreeMap<String>) in.readObject();
+        assertEquals(testObj, copy);
+        copy.put("new", "new");
+        assertEquals("new", copy.get("new"));
+    }
+
+    private static String randomKey(Random random) {
+        int length = random.nextInt(6);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('a' + random.nextInt(3)));
+        }
+        return buf.toString();
+    }
+}
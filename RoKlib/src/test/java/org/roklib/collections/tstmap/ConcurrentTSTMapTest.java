@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Test;
+import org.roklib.collections.ConcurrentTernarySearchTreeMap;
+import org.roklib.collections.TernarySearchTreeMap;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentTSTMapTest extends AbstractTSTMapConformanceTest {
+    private static final String[] KEYS = {"", "abc", "abd", "ab", "xyz", "xy", "boo", "bar", "baz", "foo", "foobar"};
+    private static final int THREADS = 4;
+
+    @Override
+    public SortedMap<CharSequence, String> createObjectUnderTest() {
+        return new ConcurrentTernarySearchTreeMap<String>();
+    }
+
+    private static ConcurrentTernarySearchTreeMap<String> createFilledMap() {
+        ConcurrentTernarySearchTreeMap<String> map = new ConcurrentTernarySearchTreeMap<String>();
+        for (String key : KEYS) {
+            map.put(key, key);
+        }
+        return map;
+    }
+
+    @Test
+    public void testQueriesMatchTernarySearchTreeMap() {
+        ConcurrentTernarySearchTreeMap<String> testObj = createFilledMap();
+        TernarySearchTreeMap<String> expected = new TernarySearchTreeMap<String>();
+        expected.putAll(testObj);
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.getKeyAt(i), testObj.getKeyAt(i));
+            assertEquals(i, testObj.indexOf(expected.getKeyAt(i)));
+        }
+        assertEquals(-1, testObj.indexOf("ba"));
+        assertEquals("abc", testObj.successor("ab"));
+        assertEquals("bar", testObj.successor("abd"));
+        assertEquals("abd", testObj.predecessor("ac"));
+        assertEquals("", testObj.predecessor("a"));
+        assertNull(testObj.predecessor(""));
+        assertNull(testObj.successor("xyz"));
+        assertEquals(expected.matchAlmost("bax", 1, 0), testObj.matchAlmost("bax", 1, 0));
+        assertEquals(expected.matchAlmost("fob", 1, 3), testObj.matchAlmost("fob", 1, 3));
+
+        List<CharSequence> result = new ArrayList<CharSequence>();
+        for (CharSequence key : testObj.getPrefixMatch("ab")) {
+            result.add(key);
+        }
+        assertEquals(Arrays.<CharSequence>asList("ab", "abc", "abd"), result);
+        result.clear();
+        for (Map.Entry<CharSequence, String> entry : testObj.getPrefixSubtreeIterator("b", true)) {
+            result.add(entry.getKey());
+        }
+        assertEquals(Arrays.<CharSequence>asList("", "ab", "abc", "abd", "foo", "foobar", "xy", "xyz"), result);
+    }
+
+    @Test
+    public void testConcurrentMapOperations() {
+        ConcurrentTernarySearchTreeMap<String> testObj = createFilledMap();
+        assertEquals("foo", testObj.putIfAbsent("foo", "other"));
+        assertNull(testObj.putIfAbsent("fo", "fo"));
+        assertFalse(testObj.replace("fo", "other", "new"));
+        assertTrue(testObj.replace("fo", "fo", "new"));
+        assertEquals("new", testObj.replace("fo", "fo"));
+        assertNull(testObj.replace("f", "f"));
+        assertFalse(testObj.remove("fo", "new"));
+        assertTrue(testObj.remove("fo", "fo"));
+        assertFalse(testObj.containsKey("fo"));
+        assertTrue(testObj.replace("", "", "empty"));
+        assertTrue(testObj.remove("", "empty"));
+        assertEquals(KEYS.length - 1, testObj.size());
+    }
+
+    @Test
+    public void testIteratorIsWeaklyConsistent() {
+        ConcurrentTernarySearchTreeMap<String> testObj = createFilledMap();
+        List<CharSequence> result = new ArrayList<CharSequence>();
+        for (CharSequence key : testObj.keySet()) {
+            result.add(key);
+            if ("abc".equals(key)) {
+                testObj.remove("boo");
+                testObj.remove("xy");
+                testObj.put("boa", "boa");
+                testObj.put("aa", "aa");
+            }
+        }
+        assertEquals(Arrays.<CharSequence>asList("", "ab", "abc", "abd", "bar", "baz", "boa", "foo", "foobar", "xyz"),
+                result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSerialization() throws Exception {
+        ConcurrentTernarySearchTreeMap<String> testObj = createFilledMap();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(testObj);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        ConcurrentTernarySearchTreeMap<String> copy = (ConcurrentTernarySearchTreeMap<String>) in.readObject();
+        assertEquals(testObj, copy);
+        copy.put("new", "new");
+        assertEquals("new", copy.get("new"));
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentUpdates() throws Exception {
+        final ConcurrentTernarySearchTreeMap<String> testObj = new ConcurrentTernarySearchTreeMap<String>();
+        final CyclicBarrier barrier = new CyclicBarrier(THREADS + 1);
+        final CountDownLatch finished = new CountDownLatch(THREADS);
+        final AtomicBoolean failed = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < THREADS; ++t) {
+            final int thread = t;
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    Random random = new Random(thread);
+                    barrier.await();
+                    try {
+                        update(testObj, random, thread);
+                    } finally {
+                        finished.countDown();
+                    }
+                    return null;
+                }
+            }));
+        }
+        futures.add(executor.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                barrier.await();
+                while (finished.getCount() > 0) {
+                    CharSequence previous = null;
+                    for (CharSequence key : testObj.keySet()) {
+                        if (previous != null && previous.toString().compareTo(key.toString()) >= 0) {
+                            failed.set(true);
+                        }
+                        previous = key;
+                    }
+                }
+                return null;
+            }
+        }));
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertFalse(failed.get());
+
+        TreeMap<CharSequence, String> expected = new TreeMap<CharSequence, String>();
+        for (int t = 0; t < THREADS; ++t) {
+            for (int i = 0; i < 500; i += 2) {
+                expected.put(i + "-" + t, i + "-" + t);
+            }
+        }
+        assertEquals(expected.size(), testObj.size());
+        assertEquals(expected, testObj);
+        assertEquals(new ArrayList<CharSequence>(expected.keySet()), new ArrayList<CharSequence>(testObj.keySet()));
+        int index = 0;
+        for (CharSequence key : expected.keySet()) {
+            assertEquals(index, testObj.indexOf(key));
+            assertEquals(key, testObj.getKeyAt(index++));
+        }
+    }
+
+    private static void update(ConcurrentTernarySearchTreeMap<String> testObj, Random random, int thread) {
+        // all threads work on keys sharing the same prefixes, so that insertions and the pruning of emptied nodes
+        // interfere with each other. Only the keys ending with the thread's number are changed by this thread, and
+        // the keys with an even number are left in the map at the end.
+        for (int i = 0; i < 20000; ++i) {
+            String key = randomKey(random) + thread;
+            assertNull(testObj.put(key, key));
+            assertEquals(key, testObj.get(key));
+            assertEquals(key, testObj.remove(key));
+        }
+        for (int i = 0; i < 500; ++i) {
+            String key = i + "-" + thread;
+            testObj.put(key, key);
+            if (i % 2 == 1) {
+                testObj.remove(key);
+            }
+        }
+    }
+
+    private static String randomKey(Random random) {
+        int length = random.nextInt(5);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('a' + random.nextInt(3)));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Test;
+import org.roklib.collections.FrozenTernarySearchTreeSet;
+import org.roklib.collections.TernarySearchTreeMap;
+import org.roklib.collections.TernarySearchTreeSet;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class FrozenTSTSetTest {
+    private static final String[] STEMS = {"walk", "talk", "jump", "play", "work", "call", "look", "want", "open",
+            "help", "start", "turn", "show", "paint", "farm", "print", "test", "rest", "act", "direct"};
+    private static final String[] SUFFIXES = {"", "s", "ed", "er", "ers", "ing", "ings", "able", "ation", "ations"};
+
+    @Test
+    public void testSuffixesAreShared() {
+        TernarySearchTreeSet set = new TernarySearchTreeSet();
+        TernarySearchTreeMap<Boolean> tree = new TernarySearchTreeMap<Boolean>();
+        for (String stem : STEMS) {
+            for (String suffix : SUFFIXES) {
+                set.add(stem + suffix);
+                tree.put(stem + suffix, Boolean.TRUE);
+            }
+        }
+        FrozenTernarySearchTreeSet frozen = set.freeze();
+        assertEquals(set.size(), frozen.size());
+        assertEquals(new ArrayList<CharSequence>(set), new ArrayList<CharSequence>(frozen));
+
+        // all stems lead to the same state, so the suffixes are stored only once
+        int suffixStates = 0;
+        for (String suffix : SUFFIXES) {
+            suffixStates += suffix.length();
+        }
+        assertTrue(frozen.getStateCount() < suffixStates + 60);
+        int treeNodes = 0;
+        for (CharSequence word : set) {
+            treeNodes += word.length();
+        }
+        assertTrue(frozen.getTransitionCount() * 5 < treeNodes);
+    }
+
+    @Test
+    public void testQueriesMatchTernarySearchTreeSet() {
+        Random random = new Random(23);
+        TernarySearchTreeSet set = new TernarySearchTreeSet();
+        set.add("");
+        for (int i = 0; i < 2000; ++i) {
+            set.add(randomWord(random));
+        }
+        FrozenTernarySearchTreeSet frozen = set.freeze();
+        TreeSet<CharSequence> reference = new TreeSet<CharSequence>(set);
+        assertEquals(set.size(), frozen.size());
+        assertEquals(set, frozen);
+        assertEquals(set.first(), frozen.first());
+        assertEquals(set.last(), frozen.last());
+        for (int i = 0; i < 500; ++i) {
+            String word = randomWord(random);
+            assertEquals(set.contains(word), frozen.contains(word));
+            assertEquals(set.indexOf(word), frozen.indexOf(word));
+            assertEquals(set.rank(word), frozen.rank(word));
+            assertEquals(set.countPrefix(word), frozen.countPrefix(word));
+            assertEquals(set.predecessor(word), frozen.predecessor(word));
+            assertEquals(set.successor(word), frozen.successor(word));
+            assertEquals(set.matchAlmost(word, 1, 1), frozen.matchAlmost(word, 1, 1));
+            assertEquals(set.matchAlmost(word, 2, 0), frozen.matchAlmost(word, 2, 0));
+            assertEquals(new ArrayList<CharSequence>(set.tailSet(word)),
+                    new ArrayList<CharSequence>(frozen.tailSet(word)));
+            assertEquals(new ArrayList<CharSequence>(set.headSet(word)),
+                    new ArrayList<CharSequence>(frozen.headSet(word)));
+            assertEquals(new ArrayList<CharSequence>(reference.subSet(word, word + Character.MAX_VALUE)),
+                    toList(frozen.getPrefixMatch(word)));
+        }
+        for (int i = 0; i < set.size(); i += 7) {
+            assertEquals(set.getElementAt(i), frozen.getElementAt(i));
+        }
+    }
+
+    @Test
+    public void testSubSetViews() {
+        FrozenTernarySearchTreeSet frozen = new FrozenTernarySearchTreeSet.Builder()
+                .addAll(Arrays.asList("a", "ab", "abc", "b", "bc", "c")).build();
+        SortedSet<CharSequence> subSet = frozen.subSet("ab", "bc");
+        assertEquals(Arrays.asList("ab", "abc", "b"), new ArrayList<CharSequence>(subSet));
+        assertEquals("ab", subSet.first());
+        assertEquals("b", subSet.last());
+        assertTrue(subSet.contains("abc"));
+        assertFalse(subSet.contains("bc"));
+        assertEquals(Arrays.asList("abc", "b"), new ArrayList<CharSequence>(subSet.tailSet("abb")));
+        assertEquals(Arrays.asList("ab"), new ArrayList<CharSequence>(subSet.headSet("abc")));
+        assertEquals(Arrays.asList("ab", "abc", "b"), new ArrayList<CharSequence>(subSet.headSet("z")));
+    }
+
+    @Test
+    public void testBuilder() {
+        FrozenTernarySearchTreeSet.Builder builder = new FrozenTernarySearchTreeSet.Builder();
+        builder.add("").add("b").add("b").add("ba");
+        try {
+            builder.add("a");
+            fail("exception expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            builder.add("b");
+            fail("exception expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        FrozenTernarySearchTreeSet frozen = builder.build();
+        assertEquals(Arrays.asList("", "b", "ba"), new ArrayList<CharSequence>(frozen));
+        try {
+            builder.add("c");
+            fail("exception expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        FrozenTernarySearchTreeSet empty = new FrozenTernarySearchTreeSet.Builder().build();
+        assertTrue(empty.isEmpty());
+        assertNull(empty.first());
+        assertFalse(empty.contains(""));
+        assertEquals(0, empty.rank("x"));
+        assertTrue(empty.matchAlmost("x", 1, 1).isEmpty());
+    }
+
+    @Test
+    public void testSetIsImmutable() {
+        FrozenTernarySearchTreeSet frozen = new FrozenTernarySearchTreeSet.Builder().add("a").build();
+        try {
+            frozen.add("b");
+            fail("exception expected");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            Iterator<CharSequence> iterator = frozen.iterator();
+            iterator.next();
+            iterator.remove();
+            fail("exception expected");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(1, frozen.size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testCaseInsensitiveSetCannotBeFrozen() {
+        new TernarySearchTreeSet(true).freeze();
+    }
+
+    private static List<CharSequence> toList(Iterable<CharSequence> iterable) {
+        List<CharSequence> result = new ArrayList<CharSequence>();
+        for (CharSequence element : iterable) {
+            result.add(element);
+        }
+        return result;
+    }
+
+    private static String randomWord(Random random) {
+        int length = random.nextInt(7);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('a' + random.nextInt(4)));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.roklib.collections.MappedTernarySearchTree;
+import org.roklib.collections.MappedTernarySearchTreeWriter;
+import org.roklib.collections.TSTValueCodec;
+import org.roklib.collections.TernarySearchTreeMap;
+
+import java.io.*;
+import java.util.*;
+import java.util.Map.Entry;
+
+import static org.junit.Assert.*;
+
+public class MappedTSTMapTest {
+    private static final String[] KEYS = {"", "abc", "abd", "ab", "xyz", "xy", "boo", "bar", "baz", "foo", "foobar",
+            "ärger", "Apache"};
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private <V> MappedTernarySearchTree<V> writeAndMap(Map<CharSequence, V> map, TSTValueCodec<V> codec)
+            throws IOException {
+        File file = mFolder.newFile();
+        new MappedTernarySearchTreeWriter<V>(codec).write(map, file);
+        return new MappedTernarySearchTree<V>(file, codec);
+    }
+
+    private static TernarySearchTreeMap<String> createExpectedMap() {
+        TernarySearchTreeMap<String> map = new TernarySearchTreeMap<String>();
+        for (String key : KEYS) {
+            map.put(key, key.toUpperCase());
+        }
+        return map;
+    }
+
+    @Test
+    public void testQueriesMatchTernarySearchTreeMap() throws IOException {
+        TernarySearchTreeMap<String> expected = createExpectedMap();
+        MappedTernarySearchTree<String> testObj = writeAndMap(expected, TSTValueCodec.STRING);
+        assertEquals(expected.size(), testObj.size());
+        assertEquals(expected, testObj);
+        assertEquals(new ArrayList<CharSequence>(expected.keySet()), new ArrayList<CharSequence>(testObj.keySet()));
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.getKeyAt(i), testObj.getKeyAt(i));
+            assertEquals(expected.getValueAt(i), testObj.getValueAt(i));
+            assertEquals(i, testObj.indexOf(expected.getKeyAt(i)));
+            assertEquals(expected.getKeyAt(i).toString().toUpperCase(), testObj.get(new StringBuilder(
+                    expected.getKeyAt(i))));
+        }
+        assertNull(testObj.get("ba"));
+        assertFalse(testObj.containsKey("fooba"));
+        assertEquals(-1, testObj.indexOf("ba"));
+        assertEquals("abc", testObj.successor("ab"));
+        assertEquals("abd", testObj.predecessor("ac"));
+        assertEquals(expected.matchAlmost("bax", 1, 0), testObj.matchAlmost("bax", 1, 0));
+        assertEquals(expected.matchAlmost("fob", 1, 3), testObj.matchAlmost("fob", 1, 3));
+        assertEquals(expected.subMap("abd", "foo"), testObj.subMap("abd", "foo"));
+
+        List<CharSequence> result = new ArrayList<CharSequence>();
+        for (CharSequence key : testObj.getPrefixMatch("ab")) {
+            result.add(key);
+        }
+        assertEquals(Arrays.<CharSequence>asList("ab", "abc", "abd"), result);
+    }
+
+    @Test
+    public void testLargeMap() throws IOException {
+        Random random = new Random(4711);
+        TreeMap<CharSequence, Long> expected = new TreeMap<CharSequence, Long>();
+        for (int i = 0; i < 5000; ++i) {
+            StringBuilder key = new StringBuilder();
+            for (int length = random.nextInt(8); length >= 0; --length) {
+                key.append((char) ('a' + random.nextInt(5)));
+            }
+            expected.put(key.toString(), random.nextLong());
+        }
+        MappedTernarySearchTree<Long> testObj = writeAndMap(expected, TSTValueCodec.LONG);
+        assertEquals(expected, testObj);
+        int index = 0;
+        for (Entry<CharSequence, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), testObj.get(entry.getKey()));
+            assertEquals(index, testObj.indexOf(entry.getKey()));
+            assertEquals(entry.getKey(), testObj.getKeyAt(index++));
+        }
+        assertEquals(expected.headMap("c").size(), testObj.headMap("c").size());
+    }
+
+    @Test
+    public void testUnsortedInput() throws IOException {
+        Map<CharSequence, Integer> input = new HashMap<CharSequence, Integer>();
+        for (int i = 0; i < 100; ++i) {
+            input.put(String.valueOf(i), i);
+        }
+        MappedTernarySearchTree<Integer> testObj = writeAndMap(input, TSTValueCodec.INTEGER);
+        assertEquals(new TreeMap<CharSequence, Integer>(input), testObj);
+        assertEquals("0", testObj.firstKey());
+        assertEquals("99", testObj.lastKey());
+    }
+
+    @Test
+    public void testEmptyMap() throws IOException {
+        MappedTernarySearchTree<String> testObj = writeAndMap(new TreeMap<CharSequence, String>(),
+                TSTValueCodec.STRING);
+        assertTrue(testObj.isEmpty());
+        assertNull(testObj.get(""));
+        assertNull(testObj.get("a"));
+        assertNull(testObj.firstKey());
+        assertFalse(testObj.keySet().iterator().hasNext());
+        assertTrue(testObj.matchAlmost("a", 1, 1).isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPutIsUnsupported() throws IOException {
+        writeAndMap(createExpectedMap(), TSTValueCodec.STRING).put("new", "value");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemoveIsUnsupported() throws IOException {
+        writeAndMap(createExpectedMap(), TSTValueCodec.STRING).remove("foo");
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidFile() throws IOException {
+        File file = mFolder.newFile();
+        OutputStream out = new FileOutputStream(file);
+        out.write(new byte[100]);
+        out.close();
+        new MappedTernarySearchTree<String>(file, TSTValueCodec.STRING);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedFile() throws IOException {
+        File file = mFolder.newFile();
+        new MappedTernarySearchTreeWriter<String>(TSTValueCodec.STRING).write(createExpectedMap(), file);
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        truncated.setLength(truncated.length() - 1);
+        truncated.close();
+        new MappedTernarySearchTree<String>(file, TSTValueCodec.STRING);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Test;
+import org.roklib.collections.OffHeapTernarySearchTreeMap;
+import org.roklib.collections.TSTValueCodec;
+import org.roklib.collections.TernarySearchTreeMap;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class OffHeapTSTMapTest extends AbstractTSTMapConformanceTest {
+    private static final int SLAB_SIZE = 4096;
+
+    @Override
+    public SortedMap<CharSequence, String> createObjectUnderTest() {
+        return new OffHeapTernarySearchTreeMap<String>(TSTValueCodec.STRING, SLAB_SIZE);
+    }
+
+    @Test
+    public void testRandomOperationsSpanningSeveralSlabs() {
+        Random random = new Random(31);
+        OffHeapTernarySearchTreeMap<String> testObj =
+                new OffHeapTernarySearchTreeMap<String>(TSTValueCodec.STRING, SLAB_SIZE);
+        TreeMap<CharSequence, String> reference = new TreeMap<CharSequence, String>();
+        try {
+            for (int i = 0; i < 20000; ++i) {
+                String key = randomKey(random, 8);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(reference.remove(key), testObj.remove(key));
+                } else {
+                    String value = randomValue(random);
+                    assertEquals(reference.put(key, value), testObj.put(key, value));
+                }
+            }
+            assertTrue(testObj.getAllocatedMemory() > 10 * SLAB_SIZE);
+            assertEquals(reference.size(), testObj.size());
+            assertEquals(reference, testObj);
+            assertEquals(new ArrayList<CharSequence>(reference.keySet()),
+                    new ArrayList<CharSequence>(testObj.keySet()));
+            for (int i = 0; i < 200; ++i) {
+                String key = randomKey(random, 8);
+                assertEquals(reference.headMap(key).size(), testObj.rank(key));
+                assertEquals(reference.get(key), testObj.get(key));
+            }
+        } finally {
+            testObj.close();
+        }
+    }
+
+    @Test
+    public void testFreedMemoryIsReused() {
+        OffHeapTernarySearchTreeMap<String> testObj =
+                new OffHeapTernarySearchTreeMap<String>(TSTValueCodec.STRING, SLAB_SIZE);
+        Random random = new Random(5);
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 500; ++i) {
+            keys.add(randomKey(random, 10));
+        }
+        for (String key : keys) {
+            testObj.put(key, key + key);
+        }
+        long allocated = testObj.getAllocatedMemory();
+        int nodeCount = testObj.getNodeCount();
+        for (int round = 0; round < 20; ++round) {
+            for (String key : keys) {
+                testObj.remove(key);
+            }
+            assertTrue(testObj.isEmpty());
+            assertEquals(0, testObj.getNodeCount());
+            for (String key : keys) {
+                testObj.put(key, key + key);
+            }
+        }
+        assertEquals(allocated, testObj.getAllocatedMemory());
+        assertEquals(nodeCount, testObj.getNodeCount());
+        testObj.close();
+    }
+
+    @Test
+    public void testFailedPutFreesValue() {
+        OffHeapTernarySearchTreeMap<String> testObj =
+                new OffHeapTernarySearchTreeMap<String>(TSTValueCodec.STRING, SLAB_SIZE);
+        CharSequence unreadableKey = new CharSequence() {
+            public int length() {
+                return 1;
+            }
+
+            public char charAt(int index) {
+                throw new IllegalStateException("unreadable");
+            }
+
+            public CharSequence subSequence(int start, int end) {
+                throw new IllegalStateException("unreadable");
+            }
+        };
+        char[] chars = new char[SLAB_SIZE / 8];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+        testObj.put("a", "a");
+        long allocated = testObj.getAllocatedMemory();
+        for (int i = 0; i < 20; ++i) {
+            try {
+                testObj.put(unreadableKey, value);
+                fail("IllegalStateException expected");
+            } catch (IllegalStateException expected) {
+            }
+        }
+        assertTrue(testObj.getAllocatedMemory() <= allocated + SLAB_SIZE);
+        assertEquals(1, testObj.size());
+        testObj.close();
+    }
+
+    @Test
+    public void testPrimitiveValues() {
+        OffHeapTernarySearchTreeMap<Long> testObj = new OffHeapTernarySearchTreeMap<Long>(TSTValueCodec.LONG);
+        for (long i = 0; i < 1000; ++i) {
+            testObj.put("key" + i, i * i);
+        }
+        assertEquals(Long.valueOf(998001), testObj.get("key999"));
+        assertEquals(Long.valueOf(4), testObj.put("key2", -1L));
+        assertEquals(Long.valueOf(-1), testObj.get("key2"));
+        assertEquals(1000, testObj.countPrefix("key"));
+        assertEquals(111, testObj.countPrefix("key1"));
+        testObj.close();
+    }
+
+    @Test
+    public void testQueriesMatchTernarySearchTreeMap() {
+        Random random = new Random(8);
+        OffHeapTernarySearchTreeMap<String> testObj = new OffHeapTernarySearchTreeMap<String>(TSTValueCodec.STRING);
+        TernarySearchTreeMap<String> reference = new TernarySearchTreeMap<String>();
+        for (int i = 0; i < 500; ++i) {
+            String key = randomKey(random, 5);
+            testObj.put(key, key);
+            reference.put(key, key);
+        }
+        for (int i = 0; i < 200; ++i) {
+            String key = randomKey(random, 5);
+            assertEquals(reference.matchAlmost(key, 1, 1), testObj.matchAlmost(key, 1, 1));
+            assertEquals(reference.countPrefix(key), testObj.countPrefix(key));
+            assertEquals(reference.successor(key), testObj.successor(key));
+        }
+        testObj.close();
+    }
+
+    @Test
+    public void testClearReleasesMemory() {
+        OffHeapTernarySearchTreeMap<String> testObj =
+                new OffHeapTernarySearchTreeMap<String>(TSTValueCodec.STRING, SLAB_SIZE);
+        for (int i = 0; i < 2000; ++i) {
+            testObj.put("key" + i, "value" + i);
+        }
+        assertTrue(testObj.getAllocatedMemory() > SLAB_SIZE);
+        testObj.clear();
+        assertTrue(testObj.isEmpty());
+        assertEquals(SLAB_SIZE, testObj.getAllocatedMemory());
+        testObj.put("key", "value");
+        assertEquals("value", testObj.get("key"));
+        testObj.close();
+    }
+
+    @Test
+    public void testClose() {
+        OffHeapTernarySearchTreeMap<String> testObj = new OffHeapTernarySearchTreeMap<String>(TSTValueCodec.STRING);
+        testObj.put("key", "value");
+        Set<CharSequence> keySet = testObj.keySet();
+        testObj.close();
+        assertTrue(testObj.isClosed());
+        assertEquals(0, testObj.getAllocatedMemory());
+        testObj.close();
+        try {
+            testObj.get("key");
+            fail("exception expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            testObj.put("key", "value");
+            fail("exception expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            keySet.iterator();
+            fail("exception expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testValueMustFitIntoSlab() {
+        OffHeapTernarySearchTreeMap<String> testObj =
+                new OffHeapTernarySearchTreeMap<String>(TSTValueCodec.STRING, SLAB_SIZE);
+        char[] chars = new char[SLAB_SIZE];
+        Arrays.fill(chars, 'x');
+        try {
+            testObj.put("key", new String(chars));
+            fail("exception expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertTrue(testObj.isEmpty());
+        testObj.put("key", new String(chars, 0, SLAB_SIZE - 4));
+        assertEquals(SLAB_SIZE - 4, testObj.get("key").length());
+        testObj.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSlabSize() {
+        new OffHeapTernarySearchTreeMap<String>(TSTValueCodec.STRING, 5000);
+    }
+
+    private static String randomKey(Random random, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('a' + random.nextInt(5)));
+        }
+        return buf.toString();
+    }
+
+    private static String randomValue(Random random) {
+        int length = random.nextInt(100);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('A' + random.nextInt(26)));
+        }
+        return buf.toString();
+    }
+}
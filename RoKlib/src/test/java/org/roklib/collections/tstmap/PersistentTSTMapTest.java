@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Test;
+import org.roklib.collections.PersistentTernarySearchTreeMap;
+import org.roklib.collections.TernarySearchTreeMap;
+
+import java.io.*;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.*;
+
+public class PersistentTSTMapTest extends AbstractTSTMapConformanceTest {
+    @Override
+    public SortedMap<CharSequence, String> createObjectUnderTest() {
+        return new PersistentTernarySearchTreeMap<String>();
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedByUpdates() {
+        PersistentTernarySearchTreeMap<String> testObj = new PersistentTernarySearchTreeMap<String>();
+        testObj.put("one", "1");
+        testObj.put("two", "2");
+        PersistentTernarySearchTreeMap<String> snapshot = testObj.snapshot();
+        assertTrue(snapshot.isReadOnly());
+        assertFalse(testObj.isReadOnly());
+        assertSame(snapshot, snapshot.snapshot());
+
+        testObj.put("three", "3");
+        testObj.put("one", "one");
+        testObj.remove("two");
+        testObj.put("", "empty");
+        assertEquals(2, snapshot.size());
+        assertEquals("1", snapshot.get("one"));
+        assertEquals("2", snapshot.get("two"));
+        assertNull(snapshot.get("three"));
+        assertNull(snapshot.get(""));
+        assertEquals(Arrays.asList("one", "two"), new ArrayList<CharSequence>(snapshot.keySet()));
+        assertEquals(Arrays.asList("", "one", "three"), new ArrayList<CharSequence>(testObj.keySet()));
+
+        testObj.clear();
+        assertTrue(testObj.isEmpty());
+        assertEquals(2, snapshot.size());
+    }
+
+    @Test
+    public void testSnapshotIsReadOnly() {
+        PersistentTernarySearchTreeMap<String> testObj = new PersistentTernarySearchTreeMap<String>();
+        testObj.put("key", "value");
+        PersistentTernarySearchTreeMap<String> snapshot = testObj.snapshot();
+        try {
+            snapshot.put("other", "value");
+            fail("exception expected");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            snapshot.remove("key");
+            fail("exception expected");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            snapshot.clear();
+            fail("exception expected");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            snapshot.entrySet().iterator().next().setValue("other");
+            fail("exception expected");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals("value", snapshot.get("key"));
+    }
+
+    @Test
+    public void testWithAndWithout() {
+        PersistentTernarySearchTreeMap<String> empty = new PersistentTernarySearchTreeMap<String>().snapshot();
+        PersistentTernarySearchTreeMap<String> first = empty.with("abc", "1");
+        PersistentTernarySearchTreeMap<String> second = first.with("abd", "2").with("", "0");
+        PersistentTernarySearchTreeMap<String> third = second.without("abc").with("abd", "two");
+
+        assertTrue(empty.isEmpty());
+        assertEquals(Collections.singletonMap("abc", "1"), first);
+        assertEquals(3, second.size());
+        assertEquals("2", second.get("abd"));
+        assertEquals(2, third.size());
+        assertEquals("two", third.get("abd"));
+        assertNull(third.get("abc"));
+        assertEquals(1, third.rank("abd"));
+        assertEquals(second.size(), second.without("xyz").size());
+        assertEquals(0, second.without("").without("abc").without("abd").size());
+    }
+
+    @Test
+    public void testIteratorWorksOnVersionOfItsCreation() {
+        PersistentTernarySearchTreeMap<String> testObj = new PersistentTernarySearchTreeMap<String>();
+        for (String key : new String[]{"a", "b", "c", "d"}) {
+            testObj.put(key, key);
+        }
+        List<CharSequence> keys = new ArrayList<CharSequence>();
+        Iterator<Entry<CharSequence, String>> iterator = testObj.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry<CharSequence, String> entry = iterator.next();
+            keys.add(entry.getKey());
+            if (entry.getKey().equals("b")) {
+                iterator.remove();
+                testObj.put("bb", "bb");
+                testObj.remove("c");
+            }
+        }
+        assertEquals(Arrays.asList("a", "b", "c", "d"), keys);
+        assertEquals(Arrays.asList("a", "bb", "d"), new ArrayList<CharSequence>(testObj.keySet()));
+    }
+
+    @Test
+    public void testRandomOperationsWithRetainedSnapshots() {
+        Random random = new Random(2026);
+        PersistentTernarySearchTreeMap<String> testObj = new PersistentTernarySearchTreeMap<String>();
+        TreeMap<CharSequence, String> reference = new TreeMap<CharSequence, String>();
+        List<PersistentTernarySearchTreeMap<String>> snapshots = new ArrayList<PersistentTernarySearchTreeMap<String>>();
+        List<TreeMap<CharSequence, String>> expectedSnapshots = new ArrayList<TreeMap<CharSequence, String>>();
+        for (int i = 0; i < 3000; ++i) {
+            String key = randomKey(random);
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(key), testObj.remove(key));
+            } else {
+                String value = Integer.toString(i);
+                assertEquals(reference.put(key, value), testObj.put(key, value));
+            }
+            if (i % 300 == 0) {
+                snapshots.add(testObj.snapshot());
+                expectedSnapshots.add(new TreeMap<CharSequence, String>(reference));
+            }
+        }
+        assertEquals(reference, testObj);
+        assertEquals(new ArrayList<CharSequence>(reference.keySet()), new ArrayList<CharSequence>(testObj.keySet()));
+        for (int i = 0; i < snapshots.size(); ++i) {
+            PersistentTernarySearchTreeMap<String> snapshot = snapshots.get(i);
+            TreeMap<CharSequence, String> expected = expectedSnapshots.get(i);
+            assertEquals(expected, snapshot);
+            assertEquals(new ArrayList<CharSequence>(expected.keySet()),
+                    new ArrayList<CharSequence>(snapshot.keySet()));
+            for (int j = 0; j < 50; ++j) {
+                String key = randomKey(random);
+                assertEquals(expected.headMap(key).size(), snapshot.rank(key));
+                assertEquals(expected.subMap(key, key + Character.MAX_VALUE).size(), snapshot.countPrefix(key));
+            }
+        }
+    }
+
+    @Test
+    public void testQueriesMatchTernarySearchTreeMap() {
+        Random random = new Random(7);
+        PersistentTernarySearchTreeMap<String> testObj = new PersistentTernarySearchTreeMap<String>();
+        TernarySearchTreeMap<String> reference = new TernarySearchTreeMap<String>();
+        for (int i = 0; i < 500; ++i) {
+            String key = randomKey(random);
+            testObj.put(key, key);
+            reference.put(key, key);
+        }
+        for (int i = 0; i < 200; ++i) {
+            String key = randomKey(random);
+            assertEquals(reference.matchAlmost(key, 1, 1), testObj.matchAlmost(key, 1, 1));
+            assertEquals(reference.predecessor(key), testObj.predecessor(key));
+            assertEquals(reference.successor(key), testObj.successor(key));
+            assertEquals(new ArrayList<CharSequence>(reference.tailMap(key).keySet()),
+                    new ArrayList<CharSequence>(testObj.tailMap(key).keySet()));
+        }
+    }
+
+    @Test
+    public void testConcurrentReadersSeeConsistentSnapshots() throws InterruptedException {
+        final PersistentTernarySearchTreeMap<Integer> testObj = new PersistentTernarySearchTreeMap<Integer>();
+        final boolean[] failed = new boolean[1];
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                for (int i = 0; i < 2000 && !failed[0]; ++i) {
+                    // the writer always adds the keys 0..n-1 as a batch, so each snapshot holds a complete prefix
+                    PersistentTernarySearchTreeMap<Integer> snapshot = testObj.snapshot();
+                    int size = snapshot.size();
+                    for (int key = 0; key < size; ++key) {
+                        if (!Integer.valueOf(key).equals(snapshot.get(Integer.toString(key)))) {
+                            failed[0] = true;
+                        }
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int batch = 0; batch < 200; ++batch) {
+            Map<CharSequence, Integer> entries = new HashMap<CharSequence, Integer>();
+            for (int key = batch * 10; key < batch * 10 + 10; ++key) {
+                entries.put(Integer.toString(key), key);
+            }
+            testObj.putAll(entries);
+        }
+        reader.join();
+        assertFalse(failed[0]);
+        assertEquals(2000, testObj.size());
+    }
+
+    @Test
+    public void testConcurrentMergesAreAtomic() throws InterruptedException {
+        final PersistentTernarySearchTreeMap<Integer> testObj = new PersistentTernarySearchTreeMap<Integer>();
+        Thread[] writers = new Thread[4];
+        for (int i = 0; i < writers.length; ++i) {
+            writers[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < 5000; ++j) {
+                        testObj.merge("counter", 1, new BiFunction<Integer, Integer, Integer>() {
+                            public Integer apply(Integer oldValue, Integer value) {
+                                return oldValue + value;
+                            }
+                        });
+                    }
+                }
+            });
+            writers[i].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(Integer.valueOf(writers.length * 5000), testObj.get("counter"));
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        PersistentTernarySearchTreeMap<String> testObj = new PersistentTernarySearchTreeMap<String>();
+        for (String key : new String[]{"", "alpha", "beta", "alphabet", "gamma"}) {
+            testObj.put(key, key.toUpperCase());
+        }
+        PersistentTernarySearchTreeMap<String> copy = serializeAndDeserialize(testObj);
+        assertEquals(testObj, copy);
+        assertFalse(copy.isReadOnly());
+        copy.put("delta", "DELTA");
+        assertEquals(6, copy.size());
+
+        PersistentTernarySearchTreeMap<String> snapshotCopy = serializeAndDeserialize(testObj.snapshot());
+        assertTrue(snapshotCopy.isReadOnly());
+        assertEquals(testObj, snapshotCopy);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PersistentTernarySearchTreeMap<String> serializeAndDeserialize(
+            PersistentTernarySearchTreeMap<String> map) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(map);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        return (PersistentTernarySearchTreeMap<String>) in.readObject();
+    }
+
+    private static String randomKey(Random random) {
+        int length = random.nextInt(6);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('a' + random.nextInt(4)));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Test;
+import org.roklib.collections.RadixTernarySearchTreeMap;
+import org.roklib.collections.TernarySearchTreeMap;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class RadixTSTMapTest extends AbstractTSTMapConformanceTest {
+    private static final String[] URLS = {"http://www.example.com/", "http://www.example.com/index.html",
+            "http://www.example.com/images/logo.png", "http://www.example.com/images/banner.png",
+            "http://www.example.org/", "https://www.example.com/", "http://www.example.com/index.htm"};
+
+    @Override
+    public SortedMap<CharSequence, String> createObjectUnderTest() {
+        return new RadixTernarySearchTreeMap<String>();
+    }
+
+    @Test
+    public void testSegmentsAreSplitAndMerged() {
+        RadixTernarySearchTreeMap<String> testObj = new RadixTernarySearchTreeMap<String>();
+        testObj.put("abcdef", "1");
+        assertEquals(1, testObj.getNodeCount());
+        testObj.put("abcxyz", "2");
+        assertEquals(3, testObj.getNodeCount());
+        testObj.put("abc", "3");
+        assertEquals(3, testObj.getNodeCount());
+        testObj.put("ab", "4");
+        assertEquals(4, testObj.getNodeCount());
+        assertEquals("3", testObj.get("abc"));
+        assertNull(testObj.get("abcd"));
+        assertNull(testObj.get("a"));
+
+        assertEquals("4", testObj.remove("ab"));
+        assertEquals(3, testObj.getNodeCount());
+        assertEquals("3", testObj.remove("abc"));
+        assertEquals(3, testObj.getNodeCount());
+        assertEquals("2", testObj.remove("abcxyz"));
+        assertEquals(1, testObj.getNodeCount());
+        assertEquals("1", testObj.get("abcdef"));
+        assertEquals("1", testObj.remove("abcdef"));
+        assertEquals(0, testObj.getNodeCount());
+        assertTrue(testObj.isEmpty());
+    }
+
+    @Test
+    public void testLongKeysNeedFewNodes() {
+        RadixTernarySearchTreeMap<String> testObj = new RadixTernarySearchTreeMap<String>();
+        for (String url : URLS) {
+            testObj.put(url, url);
+        }
+        assertTrue(testObj.getNodeCount() < 2 * URLS.length);
+        for (String url : URLS) {
+            assertEquals(url, testObj.get(url));
+        }
+        assertNull(testObj.get("http://www.example.com/images/"));
+        assertEquals(5, testObj.countPrefix("http://www.example.com/"));
+        assertEquals(2, testObj.countPrefix("http://www.example.com/im"));
+        assertEquals(0, testObj.countPrefix("http://www.example.net"));
+        assertEquals(7, testObj.countPrefix("http"));
+    }
+
+    @Test
+    public void testQueriesMatchTernarySearchTreeMap() {
+        RadixTernarySearchTreeMap<String> testObj = new RadixTernarySearchTreeMap<String>();
+        TernarySearchTreeMap<String> expected = new TernarySearchTreeMap<String>();
+        Random random = new Random(99);
+        for (int i = 0; i < 3000; ++i) {
+            String key = randomKey(random);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(key), testObj.remove(key));
+            } else {
+                assertEquals(expected.put(key, key), testObj.put(key, key));
+            }
+        }
+        assertEquals(expected, testObj);
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.getKeyAt(i), testObj.getKeyAt(i));
+            assertEquals(i, testObj.indexOf(expected.getKeyAt(i)));
+        }
+        for (int i = 0; i < 500; ++i) {
+            String key = randomKey(random);
+            assertEquals(expected.rank(key), testObj.rank(key));
+            assertEquals(expected.countPrefix(key), testObj.countPrefix(key));
+            assertEquals(expected.indexOf(key), testObj.indexOf(key));
+            assertEquals(expected.matchAlmost(key, 2, 1), testObj.matchAlmost(key, 2, 1));
+            assertEquals(expected.successor(key), testObj.successor(key));
+        }
+    }
+
+    @Test
+    public void testTreeIsCompressedAfterRemovals() {
+        RadixTernarySearchTreeMap<String> testObj = new RadixTernarySearchTreeMap<String>();
+        for (String url : URLS) {
+            testObj.put(url, url);
+        }
+        for (int i = 1; i < URLS.length; ++i) {
+            testObj.remove(URLS[i]);
+        }
+        assertEquals(1, testObj.getNodeCount());
+        assertEquals(Collections.singletonList(URLS[0]), new ArrayList<CharSequence>(testObj.keySet()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSerialization() throws Exception {
+        RadixTernarySearchTreeMap<String> testObj = new RadixTernarySearchTreeMap<String>();
+        for (String url : URLS) {
+            testObj.put(url, url);
+        }
+        testObj.put("", "empty");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(testObj);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        RadixTernarySearchTreeMap<String> copy = (RadixTernarySearchTreeMap<String>) in.readObject();
+        assertEquals(testObj, copy);
+        assertEquals(testObj.getNodeCount(), copy.getNodeCount());
+        assertEquals("empty", copy.get(""));
+    }
+
+    private static String randomKey(Random random) {
+        int length = random.nextInt(10);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('a' + random.nextInt(3)));
+        }
+        return buf.toString();
+    }
+}
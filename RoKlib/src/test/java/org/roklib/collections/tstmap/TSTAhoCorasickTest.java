@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Test;
+import org.roklib.collections.AhoCorasickAutomaton;
+import org.roklib.collections.AhoCorasickAutomaton.MatchListener;
+import org.roklib.collections.TernarySearchTreeMap;
+import org.roklib.collections.TernarySearchTreeMapCaseInsensitive;
+import org.roklib.collections.TernarySearchTreeSet;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class TSTAhoCorasickTest {
+    @Test
+    public void testClassicExample() {
+        TernarySearchTreeMap<Integer> map = new TernarySearchTreeMap<Integer>();
+        map.put("he", 1);
+        map.put("she", 2);
+        map.put("his", 3);
+        map.put("hers", 4);
+        AhoCorasickAutomaton<Integer> automaton = AhoCorasickAutomaton.compile(map);
+        assertEquals(4, automaton.size());
+
+        MatchCollector<Integer> collector = new MatchCollector<Integer>();
+        automaton.scan("ushers", collector);
+        assertEquals(Arrays.asList("1:she=2", "2:he=1", "2:hers=4"), collector.mMatches);
+    }
+
+    @Test
+    public void testOverlappingAndNestedKeys() {
+        TernarySearchTreeSet set = new TernarySearchTreeSet(new String[]{"a", "aa", "aaa", "ab", "b"});
+        MatchCollector<Object> collector = new MatchCollector<Object>();
+        AhoCorasickAutomaton.compile(set).scan("aaab", collector);
+        assertEquals(Arrays.asList("0:a=null", "0:aa=null", "1:a=null", "0:aaa=null", "1:aa=null", "2:a=null",
+                "2:ab=null", "3:b=null"), collector.mMatches);
+    }
+
+    @Test
+    public void testEmptyDictionaryAndEmptyKey() {
+        TernarySearchTreeMap<String> map = new TernarySearchTreeMap<String>();
+        MatchCollector<String> collector = new MatchCollector<String>();
+        AhoCorasickAutomaton.compile(map).scan("text", collector);
+        assertTrue(collector.mMatches.isEmpty());
+
+        map.put("", "empty");
+        map.put("x", "x");
+        AhoCorasickAutomaton.compile(map).scan("axb", collector);
+        assertEquals(Collections.singletonList("1:x=x"), collector.mMatches);
+    }
+
+    @Test
+    public void testAgainstBruteForce() {
+        Random random = new Random(4711);
+        for (int round = 0; round < 50; ++round) {
+            TernarySearchTreeMap<Integer> map = new TernarySearchTreeMap<Integer>();
+            int keyCount = 1 + random.nextInt(40);
+            for (int i = 0; i < keyCount; ++i) {
+                map.put(randomString(random, 1 + random.nextInt(5)), i);
+            }
+            String text = randomString(random, 300);
+            MatchCollector<Integer> collector = new MatchCollector<Integer>();
+            AhoCorasickAutomaton.compile(map).scan(text, collector);
+            assertEquals(bruteForce(map, text), sorted(collector.mMatches));
+        }
+    }
+
+    @Test
+    public void testStreamingAcrossChunks() throws IOException {
+        TernarySearchTreeMap<Integer> map = new TernarySearchTreeMap<Integer>();
+        map.put("needle", 1);
+        map.put("needles", 2);
+        map.put("dle", 3);
+        AhoCorasickAutomaton<Integer> automaton = AhoCorasickAutomaton.compile(map);
+        String text = "haystack needle hay needles dle";
+
+        MatchCollector<Integer> expected = new MatchCollector<Integer>();
+        automaton.scan(text, expected);
+        assertEquals(6, expected.mMatches.size());
+
+        for (int chunkSize = 1; chunkSize <= text.length(); ++chunkSize) {
+            MatchCollector<Integer> collector = new MatchCollector<Integer>();
+            AhoCorasickAutomaton<Integer>.Session session = automaton.newSession(collector);
+            for (int offset = 0; offset < text.length(); offset += chunkSize) {
+                session.feed(text, offset, Math.min(chunkSize, text.length() - offset));
+            }
+            assertEquals(text.length(), session.getPosition());
+            assertEquals(expected.mMatches, collector.mMatches);
+        }
+
+        MatchCollector<Integer> collector = new MatchCollector<Integer>();
+        automaton.scan(new StringReader(text), collector);
+        assertEquals(expected.mMatches, collector.mMatches);
+
+        collector = new MatchCollector<Integer>();
+        CharBuffer buffer = CharBuffer.wrap("xx" + text).subSequence(2, text.length() + 2);
+        automaton.scan(buffer, collector);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(expected.mMatches, collector.mMatches);
+
+        collector = new MatchCollector<Integer>();
+        automaton.scan(CharBuffer.wrap(text).asReadOnlyBuffer(), collector);
+        assertEquals(expected.mMatches, collector.mMatches);
+    }
+
+    @Test
+    public void testSessionReset() {
+        TernarySearchTreeSet set = new TernarySearchTreeSet(new String[]{"abc"});
+        MatchCollector<Object> collector = new MatchCollector<Object>();
+        AhoCorasickAutomaton<Object>.Session session = AhoCorasickAutomaton.compile(set).newSession(collector);
+        session.feed("xab");
+        session.reset();
+        session.feed("c abc");
+        assertEquals(Collections.singletonList("2:abc=null"), collector.mMatches);
+    }
+
+    @Test
+    public void testCaseInsensitive() {
+        TernarySearchTreeMapCaseInsensitive<String> map = new TernarySearchTreeMapCaseInsensitive<String>();
+        map.put("Error", "e");
+        map.put("WARN", "w");
+        MatchCollector<String> collector = new MatchCollector<String>();
+        AhoCorasickAutomaton.compile(map).scan("eRRor: warn, ERROR", collector);
+        assertEquals(Arrays.asList("0:Error=e", "7:WARN=w", "13:Error=e"), collector.mMatches);
+
+        TernarySearchTreeSet set = new TernarySearchTreeSet(new String[]{"Foo"}, true);
+        MatchCollector<Object> setCollector = new MatchCollector<Object>();
+        AhoCorasickAutomaton.compile(set).scan("FOO foo", setCollector);
+        assertEquals(Arrays.asList("0:Foo=null", "4:Foo=null"), setCollector.mMatches);
+    }
+
+    @Test
+    public void testSharedAcrossThreads() throws Exception {
+        Random random = new Random(17);
+        final TernarySearchTreeMap<Integer> map = new TernarySearchTreeMap<Integer>();
+        for (int i = 0; i < 200; ++i) {
+            map.put(randomString(random, 1 + random.nextInt(4)), i);
+        }
+        final AhoCorasickAutomaton<Integer> automaton = AhoCorasickAutomaton.compile(map);
+        List<String> texts = new ArrayList<String>();
+        for (int i = 0; i < 8; ++i) {
+            texts.add(randomString(random, 2000));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+            for (final String text : texts) {
+                results.add(executor.submit(new Callable<List<String>>() {
+                    public List<String> call() {
+                        MatchCollector<Integer> collector = new MatchCollector<Integer>();
+                        automaton.scan(text, collector);
+                        return sorted(collector.mMatches);
+                    }
+                }));
+            }
+            for (int i = 0; i < texts.size(); ++i) {
+                assertEquals(bruteForce(map, texts.get(i)), results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testFeedInvalidSection() {
+        TernarySearchTreeSet set = new TernarySearchTreeSet(new String[]{"a"});
+        AhoCorasickAutomaton.compile(set).newSession(new MatchCollector<Object>()).feed("abc", 2, 2);
+    }
+
+    private static List<String> bruteForce(Map<CharSequence, Integer> map, String text) {
+        List<String> result = new ArrayList<String>();
+        for (int i = 0; i < text.length(); ++i) {
+            for (Map.Entry<CharSequence, Integer> entry : map.entrySet()) {
+                String key = entry.getKey().toString();
+                if (!key.isEmpty() && text.startsWith(key, i)) {
+                    result.add(i + ":" + key + "=" + entry.getValue());
+                }
+            }
+        }
+        return sorted(result);
+    }
+
+    private static List<String> sorted(List<String> matches) {
+        List<String> result = new ArrayList<String>(matches);
+        Collections.sort(result);
+        return result;
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('a' + random.nextInt(3)));
+        }
+        return buf.toString();
+    }
+
+    private static class MatchCollector<V> implements MatchListener<V> {
+        private final List<String> mMatches = new ArrayList<String>();
+
+        public void match(long offset, CharSequence key, V value) {
+            mMatches.add(offset + ":" + key + "=" + value);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.roklib.collections.TSTCursor;
+import org.roklib.collections.TernarySearchTreeMap;
+import org.roklib.collections.TernarySearchTreeMapCaseInsensitive;
+import org.roklib.collections.TernarySearchTreeSet;
+
+import java.lang.management.ManagementFactory;
+import java.nio.CharBuffer;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Verifies that lookups on a ternary search tree do not allocate any objects, regardless of the {@link CharSequence}
+ * implementation used for the key. The test is skipped on virtual machines which cannot measure the number of bytes
+ * allocated by a thread.
+ *
+ * @author Roland Krueger
+ */
+public class TSTAllocationTest {
+    private static final String[] KEYS = {"", "ab", "abc", "abd", "bar", "baz", "boo", "foo", "foobar", "xy", "xyz"};
+    private static final int CALLS = 100000;
+
+    private com.sun.management.ThreadMXBean mThreadBean;
+    private TernarySearchTreeMap<String> mMap;
+    private Object[] mKeys;
+    private int mSink;
+
+    @Before
+    public void setUp() {
+        Object bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        mThreadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(mThreadBean.isThreadAllocatedMemorySupported());
+        mThreadBean.setThreadAllocatedMemoryEnabled(true);
+
+        mMap = new TernarySearchTreeMap<String>();
+        for (String key : KEYS) {
+            mMap.put(key, key);
+        }
+        mKeys = new Object[]{"foobar", new StringBuilder("abd"), CharBuffer.wrap("xxbazxx", 2, 5), "bo", "zzz"};
+    }
+
+    @Test
+    public void testGetDoesNotAllocate() {
+        assertAllocationFree(new Runnable() {
+            public void run() {
+                for (Object key : mKeys) {
+                    String value = mMap.get(key);
+                    mSink += value == null ? 0 : value.length();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testContainsKeyDoesNotAllocate() {
+        assertAllocationFree(new Runnable() {
+            public void run() {
+                for (Object key : mKeys) {
+                    mSink += mMap.containsKey(key) ? 1 : 0;
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testIndexOfDoesNotAllocate() {
+        assertAllocationFree(new Runnable() {
+            public void run() {
+                for (Object key : mKeys) {
+                    mSink += mMap.indexOf((CharSequence) key);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testSetContainsDoesNotAllocate() {
+        final TernarySearchTreeSet set = new TernarySearchTreeSet(KEYS);
+        assertAllocationFree(new Runnable() {
+            public void run() {
+                for (Object key : mKeys) {
+                    mSink += set.contains(key) ? 1 : 0;
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCaseInsensitiveGetDoesNotAllocate() {
+        final Map<CharSequence, String> map = new TernarySearchTreeMapCaseInsensitive<String>();
+        for (String key : KEYS) {
+            map.put(key.toUpperCase(), key);
+        }
+        assertEquals("abd", map.get(new StringBuilder("abd")));
+        assertEquals("baz", map.get(CharBuffer.wrap("BaZ")));
+        final Object[] keys = {"FooBar", new StringBuilder("aBD"), CharBuffer.wrap("xxBAZxx", 2, 5), "bo", "ZZZ"};
+        assertAllocationFree(new Runnable() {
+            public void run() {
+                for (Object key : mKeys) {
+                    String value = map.get(key);
+                    mSink += value == null ? 0 : value.length();
+                }
+                for (Object key : keys) {
+                    String value = map.get(key);
+                    mSink += value == null ? 0 : value.length();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCursorScanOnlyAllocatesTheCursor() {
+        final TernarySearchTreeMap<String> map = new TernarySearchTreeMap<String>();
+        for (int i = 0; i < 10000; ++i) {
+            String key = Integer.toString(i * 7919, 36);
+            map.put(key, key);
+        }
+        Runnable scan = new Runnable() {
+            public void run() {
+                TSTCursor<String> cursor = map.cursor();
+                while (cursor.advance()) {
+                    CharSequence key = cursor.keyView();
+                    mSink += key.charAt(key.length() - 1) + cursor.value().length();
+                }
+            }
+        };
+        int scans = 200;
+        for (int i = 0; i < scans; ++i) {
+            scan.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = mThreadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < scans; ++i) {
+            scan.run();
+        }
+        long allocated = mThreadBean.getThreadAllocatedBytes(threadId) - before;
+        // the cursor and its buffers take a few hundred bytes, independent of the size of the map
+        assertTrue("scans allocated " + allocated + " bytes", allocated < scans * 1024);
+    }
+
+    private void assertAllocationFree(Runnable lookups) {
+        // warm up so that the lookups are compiled and escape analysis has taken place
+        for (int i = 0; i < CALLS; ++i) {
+            lookups.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = mThreadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < CALLS; ++i) {
+            lookups.run();
+        }
+        long allocated = mThreadBean.getThreadAllocatedBytes(threadId) - before;
+        assertTrue("lookups allocated " + allocated + " bytes", allocated < CALLS);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.roklib.collections.FiniteStateTransducer;
+import org.roklib.collections.TernarySearchTreeMap;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.Map.Entry;
+
+import static org.junit.Assert.*;
+
+public class TSTFiniteStateTransducerTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testQueriesMatchTreeMap() {
+        Random random = new Random(24);
+        TernarySearchTreeMap<Long> map = new TernarySearchTreeMap<Long>();
+        map.put("", 7L);
+        for (int i = 0; i < 3000; ++i) {
+            map.put(randomWord(random), (long) random.nextInt(1000));
+        }
+        FiniteStateTransducer fst = new FiniteStateTransducer.Builder().addAll(map).build();
+        TreeMap<String, Long> reference = new TreeMap<String, Long>();
+        for (Entry<CharSequence, Long> entry : map.entrySet()) {
+            reference.put(entry.getKey().toString(), entry.getValue());
+        }
+        assertEquals(reference.size(), fst.size());
+        assertEquals(reference, toMap(fst.cursor()));
+        for (int i = 0; i < 1000; ++i) {
+            String key = randomWord(random);
+            Long expected = reference.get(key);
+            assertEquals(expected == null ? -1 : expected, fst.get(key));
+            assertEquals(expected != null, fst.containsKey(key));
+            assertEquals(reference.floorEntry(key), toStringEntry(fst.floorEntry(key)));
+            assertEquals(reference.ceilingEntry(key), toStringEntry(fst.ceilingEntry(key)));
+            assertEquals(reference.subMap(key, key + Character.MAX_VALUE), toMap(fst.cursor(key)));
+        }
+    }
+
+    @Test
+    public void testOutputsArePushedAndSuffixesShared() {
+        String[] stems = {"walk", "talk", "jump", "play", "work", "call", "look", "want", "open", "help"};
+        String[] suffixes = {"", "ed", "er", "ing", "s"};
+        TreeMap<String, Long> entries = new TreeMap<String, Long>();
+        for (String stem : stems) {
+            for (String suffix : suffixes) {
+                entries.put(stem + suffix, 0L);
+            }
+        }
+        // ascending offsets which grow by the same step within each stem
+        long offset = 1000000;
+        for (Entry<String, Long> entry : entries.entrySet()) {
+            entry.setValue(offset);
+            offset += 10;
+        }
+        FiniteStateTransducer fst = new FiniteStateTransducer.Builder().addAll(entries).build();
+        assertEquals(entries, toMap(fst.cursor()));
+        // all stems lead into the same suffix states
+        assertTrue(fst.getStateCount() < 30);
+        assertTrue(fst.getSizeInBytes() < entries.size() * 8);
+    }
+
+    @Test
+    public void testReadFromMappedFile() throws Exception {
+        FiniteStateTransducer.Builder builder = new FiniteStateTransducer.Builder();
+        TreeMap<String, Long> reference = new TreeMap<String, Long>();
+        for (int i = 0; i < 5000; ++i) {
+            reference.put(String.format("term%05d", i), i * 4096L + Integer.MAX_VALUE);
+        }
+        builder.addAll(reference);
+        File file = mFolder.newFile("terms.fst");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            builder.build().writeTo(out);
+        } finally {
+            out.close();
+        }
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        ByteBuffer buffer;
+        try {
+            buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        } finally {
+            input.close();
+        }
+        FiniteStateTransducer fst = new FiniteStateTransducer(buffer);
+        assertEquals(reference.size(), fst.size());
+        assertEquals(reference.get("term04711").longValue(), fst.get("term04711"));
+        assertEquals(-1, fst.get("term5"));
+        assertEquals(reference.floorEntry("term047115"), toStringEntry(fst.floorEntry("term047115")));
+        assertEquals(reference.ceilingEntry("term047115"), toStringEntry(fst.ceilingEntry("term047115")));
+        assertEquals(reference.subMap("term012", "term013"), toMap(fst.cursor("term012")));
+    }
+
+    @Test
+    public void testEmptyTransducer() {
+        FiniteStateTransducer fst = new FiniteStateTransducer(new FiniteStateTransducer.Builder().toByteArray());
+        assertTrue(fst.isEmpty());
+        assertEquals(-1, fst.get(""));
+        assertNull(fst.floorEntry("a"));
+        assertNull(fst.ceilingEntry(""));
+        assertFalse(fst.cursor().advance());
+    }
+
+    @Test
+    public void testCursor() {
+        FiniteStateTransducer fst = new FiniteStateTransducer.Builder().add("", 3).add("a", 1).add("ab", 2)
+                .add("b", 0).build();
+        FiniteStateTransducer.Cursor cursor = fst.cursor("a");
+        assertTrue(cursor.advance());
+        assertEquals("a", cursor.keyView().toString());
+        assertEquals(1, cursor.output());
+        assertTrue(cursor.advance());
+        assertEquals("ab", cursor.key());
+        assertEquals(Long.valueOf(2), cursor.value());
+        assertFalse(cursor.advance());
+        assertFalse(fst.cursor("c").advance());
+        try {
+            cursor.key();
+            fail();
+        } catch (NoSuchElementException expected) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeysOutOfOrder() {
+        new FiniteStateTransducer.Builder().add("b", 1).add("a", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateKey() {
+        new FiniteStateTransducer.Builder().add("a", 1).add("a", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeValue() {
+        new FiniteStateTransducer.Builder().add("a", -1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddAfterBuild() {
+        FiniteStateTransducer.Builder builder = new FiniteStateTransducer.Builder().add("a", 1);
+        builder.build();
+        builder.add("b", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidData() {
+        new FiniteStateTransducer(new byte[32]);
+    }
+
+    private static Map<String, Long> toMap(FiniteStateTransducer.Cursor cursor) {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        while (cursor.advance()) {
+            assertNull(result.put(cursor.key(), cursor.output()));
+        }
+        return result;
+    }
+
+    private static Entry<String, Long> toStringEntry(Entry<CharSequence, Long> entry) {
+        return entry == null ? null : new AbstractMap.SimpleEntry<String, Long>(entry.getKey().toString(),
+                entry.getValue());
+    }
+
+    private static String randomWord(Random random) {
+        int length = random.nextInt(7);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('a' + random.nextInt(4)));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.roklib.collections.TSTFuzzyMatch;
+import org.roklib.collections.TernarySearchTreeMap;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TSTFuzzyMatchTest {
+    private TernarySearchTreeMap<Integer> testObj;
+
+    @Before
+    public void setUp() {
+        testObj = new TernarySearchTreeMap<Integer>();
+        String[] words = {"", "a", "ab", "abc", "acb", "bac", "banana", "bandana", "band", "bane", "cab", "cabana",
+                "xyz", "nab"};
+        for (int i = 0; i < words.length; ++i) {
+            testObj.put(words[i], i);
+        }
+    }
+
+    private static List<String> keys(Iterable<TSTFuzzyMatch<Integer>> matches) {
+        List<String> result = new ArrayList<String>();
+        for (TSTFuzzyMatch<Integer> match : matches) {
+            result.add(match.getKey().toString());
+        }
+        return result;
+    }
+
+    @Test
+    public void testLevenshteinDistance() {
+        assertEquals(Arrays.asList("band", "bane"), keys(testObj.fuzzyMatch("bane", 1)));
+        assertEquals(Arrays.asList("banana", "bandana"), keys(testObj.fuzzyMatch("bananas", 2)));
+        assertEquals(Arrays.asList("", "a", "ab"), keys(testObj.fuzzyMatch("a", 1)));
+        assertEquals(Collections.singletonList("abc"), keys(testObj.fuzzyMatch("abc", 0)));
+        assertTrue(keys(testObj.fuzzyMatch("qqqq", 2)).isEmpty());
+    }
+
+    @Test
+    public void testTranspositions() {
+        assertEquals(Collections.singletonList("bac"), keys(testObj.fuzzyMatch("bac", 1, false, false)));
+        assertEquals(Arrays.asList("abc", "bac"), keys(testObj.fuzzyMatch("bac", 1, true, false)));
+        assertFalse(keys(testObj.fuzzyMatch("bca", 1, false, false)).contains("cab"));
+        assertEquals(Arrays.asList("ab", "abc", "acb", "bac"), keys(testObj.fuzzyMatch("abc", 1, true, false)));
+        assertEquals(Arrays.asList("a", "ab", "abc", "acb", "bac", "cab", "nab"),
+                keys(testObj.fuzzyMatch("acb", 2, false, false)));
+    }
+
+    @Test
+    public void testSortByDistance() {
+        List<Integer> distances = new ArrayList<Integer>();
+        List<String> result = new ArrayList<String>();
+        for (TSTFuzzyMatch<Integer> match : testObj.fuzzyMatch("band", 2, false, true)) {
+            distances.add(match.getDistance());
+            result.add(match.getKey().toString());
+        }
+        assertEquals(Arrays.asList("band", "bane", "bac"), result);
+        assertEquals(Arrays.asList(0, 1, 2), distances);
+    }
+
+    @Test
+    public void testValues() {
+        TSTFuzzyMatch<Integer> match = testObj.fuzzyMatch("cabanas", 1).iterator().next();
+        assertEquals("cabana", match.getKey());
+        assertEquals(Integer.valueOf(11), match.getValue());
+        assertEquals(1, match.getDistance());
+    }
+
+    @Test
+    public void testCompareWithBruteForce() {
+        Random random = new Random(4711);
+        TernarySearchTreeMap<Integer> map = new TernarySearchTreeMap<Integer>();
+        for (int i = 0; i < 2000; ++i) {
+            map.put(randomKey(random), i);
+        }
+        for (int i = 0; i < 50; ++i) {
+            String pattern = randomKey(random);
+            for (int distance = 0; distance <= 3; ++distance) {
+                for (boolean transpositions : new boolean[]{false, true}) {
+                    List<String> expected = new ArrayList<String>();
+                    List<TSTFuzzyMatch<Integer>> expectedByDistance = new ArrayList<TSTFuzzyMatch<Integer>>();
+                    for (CharSequence key : map.keySet()) {
+                        int keyDistance = editDistance(key.toString(), pattern, transpositions);
+                        if (keyDistance <= distance) {
+                            expected.add(key.toString());
+                            expectedByDistance.add(new TSTFuzzyMatch<Integer>(key.toString(), map.get(key),
+                                    keyDistance));
+                        }
+                    }
+                    Collections.sort(expectedByDistance, new Comparator<TSTFuzzyMatch<Integer>>() {
+                        public int compare(TSTFuzzyMatch<Integer> first, TSTFuzzyMatch<Integer> second) {
+                            return first.getDistance() - second.getDistance();
+                        }
+                    });
+                    assertEquals(expected, keys(map.fuzzyMatch(pattern, distance, transpositions, false)));
+                    List<TSTFuzzyMatch<Integer>> byDistance = new ArrayList<TSTFuzzyMatch<Integer>>();
+                    for (TSTFuzzyMatch<Integer> match : map.fuzzyMatch(pattern, distance, transpositions, true)) {
+                        byDistance.add(match);
+                    }
+                    assertEquals(expectedByDistance, byDistance);
+                    for (int j = 0; j < byDistance.size(); ++j) {
+                        assertEquals(expectedByDistance.get(j).getDistance(), byDistance.get(j).getDistance());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInterleavedSearches() {
+        Iterator<TSTFuzzyMatch<Integer>> first = testObj.fuzzyMatch("band", 1).iterator();
+        Iterator<TSTFuzzyMatch<Integer>> second = testObj.fuzzyMatch("cab", 1).iterator();
+        assertEquals("band", first.next().getKey());
+        assertEquals("ab", second.next().getKey());
+        assertEquals("bane", first.next().getKey());
+        assertEquals("cab", second.next().getKey());
+        assertFalse(first.hasNext());
+        assertEquals("nab", second.next().getKey());
+        assertFalse(second.hasNext());
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testConcurrentModification() {
+        Iterator<TSTFuzzyMatch<Integer>> iterator = testObj.fuzzyMatch("band", 1).iterator();
+        iterator.next();
+        testObj.put("bind", 100);
+        iterator.hasNext();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeDistance() {
+        testObj.fuzzyMatch("band", -1);
+    }
+
+    private static String randomKey(Random random) {
+        int length = random.nextInt(7);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('a' + random.nextInt(4)));
+        }
+        return buf.toString();
+    }
+
+    private static int editDistance(String first, String second, boolean transpositions) {
+        int[][] distance = new int[first.length() + 1][second.length() + 1];
+        for (int i = 0; i <= first.length(); ++i) {
+            for (int j = 0; j <= second.length(); ++j) {
+                if (i == 0 || j == 0) {
+                    distance[i][j] = i + j;
+                    continue;
+                }
+                int cost = first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1;
+                distance[i][j] = Math.min(distance[i - 1][j - 1] + cost,
+                        Math.min(distance[i - 1][j], distance[i][j - 1]) + 1);
+                if (transpositions && i > 1 && j > 1 && first.charAt(i - 1) == second.charAt(j - 2)
+                        && first.charAt(i - 2) == second.charAt(j - 1)) {
+                    distance[i][j] = Math.min(distance[i][j], distance[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return distance[first.length()][second.length()];
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.roklib.collections.TernarySearchTreeIntMap;
+import org.roklib.collections.TernarySearchTreeMap;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TSTIntMapTest {
+    private TernarySearchTreeIntMap testObj;
+
+    @Before
+    public void setUp() {
+        testObj = new TernarySearchTreeIntMap(-1);
+    }
+
+    @Test
+    public void testPrimitiveAccess() {
+        assertEquals(-1, testObj.getNoEntryValue());
+        assertEquals(-1, testObj.getInt("one"));
+        assertEquals(-1, testObj.put("one", 1));
+        assertEquals(-1, testObj.put("", 0));
+        assertEquals(-1, testObj.put("minus", -1));
+        assertEquals(1, testObj.put("one", 11));
+        assertEquals(11, testObj.getInt("one"));
+        assertEquals(0, testObj.getInt(""));
+        assertEquals(3, testObj.size());
+
+        // the no-entry value can be stored like any other value
+        assertEquals(-1, testObj.getInt("minus"));
+        assertTrue(testObj.containsKey("minus"));
+        assertFalse(testObj.containsKey("minu"));
+
+        assertEquals(-1, testObj.removeInt("minus"));
+        assertEquals(0, testObj.removeInt(""));
+        assertEquals(-1, testObj.removeInt(""));
+        assertEquals(-1, testObj.removeInt("two"));
+        assertEquals(1, testObj.size());
+    }
+
+    @Test
+    public void testAddToAndIncrement() {
+        assertEquals(5, testObj.addTo("word", 5));
+        assertEquals(6, testObj.increment("word"));
+        assertEquals(1, testObj.increment("other"));
+        assertEquals(-4, testObj.addTo("other", -5));
+        assertEquals(6, testObj.getInt("word"));
+        assertEquals(1, testObj.increment(""));
+        assertEquals(3, testObj.size());
+    }
+
+    @Test
+    public void testMapInterface() {
+        Map<CharSequence, Integer> map = testObj;
+        assertNull(map.get("a"));
+        assertNull(map.put("a", 1));
+        assertEquals(Integer.valueOf(1), map.put("a", 2));
+        assertEquals(Integer.valueOf(2), map.get(new StringBuilder("a")));
+        map.put("b", 3);
+        assertEquals(Integer.valueOf(3), map.remove("b"));
+        assertNull(map.remove("b"));
+        assertEquals(Collections.singletonMap("a", 2), map);
+
+        Map.Entry<CharSequence, Integer> entry = map.entrySet().iterator().next();
+        entry.setValue(7);
+        assertEquals(7, testObj.getInt("a"));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testPutNullValue() {
+        testObj.put("a", (Integer) null);
+    }
+
+    @Test
+    public void testWordCountsMatchReference() {
+        Random random = new Random(99);
+        TreeMap<CharSequence, Integer> reference = new TreeMap<CharSequence, Integer>();
+        for (int i = 0; i < 20000; ++i) {
+            String word = randomWord(random);
+            if (random.nextInt(10) == 0) {
+                Integer expected = reference.remove(word);
+                assertEquals(expected == null ? -1 : expected, testObj.removeInt(word));
+            } else {
+                Integer count = reference.get(word);
+                reference.put(word, count == null ? 1 : count + 1);
+                assertEquals((int) reference.get(word), testObj.increment(word));
+            }
+        }
+        assertEquals(reference, testObj);
+        assertEquals(new ArrayList<CharSequence>(reference.keySet()), new ArrayList<CharSequence>(testObj.keySet()));
+        for (int i = 0; i < 200; ++i) {
+            String word = randomWord(random);
+            assertEquals(reference.headMap(word).size(), testObj.rank(word));
+            assertEquals(reference.subMap(word, word + Character.MAX_VALUE).size(), testObj.countPrefix(word));
+        }
+        assertEquals(reference.firstKey(), testObj.firstKey());
+        assertEquals(reference.lastKey(), testObj.lastKey());
+    }
+
+    @Test
+    public void testQueriesMatchTernarySearchTreeMap() {
+        Random random = new Random(3);
+        TernarySearchTreeMap<Integer> reference = new TernarySearchTreeMap<Integer>();
+        for (int i = 0; i < 500; ++i) {
+            String word = randomWord(random);
+            reference.put(word, i);
+            testObj.put(word, i);
+        }
+        for (int i = 0; i < 100; ++i) {
+            String word = randomWord(random);
+            assertEquals(reference.matchAlmost(word, 1, 1), testObj.matchAlmost(word, 1, 1));
+            assertEquals(reference.indexOf(word), testObj.indexOf(word));
+            assertEquals(reference.predecessor(word), testObj.predecessor(word));
+            List<CharSequence> expected = new ArrayList<CharSequence>(
+                    new TreeMap<CharSequence, Integer>(reference).subMap(word, word + Character.MAX_VALUE).keySet());
+            List<CharSequence> actual = new ArrayList<CharSequence>();
+            for (CharSequence key : testObj.getPrefixMatch(word)) {
+                actual.add(key);
+            }
+            assertEquals(expected, actual);
+        }
+        assertEquals(reference.getKeyAt(17), testObj.getKeyAt(17));
+        assertEquals(reference.getValueAt(17), testObj.getValueAt(17));
+    }
+
+    @Test
+    public void testClearAndSerialization() throws IOException, ClassNotFoundException {
+        for (int i = 0; i < 100; ++i) {
+            testObj.put("key" + i, i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(testObj);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        TernarySearchTreeIntMap copy = (TernarySearchTreeIntMap) in.readObject();
+        assertEquals(testObj, copy);
+        assertEquals(-1, copy.getNoEntryValue());
+        assertEquals(42, copy.increment("key41"));
+
+        testObj.clear();
+        assertTrue(testObj.isEmpty());
+        assertEquals(0, testObj.getNodeCount());
+        assertEquals(-1, testObj.getInt("key1"));
+        testObj.put("key1", 1);
+        assertEquals(1, testObj.getInt("key1"));
+    }
+
+    private static String randomWord(Random random) {
+        int length = random.nextInt(6);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('a' + random.nextInt(4)));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Test;
+import org.roklib.collections.TernarySearchTreeLongMap;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TSTLongMapTest {
+    @Test
+    public void testPrimitiveAccess() {
+        TernarySearchTreeLongMap testObj = new TernarySearchTreeLongMap(Long.MIN_VALUE);
+        assertEquals(Long.MIN_VALUE, testObj.getLong("id"));
+        assertEquals(Long.MIN_VALUE, testObj.put("id", 1L << 40));
+        assertEquals(1L << 40, testObj.getLong("id"));
+        assertEquals((1L << 40) + 1, testObj.increment("id"));
+        assertEquals(10, testObj.addTo("other", 10));
+        assertEquals(Long.valueOf(10), testObj.get("other"));
+        assertEquals(10, testObj.removeLong("other"));
+        assertEquals(Long.MIN_VALUE, testObj.removeLong("other"));
+        assertEquals(1, testObj.size());
+    }
+
+    @Test
+    public void testRandomOperations() {
+        Random random = new Random(12);
+        TernarySearchTreeLongMap testObj = new TernarySearchTreeLongMap();
+        TreeMap<CharSequence, Long> reference = new TreeMap<CharSequence, Long>();
+        for (int i = 0; i < 10000; ++i) {
+            String key = Integer.toString(random.nextInt(2000), 7);
+            long amount = random.nextLong();
+            if (random.nextInt(5) == 0) {
+                assertEquals(reference.remove(key), testObj.remove(key));
+            } else {
+                Long value = reference.get(key);
+                reference.put(key, value == null ? amount : value + amount);
+                assertEquals((long) reference.get(key), testObj.addTo(key, amount));
+            }
+        }
+        assertEquals(reference, testObj);
+        assertEquals(new ArrayList<CharSequence>(reference.keySet()), new ArrayList<CharSequence>(testObj.keySet()));
+        assertEquals(new ArrayList<Long>(reference.values()), new ArrayList<Long>(testObj.values()));
+    }
+}
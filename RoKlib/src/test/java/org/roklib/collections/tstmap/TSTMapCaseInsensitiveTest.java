@@ -24,6 +24,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.roklib.collections.TernarySearchTreeMapCaseInsensitive;
 
+import java.io.*;
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -352,4 +353,91 @@ public class TSTMapCaseInsensitiveTest {
         assertNull(testObj.successor("zzz"));
         assertEquals(ABCD, testObj.successor("aaa"));
     }
+
+    @Test
+    public void testLocaleSpecificFolding() {
+        TernarySearchTreeMapCaseInsensitive<String> turkish = new TernarySearchTreeMapCaseInsensitive<String>(
+                new Locale("tr"));
+        turkish.put("\u0131sparta", "Isparta");
+        assertEquals("Isparta", turkish.get("ISPARTA"));
+        assertNull(turkish.get("isparta"));
+        assertEquals("\u0131sparta", turkish.firstKey());
+
+        TernarySearchTreeMapCaseInsensitive<String> english = new TernarySearchTreeMapCaseInsensitive<String>(
+                Locale.ENGLISH);
+        english.put("isparta", "Isparta");
+        assertEquals("Isparta", english.get("ISPARTA"));
+        assertEquals("Isparta", english.get("\u0130SPARTA"));
+    }
+
+    @Test
+    public void testFinalSigmaFolding() {
+        TernarySearchTreeMapCaseInsensitive<String> greek = new TernarySearchTreeMapCaseInsensitive<String>(
+                new Locale("el"));
+        greek.put("\u03BF\u03B4\u03BF\u03C2", "road");
+        assertEquals("road", greek.get("\u039F\u0394\u039F\u03A3"));
+        assertEquals("road", greek.get("\u03BF\u03B4\u03BF\u03C3"));
+        assertEquals("\u03BF\u03B4\u03BF\u03C2", greek.firstKey());
+    }
+
+    @Test
+    public void testRemoveWhileIterating() {
+        testObj.put("bart", "bart");
+        testObj.put("BA", "BA");
+        List<CharSequence> keys = new ArrayList<CharSequence>();
+        for (Iterator<CharSequence> it = testObj.tailMap("b").keySet().iterator(); it.hasNext(); ) {
+            CharSequence key = it.next();
+            keys.add(key);
+            if (key.length() < 4) {
+                it.remove();
+            }
+        }
+        assertEquals(Arrays.<CharSequence>asList("BA", BAR, "bart", BAZ, FOO, XYZ), keys);
+        assertEquals(Arrays.<CharSequence>asList(EMPTY, ABCD, "bart"), new ArrayList<CharSequence>(testObj.keySet()));
+    }
+
+    @Test
+    public void testRandomOperations() {
+        testObj.clear();
+        Random random = new Random(4711);
+        TreeMap<String, String> reference = new TreeMap<String, String>();
+        for (int i = 0; i < 3000; ++i) {
+            StringBuilder key = new StringBuilder();
+            int length = random.nextInt(5);
+            for (int j = 0; j < length; ++j) {
+                key.append("aAbB".charAt(random.nextInt(4)));
+            }
+            String lowerCaseKey = key.toString().toLowerCase();
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(lowerCaseKey), testObj.remove(key));
+            } else {
+                assertEquals(reference.put(lowerCaseKey, key.toString()), testObj.put(key, key.toString()));
+            }
+        }
+        testObj.keySet().retainAll(reference.values());
+        assertEquals(reference.size(), testObj.size());
+        int index = 0;
+        for (Entry<CharSequence, String> entry : testObj.entrySet()) {
+            assertEquals(index, testObj.indexOf(entry.getKey().toString().toUpperCase()));
+            assertEquals(entry.getKey(), entry.getValue());
+            assertEquals(reference.get(entry.getKey().toString().toLowerCase()), entry.getValue());
+            index++;
+        }
+        assertEquals(new ArrayList<String>(reference.values()), new ArrayList<String>(testObj.values()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSerialization() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(testObj);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        TernarySearchTreeMapCaseInsensitive<String> copy = (TernarySearchTreeMapCaseInsensitive<String>) in
+                .readObject();
+        assertEquals(testObj, copy);
+        assertEquals(new ArrayList<CharSequence>(testObj.keySet()), new ArrayList<CharSequence>(copy.keySet()));
+        assertEquals(FOO, copy.get("FOO"));
+    }
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.roklib.collections.TernarySearchTreeMap;
+import org.roklib.collections.TernarySearchTreeMapCaseInsensitive;
+import org.roklib.collections.TernarySearchTreeSet;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class TSTPartialMatchTest {
+    private static final String[] WORDS = {"", "a", "cat", "cot", "cut", "cart", "coat", "c?t", "dog", "prefix",
+            "prepostfix", "pre", "fix", "x*y", "[ab]"};
+
+    private TernarySearchTreeMap<Integer> testObj;
+
+    @Before
+    public void setUp() {
+        testObj = new TernarySearchTreeMap<Integer>();
+        for (int i = 0; i < WORDS.length; ++i) {
+            testObj.put(WORDS[i], i);
+        }
+    }
+
+    private static List<String> keys(Iterable<? extends Map.Entry<CharSequence, ?>> matches) {
+        List<String> result = new ArrayList<String>();
+        for (Map.Entry<CharSequence, ?> match : matches) {
+            result.add(match.getKey().toString());
+        }
+        return result;
+    }
+
+    @Test
+    public void testWildcards() {
+        assertEquals(Arrays.asList("c?t", "cat", "cot", "cut"), keys(testObj.partialMatch("c?t")));
+        assertEquals(Arrays.asList("prefix", "prepostfix"), keys(testObj.partialMatch("pre*fix")));
+        assertEquals(Arrays.asList("c?t", "cart", "cat", "coat", "cot", "cut"), keys(testObj.partialMatch("c*t")));
+        assertEquals(Arrays.asList("cot", "cut"), keys(testObj.partialMatch("c[o-u]t")));
+        assertEquals(Arrays.asList("c?t", "cat"), keys(testObj.partialMatch("c[!o-u]t")));
+        assertEquals(Arrays.asList("cart", "coat"), keys(testObj.partialMatch("c??t")));
+        assertEquals(Collections.singletonList("dog"), keys(testObj.partialMatch("dog")));
+        assertTrue(keys(testObj.partialMatch("do")).isEmpty());
+        assertTrue(keys(testObj.partialMatch("d?")).isEmpty());
+    }
+
+    @Test
+    public void testEmptyKeyAndStars() {
+        assertEquals(Collections.singletonList(""), keys(testObj.partialMatch("")));
+        assertEquals(Arrays.asList(WORDS).size(), keys(testObj.partialMatch("*")).size());
+        assertEquals(new ArrayList<CharSequence>(testObj.keySet()),
+                new ArrayList<CharSequence>(keys(testObj.partialMatch("**"))));
+        assertEquals(Arrays.asList("pre", "prefix", "prepostfix"), keys(testObj.partialMatch("pre*")));
+        assertEquals(Arrays.asList("fix", "prefix", "prepostfix"), keys(testObj.partialMatch("*fix")));
+    }
+
+    @Test
+    public void testEscapes() {
+        assertEquals(Collections.singletonList("c?t"), keys(testObj.partialMatch("c\\?t")));
+        assertEquals(Collections.singletonList("x*y"), keys(testObj.partialMatch("x\\*y")));
+        assertEquals(Collections.singletonList("[ab]"), keys(testObj.partialMatch("\\[ab\\]")));
+        assertEquals(Arrays.asList("c?t", "cat"), keys(testObj.partialMatch("c[?a]t")));
+        assertEquals(Collections.singletonList("[ab]"), keys(testObj.partialMatch("[[]ab[]]")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnterminatedClass() {
+        testObj.partialMatch("c[at");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTrailingEscape() {
+        testObj.partialMatch("cat\\");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRange() {
+        testObj.partialMatch("c[z-a]t");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemoveIsNotSupported() {
+        Iterator<Map.Entry<CharSequence, Integer>> iterator = testObj.partialMatch("c?t").iterator();
+        iterator.next();
+        iterator.remove();
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testIteratorIsFailFast() {
+        Iterator<Map.Entry<CharSequence, Integer>> iterator = testObj.partialMatch("c?t").iterator();
+        iterator.next();
+        testObj.put("cxt", 0);
+        iterator.next();
+    }
+
+    @Test
+    public void testMatchesRegularExpressionsOnRandomKeys() {
+        Random random = new Random(4711);
+        testObj.clear();
+        for (int i = 0; i < 2000; ++i) {
+            testObj.put(randomString(random, "abcd", 6), i);
+        }
+        String[] patterns = {"a*", "*a", "?b*", "a?c", "*a*b*", "[a-b]??", "[^a]*d", "??", "*", "a*a*a", "b[cd]*[!a]"};
+        for (String pattern : patterns) {
+            Pattern regex = Pattern.compile(pattern.replace("?", ".").replace("*", ".*").replace("!", "^"));
+            List<String> expected = new ArrayList<String>();
+            for (CharSequence key : testObj.keySet()) {
+                if (regex.matcher(key).matches()) {
+                    expected.add(key.toString());
+                }
+            }
+            assertEquals(pattern, expected, keys(testObj.partialMatch(pattern)));
+        }
+    }
+
+    @Test
+    public void testCaseInsensitiveMap() {
+        TernarySearchTreeMapCaseInsensitive<Integer> map = new TernarySearchTreeMapCaseInsensitive<Integer>(
+                Locale.ENGLISH);
+        for (int i = 0; i < WORDS.length; ++i) {
+            map.put(WORDS[i].toUpperCase(Locale.ENGLISH), i);
+        }
+        assertEquals(Arrays.asList("C?T", "CAT", "COT", "CUT"), keys(map.partialMatch("c?t")));
+        assertEquals(Arrays.asList("PREFIX", "PREPOSTFIX"), keys(map.partialMatch("Pre*Fix")));
+        assertEquals(Arrays.asList("COT", "CUT"), keys(map.partialMatch("c[o-u]T")));
+        assertEquals(Arrays.asList("COT", "CUT"), keys(map.partialMatch("c[O-U]t")));
+        assertEquals(Arrays.asList("C?T", "CAT"), keys(map.partialMatch("c[^O-U]t")));
+    }
+
+    @Test
+    public void testSet() {
+        TernarySearchTreeSet set = new TernarySearchTreeSet(WORDS);
+        List<CharSequence> result = new ArrayList<CharSequence>();
+        for (CharSequence key : set.partialMatch("c*t")) {
+            result.add(key);
+        }
+        assertEquals(Arrays.<CharSequence>asList("c?t", "cart", "cat", "coat", "cot", "cut"), result);
+
+        set = new TernarySearchTreeSet(Arrays.asList("Cat", "COT", "dog"), true);
+        result.clear();
+        for (CharSequence key : set.partialMatch("C?t")) {
+            result.add(key);
+        }
+        assertEquals(Arrays.<CharSequence>asList("Cat", "COT"), result);
+    }
+
+    private static String randomString(Random random, String alphabet, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.roklib.collections.TernarySearchTreeMap;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.Assert.*;
+
+public class TSTRegexSearchTest {
+    private static final String[] METRICS = {"", "cpu.load.min", "cpu.load.max", "cpu.load.avg", "cpu.user",
+            "cpu.system", "mem.free", "mem.used", "disk0.read", "disk1.read", "disk12.write", "net.eth0.rx",
+            "net.eth0.tx", "net.eth1.rx", "cpu", "cpux"};
+
+    private TernarySearchTreeMap<Integer> testObj;
+
+    @Before
+    public void setUp() {
+        testObj = new TernarySearchTreeMap<Integer>();
+        for (int i = 0; i < METRICS.length; ++i) {
+            testObj.put(METRICS[i], i);
+        }
+    }
+
+    private static List<String> keys(Iterable<Map.Entry<CharSequence, Integer>> matches) {
+        List<String> result = new ArrayList<String>();
+        for (Map.Entry<CharSequence, Integer> match : matches) {
+            result.add(match.getKey().toString());
+        }
+        return result;
+    }
+
+    private List<String> expected(String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        List<String> result = new ArrayList<String>();
+        for (CharSequence key : testObj.keySet()) {
+            if (pattern.matcher(key).matches()) {
+                result.add(key.toString());
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testSearch() {
+        assertEquals(Arrays.asList("cpu.load.max", "cpu.load.min"), keys(testObj.search("cpu\\.load\\.(min|max)")));
+        assertEquals(Arrays.asList("disk0.read", "disk1.read"), keys(testObj.search("disk\\d\\.read")));
+        assertEquals(Arrays.asList("disk0.read", "disk1.read", "disk12.write"), keys(testObj.search("disk\\d+\\..*")));
+        assertEquals(Arrays.asList("net.eth0.rx", "net.eth1.rx"), keys(testObj.search("net\\.eth[0-9]\\.rx")));
+        assertEquals(Arrays.asList("cpu", "cpux"), keys(testObj.search("cpux?")));
+        assertEquals(Collections.singletonList("cpu"), keys(testObj.search("^cpu$")));
+        assertEquals(Collections.singletonList(""), keys(testObj.search("")));
+        assertEquals(Arrays.asList("", "cpu"), keys(testObj.search("(cpu)?|x{0}")));
+        assertTrue(keys(testObj.search("cpu\\.load")).isEmpty());
+        assertTrue(keys(testObj.search("gpu.*")).isEmpty());
+        assertEquals(Integer.valueOf(0), testObj.search("").iterator().next().getValue());
+    }
+
+    @Test
+    public void testMatchesJavaRegularExpressions() {
+        String[] regexes = {".*", ".+", "cpu.*", ".*\\.rx", "(cpu|mem)\\.[a-z]+", "[^c].*", "\\w+\\.\\w+",
+                "\\w{3}\\.\\w{4}", "\\w{3,4}\\..{3,}", "(\\w+\\.)*\\w+", "d.*", "(?:net|disk)\\S*",
+                "[a-z-]?pu", "c(p|pu)*\\.?.*x?", "m.m\\..*",
+                "cpu.?", "[c-d]\\D*", "net\\.eth[01]\\.(r|t)x", ".{0,3}", "(a|b|c|)pu.*?", "disk1[^.]?\\.\\w+"};
+        for (String regex : regexes) {
+            assertEquals(regex, expected(regex), keys(testObj.search(regex)));
+        }
+    }
+
+    @Test
+    public void testRandomKeys() {
+        Random random = new Random(4711);
+        testObj.clear();
+        for (int i = 0; i < 3000; ++i) {
+            int length = random.nextInt(7);
+            StringBuilder key = new StringBuilder();
+            for (int j = 0; j < length; ++j) {
+                key.append("abc.".charAt(random.nextInt(4)));
+            }
+            testObj.put(key.toString(), i);
+        }
+        String[] regexes = {"a.*", "(ab|ba)+", "[ab]*c", ".*\\..*", "a{2,3}.?", "(a|b\\.)*c*", "c[^.]+c", "abc\\.",
+                "((a|b)c)*", ".{4}", "(.)*b"};
+        for (String regex : regexes) {
+            assertEquals(regex, expected(regex), keys(testObj.search(regex)));
+        }
+    }
+
+    @Test
+    public void testUnsupportedConstructs() {
+        String[] regexes = {"(a", "a)", "[ab", "a{2", "*a", "a\\1", "(?=a)b", "a++", "a^", "[[a]]", "a{3,1}",
+                "\\"};
+        for (String regex : regexes) {
+            try {
+                testObj.search(regex);
+                fail("expected a PatternSyntaxException for " + regex);
+            } catch (PatternSyntaxException e) {
+                assertEquals(regex, e.getPattern());
+            }
+        }
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testIteratorIsFailFast() {
+        Iterator<Map.Entry<CharSequence, Integer>> iterator = testObj.search("cpu.*").iterator();
+        iterator.next();
+        testObj.put("cpu.idle", 0);
+        iterator.next();
+    }
+}
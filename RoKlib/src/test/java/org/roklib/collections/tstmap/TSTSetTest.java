@@ -58,6 +58,16 @@ public class TSTSetTest {
         assertEquals(EXPECTED_SIZE, set.size());
     }
 
+    @Test
+    public void testConstructorForReverseOrderedSortedSet() {
+        SortedSet<CharSequence> dataSet = new TreeSet<CharSequence>(Collections.reverseOrder());
+        dataSet.addAll(Arrays.asList(STRINGS));
+        TernarySearchTreeSet set = new TernarySearchTreeSet(dataSet);
+        assertEquals(EXPECTED_SIZE, set.size());
+        assertEquals("artichoke", set.first());
+        assertEquals("sorrel", set.last());
+    }
+
     @Test
     public void testConstructorForCollection() {
         List<CharSequence> list = new LinkedList<CharSequence>(Arrays.asList(STRINGS));
@@ -383,6 +393,27 @@ public class TSTSetTest {
         assertEquals(8, testObj.matchAlmost("xxxxxxxx", 999, 999).size());
     }
 
+    @Test
+    public void testRankAndCountPrefix() {
+        assertEquals(0, testObj.rank("a"));
+        assertEquals(2, testObj.rank("b"));
+        assertEquals(2, testObj.rank("basil"));
+        assertEquals(8, testObj.rank("z"));
+        assertEquals(2, testObj.countPrefix("a"));
+        assertEquals(1, testObj.countPrefix("artichoke"));
+        assertEquals(0, testObj.countPrefix("artichokes"));
+        assertEquals(EXPECTED_SIZE, testObj.countPrefix(""));
+    }
+
+    @Test
+    public void testSubSetSizes() {
+        assertEquals(4, testObj.subSet("b", "k").size());
+        assertEquals(2, testObj.headSet("basil").size());
+        assertEquals(2, testObj.tailSet("parsley").size());
+        assertEquals(0, testObj.subSet("q", "r").size());
+        assertEquals(2, testObj.subSet("b", "k").headSet("d").size());
+    }
+
     private void assertIsEmpty(TernarySearchTreeSet set) {
         assertEquals(0, set.size());
         assertTrue(set.isEmpty());
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+
+import org.junit.Before;
+import org.junit.Test;
+import org.roklib.collections.TernarySearchTreeMap;
+import org.roklib.collections.TernarySearchTreeSet;
+
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.Assert.*;
+
+public class TSTSpliteratorTest {
+    private TernarySearchTreeMap<String> testObj;
+    private TreeMap<CharSequence, String> expected;
+
+    @Before
+    public void setUp() {
+        testObj = new TernarySearchTreeMap<String>();
+        expected = new TreeMap<CharSequence, String>();
+        Random random = new Random(17);
+        for (int i = 0; i < 5000; ++i) {
+            String key = randomKey(random);
+            testObj.put(key, key.toUpperCase());
+            expected.put(key, key.toUpperCase());
+        }
+    }
+
+    @Test
+    public void testSequentialStreams() {
+        assertEquals(new ArrayList<CharSequence>(expected.keySet()),
+                testObj.keySet().stream().collect(Collectors.toList()));
+        assertEquals(new ArrayList<String>(expected.values()), testObj.values().stream().collect(Collectors.toList()));
+        assertEquals(new ArrayList<Entry<CharSequence, String>>(expected.entrySet()),
+                testObj.entrySet().stream().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testParallelStreams() {
+        assertEquals(new ArrayList<CharSequence>(expected.keySet()),
+                testObj.keySet().parallelStream().collect(Collectors.toList()));
+        assertEquals(expected.size(), testObj.values().parallelStream().count());
+        assertEquals(new ArrayList<Entry<CharSequence, String>>(expected.entrySet()),
+                testObj.entrySet().parallelStream().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSplitsAreBalancedAndSized() {
+        Spliterator<CharSequence> spliterator = testObj.keySet().spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.SORTED));
+        assertNull(spliterator.getComparator());
+        assertEquals(expected.size(), spliterator.getExactSizeIfKnown());
+        List<CharSequence> result = new ArrayList<CharSequence>();
+        collectWithSplits(spliterator, result);
+        assertEquals(new ArrayList<CharSequence>(expected.keySet()), result);
+    }
+
+    @Test
+    public void testSubMapSpliterators() {
+        assertEquals(new ArrayList<CharSequence>(expected.subMap("ab", "c").keySet()),
+                testObj.subMap("ab", "c").keySet().parallelStream().collect(Collectors.toList()));
+        assertEquals(new ArrayList<String>(expected.headMap("b").values()),
+                testObj.headMap("b").values().parallelStream().collect(Collectors.toList()));
+        assertEquals(new ArrayList<Entry<CharSequence, String>>(expected.tailMap("cb").entrySet()),
+                testObj.tailMap("cb").entrySet().parallelStream().collect(Collectors.toList()));
+        assertEquals(0, testObj.subMap("x", "y").keySet().spliterator().getExactSizeIfKnown());
+
+        List<CharSequence> result = new ArrayList<CharSequence>();
+        Spliterator<CharSequence> spliterator = testObj.subMap("ab", "d").keySet().spliterator();
+        assertEquals(expected.subMap("ab", "d").size(), spliterator.getExactSizeIfKnown());
+        collectWithSplits(spliterator, result);
+        assertEquals(new ArrayList<CharSequence>(expected.subMap("ab", "d").keySet()), result);
+    }
+
+    @Test
+    public void testPrefixSpliterators() {
+        List<CharSequence> withPrefix = new ArrayList<CharSequence>();
+        List<CharSequence> withoutPrefix = new ArrayList<CharSequence>();
+        for (CharSequence key : expected.keySet()) {
+            (key.toString().startsWith("ba") ? withPrefix : withoutPrefix).add(key);
+        }
+        assertEquals(withPrefix, StreamSupport.stream(testObj.getPrefixMatch("ba").spliterator(), true)
+                .collect(Collectors.toList()));
+        assertEquals(withPrefix, StreamSupport.stream(testObj.getPrefixSubtreeIterator("ba").spliterator(), true)
+                .map(Entry::getKey).collect(Collectors.toList()));
+        assertEquals(withoutPrefix, StreamSupport.stream(testObj.getPrefixSubtreeIterator("ba", true)
+                .spliterator(), true).map(Entry::getKey).collect(Collectors.toList()));
+        assertEquals(withoutPrefix.size(), testObj.getPrefixSubtreeIterator("ba", true).spliterator()
+                .getExactSizeIfKnown());
+        assertEquals(0, testObj.getPrefixMatch("dddddddd").spliterator().getExactSizeIfKnown());
+    }
+
+    @Test
+    public void testSetSpliterators() {
+        TernarySearchTreeSet set = new TernarySearchTreeSet(expected.keySet());
+        assertEquals(new ArrayList<CharSequence>(expected.keySet()),
+                set.parallelStream().collect(Collectors.toList()));
+        assertEquals(new ArrayList<CharSequence>(expected.subMap("b", "c").keySet()),
+                set.subSet("b", "c").parallelStream().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testEmptyStringKeyAndEmptyMap() {
+        TernarySearchTreeMap<String> map = new TernarySearchTreeMap<String>();
+        assertEquals(0, map.keySet().spliterator().getExactSizeIfKnown());
+        assertNull(map.keySet().spliterator().trySplit());
+        map.put("", "empty");
+        map.put("a", "a");
+        assertEquals(Arrays.<CharSequence>asList("", "a"), map.keySet().parallelStream().collect(Collectors.toList()));
+        assertEquals(Arrays.<CharSequence>asList("a"), map.tailMap("a").keySet().stream().collect(Collectors.toList()));
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testModificationDuringTraversal() {
+        testObj.keySet().spliterator().forEachRemaining(new Consumer<CharSequence>() {
+            public void accept(CharSequence key) {
+                testObj.put("new key", "new value");
+            }
+        });
+    }
+
+    private static <T> void collectWithSplits(Spliterator<T> spliterator, final List<T> result) {
+        long size = spliterator.getExactSizeIfKnown();
+        Spliterator<T> prefix = spliterator.trySplit();
+        if (prefix == null) {
+            spliterator.forEachRemaining(new Consumer<T>() {
+                public void accept(T element) {
+                    result.add(element);
+                }
+            });
+            return;
+        }
+        assertEquals(size / 2, prefix.getExactSizeIfKnown());
+        assertEquals(size - size / 2, spliterator.getExactSizeIfKnown());
+        collectWithSplits(prefix, result);
+        collectWithSplits(spliterator, result);
+    }
+
+    private static String randomKey(Random random) {
+        int length = random.nextInt(8);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('a' + random.nextInt(4)));
+        }
+        return buf.toString();
+    }
+}
@@ -22,12 +22,17 @@ package org.roklib.collections.tstmap;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.roklib.collections.TSTCursor;
 import org.roklib.collections.TernarySearchTreeMap;
 import org.roklib.collections.tstmap.MapData.TestDataFixture;
 import org.roklib.util.RandomStringIDGenerator;
 
+import java.io.*;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import static org.junit.Assert.*;
 
@@ -221,6 +226,208 @@ public class TernarySearchTreeMapTest {
         assertTrue(testObj.isEmpty());
     }
 
+    @Test
+    public void testConstructorWithLargeSortedMap() {
+        TreeMap<CharSequence, String> sourceMap = new TreeMap<CharSequence, String>();
+        Random random = new Random(4711);
+        sourceMap.put("", "");
+        for (int i = 0; i < 1000; ++i) {
+            String key = RandomStringIDGenerator.getUniqueID(random, random.nextInt(8) + 1, "abcde");
+            sourceMap.put(key, key);
+        }
+        TernarySearchTreeMap<String> map = new TernarySearchTreeMap<String>(sourceMap);
+        assertEquals(sourceMap, map);
+        assertEquals(new ArrayList<CharSequence>(sourceMap.keySet()), new ArrayList<CharSequence>(map.keySet()));
+        int index = 0;
+        for (CharSequence key : sourceMap.keySet()) {
+            assertEquals(key, map.getKeyAt(index));
+            assertEquals(index++, map.indexOf(key));
+        }
+
+        int count = 0;
+        for (CharSequence key : new ArrayList<CharSequence>(sourceMap.keySet())) {
+            if (count++ % 3 == 0) {
+                assertEquals(sourceMap.remove(key), map.remove(key));
+            }
+        }
+        assertNull(map.put("abcdef", "new"));
+        sourceMap.put("abcdef", "new");
+        assertEquals(sourceMap, map);
+        assertEquals(sourceMap.size(), map.size());
+    }
+
+    @Test
+    public void testConstructorWithReverseOrderedSortedMap() {
+        TreeMap<CharSequence, String> sourceMap = new TreeMap<CharSequence, String>(Collections.reverseOrder());
+        sourceMap.put(VALUE1, VALUE1);
+        sourceMap.put(VALUE2, VALUE2);
+        sourceMap.put(VALUE3, VALUE3);
+        TernarySearchTreeMap<String> map = new TernarySearchTreeMap<String>(sourceMap);
+        assertEquals(sourceMap, map);
+        assertEquals(VALUE2, map.firstKey());
+        assertEquals(VALUE3, map.lastKey());
+    }
+
+    @Test
+    public void testFromSortedEntries() {
+        List<Entry<CharSequence, String>> entries = new ArrayList<Entry<CharSequence, String>>();
+        for (String key : new String[]{"", "a", "ab", "abc", "b", "ba", "c"}) {
+            entries.add(new AbstractMap.SimpleEntry<CharSequence, String>(key, key.toUpperCase()));
+        }
+        TernarySearchTreeMap<String> map = TernarySearchTreeMap.fromSortedEntries(entries.iterator());
+        assertEquals(7, map.size());
+        assertEquals("AB", map.get("ab"));
+        assertEquals("", map.get(""));
+        assertEquals("ba", map.getKeyAt(5));
+        assertEquals(Arrays.<CharSequence>asList("ab", "abc"), new ArrayList<CharSequence>(map.subMap("ab", "b")
+                .keySet()));
+        assertTrue(TernarySearchTreeMap.fromSortedEntries(entries.subList(0, 0).iterator()).isEmpty());
+    }
+
+    @Test
+    public void testIndexOfKeyWithSmallerKeysInLoSubtree() {
+        testObj.put("b", "b");
+        testObj.put("a", "a");
+        testObj.put("ab", "ab");
+        assertEquals(0, testObj.indexOf("a"));
+        assertEquals(1, testObj.indexOf("ab"));
+        assertEquals(2, testObj.indexOf("b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSortedEntriesWithUnsortedInput() {
+        Map<CharSequence, String> entries = new LinkedHashMap<CharSequence, String>();
+        entries.put("b", "b");
+        entries.put("a", "a");
+        TernarySearchTreeMap.fromSortedEntries(entries.entrySet().iterator());
+    }
+
+    @Test
+    public void testMerge() {
+        TernarySearchTreeMap<Integer> counts = new TernarySearchTreeMap<Integer>();
+        Map<String, Integer> expected = new TreeMap<String, Integer>();
+        Random random = new Random(4711);
+        for (int i = 0; i < 2000; ++i) {
+            String word = RandomStringIDGenerator.getUniqueID(random, random.nextInt(4), "abc");
+            Integer expectedCount = expected.get(word);
+            expected.put(word, expectedCount == null ? 1 : expectedCount + 1);
+            assertEquals(expected.get(word), counts.merge(word, 1, SUM));
+        }
+        assertEquals(expected, counts);
+        int index = 0;
+        for (String word : expected.keySet()) {
+            assertEquals(index++, counts.indexOf(word));
+        }
+        assertNull(counts.merge("ab", 0, remove()));
+        assertFalse(counts.containsKey("ab"));
+        assertEquals(expected.size() - 1, counts.size());
+    }
+
+    private static final BiFunction<Integer, Integer, Integer> SUM = new BiFunction<Integer, Integer, Integer>() {
+        public Integer apply(Integer first, Integer second) {
+            return first + second;
+        }
+    };
+
+    private static <V> BiFunction<Object, Object, V> remove() {
+        return new BiFunction<Object, Object, V>() {
+            public V apply(Object first, Object second) {
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void testCompute() {
+        fillMaps();
+        String structure = testObj.getMapStructureAsString();
+        assertNull(testObj.compute("another", remove()));
+        assertNull(testObj.computeIfAbsent("lastly", new Function<CharSequence, String>() {
+            public String apply(CharSequence key) {
+                return null;
+            }
+        }));
+        assertEquals(structure, testObj.getMapStructureAsString());
+        assertEquals(3, testObj.size());
+
+        assertEquals("ANOTHER", testObj.computeIfAbsent("another", new Function<CharSequence, String>() {
+            public String apply(CharSequence key) {
+                return key.toString().toUpperCase();
+            }
+        }));
+        assertEquals(VALUE1, testObj.computeIfAbsent(VALUE1, new Function<CharSequence, String>() {
+            public String apply(CharSequence key) {
+                return "unused";
+            }
+        }));
+        BiFunction<CharSequence, String, String> append = new BiFunction<CharSequence, String, String>() {
+            public String apply(CharSequence key, String value) {
+                return value == null ? key + "!" : value + "!";
+            }
+        };
+        assertEquals(VALUE3 + "!", testObj.compute(VALUE3, append));
+        assertEquals("new!", testObj.compute("new", append));
+        assertNull(testObj.computeIfPresent("missing", append));
+        assertEquals("ANOTHER!", testObj.computeIfPresent("another", append));
+        assertEquals("!", testObj.computeIfPresent(VALUE2, append));
+        assertNull(testObj.computeIfPresent(VALUE1, remove()));
+        assertNull(testObj.compute("new", remove()));
+        assertEquals(3, testObj.size());
+        assertEquals(Arrays.<CharSequence>asList(VALUE2, "another", VALUE3), new ArrayList<CharSequence>(
+                testObj.keySet()));
+        assertEquals(2, testObj.indexOf(VALUE3));
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testComputeIfAbsentWithModifyingFunction() {
+        testObj.computeIfAbsent("key", new Function<CharSequence, String>() {
+            public String apply(CharSequence key) {
+                testObj.put("other key", "value");
+                return "value";
+            }
+        });
+    }
+
+    @Test
+    public void testComputeWithModifyingFunctionRemovesCreatedNodes() {
+        TernarySearchTreeMap<String> expected = new TernarySearchTreeMap<String>();
+        expected.put("a", "value");
+        expected.put("key", "value");
+        expected.put("other key", "value");
+        expected.remove("key");
+        testObj.put("a", "value");
+        try {
+            testObj.compute("key", new BiFunction<CharSequence, String, String>() {
+                public String apply(CharSequence key, String value) {
+                    testObj.put("other key", "value");
+                    return "value";
+                }
+            });
+            fail("ConcurrentModificationException expected");
+        } catch (ConcurrentModificationException e) {
+            // the nodes created for "key" have to be removed anyway
+        }
+        assertEquals(expected, testObj);
+        assertEquals(expected.getMapStructureAsString(), testObj.getMapStructureAsString());
+    }
+
+    @Test
+    public void testPutIfAbsentAndReplace() {
+        fillMaps();
+        assertEquals(VALUE1, testObj.putIfAbsent(VALUE1, "x"));
+        assertNull(testObj.putIfAbsent("another", "x"));
+        assertEquals("x", testObj.replace("another", "y"));
+        assertNull(testObj.replace("anothe", "y"));
+        assertFalse(testObj.replace("another", "x", "z"));
+        assertTrue(testObj.replace("another", "y", "z"));
+        assertEquals("z", testObj.getOrDefault("another", "default"));
+        assertEquals("default", testObj.getOrDefault("anothe", "default"));
+        assertEquals(4, testObj.size());
+        assertEquals(VALUE2, testObj.put(VALUE2, "empty"));
+        assertEquals("empty", testObj.replace(VALUE2, VALUE2));
+        assertEquals(4, testObj.size());
+    }
+
     @Test
     public void testRemoveWithoutSuccess() {
         fillMaps();
@@ -437,6 +644,393 @@ public class TernarySearchTreeMapTest {
         it.remove();
     }
 
+    @SuppressWarnings("unchecked")
+    private static <T> T serializeAndDeserialize(T object) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return (T) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        fillMapWithFiveLowerCaseEntriesOrderingExpected();
+        testObj.put("", "empty");
+        TernarySearchTreeMap<String> result = serializeAndDeserialize(testObj);
+        assertEquals(testObj, result);
+        assertEquals(testObj.getMapStructureAsString(), result.getMapStructureAsString());
+        for (int i = 0; i < testObj.size(); ++i) {
+            assertEquals(testObj.getKeyAt(i), result.getKeyAt(i));
+        }
+        result.put("new", "new");
+        assertEquals(testObj.size() + 1, result.size());
+
+        TernarySearchTreeMap<String> empty = serializeAndDeserialize(new TernarySearchTreeMap<String>());
+        assertTrue(empty.isEmpty());
+        empty.put("a", "a");
+        assertEquals("a", empty.get("a"));
+    }
+
+    @Test
+    public void testSerializationOfDeepTree() throws Exception {
+        // a very long key and a long chain of hi kids result in a tree which is too deep for recursive serialization
+        StringBuilder longKey = new StringBuilder();
+        for (int i = 0; i < 100000; ++i) {
+            longKey.append((char) ('a' + i % 26));
+        }
+        testObj.put(longKey, "long");
+        for (char c = 'A'; c < 'A' + 20000; ++c) {
+            testObj.put(String.valueOf(c), "chain");
+        }
+        TernarySearchTreeMap<String> result = serializeAndDeserialize(testObj);
+        assertEquals(testObj.size(), result.size());
+        assertEquals("long", result.get(longKey));
+        assertEquals("chain", result.get(String.valueOf((char) ('A' + 19999))));
+        assertEquals(testObj.indexOf(longKey), result.indexOf(longKey));
+    }
+
+    @Test
+    public void testRankAndCountPrefix() {
+        TreeMap<CharSequence, String> expected = new TreeMap<CharSequence, String>();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; ++i) {
+            String key = randomKey(random, 6);
+            expected.put(key, key);
+            testObj.put(key, key);
+        }
+        for (int i = 0; i < 500; ++i) {
+            String key = randomKey(random, 7);
+            assertEquals(expected.headMap(key).size(), testObj.rank(key));
+            assertEquals(expected.containsKey(key) ? testObj.rank(key) : -1, testObj.indexOf(key));
+            int count = 0;
+            for (CharSequence other : expected.tailMap(key).keySet()) {
+                if (!other.toString().startsWith(key)) {
+                    break;
+                }
+                count++;
+            }
+            assertEquals(count, testObj.countPrefix(key));
+        }
+        assertEquals(testObj.size(), testObj.countPrefix(""));
+        assertEquals(0, testObj.rank(""));
+    }
+
+    @Test
+    public void testRankAndCountPrefixOnEmptyMap() {
+        assertEquals(0, testObj.rank("abc"));
+        assertEquals(0, testObj.rank(""));
+        assertEquals(0, testObj.countPrefix("abc"));
+        assertEquals(0, testObj.countPrefix(""));
+        assertEquals(-1, testObj.indexOf(""));
+    }
+
+    @Test
+    public void testSubMapSizes() {
+        TreeMap<CharSequence, String> expected = new TreeMap<CharSequence, String>();
+        Random random = new Random(4711);
+        for (int i = 0; i < 1000; ++i) {
+            String key = randomKey(random, 5);
+            expected.put(key, key);
+            testObj.put(key, key);
+        }
+        for (int i = 0; i < 200; ++i) {
+            String from = randomKey(random, 5);
+            String to = randomKey(random, 5);
+            if (from.compareTo(to) > 0) {
+                String tmp = from;
+                from = to;
+                to = tmp;
+            }
+            SortedMap<CharSequence, String> subMap = testObj.subMap(from, to);
+            int size = expected.subMap(from, to).size();
+            assertEquals(size, subMap.size());
+            assertEquals(size, subMap.keySet().size());
+            assertEquals(size, subMap.values().size());
+            assertEquals(size, subMap.entrySet().size());
+            assertEquals(expected.headMap(to).size(), testObj.headMap(to).size());
+            assertEquals(expected.tailMap(from).size(), testObj.tailMap(from).size());
+            assertEquals(expected.tailMap(from).headMap(to).size(), testObj.tailMap(from).headMap(to).size());
+        }
+    }
+
+    @Test
+    public void testCursor() {
+        TreeMap<CharSequence, String> expected = new TreeMap<CharSequence, String>();
+        Random random = new Random(1234);
+        for (int i = 0; i < 2000; ++i) {
+            String key = randomKey(random, 7);
+            expected.put(key, key.toUpperCase());
+            testObj.put(key, key.toUpperCase());
+        }
+        assertCursorReturns(expected, testObj.cursor());
+        assertCursorReturns(expected, testObj.cursor(""));
+        for (String prefix : new String[]{"a", "ab", "dcb", "abcdabcd"}) {
+            SortedMap<CharSequence, String> expectedWithPrefix = new TreeMap<CharSequence, String>();
+            for (Entry<CharSequence, String> entry : expected.entrySet()) {
+                if (entry.getKey().toString().startsWith(prefix)) {
+                    expectedWithPrefix.put(entry.getKey(), entry.getValue());
+                }
+            }
+            assertCursorReturns(expectedWithPrefix, testObj.cursor(prefix));
+        }
+
+        final List<CharSequence> keys = new ArrayList<CharSequence>();
+        testObj.forEach(new BiConsumer<CharSequence, String>() {
+            public void accept(CharSequence key, String value) {
+                assertEquals(key.toString().toUpperCase(), value);
+                keys.add(key);
+            }
+        });
+        assertEquals(new ArrayList<CharSequence>(expected.keySet()), keys);
+    }
+
+    @Test
+    public void testCursorOnEmptyMap() {
+        assertFalse(testObj.cursor().advance());
+        assertFalse(testObj.cursor("a").advance());
+        testObj.put("", "empty");
+        TSTCursor<String> cursor = testObj.cursor();
+        assertTrue(cursor.advance());
+        assertEquals("", cursor.key());
+        assertEquals("empty", cursor.value());
+        assertFalse(cursor.advance());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testCursorNotPositioned() {
+        testObj.put("a", "a");
+        testObj.cursor().keyView();
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testCursorIsFailFast() {
+        testObj.put("a", "a");
+        testObj.put("b", "b");
+        TSTCursor<String> cursor = testObj.cursor();
+        cursor.advance();
+        testObj.remove("b");
+        cursor.advance();
+    }
+
+    private static void assertCursorReturns(SortedMap<CharSequence, String> expected, TSTCursor<String> cursor) {
+        for (Entry<CharSequence, String> entry : expected.entrySet()) {
+            assertTrue(cursor.advance());
+            assertEquals(entry.getKey(), cursor.keyView().toString());
+            assertEquals(entry.getKey().length(), cursor.keyView().length());
+            assertEquals(entry.getKey(), cursor.key());
+            assertEquals(entry.getValue(), cursor.value());
+        }
+        assertFalse(cursor.advance());
+    }
+
+    @Test
+    public void testRangeIterationAndNeighbours() {
+        TreeMap<CharSequence, String> expected = new TreeMap<CharSequence, String>();
+        Random random = new Random(815);
+        for (int i = 0; i < 1000; ++i) {
+            String key = randomKey(random, 5);
+            expected.put(key, key);
+            testObj.put(key, key);
+        }
+        for (int i = 0; i < 300; ++i) {
+            String from = randomKey(random, 6);
+            String to = from + randomKey(random, 2) + "d";
+            assertEquals(new ArrayList<CharSequence>(expected.tailMap(from).keySet()),
+                    new ArrayList<CharSequence>(testObj.tailMap(from).keySet()));
+            assertEquals(new ArrayList<CharSequence>(expected.subMap(from, to).keySet()),
+                    new ArrayList<CharSequence>(testObj.subMap(from, to).keySet()));
+            CharSequence higher = expected.higherKey(from);
+            CharSequence lower = expected.lowerKey(from);
+            assertEquals(higher, testObj.successor(from));
+            assertEquals(lower, testObj.predecessor(from));
+            if (!expected.subMap(from, to).isEmpty()) {
+                assertEquals(expected.subMap(from, to).firstKey(), testObj.subMap(from, to).firstKey());
+                assertEquals(expected.subMap(from, to).lastKey(), testObj.subMap(from, to).lastKey());
+            } else {
+                assertNull(testObj.subMap(from, to).firstKey());
+                assertNull(testObj.subMap(from, to).lastKey());
+            }
+        }
+    }
+
+    @Test
+    public void testLongestPrefixOf() {
+        testObj.put("/api", "api");
+        testObj.put("/api/users", "users");
+        testObj.put("/apiary", "apiary");
+        testObj.put("/static", "static");
+
+        Entry<CharSequence, String> entry = testObj.longestPrefixOf("/api/users/42");
+        assertEquals("/api/users", entry.getKey());
+        assertEquals("users", entry.getValue());
+        assertEquals("/api", testObj.longestPrefixOf("/api/orders").getKey());
+        assertEquals("/apiary", testObj.longestPrefixOf("/apiary").getKey());
+        assertEquals("/api", testObj.longestPrefixOf("/apia").getKey());
+        assertNull(testObj.longestPrefixOf("/ap"));
+        assertNull(testObj.longestPrefixOf("api"));
+        assertNull(testObj.longestPrefixOf(""));
+
+        testObj.put("", "root");
+        assertEquals("", testObj.longestPrefixOf("/ap").getKey());
+        assertEquals("root", testObj.longestPrefixOf("").getValue());
+    }
+
+    @Test
+    public void testLongestPrefixOfSection() {
+        testObj.put("the", "the");
+        testObj.put("then", "then");
+        testObj.put("there", "there");
+        testObj.put("cat", "cat");
+
+        StringBuilder buffer = new StringBuilder("xxthenxcatx");
+        assertEquals("then", testObj.longestPrefixOf(buffer, 2, 9).getKey());
+        assertEquals("the", testObj.longestPrefixOf(buffer, 2, 3).getKey());
+        assertEquals("cat", testObj.longestPrefixOf(buffer, 7, 4).getKey());
+        assertNull(testObj.longestPrefixOf(buffer, 7, 2));
+        assertNull(testObj.longestPrefixOf(buffer, 11, 0));
+        try {
+            testObj.longestPrefixOf(buffer, 8, 4);
+            fail("exception expected");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            testObj.longestPrefixOf(buffer, -1, 2);
+            fail("exception expected");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPrefixesOf() {
+        testObj.put("a", "1");
+        testObj.put("ab", "2");
+        testObj.put("abcd", "4");
+        testObj.put("abd", "x");
+        testObj.put("b", "y");
+
+        List<Entry<CharSequence, String>> prefixes = testObj.prefixesOf("abcde");
+        assertEquals(3, prefixes.size());
+        assertEquals("a", prefixes.get(0).getKey());
+        assertEquals("ab", prefixes.get(1).getKey());
+        assertEquals("abcd", prefixes.get(2).getKey());
+        assertEquals("4", prefixes.get(2).getValue());
+        assertTrue(testObj.prefixesOf("c").isEmpty());
+
+        prefixes = testObj.prefixesOf("xabdx", 1, 3);
+        assertEquals(3, prefixes.size());
+        assertEquals("abd", prefixes.get(2).getKey());
+
+        testObj.put("", "0");
+        prefixes = testObj.prefixesOf("ab");
+        assertEquals(3, prefixes.size());
+        assertEquals("", prefixes.get(0).getKey());
+        assertEquals("ab", prefixes.get(2).getKey());
+        try {
+            testObj.prefixesOf("ab", 1, 2);
+            fail("exception expected");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRemovePrefix() {
+        testObj.put("tenantA/x", "1");
+        testObj.put("tenantA/y/z", "2");
+        testObj.put("tenantA", "3");
+        testObj.put("tenantB/x", "4");
+        testObj.put("", "5");
+        assertEquals(0, testObj.removePrefix("tenantC"));
+        assertEquals(2, testObj.removePrefix("tenantA/"));
+        assertEquals(3, testObj.size());
+        assertEquals("3", testObj.get("tenantA"));
+        assertNull(testObj.get("tenantA/x"));
+        assertEquals(2, testObj.removePrefix("tenant"));
+        assertEquals(1, testObj.size());
+        assertEquals("5", testObj.get(""));
+        assertEquals(1, testObj.removePrefix(""));
+        assertTrue(testObj.isEmpty());
+        testObj.put("tenantA/x", "1");
+        assertEquals("1", testObj.get("tenantA/x"));
+    }
+
+    @Test
+    public void testRemovePrefixAndRangeMatchTreeMap() {
+        Random random = new Random(4711);
+        for (int round = 0; round < 200; ++round) {
+            TreeMap<CharSequence, String> expected = new TreeMap<CharSequence, String>();
+            testObj.clear();
+            for (int i = 0; i < 200; ++i) {
+                String key = randomKey(random, 5);
+                expected.put(key, key);
+                testObj.put(key, key);
+            }
+            for (int i = 0; i < 5; ++i) {
+                int removed;
+                if (random.nextBoolean()) {
+                    String prefix = randomKey(random, 3);
+                    SortedMap<CharSequence, String> range = expected.subMap(prefix, prefix + Character.MAX_VALUE);
+                    int expectedRemoved = range.size();
+                    range.clear();
+                    removed = testObj.removePrefix(prefix);
+                    assertEquals(expectedRemoved, removed);
+                } else {
+                    String from = randomKey(random, 4);
+                    String to = randomKey(random, 4);
+                    if (from.compareTo(to) > 0) {
+                        String swap = from;
+                        from = to;
+                        to = swap;
+                    }
+                    SortedMap<CharSequence, String> range = expected.subMap(from, to);
+                    int expectedRemoved = range.size();
+                    range.clear();
+                    removed = testObj.removeRange(from, to);
+                    assertEquals(expectedRemoved, removed);
+                }
+                assertEquals(expected.size(), testObj.size());
+                assertEquals(new ArrayList<CharSequence>(expected.keySet()),
+                        new ArrayList<CharSequence>(testObj.keySet()));
+                int index = 0;
+                for (CharSequence key : expected.keySet()) {
+                    assertEquals(key, testObj.getKeyAt(index++));
+                }
+            }
+            String key = randomKey(random, 5);
+            expected.put(key, key);
+            testObj.put(key, key);
+            assertEquals(expected.size(), testObj.size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRemoveRangeWithInvertedBounds() {
+        testObj.removeRange("b", "a");
+    }
+
+    @Test
+    public void testRemovingNothingDoesNotInvalidateIterators() {
+        testObj.put("a", "1");
+        testObj.put("b", "2");
+        Iterator<CharSequence> iterator = testObj.keySet().iterator();
+        assertEquals("a", iterator.next());
+        assertEquals(0, testObj.removePrefix("c"));
+        assertEquals(0, testObj.removeRange("c", "d"));
+        assertEquals("b", iterator.next());
+    }
+
+    private static String randomKey(Random random, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('a' + random.nextInt(4)));
+        }
+        return buf.toString();
+    }
+
     private void fillMapWithFiveLowerCaseEntriesOrderingExpected() {
         TestDataFixture testData = MapData.getFiveLowerCaseEntriesOrderingExpected();
         testObj.putAll(testData.getData());
@@ -30,6 +30,11 @@ import org.junit.runners.Suite.SuiteClasses;
         TSTKeySetTest.class, TSTMapEntrySetTest.class, TSTMapSortedMapInterfaceTest.class, TSTMapValuesTest.class,
         TSTMapWithEmptyStringKeyTest.class, TSTSubMapTest.class, TSTMapCaseInsensitiveTest.class,
         TSTMapCaseInsensitiveMapEntrySetTest.class, TSTMapCaseInsensitiveSubMapTest.class, TSTSetTest.class,
-        TSTSetSubSetTest.class, TSTSetCaseInsensitiveTest.class})
+        TSTSetSubSetTest.class, TSTSetCaseInsensitiveTest.class, CompactTSTMapTest.class, ConcurrentTSTMapTest.class,
+        TSTMapConformanceTest.class, TSTAllocationTest.class, MappedTSTMapTest.class,
+        TSTFuzzyMatchTest.class, WeightedTSTMapTest.class, TSTSpliteratorTest.class,
+        RadixTSTMapTest.class, TSTPartialMatchTest.class, TSTRegexSearchTest.class, TSTAhoCorasickTest.class,
+        PersistentTSTMapTest.class, OffHeapTSTMapTest.class, TSTIntMapTest.class, TSTLongMapTest.class,
+        FrozenTSTSetTest.class, TSTFiniteStateTransducerTest.class})
 public class TernarySearchTreeMapTests {
 }
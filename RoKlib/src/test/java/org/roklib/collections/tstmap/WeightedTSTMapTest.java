@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2007 Roland Krueger
+ * Created on 17.10.2026
+ *
+ * Author: Roland Krueger (www.rolandkrueger.info)
+ *
+ * This file is part of RoKlib.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.roklib.collections.tstmap;
+
+import org.junit.Test;
+import org.roklib.collections.WeightedTernarySearchTreeMap;
+
+import java.io.*;
+import java.util.*;
+import java.util.Map.Entry;
+
+import static org.junit.Assert.*;
+
+public class WeightedTSTMapTest extends AbstractTSTMapConformanceTest {
+    @Override
+    public SortedMap<CharSequence, String> createObjectUnderTest() {
+        return new WeightedTernarySearchTreeMap<String>();
+    }
+
+    private static WeightedTernarySearchTreeMap<String> createFilledMap() {
+        WeightedTernarySearchTreeMap<String> map = new WeightedTernarySearchTreeMap<String>();
+        map.put("", "", 1);
+        map.put("java", "java", 90);
+        map.put("javascript", "javascript", 100);
+        map.put("jakarta", "jakarta", 20);
+        map.put("jar", "jar", 50);
+        map.put("json", "json", 70);
+        map.put("kotlin", "kotlin", 60);
+        return map;
+    }
+
+    private static List<String> keys(List<Entry<CharSequence, String>> entries) {
+        List<String> result = new ArrayList<String>();
+        for (Entry<CharSequence, String> entry : entries) {
+            result.add(entry.getKey().toString());
+        }
+        return result;
+    }
+
+    @Test
+    public void testTopK() {
+        WeightedTernarySearchTreeMap<String> testObj = createFilledMap();
+        assertEquals(Arrays.asList("javascript", "java", "json"), keys(testObj.topK("j", 3)));
+        assertEquals(Arrays.asList("javascript", "java", "jar", "jakarta"), keys(testObj.topK("ja", 10)));
+        assertEquals(Arrays.asList("javascript", "java"), keys(testObj.topK("java", 5)));
+        assertEquals(Arrays.asList("javascript", "java", "json", "kotlin", "jar", "jakarta", ""),
+                keys(testObj.topK("", 10)));
+        assertTrue(testObj.topK("x", 3).isEmpty());
+        assertTrue(testObj.topK("j", 0).isEmpty());
+        assertEquals("json", testObj.topK("js", 1).get(0).getValue());
+    }
+
+    @Test
+    public void testScoreUpdates() {
+        WeightedTernarySearchTreeMap<String> testObj = createFilledMap();
+        assertTrue(testObj.setScore("jakarta", 200));
+        assertEquals(Double.valueOf(200), testObj.getScore("jakarta"));
+        assertEquals(Arrays.asList("jakarta", "javascript"), keys(testObj.topK("j", 2)));
+        assertTrue(testObj.setScore("jakarta", 0));
+        assertTrue(testObj.setScore("javascript", 10));
+        assertEquals(Arrays.asList("java", "json"), keys(testObj.topK("j", 2)));
+        assertFalse(testObj.setScore("jav", 10));
+        assertNull(testObj.getScore("jav"));
+
+        // replacing a value keeps the score, put() with a score replaces it
+        assertEquals("json", testObj.put("json", "JSON"));
+        assertEquals(Double.valueOf(70), testObj.getScore("json"));
+        testObj.put("json", "JSON", 5);
+        assertEquals(Arrays.asList("java", "jar"), keys(testObj.topK("j", 2)));
+
+        testObj.remove("java");
+        assertEquals(Arrays.asList("jar", "javascript"), keys(testObj.topK("j", 2)));
+        testObj.put("javac", "javac");
+        assertEquals(Double.valueOf(WeightedTernarySearchTreeMap.DEFAULT_SCORE), testObj.getScore("javac"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNaNScore() {
+        createFilledMap().setScore("java", Double.NaN);
+    }
+
+    @Test
+    public void testCompareWithBruteForce() {
+        Random random = new Random(4711);
+        WeightedTernarySearchTreeMap<String> testObj = new WeightedTernarySearchTreeMap<String>();
+        Map<String, Double> scores = new HashMap<String, Double>();
+        for (int i = 0; i < 5000; ++i) {
+            String key = randomKey(random);
+            int operation = random.nextInt(4);
+            if (operation == 0) {
+                testObj.remove(key);
+                scores.remove(key);
+            } else if (operation == 1 && scores.containsKey(key)) {
+                double score = random.nextInt(1000);
+                assertTrue(testObj.setScore(key, score));
+                scores.put(key, score);
+            } else {
+                double score = random.nextInt(1000);
+                testObj.put(key, key, score);
+                scores.put(key, score);
+            }
+        }
+        assertEquals(scores.size(), testObj.size());
+        for (String prefix : new String[]{"", "a", "ab", "ba", "ccc", "d"}) {
+            List<Double> expected = new ArrayList<Double>();
+            for (Entry<String, Double> entry : scores.entrySet()) {
+                if (entry.getKey().startsWith(prefix)) {
+                    expected.add(entry.getValue());
+                }
+            }
+            Collections.sort(expected, Collections.reverseOrder());
+            for (int k : new int[]{1, 3, 10, 100}) {
+                List<Double> actual = new ArrayList<Double>();
+                for (Entry<CharSequence, String> entry : testObj.topK(prefix, k)) {
+                    assertTrue(entry.getKey().toString().startsWith(prefix));
+                    actual.add(testObj.getScore(entry.getKey()));
+                }
+                assertEquals(expected.subList(0, Math.min(k, expected.size())), actual);
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSerialization() throws Exception {
+        WeightedTernarySearchTreeMap<String> testObj = createFilledMap();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(testObj);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        WeightedTernarySearchTreeMap<String> copy = (WeightedTernarySearchTreeMap<String>) in.readObject();
+        assertEquals(testObj, copy);
+        assertEquals(keys(testObj.topK("", 10)), keys(copy.topK("", 10)));
+        assertEquals(Double.valueOf(1), copy.getScore(""));
+    }
+
+    private static String randomKey(Random random) {
+        int length = random.nextInt(6);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+            buf.append((char) ('a' + random.nextInt(4)));
+        }
+        return buf.toString();
+    }
+}